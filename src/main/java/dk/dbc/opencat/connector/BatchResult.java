@@ -0,0 +1,92 @@
+package dk.dbc.opencat.connector;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a batch call on the {@link OpencatBusinessConnector}
+ * <p>
+ * The items are in the same order as the records given to the batch call. A failing record
+ * does not abort the batch, instead its item holds the exception the single record call
+ * would have thrown.
+ * </p>
+ *
+ * @param <T> result type of the single record call
+ */
+public class BatchResult<T> {
+    private final List<Item<T>> items;
+    private final long elapsedMillis;
+
+    BatchResult(List<Item<T>> items, long elapsedMillis) {
+        this.items = Collections.unmodifiableList(items);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<Item<T>> getItems() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public long getSuccessCount() {
+        return items.stream().filter(Item::isSuccess).count();
+    }
+
+    public long getFailureCount() {
+        return items.size() - getSuccessCount();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return number of records processed per second
+     */
+    public double getThroughput() {
+        if (elapsedMillis == 0) {
+            return items.size();
+        }
+        return items.size() * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "size=" + items.size() +
+                ", failures=" + getFailureCount() +
+                ", elapsedMillis=" + elapsedMillis +
+                ", throughput=" + String.format("%.1f", getThroughput()) +
+                '}';
+    }
+
+    public static class Item<T> {
+        private volatile T value;
+        private volatile Throwable failure;
+
+        void complete(T value, Throwable failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+
+        /**
+         * @return result of the single record call, or null if it failed
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return exception thrown by the single record call, or null if it succeeded
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+}
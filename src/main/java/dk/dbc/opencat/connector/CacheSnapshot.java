@@ -0,0 +1,217 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.updateservice.dto.SchemaDTO;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contents of the metadata caches of a connector, i.e. getValidateSchemas results and checkTemplate
+ * outcomes, as written to and read from a snapshot file
+ * <p>
+ * The file is a compact binary format: a magic number and a version, followed by the getValidateSchemas
+ * entries and the checkTemplate outcomes, each section prefixed by its number of entries. Strings are
+ * written as their UTF-8 length followed by the bytes, or -1 for null, and agencies as ints.
+ * A snapshot is written to a temporary file which is then moved in place, so readers never see a partial
+ * file, and it is read through a memory mapping of the file.
+ * </p>
+ */
+class CacheSnapshot {
+    private static final int MAGIC = 0x4f434253;
+    private static final int VERSION = 1;
+
+    private final Map<OpencatBusinessConnector.ValidateSchemasKey, List<SchemaDTO>> validateSchemas;
+    private final List<TemplatePermission> templatePermissions;
+
+    CacheSnapshot(Map<OpencatBusinessConnector.ValidateSchemasKey, List<SchemaDTO>> validateSchemas,
+                  List<TemplatePermission> templatePermissions) {
+        this.validateSchemas = validateSchemas;
+        this.templatePermissions = templatePermissions;
+    }
+
+    Map<OpencatBusinessConnector.ValidateSchemasKey, List<SchemaDTO>> getValidateSchemas() {
+        return validateSchemas;
+    }
+
+    List<TemplatePermission> getTemplatePermissions() {
+        return templatePermissions;
+    }
+
+    void write(Path file) throws IOException {
+        final Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporaryFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(validateSchemas.size());
+                for (Map.Entry<OpencatBusinessConnector.ValidateSchemasKey, List<SchemaDTO>> entry : validateSchemas.entrySet()) {
+                    writeString(out, entry.getKey().getTemplateGroup());
+                    final Set<String> allowedLibraryRules = entry.getKey().getAllowedLibraryRules();
+                    out.writeInt(allowedLibraryRules == null ? -1 : allowedLibraryRules.size());
+                    if (allowedLibraryRules != null) {
+                        for (String rule : allowedLibraryRules) {
+                            writeString(out, rule);
+                        }
+                    }
+                    out.writeInt(entry.getValue().size());
+                    for (SchemaDTO schema : entry.getValue()) {
+                        writeString(out, schema.getSchemaName());
+                        writeString(out, schema.getSchemaInfo());
+                    }
+                }
+                out.writeInt(templatePermissions.size());
+                for (TemplatePermission templatePermission : templatePermissions) {
+                    writeString(out, templatePermission.templateName);
+                    writeString(out, templatePermission.libraryType);
+                    out.writeInt(templatePermission.agency);
+                    out.writeBoolean(templatePermission.allowed);
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * @param file snapshot file
+     * @return the snapshot
+     * @throws IOException if the file can not be read or is not a valid snapshot
+     */
+    static CacheSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a cache snapshot");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " is a cache snapshot of unsupported version " + version);
+            }
+            final int validateSchemasCount = readCount(buffer);
+            final Map<OpencatBusinessConnector.ValidateSchemasKey, List<SchemaDTO>> validateSchemas = new LinkedHashMap<>();
+            for (int i = 0; i < validateSchemasCount; i++) {
+                final String templateGroup = readString(buffer);
+                final int rulesCount = buffer.getInt();
+                Set<String> allowedLibraryRules = null;
+                if (rulesCount >= 0) {
+                    allowedLibraryRules = new HashSet<>();
+                    for (int j = 0; j < rulesCount; j++) {
+                        allowedLibraryRules.add(readString(buffer));
+                    }
+                }
+                final int schemasCount = readCount(buffer);
+                final List<SchemaDTO> schemas = new ArrayList<>(schemasCount);
+                for (int j = 0; j < schemasCount; j++) {
+                    final SchemaDTO schema = new SchemaDTO();
+                    schema.setSchemaName(readString(buffer));
+                    schema.setSchemaInfo(readString(buffer));
+                    schemas.add(schema);
+                }
+                validateSchemas.put(new OpencatBusinessConnector.ValidateSchemasKey(templateGroup, allowedLibraryRules),
+                        Collections.unmodifiableList(schemas));
+            }
+            final int templatePermissionsCount = readCount(buffer);
+            final List<TemplatePermission> templatePermissions = new ArrayList<>(templatePermissionsCount);
+            for (int i = 0; i < templatePermissionsCount; i++) {
+                final String templateName = readString(buffer);
+                final String libraryType = readString(buffer);
+                final int agency = buffer.getInt();
+                templatePermissions.add(new TemplatePermission(templateName, agency, libraryType, buffer.get() != 0));
+            }
+            return new CacheSnapshot(validateSchemas, templatePermissions);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(file + " is a truncated or corrupt cache snapshot", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // A count can never exceed the remaining bytes, so a corrupt count fails before allocating
+    private static int readCount(ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+        return count;
+    }
+
+    static class TemplatePermission {
+        private final String templateName;
+        private final int agency;
+        private final String libraryType;
+        private final boolean allowed;
+
+        TemplatePermission(String templateName, int agency, String libraryType, boolean allowed) {
+            this.templateName = templateName;
+            this.agency = agency;
+            this.libraryType = libraryType;
+            this.allowed = allowed;
+        }
+
+        String getTemplateName() {
+            return templateName;
+        }
+
+        /**
+         * @return agency ID in its 6-digit form, e.g. 010100
+         */
+        String getGroupId() {
+            final String digits = Integer.toString(agency);
+            if (digits.length() >= TemplatePermissionIndex.AGENCY_DIGITS) {
+                return digits;
+            }
+            return "0".repeat(TemplatePermissionIndex.AGENCY_DIGITS - digits.length()) + digits;
+        }
+
+        String getLibraryType() {
+            return libraryType;
+        }
+
+        boolean isAllowed() {
+            return allowed;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dk.dbc.opencat.connector;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Time spent in each phase of a single connector call which sent a request to opencat-business,
+ * see {@link OpencatBusinessConnectorSettings#withCallTimings(java.util.function.Consumer)}
+ * <p>
+ * Phases which were not part of the call, e.g. decoding for checkTemplate, are zero. The total also covers
+ * the time spent outside the phases, e.g. waiting for the async executor, so it is at least their sum.
+ * </p>
+ * <p>
+ * In a CDI environment the connector produced by {@link OpencatBusinessConnectorFactory} can fire these as CDI events.
+ * </p>
+ */
+public class CallTimings {
+    public enum Phase {
+        /** Encoding the request records to MarcXchange, for records not sent by an earlier call */
+        ENCODE,
+        /** Marshalling the request DTO. The JSON body is written as it is sent, and so is part of NETWORK */
+        MARSHAL,
+        /** Sending the request until the response status is received, including retries and hedges */
+        NETWORK,
+        /** Reading the response entity and unmarshalling it, up to the record of a record response */
+        UNMARSHAL,
+        /** Decoding the record of a record response, which is unescaped from the JSON while it is decoded */
+        DECODE
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final String method;
+    private final String path;
+    private final long startNanos;
+    // -1 for phases not part of the call. The phases of a call are recorded one after the other, never concurrently
+    private final long[] phaseNanos = new long[PHASES.length];
+    private long totalNanos = -1;
+
+    CallTimings(String method, String path) {
+        this.method = method;
+        this.path = path;
+        this.startNanos = System.nanoTime();
+        Arrays.fill(phaseNanos, -1);
+    }
+
+    /**
+     * @return connector method name, e.g. doRecategorizationThings
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return endpoint path, e.g. /api/v1/doRecategorizationThings
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public Duration get(Phase phase) {
+        return Duration.ofNanos(Math.max(phaseNanos[phase.ordinal()], 0));
+    }
+
+    public Duration getTotal() {
+        return Duration.ofNanos(totalNanos < 0 ? System.nanoTime() - startNanos : totalNanos);
+    }
+
+    boolean isRecorded(Phase phase) {
+        return phaseNanos[phase.ordinal()] >= 0;
+    }
+
+    void add(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] = Math.max(phaseNanos[phase.ordinal()], 0) + nanos;
+    }
+
+    /**
+     * Adds the time elapsed since the given {@link System#nanoTime()} to the phase
+     */
+    void addSince(Phase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    void onRequestBody(JsonRequestBody body) {
+        add(Phase.MARSHAL, body.getMarshalNanos());
+        if (body.hasRecords()) {
+            add(Phase.ENCODE, body.takeEncodeNanos());
+        }
+    }
+
+    void complete() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("CallTimings{method='").append(method)
+                .append("', path='").append(path)
+                .append("', total=").append(millis(getTotal()));
+        for (Phase phase : PHASES) {
+            if (isRecorded(phase)) {
+                builder.append(", ").append(phase.name().toLowerCase(Locale.ROOT)).append('=')
+                        .append(millis(get(phase)));
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String millis(Duration duration) {
+        return String.format(Locale.ROOT, "%.1fms", duration.toNanos() / 1e6);
+    }
+}
@@ -0,0 +1,230 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.opencat.connector.CircuitBreakerEvent.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of a single opencat-business endpoint
+ * <p>
+ * While closed, the outcomes of the most recent attempts are kept in a window of
+ * {@link CircuitBreakerSettings#getWindowSize()} attempts. Once the window holds at least
+ * {@link CircuitBreakerSettings#getMinCalls()} attempts, the circuit opens when the share of failed
+ * or of slow attempts reaches its threshold. While open, every attempt fails fast with a
+ * {@link CircuitBreakerOpenException}. When the open duration has passed the circuit becomes half-open and
+ * lets {@link CircuitBreakerSettings#getHalfOpenProbes()} probe attempts through. It closes with an empty window
+ * when all probes have succeeded in time, and opens again as soon as one of them fails or is slow.
+ * </p>
+ * <p>
+ * Attempts started before the latest state change do not count.
+ * </p>
+ * <p>
+ * This class is thread safe. State changes are passed to the listener outside of any lock.
+ * </p>
+ */
+class CircuitBreaker {
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String path;
+    private final CircuitBreakerSettings settings;
+    private final Consumer<CircuitBreakerEvent> listener;
+    private final LongSupplier nanoClock;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final byte[] outcomes;
+    private int size;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAtNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    CircuitBreaker(String path, CircuitBreakerSettings settings, Consumer<CircuitBreakerEvent> listener) {
+        this(path, settings, listener, System::nanoTime);
+    }
+
+    CircuitBreaker(String path, CircuitBreakerSettings settings, Consumer<CircuitBreakerEvent> listener,
+                   LongSupplier nanoClock) {
+        this.path = path;
+        this.settings = settings;
+        this.listener = listener;
+        this.nanoClock = nanoClock;
+        this.slowCallNanos = settings.getSlowCallDuration().toNanos();
+        this.openNanos = settings.getOpenDuration().toNanos();
+        this.outcomes = new byte[settings.getWindowSize()];
+    }
+
+    /**
+     * Acquires a permit for an attempt, which must be completed or cancelled when the attempt is over
+     *
+     * @return permit
+     * @throws CircuitBreakerOpenException if the circuit is open, or half-open with all probes in flight
+     */
+    Permit acquire() throws CircuitBreakerOpenException {
+        final CircuitBreakerEvent event;
+        final Permit permit;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                final long openForNanos = openNanos - (nanoClock.getAsLong() - openedAtNanos);
+                if (openForNanos > 0) {
+                    throw new CircuitBreakerOpenException(String.format(
+                            "Circuit breaker of opencat-business %s is open for another %d milliseconds",
+                            path, TimeUnit.NANOSECONDS.toMillis(openForNanos)));
+                }
+                event = transition(State.HALF_OPEN);
+            } else {
+                event = null;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= settings.getHalfOpenProbes()) {
+                    throw new CircuitBreakerOpenException(String.format(
+                            "Circuit breaker of opencat-business %s is half-open with all probes in flight", path));
+                }
+                probesStarted++;
+            }
+            permit = new Permit(generation);
+        }
+        publish(event);
+        return permit;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    private void complete(Permit permit, boolean failed) {
+        final boolean slow = nanoClock.getAsLong() - permit.startNanos >= slowCallNanos;
+        CircuitBreakerEvent event = null;
+        synchronized (this) {
+            if (permit.generation != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (failed || slow) {
+                    event = transition(State.OPEN);
+                } else if (++probesSucceeded >= settings.getHalfOpenProbes()) {
+                    event = transition(State.CLOSED);
+                }
+            } else if (state == State.CLOSED) {
+                record(failed, slow);
+                if (size >= Math.min(settings.getMinCalls(), outcomes.length)
+                        && (failures >= settings.getFailureRateThreshold() * size
+                        || slowCalls >= settings.getSlowCallRateThreshold() * size)) {
+                    event = transition(State.OPEN);
+                }
+            }
+        }
+        publish(event);
+    }
+
+    private synchronized void cancel(Permit permit) {
+        if (permit.generation == generation && state == State.HALF_OPEN) {
+            probesStarted--;
+        }
+    }
+
+    // Guarded by this
+    private void record(boolean failed, boolean slow) {
+        if (size == outcomes.length) {
+            forget(outcomes[next]);
+        } else {
+            size++;
+        }
+        final byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if ((outcome & FAILED) != 0) {
+            failures++;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls++;
+        }
+    }
+
+    // Guarded by this
+    private void forget(byte outcome) {
+        if ((outcome & FAILED) != 0) {
+            failures--;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls--;
+        }
+    }
+
+    // Guarded by this
+    private CircuitBreakerEvent transition(State to) {
+        final State from = state;
+        state = to;
+        generation++;
+        switch (to) {
+            case OPEN:
+                openedAtNanos = nanoClock.getAsLong();
+                break;
+            case HALF_OPEN:
+                probesStarted = 0;
+                probesSucceeded = 0;
+                break;
+            case CLOSED:
+                size = 0;
+                next = 0;
+                failures = 0;
+                slowCalls = 0;
+                break;
+        }
+        return new CircuitBreakerEvent(path, from, to);
+    }
+
+    private void publish(CircuitBreakerEvent event) {
+        if (event != null) {
+            listener.accept(event);
+        }
+    }
+
+    class Permit {
+        private final long generation;
+        private final long startNanos = nanoClock.getAsLong();
+        private boolean released;
+
+        private Permit(long generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * Completes the permit with the outcome of the attempt
+         *
+         * @param failed true if the attempt got no response, a server error or a 404
+         */
+        void complete(boolean failed) {
+            if (markReleased()) {
+                CircuitBreaker.this.complete(this, failed);
+            }
+        }
+
+        /**
+         * Releases the permit of an attempt which was never sent
+         */
+        void cancel() {
+            if (markReleased()) {
+                CircuitBreaker.this.cancel(this);
+            }
+        }
+
+        private synchronized boolean markReleased() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package dk.dbc.opencat.connector;
+
+/**
+ * State change of the circuit breaker of an opencat-business endpoint, see
+ * {@link OpencatBusinessConnectorSettings#withCircuitBreaker(CircuitBreakerSettings, java.util.function.Consumer)}
+ * <p>
+ * In a CDI environment the connector produced by {@link OpencatBusinessConnectorFactory} fires these as CDI events.
+ * </p>
+ */
+public class CircuitBreakerEvent {
+    public enum State {
+        /** Requests are let through */
+        CLOSED,
+        /** A few probe requests are let through to find out whether the endpoint has recovered */
+        HALF_OPEN,
+        /** Requests fail fast without calling opencat-business */
+        OPEN
+    }
+
+    private final String path;
+    private final State from;
+    private final State to;
+
+    public CircuitBreakerEvent(String path, State from, State to) {
+        this.path = path;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return endpoint path, e.g. /api/v1/metacompass
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public State getFrom() {
+        return from;
+    }
+
+    public State getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerEvent{" +
+                "path='" + path + '\'' +
+                ", from=" + from +
+                ", to=" + to +
+                '}';
+    }
+}
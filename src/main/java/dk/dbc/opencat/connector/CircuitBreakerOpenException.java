@@ -0,0 +1,11 @@
+package dk.dbc.opencat.connector;
+
+/**
+ * Thrown when a request fails fast because the circuit breaker of its endpoint is open,
+ * meaning opencat-business was never called
+ */
+public class CircuitBreakerOpenException extends OpencatBusinessConnectorException {
+    public CircuitBreakerOpenException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,152 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.invariant.InvariantUtil;
+
+import java.time.Duration;
+
+/**
+ * Settings of the per endpoint circuit breakers of a connector, see
+ * {@link OpencatBusinessConnectorSettings#withCircuitBreaker(CircuitBreakerSettings, java.util.function.Consumer)}
+ * <p>
+ * Defaults: the circuit of an endpoint opens when at least 50% of its last 50 attempts failed, or at least
+ * 80% of them took 10 seconds or more, counting from 20 attempts. It stays open for 30 seconds, after which
+ * 3 probe attempts must succeed in time for it to close again.
+ * </p>
+ */
+public class CircuitBreakerSettings {
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 0.8;
+    private Duration slowCallDuration = Duration.ofSeconds(10);
+    private Duration openDuration = Duration.ofSeconds(30);
+    private int windowSize = 50;
+    private int minCalls = 20;
+    private int halfOpenProbes = 3;
+
+    /**
+     * @param failureRateThreshold share of failed attempts, i.e. no response or a server error, opening the circuit
+     * @return these settings
+     */
+    public CircuitBreakerSettings withFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = checkRate(failureRateThreshold, "failureRateThreshold");
+        return this;
+    }
+
+    /**
+     * @param slowCallRateThreshold share of slow attempts opening the circuit
+     * @return these settings
+     */
+    public CircuitBreakerSettings withSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = checkRate(slowCallRateThreshold, "slowCallRateThreshold");
+        return this;
+    }
+
+    /**
+     * @param slowCallDuration min duration of a slow attempt
+     * @return these settings
+     */
+    public CircuitBreakerSettings withSlowCallDuration(Duration slowCallDuration) {
+        this.slowCallDuration = checkPositive(slowCallDuration, "slowCallDuration");
+        return this;
+    }
+
+    /**
+     * @param openDuration time the circuit stays open before probing the endpoint
+     * @return these settings
+     */
+    public CircuitBreakerSettings withOpenDuration(Duration openDuration) {
+        this.openDuration = checkPositive(openDuration, "openDuration");
+        return this;
+    }
+
+    /**
+     * @param windowSize number of most recent attempts the rates are computed over
+     * @return these settings
+     */
+    public CircuitBreakerSettings withWindowSize(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1, was " + windowSize);
+        }
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * @param minCalls min number of attempts in the window before the circuit can open,
+     *                 capped by the window size
+     * @return these settings
+     */
+    public CircuitBreakerSettings withMinCalls(int minCalls) {
+        if (minCalls < 1) {
+            throw new IllegalArgumentException("minCalls must be at least 1, was " + minCalls);
+        }
+        this.minCalls = minCalls;
+        return this;
+    }
+
+    /**
+     * @param halfOpenProbes number of probe attempts which must succeed for the circuit to close
+     * @return these settings
+     */
+    public CircuitBreakerSettings withHalfOpenProbes(int halfOpenProbes) {
+        if (halfOpenProbes < 1) {
+            throw new IllegalArgumentException("halfOpenProbes must be at least 1, was " + halfOpenProbes);
+        }
+        this.halfOpenProbes = halfOpenProbes;
+        return this;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public Duration getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getMinCalls() {
+        return minCalls;
+    }
+
+    public int getHalfOpenProbes() {
+        return halfOpenProbes;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerSettings{" +
+                "failureRateThreshold=" + failureRateThreshold +
+                ", slowCallRateThreshold=" + slowCallRateThreshold +
+                ", slowCallDuration=" + slowCallDuration +
+                ", openDuration=" + openDuration +
+                ", windowSize=" + windowSize +
+                ", minCalls=" + minCalls +
+                ", halfOpenProbes=" + halfOpenProbes +
+                '}';
+    }
+
+    private static double checkRate(double rate, String name) {
+        if (rate <= 0 || rate > 1) {
+            throw new IllegalArgumentException(name + " must be above 0 and at most 1, was " + rate);
+        }
+        return rate;
+    }
+
+    private static Duration checkPositive(Duration duration, String name) {
+        if (InvariantUtil.checkNotNullOrThrow(duration, name).isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException(name + " must be positive, was " + duration);
+        }
+        return duration;
+    }
+}
@@ -0,0 +1,11 @@
+package dk.dbc.opencat.connector;
+
+/**
+ * Thrown when a request is rejected by the adaptive concurrency limit of the connector,
+ * meaning opencat-business was never called
+ */
+public class ConcurrencyLimitExceededException extends OpencatBusinessConnectorException {
+    public ConcurrencyLimitExceededException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,210 @@
+package dk.dbc.opencat.connector;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive (AIMD) limit on the number of concurrent requests to opencat-business
+ * <p>
+ * The limit grows by one for every successful request completing while at least half of the limit
+ * was in use, and is multiplied by {@value #BACKOFF_RATIO} whenever a request fails or is slow.
+ * A request is slow when its round trip time is more than {@value #RTT_TOLERANCE} times the lowest
+ * round trip time recently seen for the same endpoint, and at least {@link #SLOW_RTT_FLOOR} long.
+ * The lowest round trip times are forgotten every {@value #MIN_RTT_WINDOW} requests, so the baseline
+ * follows lasting changes in the service.
+ * </p>
+ * <p>
+ * Requests exceeding the limit are queued in arrival order. A request finding the queue full, or
+ * not leaving the queue within the max queue wait, fails with a {@link ConcurrencyLimitExceededException}.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class ConcurrencyLimiter {
+    static final double BACKOFF_RATIO = 0.9;
+    static final double RTT_TOLERANCE = 2.0;
+    static final Duration SLOW_RTT_FLOOR = Duration.ofMillis(50);
+    static final int MIN_RTT_WINDOW = 1000;
+    static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long maxQueueWaitNanos;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoClock;
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private final Map<String, Long> minRttNanos = new HashMap<>();
+    private double limit;
+    private int inFlight;
+    private int samples;
+
+    ConcurrencyLimiter(int initialLimit, int maxLimit, int maxQueued, Duration maxQueueWait,
+                       ScheduledExecutorService scheduler) {
+        this(initialLimit, maxLimit, maxQueued, maxQueueWait, scheduler, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(int initialLimit, int maxLimit, int maxQueued, Duration maxQueueWait,
+                       ScheduledExecutorService scheduler, LongSupplier nanoClock) {
+        if (maxLimit < MIN_LIMIT) {
+            throw new IllegalArgumentException("maxLimit must be at least " + MIN_LIMIT + ", was " + maxLimit);
+        }
+        if (initialLimit < MIN_LIMIT || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("initialLimit must be between " + MIN_LIMIT + " and " + maxLimit +
+                    ", was " + initialLimit);
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued must not be negative, was " + maxQueued);
+        }
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Acquires a permit for a request, which must be released when the request completes
+     *
+     * @param path endpoint path, for tracking round trip times per endpoint
+     * @return future completed with the permit, either at once or when the request leaves the queue,
+     * or failed with a {@link ConcurrencyLimitExceededException}
+     */
+    CompletableFuture<Permit> acquire(String path) {
+        final Waiter waiter;
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit(path, inFlight));
+            }
+            if (queue.size() >= maxQueued) {
+                return CompletableFuture.failedFuture(new ConcurrencyLimitExceededException(
+                        "opencat-business concurrency limit of " + (int) limit + " reached with " +
+                                queue.size() + " requests queued"));
+            }
+            waiter = new Waiter(path);
+            queue.add(waiter);
+        }
+        scheduler.schedule(() -> {
+            final boolean timedOut;
+            synchronized (this) {
+                timedOut = queue.remove(waiter);
+            }
+            if (timedOut) {
+                waiter.future.completeExceptionally(new ConcurrencyLimitExceededException(
+                        "opencat-business concurrency limit: no capacity within " +
+                                TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos) + " milliseconds"));
+            }
+        }, maxQueueWaitNanos, TimeUnit.NANOSECONDS);
+        return waiter.future;
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueued() {
+        return queue.size();
+    }
+
+    private void release(Permit permit, boolean sample, boolean dropped) {
+        final long rttNanos = nanoClock.getAsLong() - permit.startNanos;
+        final List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            if (sample) {
+                if (dropped || isSlow(permit.path, rttNanos)) {
+                    limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+                } else if (permit.inFlightAtStart * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1);
+                }
+            }
+            while (!queue.isEmpty() && inFlight < (int) limit) {
+                final Waiter waiter = queue.poll();
+                waiter.inFlightAtStart = ++inFlight;
+                granted.add(waiter);
+            }
+        }
+        for (Waiter waiter : granted) {
+            waiter.future.complete(new Permit(waiter.path, waiter.inFlightAtStart));
+        }
+    }
+
+    // Guarded by this
+    private boolean isSlow(String path, long rttNanos) {
+        if (++samples >= MIN_RTT_WINDOW) {
+            samples = 0;
+            minRttNanos.clear();
+        }
+        final Long minRtt = minRttNanos.get(path);
+        if (minRtt == null || rttNanos < minRtt) {
+            minRttNanos.put(path, rttNanos);
+            return false;
+        }
+        return rttNanos > RTT_TOLERANCE * minRtt && rttNanos >= SLOW_RTT_FLOOR.toNanos();
+    }
+
+    private static class Waiter {
+        private final String path;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+        private int inFlightAtStart;
+
+        private Waiter(String path) {
+            this.path = path;
+        }
+    }
+
+    class Permit {
+        private final String path;
+        private final int inFlightAtStart;
+        private final long startNanos = nanoClock.getAsLong();
+        private boolean released;
+
+        private Permit(String path, int inFlightAtStart) {
+            this.path = path;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Releases the permit, adjusting the limit by the outcome of the request
+         *
+         * @param dropped true if the request failed in a way indicating overload,
+         *                i.e. no response, a server error or a 404
+         */
+        void release(boolean dropped) {
+            if (markReleased()) {
+                ConcurrencyLimiter.this.release(this, true, dropped);
+            }
+        }
+
+        /**
+         * Releases the permit of a request which was never sent, leaving the limit as is
+         */
+        void cancel() {
+            if (markReleased()) {
+                ConcurrencyLimiter.this.release(this, false, false);
+            }
+        }
+
+        private synchronized boolean markReleased() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+}
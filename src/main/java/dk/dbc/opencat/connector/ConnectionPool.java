@@ -0,0 +1,81 @@
+package dk.dbc.opencat.connector;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.apache.connector.ApacheHttpClientBuilderConfigurator;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of HTTP connections backing a JAX-RS client through the Jersey Apache connector
+ * <p>
+ * Connections are kept alive and reused between requests. Idle and expired connections
+ * are evicted by a background thread of the client.
+ * </p>
+ * <p>
+ * Like jersey-client, the jersey-apache-connector is a provided dependency, which must be on the runtime
+ * classpath of applications using the JAX_RS transport with a connection pool.
+ * </p>
+ */
+class ConnectionPool {
+    private final ConnectionPoolSettings settings;
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    ConnectionPool(ConnectionPoolSettings settings) {
+        this.settings = settings;
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnectionsPerRoute());
+    }
+
+    /**
+     * Configures the given client config to use this pool and the timeouts of the pool settings
+     *
+     * @param clientConfig client config
+     * @return the client config
+     */
+    ClientConfig configure(ClientConfig clientConfig) {
+        final long idleTimeoutMillis = settings.getIdleTimeout().toMillis();
+        return clientConfig
+                .connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                // Bounds the wait for a leased connection, so a leak or an overload fails instead of hanging
+                .property(ApacheClientProperties.REQUEST_CONFIG, RequestConfig.custom()
+                        .setConnectionRequestTimeout(toIntMillis(settings.getConnectionRequestTimeout().toMillis()))
+                        .build())
+                .property(ClientProperties.CONNECT_TIMEOUT, toIntMillis(settings.getConnectTimeout().toMillis()))
+                .property(ClientProperties.READ_TIMEOUT, toIntMillis(settings.getReadTimeout().toMillis()))
+                .register((ApacheHttpClientBuilderConfigurator) builder -> idleTimeoutMillis > 0
+                        ? builder.evictExpiredConnections().evictIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+                        : builder.evictExpiredConnections());
+    }
+
+    int getLeased() {
+        return stats().getLeased();
+    }
+
+    int getAvailable() {
+        return stats().getAvailable();
+    }
+
+    int getPending() {
+        return stats().getPending();
+    }
+
+    int getMax() {
+        return stats().getMax();
+    }
+
+    private PoolStats stats() {
+        return connectionManager.getTotalStats();
+    }
+
+    private static int toIntMillis(long millis) {
+        return (int) Math.min(millis, Integer.MAX_VALUE);
+    }
+}
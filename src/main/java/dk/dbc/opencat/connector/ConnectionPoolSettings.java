@@ -0,0 +1,133 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.invariant.InvariantUtil;
+
+import java.time.Duration;
+
+/**
+ * Settings of the pooled HTTP connections of a connector created by
+ * {@link OpencatBusinessConnectorFactory#create(String, OpencatBusinessConnector.TimingLogLevel, ConnectionPoolSettings)}
+ * <p>
+ * Defaults: at most 50 connections of which at most 20 to each opencat-business instance, idle connections
+ * closed after 60 seconds, 5 seconds connect timeout, 5 seconds connection request timeout and 120 seconds
+ * read timeout.
+ * A zero timeout means no timeout.
+ * </p>
+ * <p>
+ * With the JDK_HTTP2 transport only the connect and read timeouts apply, the read timeout bounding each request
+ * until its response headers are received. The JDK client keeps a single multiplexed connection per
+ * opencat-business instance, so the connection limits, the idle timeout and the connection request timeout
+ * are ignored.
+ * </p>
+ */
+public class ConnectionPoolSettings {
+    private int maxConnections = 50;
+    private int maxConnectionsPerRoute = 20;
+    private Duration idleTimeout = Duration.ofSeconds(60);
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration connectionRequestTimeout = Duration.ofSeconds(5);
+    private Duration readTimeout = Duration.ofSeconds(120);
+
+    /**
+     * @param maxConnections max number of pooled connections in total
+     * @return these settings
+     */
+    public ConnectionPoolSettings withMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1, was " + maxConnections);
+        }
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * @param maxConnectionsPerRoute max number of pooled connections to each opencat-business instance
+     * @return these settings
+     */
+    public ConnectionPoolSettings withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        if (maxConnectionsPerRoute < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerRoute must be at least 1, was " + maxConnectionsPerRoute);
+        }
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    /**
+     * @param idleTimeout time after which idle connections are evicted from the pool
+     * @return these settings
+     */
+    public ConnectionPoolSettings withIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = checkNotNegative(idleTimeout, "idleTimeout");
+        return this;
+    }
+
+    /**
+     * @param connectTimeout max time to establish a connection
+     * @return these settings
+     */
+    public ConnectionPoolSettings withConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = checkNotNegative(connectTimeout, "connectTimeout");
+        return this;
+    }
+
+    /**
+     * @param connectionRequestTimeout max time to wait for a connection from the pool when all connections are leased
+     * @return these settings
+     */
+    public ConnectionPoolSettings withConnectionRequestTimeout(Duration connectionRequestTimeout) {
+        this.connectionRequestTimeout = checkNotNegative(connectionRequestTimeout, "connectionRequestTimeout");
+        return this;
+    }
+
+    /**
+     * @param readTimeout max time of inactivity while waiting for data on a connection
+     * @return these settings
+     */
+    public ConnectionPoolSettings withReadTimeout(Duration readTimeout) {
+        this.readTimeout = checkNotNegative(readTimeout, "readTimeout");
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolSettings{" +
+                "maxConnections=" + maxConnections +
+                ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+                ", idleTimeout=" + idleTimeout +
+                ", connectTimeout=" + connectTimeout +
+                ", connectionRequestTimeout=" + connectionRequestTimeout +
+                ", readTimeout=" + readTimeout +
+                '}';
+    }
+
+    private static Duration checkNotNegative(Duration duration, String name) {
+        if (InvariantUtil.checkNotNullOrThrow(duration, name).isNegative()) {
+            throw new IllegalArgumentException(name + " must not be negative, was " + duration);
+        }
+        return duration;
+    }
+}
@@ -0,0 +1,333 @@
+package dk.dbc.opencat.connector;
+
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * MicroProfile metrics of an {@link OpencatBusinessConnector}
+ * <p>
+ * All metrics are tagged with the endpoint path, e.g. path=/api/v1/sortRecord
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_request_timer - request round trip time including retries</li>
+ *     <li>opencat_business_connector_success_counter - requests answered with 200 OK</li>
+ *     <li>opencat_business_connector_failure_counter - failed requests, additionally tagged with the
+ *     HTTP status, or status=none if no response was received</li>
+ *     <li>opencat_business_connector_retry_counter - retried attempts</li>
+ *     <li>opencat_business_connector_rejection_counter - requests rejected by the concurrency limit</li>
+ *     <li>opencat_business_connector_hedge_counter - hedges sent, i.e. second requests sent because the first was slow</li>
+ *     <li>opencat_business_connector_coalesced_counter - requests sharing the outcome of an identical in-flight request</li>
+ *     <li>opencat_business_connector_phase_timer - time spent per phase of the calls which sent a request,
+ *     additionally tagged with the phase, e.g. phase=network, see {@link CallTimings.Phase}</li>
+ * </ul>
+ * <p>
+ * With circuit breakers, tagged with the endpoint path
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_circuit_breaker_state - 0 closed, 1 half-open or 2 open</li>
+ *     <li>opencat_business_connector_circuit_breaker_transition_counter - state changes, additionally tagged
+ *     with the new state, e.g. state=OPEN</li>
+ *     <li>opencat_business_connector_circuit_breaker_rejection_counter - attempts failed fast by the circuit breaker</li>
+ * </ul>
+ * <p>
+ * With a result cache, the counters tagged with the endpoint path
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_result_cache_hit_counter - results served from the cache</li>
+ *     <li>opencat_business_connector_result_cache_miss_counter - results not found in the cache</li>
+ *     <li>opencat_business_connector_result_cache_bytes - size of the cached records</li>
+ *     <li>opencat_business_connector_result_cache_entries - number of cached results</li>
+ * </ul>
+ * <p>
+ * With a template permission index
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_template_index_hit_counter - checkTemplate calls answered by the index</li>
+ *     <li>opencat_business_connector_template_index_miss_counter - checkTemplate calls passed on to opencat-business</li>
+ *     <li>opencat_business_connector_template_index_entries - number of indexed outcomes</li>
+ * </ul>
+ * <p>
+ * With an adaptive concurrency limit
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_concurrency_limit - current limit</li>
+ *     <li>opencat_business_connector_concurrency_in_flight - requests holding a permit</li>
+ *     <li>opencat_business_connector_concurrency_queued - requests waiting for a permit</li>
+ * </ul>
+ * <p>
+ * With compression, tagged with direction=request or direction=response
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_compression_saved_bytes_counter - bytes saved on the wire by gzip</li>
+ * </ul>
+ * <p>
+ * With a connection pool
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_pool_leased - connections in use</li>
+ *     <li>opencat_business_connector_pool_available - idle connections kept alive</li>
+ *     <li>opencat_business_connector_pool_pending - requests waiting for a connection</li>
+ *     <li>opencat_business_connector_pool_max - max number of connections</li>
+ * </ul>
+ * <p>
+ * Per opencat-business instance, tagged with the instance base URL, e.g. instance=http://opencat-business-1:8080
+ * </p>
+ * <ul>
+ *     <li>opencat_business_connector_instance_timer - attempt round trip time</li>
+ *     <li>opencat_business_connector_instance_ejection_counter - times the instance was ejected from load balancing</li>
+ * </ul>
+ * <p>
+ * Gauges read the state of a single connector, so all gauges are additionally tagged with the name of the
+ * connector, by default its base URL, e.g. connector=http://opencat-business:8080. A gauge already registered
+ * by another connector in the same registry is not replaced: registering it fails with an
+ * {@link IllegalStateException}, or for the circuit breaker gauges, which are registered on the first request
+ * to an endpoint, is logged and skipped.
+ * </p>
+ * <p>
+ * Without a registry all methods are no-ops.
+ * </p>
+ */
+class ConnectorMetrics {
+    static final String REQUEST_TIMER = "opencat_business_connector_request_timer";
+    static final String SUCCESS_COUNTER = "opencat_business_connector_success_counter";
+    static final String FAILURE_COUNTER = "opencat_business_connector_failure_counter";
+    static final String RETRY_COUNTER = "opencat_business_connector_retry_counter";
+    static final String REJECTION_COUNTER = "opencat_business_connector_rejection_counter";
+    static final String HEDGE_COUNTER = "opencat_business_connector_hedge_counter";
+    static final String COALESCED_COUNTER = "opencat_business_connector_coalesced_counter";
+    static final String PHASE_TIMER = "opencat_business_connector_phase_timer";
+    static final String CIRCUIT_BREAKER_STATE_GAUGE = "opencat_business_connector_circuit_breaker_state";
+    static final String CIRCUIT_BREAKER_TRANSITION_COUNTER = "opencat_business_connector_circuit_breaker_transition_counter";
+    static final String CIRCUIT_BREAKER_REJECTION_COUNTER = "opencat_business_connector_circuit_breaker_rejection_counter";
+    static final String RESULT_CACHE_HIT_COUNTER = "opencat_business_connector_result_cache_hit_counter";
+    static final String RESULT_CACHE_MISS_COUNTER = "opencat_business_connector_result_cache_miss_counter";
+    static final String RESULT_CACHE_BYTES_GAUGE = "opencat_business_connector_result_cache_bytes";
+    static final String RESULT_CACHE_ENTRIES_GAUGE = "opencat_business_connector_result_cache_entries";
+    static final String TEMPLATE_INDEX_HIT_COUNTER = "opencat_business_connector_template_index_hit_counter";
+    static final String TEMPLATE_INDEX_MISS_COUNTER = "opencat_business_connector_template_index_miss_counter";
+    static final String TEMPLATE_INDEX_ENTRIES_GAUGE = "opencat_business_connector_template_index_entries";
+    static final String CONCURRENCY_LIMIT_GAUGE = "opencat_business_connector_concurrency_limit";
+    static final String CONCURRENCY_IN_FLIGHT_GAUGE = "opencat_business_connector_concurrency_in_flight";
+    static final String CONCURRENCY_QUEUED_GAUGE = "opencat_business_connector_concurrency_queued";
+    static final String COMPRESSION_SAVED_BYTES_COUNTER = "opencat_business_connector_compression_saved_bytes_counter";
+    static final String POOL_LEASED_GAUGE = "opencat_business_connector_pool_leased";
+    static final String POOL_AVAILABLE_GAUGE = "opencat_business_connector_pool_available";
+    static final String POOL_PENDING_GAUGE = "opencat_business_connector_pool_pending";
+    static final String POOL_MAX_GAUGE = "opencat_business_connector_pool_max";
+    static final String INSTANCE_TIMER = "opencat_business_connector_instance_timer";
+    static final String INSTANCE_EJECTION_COUNTER = "opencat_business_connector_instance_ejection_counter";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectorMetrics.class);
+
+    private final MetricRegistry registry;
+    private final Tag connectorTag;
+    private final Set<MetricID> registeredGauges = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param registry  registry, or null for no metrics
+     * @param connector name of the connector, with which all gauges are tagged
+     */
+    ConnectorMetrics(MetricRegistry registry, String connector) {
+        this.registry = registry;
+        this.connectorTag = new Tag("connector", connector);
+    }
+
+    boolean isEnabled() {
+        return registry != null;
+    }
+
+    void onResponse(String path, int status, Duration elapsed) {
+        if (registry == null) {
+            return;
+        }
+        final Tag pathTag = new Tag("path", path);
+        registry.timer(REQUEST_TIMER, pathTag).update(elapsed);
+        if (status == 200) {
+            registry.counter(SUCCESS_COUNTER, pathTag).inc();
+        } else {
+            registry.counter(FAILURE_COUNTER, pathTag, new Tag("status", Integer.toString(status))).inc();
+        }
+    }
+
+    void onFailure(String path, Duration elapsed) {
+        if (registry == null) {
+            return;
+        }
+        final Tag pathTag = new Tag("path", path);
+        registry.timer(REQUEST_TIMER, pathTag).update(elapsed);
+        registry.counter(FAILURE_COUNTER, pathTag, new Tag("status", "none")).inc();
+    }
+
+    void onRetry(String path) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(RETRY_COUNTER, new Tag("path", path)).inc();
+    }
+
+    void onRejection(String path) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(REJECTION_COUNTER, new Tag("path", path)).inc();
+    }
+
+    void onHedge(String path) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(HEDGE_COUNTER, new Tag("path", path)).inc();
+    }
+
+    void onCoalesced(String path) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(COALESCED_COUNTER, new Tag("path", path)).inc();
+    }
+
+    void onCallTimings(CallTimings timings) {
+        if (registry == null) {
+            return;
+        }
+        final Tag pathTag = new Tag("path", timings.getPath());
+        for (CallTimings.Phase phase : CallTimings.Phase.values()) {
+            if (timings.isRecorded(phase)) {
+                registry.timer(PHASE_TIMER, pathTag, new Tag("phase", phase.name().toLowerCase(Locale.ROOT)))
+                        .update(timings.get(phase));
+            }
+        }
+    }
+
+    void registerCircuitBreaker(CircuitBreaker circuitBreaker) {
+        if (registry == null) {
+            return;
+        }
+        try {
+            registerGauge(CIRCUIT_BREAKER_STATE_GAUGE, circuitBreaker, breaker -> breaker.getState().ordinal(),
+                    new Tag("path", circuitBreaker.getPath()));
+        } catch (IllegalStateException e) {
+            LOGGER.warn("Circuit breaker of {} left out of the metrics: {}", circuitBreaker.getPath(), e.getMessage());
+        }
+    }
+
+    void onCircuitBreakerStateChange(String path, CircuitBreakerEvent.State state) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(CIRCUIT_BREAKER_TRANSITION_COUNTER, new Tag("path", path), new Tag("state", state.name())).inc();
+    }
+
+    void onCircuitBreakerRejection(String path) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(CIRCUIT_BREAKER_REJECTION_COUNTER, new Tag("path", path)).inc();
+    }
+
+    void registerResultCache(RecordResultCache resultCache) {
+        if (registry == null || resultCache == null) {
+            return;
+        }
+        registerGauge(RESULT_CACHE_BYTES_GAUGE, resultCache, RecordResultCache::getBytes);
+        registerGauge(RESULT_CACHE_ENTRIES_GAUGE, resultCache, RecordResultCache::getSize);
+    }
+
+    void onResultCacheHit(String path) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(RESULT_CACHE_HIT_COUNTER, new Tag("path", path)).inc();
+    }
+
+    void onResultCacheMiss(String path) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(RESULT_CACHE_MISS_COUNTER, new Tag("path", path)).inc();
+    }
+
+    void registerTemplatePermissionIndex(TemplatePermissionIndex templatePermissionIndex) {
+        if (registry == null || templatePermissionIndex == null) {
+            return;
+        }
+        registerGauge(TEMPLATE_INDEX_ENTRIES_GAUGE, templatePermissionIndex, TemplatePermissionIndex::getSize);
+    }
+
+    void onTemplatePermissionIndexLookup(boolean hit) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(hit ? TEMPLATE_INDEX_HIT_COUNTER : TEMPLATE_INDEX_MISS_COUNTER).inc();
+    }
+
+    void registerConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        if (registry == null || concurrencyLimiter == null) {
+            return;
+        }
+        registerGauge(CONCURRENCY_LIMIT_GAUGE, concurrencyLimiter, ConcurrencyLimiter::getLimit);
+        registerGauge(CONCURRENCY_IN_FLIGHT_GAUGE, concurrencyLimiter, ConcurrencyLimiter::getInFlight);
+        registerGauge(CONCURRENCY_QUEUED_GAUGE, concurrencyLimiter, ConcurrencyLimiter::getQueued);
+    }
+
+    void onCompression(String direction, long bytesSaved) {
+        // Counters can not be decremented, so any growth of a small body by compression is left out
+        if (registry == null || bytesSaved <= 0) {
+            return;
+        }
+        registry.counter(COMPRESSION_SAVED_BYTES_COUNTER, new Tag("direction", direction)).inc(bytesSaved);
+    }
+
+    void registerConnectionPool(ConnectionPool connectionPool) {
+        if (registry == null || connectionPool == null) {
+            return;
+        }
+        registerGauge(POOL_LEASED_GAUGE, connectionPool, ConnectionPool::getLeased);
+        registerGauge(POOL_AVAILABLE_GAUGE, connectionPool, ConnectionPool::getAvailable);
+        registerGauge(POOL_PENDING_GAUGE, connectionPool, ConnectionPool::getPending);
+        registerGauge(POOL_MAX_GAUGE, connectionPool, ConnectionPool::getMax);
+    }
+
+    /**
+     * Registers a gauge tagged with the connector name. A gauge this connector registered before is replaced.
+     *
+     * @throws IllegalStateException if another connector registered the gauge
+     */
+    private <T, R extends Number> void registerGauge(String name, T object, Function<T, R> value, Tag... tags) {
+        final Tag[] gaugeTags = Arrays.copyOf(tags, tags.length + 1);
+        gaugeTags[tags.length] = connectorTag;
+        final MetricID metricID = new MetricID(name, gaugeTags);
+        if (registeredGauges.contains(metricID)) {
+            registry.remove(metricID);
+        } else if (registry.getGauge(metricID) != null) {
+            throw new IllegalStateException("Gauge " + metricID + " is already registered by another connector. "
+                    + "Connectors sharing a metric registry must have different names.");
+        }
+        registry.gauge(name, object, value, gaugeTags);
+        registeredGauges.add(metricID);
+    }
+
+    void onInstanceResponse(String instance, Duration elapsed) {
+        if (registry == null) {
+            return;
+        }
+        registry.timer(INSTANCE_TIMER, new Tag("instance", instance)).update(elapsed);
+    }
+
+    void onInstanceEjection(String instance) {
+        if (registry == null) {
+            return;
+        }
+        registry.counter(INSTANCE_EJECTION_COUNTER, new Tag("instance", instance)).inc();
+    }
+}
@@ -0,0 +1,188 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.invariant.InvariantUtil;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.marc.reader.MarcReaderException;
+import dk.dbc.marc.reader.MarcXchangeV1Reader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A {@link MarcRecord} encoded to MarcXchange, for sending the same record in several requests
+ * <p>
+ * The connector methods taking a MarcRecord encode it on every call. Passing an EncodedMarcRecord instead,
+ * e.g. when the same record goes through preprocess, validateRecord, checkDoubleRecordFrontend and
+ * sortRecord, encodes it once. The JSON escaped form of the encoding is likewise produced once, on first use.
+ * </p>
+ * <p>
+ * Record results can also be had as an EncodedMarcRecord, e.g. {@link OpencatBusinessConnector#sortRecordEncoded},
+ * skipping the XML parse for callers which only pass the record on or store its bytes. The record is then
+ * decoded on the first call of {@link #getMarcRecord()}.
+ * </p>
+ * <p>
+ * Instances are thread safe, and the encoding is immutable. It reflects the record as it was when encoded,
+ * so changes made to the MarcRecord afterwards require a new instance.
+ * </p>
+ */
+public final class EncodedMarcRecord {
+    private final byte[] content;
+    // Memoized JSON string contents, recomputing it in a race yields an equal array
+    private volatile byte[] jsonEscapedContent;
+    private volatile MarcRecord marcRecord;
+    // Memoized hash code, 0 until computed. Recomputing it in a race yields the same value
+    private int hash;
+    // Time spent encoding, until taken by the first request sending the record. Calls racing to send it may both take it
+    private volatile long encodeNanos;
+
+    private EncodedMarcRecord(byte[] content) {
+        this.content = content;
+    }
+
+    private EncodedMarcRecord(byte[] content, long encodeNanos) {
+        this.content = content;
+        this.encodeNanos = encodeNanos;
+    }
+
+    /**
+     * @param marcRecord record
+     * @return the encoded record
+     * @throws IllegalArgumentException if the record can not be encoded
+     */
+    public static EncodedMarcRecord of(MarcRecord marcRecord) {
+        final long startNanos = System.nanoTime();
+        final byte[] content = RecordContentTransformer.encodeRecord(
+                InvariantUtil.checkNotNullOrThrow(marcRecord, "marcRecord"));
+        if (content == null) {
+            throw new IllegalArgumentException("Unable to encode record as MarcXchange");
+        }
+        return new EncodedMarcRecord(content, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param content MarcXchange encoding of a record, UTF-8, e.g. as stored from {@link #getContent()}.
+     *                It is not decoded until {@link #getMarcRecord()} is called.
+     * @return the encoded record
+     */
+    public static EncodedMarcRecord of(byte[] content) {
+        return new EncodedMarcRecord(InvariantUtil.checkNotNullOrThrow(content, "content").clone());
+    }
+
+    /**
+     * As {@link #of(byte[])} without copying the content, which must not be modified afterwards
+     */
+    static EncodedMarcRecord ofContent(byte[] content) {
+        return new EncodedMarcRecord(content);
+    }
+
+    /**
+     * @param marcRecord record, may be null
+     * @return the encoded record, or null if the record is null or can not be encoded
+     */
+    static EncodedMarcRecord ofNullable(MarcRecord marcRecord) {
+        if (marcRecord == null) {
+            return null;
+        }
+        final long startNanos = System.nanoTime();
+        final byte[] content = RecordContentTransformer.encodeRecord(marcRecord);
+        return content == null ? null : new EncodedMarcRecord(content, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return instance sharing the immutable encoding and its hash code, but not the decoded record
+     */
+    EncodedMarcRecord copy() {
+        final EncodedMarcRecord copy = new EncodedMarcRecord(content);
+        copy.hash = hash;
+        return copy;
+    }
+
+    /**
+     * @return nanoseconds spent encoding the record the first time this is called, thereafter 0,
+     * so that only the first request sending the record counts its encoding
+     */
+    long takeEncodeNanos() {
+        final long nanos = encodeNanos;
+        if (nanos != 0) {
+            encodeNanos = 0;
+        }
+        return nanos;
+    }
+
+    /**
+     * @return copy of the MarcXchange encoding, UTF-8
+     */
+    public byte[] getContent() {
+        return content.clone();
+    }
+
+    /**
+     * @return size of the MarcXchange encoding in bytes
+     */
+    public int size() {
+        return content.length;
+    }
+
+    /**
+     * Decodes the record on the first call. Later calls return the same instance, so changes made to it
+     * are seen by all users of this encoded record, but are not reflected in the encoding.
+     *
+     * @return the decoded record
+     * @throws MarcReaderException if the encoding is not a valid MarcXchange record
+     */
+    public MarcRecord getMarcRecord() throws MarcReaderException {
+        MarcRecord decoded = marcRecord;
+        if (decoded == null) {
+            synchronized (this) {
+                decoded = marcRecord;
+                if (decoded == null) {
+                    decoded = new MarcXchangeV1Reader(new ByteArrayInputStream(content), StandardCharsets.UTF_8).read();
+                    marcRecord = decoded;
+                }
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * @return the encoding escaped as the contents of a JSON string, i.e. without the quotes. Must not be modified.
+     */
+    byte[] getJsonEscapedContent() {
+        byte[] escaped = jsonEscapedContent;
+        if (escaped == null) {
+            escaped = JsonStringEncoder.getInstance().quoteAsUTF8(new String(content, StandardCharsets.UTF_8));
+            jsonEscapedContent = escaped;
+        }
+        return escaped;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final EncodedMarcRecord that = (EncodedMarcRecord) o;
+        return content == that.content || Arrays.equals(content, that.content);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(content);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedMarcRecord{" + content.length + " bytes}";
+    }
+}
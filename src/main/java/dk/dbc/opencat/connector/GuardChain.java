@@ -0,0 +1,378 @@
+package dk.dbc.opencat.connector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Guards the single attempts of a connector, in this order: the circuit breaker of the endpoint, hedging,
+ * the concurrency limit and the load balancer choosing the opencat-business instance. All but the load
+ * balancer are optional, see {@link OpencatBusinessConnectorSettings}.
+ * <p>
+ * The circuit breaker comes first, so that attempts to a broken endpoint neither wait for nor hold a permit of
+ * the concurrency limit that attempts to other endpoints need. Hedges come before the concurrency limit, so
+ * every hedge holds a permit of its own.
+ * </p>
+ * <p>
+ * An attempt rejected by the async executor says nothing about opencat-business, so it is kept out of the
+ * circuit breaker, the concurrency limit and the load balancer. Likewise an attempt rejected by the
+ * concurrency limit is kept out of the circuit breaker.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class GuardChain {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GuardChain.class);
+
+    private final LoadBalancer loadBalancer;
+    private final Executor executor;
+    private final ConnectorMetrics metrics;
+    private final CircuitBreakerSettings circuitBreakerSettings;
+    private final Consumer<CircuitBreakerEvent> circuitBreakerListener;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final HedgingPolicy hedgingPolicy;
+    private final Set<String> hedgedPaths;
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * @param loadBalancer load balancer of the opencat-business instances
+     * @param executor     executor running async attempts
+     * @param metrics      connector metrics
+     * @param settings     settings enabling circuit breakers, hedging and the concurrency limit
+     * @param hedgedPaths  paths of the endpoints whose attempts are hedged if hedging is enabled
+     */
+    GuardChain(LoadBalancer loadBalancer, Executor executor, ConnectorMetrics metrics,
+               OpencatBusinessConnectorSettings settings, Set<String> hedgedPaths) {
+        this.loadBalancer = loadBalancer;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.circuitBreakerSettings = settings.getCircuitBreakerSettings();
+        this.circuitBreakerListener = settings.getCircuitBreakerListener();
+        this.hedgedPaths = hedgedPaths;
+        // Hedges and permits of the concurrency limit are timed by the scheduler waiting out async retry delays
+        final ScheduledExecutorService scheduler = OpencatBusinessConnector.RetryScheduler.INSTANCE;
+        if (settings.isHedgingEnabled()) {
+            this.hedgingPolicy = new HedgingPolicy(settings.getHedgingPercentile(), settings.getHedgingMaxExtraLoad(),
+                    scheduler);
+        } else {
+            this.hedgingPolicy = null;
+        }
+        if (settings.isConcurrencyLimitEnabled()) {
+            this.concurrencyLimiter = new ConcurrencyLimiter(settings.getConcurrencyInitialLimit(),
+                    settings.getConcurrencyMaxLimit(), settings.getConcurrencyMaxQueued(),
+                    settings.getConcurrencyMaxQueueWait(), scheduler);
+        } else {
+            this.concurrencyLimiter = null;
+        }
+        metrics.registerConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    /**
+     * Single blocking attempt through all guards
+     *
+     * @param transport HTTP transport
+     * @param path      endpoint path
+     * @param entity    request body
+     * @param headers   request headers
+     * @return response of the attempt
+     * @throws CircuitBreakerOpenException      if the circuit of the endpoint is open
+     * @throws ConcurrencyLimitExceededException if the concurrency limit rejected the attempt
+     */
+    Response post(HttpTransport transport, String path, StreamingOutput entity, Map<String, String> headers)
+            throws OpencatBusinessConnectorException {
+        if (circuitBreakerSettings == null) {
+            return hedgedPost(transport, path, entity, headers);
+        }
+        final CircuitBreaker.Permit permit = acquireCircuitBreakerPermit(path);
+        try {
+            final Response response = hedgedPost(transport, path, entity, headers);
+            permit.complete(isFailedAttempt(response));
+            return response;
+        } catch (ConcurrencyLimitExceededException | RejectedExecutionException e) {
+            permit.cancel();
+            throw e;
+        } catch (RuntimeException e) {
+            permit.complete(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Single async attempt through all guards
+     *
+     * @param transport HTTP transport
+     * @param path      endpoint path
+     * @param entity    request body
+     * @param headers   request headers
+     * @return future completed with the response of the attempt, or exceptionally with a
+     * {@link CircuitBreakerOpenException} or a {@link ConcurrencyLimitExceededException} if it was rejected
+     */
+    CompletableFuture<Response> postAsync(HttpTransport transport, String path, StreamingOutput entity,
+                                          Map<String, String> headers) {
+        if (circuitBreakerSettings == null) {
+            return hedgedPostAsync(transport, path, entity, headers);
+        }
+        final CircuitBreaker.Permit permit;
+        try {
+            permit = acquireCircuitBreakerPermit(path);
+        } catch (CircuitBreakerOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final CompletableFuture<Response> attempt;
+        try {
+            attempt = hedgedPostAsync(transport, path, entity, headers);
+        } catch (RuntimeException e) {
+            permit.complete(true);
+            throw e;
+        }
+        return attempt.whenComplete((response, failure) -> {
+            if (failure == null) {
+                permit.complete(isFailedAttempt(response));
+            } else if (unwrap(failure) instanceof ConcurrencyLimitExceededException || isExecutorRejection(failure)) {
+                permit.cancel();
+            } else {
+                permit.complete(true);
+            }
+        });
+    }
+
+    /**
+     * Single async attempt which is neither subject to the circuit breaker nor hedged, as used by the
+     * readiness probe
+     *
+     * @param transport HTTP transport
+     * @param path      endpoint path
+     * @param entity    request body
+     * @param headers   request headers
+     * @return future completed with the response of the attempt
+     */
+    CompletableFuture<Response> probeAsync(HttpTransport transport, String path, StreamingOutput entity,
+                                           Map<String, String> headers) {
+        return limitedPostAsync(transport, path, entity, headers);
+    }
+
+    private CircuitBreaker.Permit acquireCircuitBreakerPermit(String path) throws CircuitBreakerOpenException {
+        final CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(path, key -> {
+            final CircuitBreaker created = new CircuitBreaker(key, circuitBreakerSettings, this::onCircuitBreakerEvent);
+            metrics.registerCircuitBreaker(created);
+            return created;
+        });
+        try {
+            return circuitBreaker.acquire();
+        } catch (CircuitBreakerOpenException e) {
+            metrics.onCircuitBreakerRejection(path);
+            throw e;
+        }
+    }
+
+    private void onCircuitBreakerEvent(CircuitBreakerEvent event) {
+        if (event.getTo() == CircuitBreakerEvent.State.OPEN) {
+            LOGGER.warn("Opened circuit breaker of opencat-business {} for {} seconds",
+                    event.getPath(), circuitBreakerSettings.getOpenDuration().getSeconds());
+        } else {
+            LOGGER.info("Circuit breaker of opencat-business {} is now {}", event.getPath(), event.getTo());
+        }
+        metrics.onCircuitBreakerStateChange(event.getPath(), event.getTo());
+        if (circuitBreakerListener != null) {
+            try {
+                circuitBreakerListener.accept(event);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Circuit breaker listener failed on {}", event, e);
+            }
+        }
+    }
+
+    /**
+     * Single blocking attempt, hedged if hedging is enabled for the endpoint. A hedged attempt is
+     * made on the async executor while the calling thread waits.
+     */
+    private Response hedgedPost(HttpTransport transport, String path, StreamingOutput entity,
+                                Map<String, String> headers) throws ConcurrencyLimitExceededException {
+        if (!isHedged(path)) {
+            return limitedPost(transport, path, entity, headers);
+        }
+        final CompletableFuture<Response> responseFuture = hedgedPostAsync(transport, path, entity, headers);
+        try {
+            return responseFuture.get();
+        } catch (InterruptedException e) {
+            responseFuture.thenAccept(Response::close);
+            Thread.currentThread().interrupt();
+            throw new ProcessingException("Interrupted while waiting for opencat-business", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ConcurrencyLimitExceededException) {
+                throw (ConcurrencyLimitExceededException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ProcessingException(cause);
+        }
+    }
+
+    /**
+     * Single async attempt, hedged if hedging is enabled for the endpoint
+     */
+    private CompletableFuture<Response> hedgedPostAsync(HttpTransport transport, String path, StreamingOutput entity,
+                                                        Map<String, String> headers) {
+        if (!isHedged(path)) {
+            return limitedPostAsync(transport, path, entity, headers);
+        }
+        return hedgingPolicy.execute(path, () -> limitedPostAsync(transport, path, entity, headers),
+                Response::close, () -> metrics.onHedge(path));
+    }
+
+    private boolean isHedged(String path) {
+        return hedgingPolicy != null && hedgedPaths.contains(path);
+    }
+
+    /**
+     * Single blocking attempt, holding a permit of the concurrency limit if there is one
+     */
+    private Response limitedPost(HttpTransport transport, String path, StreamingOutput entity,
+                                 Map<String, String> headers) throws ConcurrencyLimitExceededException {
+        if (concurrencyLimiter == null) {
+            return balancedPost(transport, path, entity, headers);
+        }
+        final ConcurrencyLimiter.Permit permit = acquirePermit(path);
+        boolean dropped = true;
+        try {
+            final Response response = balancedPost(transport, path, entity, headers);
+            dropped = isFailedAttempt(response);
+            return response;
+        } finally {
+            permit.release(dropped);
+        }
+    }
+
+    /**
+     * Single async attempt, holding a permit of the concurrency limit if there is one.
+     * Waiting for a permit does not hold any thread.
+     */
+    private CompletableFuture<Response> limitedPostAsync(HttpTransport transport, String path, StreamingOutput entity,
+                                                         Map<String, String> headers) {
+        if (concurrencyLimiter == null) {
+            return balancedPostAsync(transport, path, entity, headers);
+        }
+        return concurrencyLimiter.acquire(path)
+                .whenComplete((permit, failure) -> {
+                    if (failure != null) {
+                        metrics.onRejection(path);
+                    }
+                })
+                .thenCompose(permit -> {
+                    final CompletableFuture<Response> attempt;
+                    try {
+                        attempt = balancedPostAsync(transport, path, entity, headers);
+                    } catch (RuntimeException e) {
+                        permit.cancel();
+                        throw e;
+                    }
+                    return attempt.whenComplete((response, failure) -> {
+                        if (isExecutorRejection(failure)) {
+                            permit.cancel();
+                        } else {
+                            permit.release(failure != null || isFailedAttempt(response));
+                        }
+                    });
+                });
+    }
+
+    private ConcurrencyLimiter.Permit acquirePermit(String path) throws ConcurrencyLimitExceededException {
+        final CompletableFuture<ConcurrencyLimiter.Permit> permitFuture = concurrencyLimiter.acquire(path);
+        try {
+            return permitFuture.get();
+        } catch (InterruptedException e) {
+            permitFuture.thenAccept(ConcurrencyLimiter.Permit::cancel);
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyLimitExceededException("Interrupted while waiting for the opencat-business concurrency limit");
+        } catch (ExecutionException e) {
+            metrics.onRejection(path);
+            throw (ConcurrencyLimitExceededException) e.getCause();
+        }
+    }
+
+    /**
+     * Single blocking attempt sent to the opencat-business instance chosen by the load balancer
+     */
+    private Response balancedPost(HttpTransport transport, String path, StreamingOutput entity,
+                                  Map<String, String> headers) {
+        final LoadBalancer.Instance instance = loadBalancer.select();
+        final long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Response response = transport.post(instance.getBaseUrl(), path, entity, headers);
+            failed = isFailedAttempt(response);
+            return response;
+        } finally {
+            onAttemptCompleted(instance, startNanos, failed);
+        }
+    }
+
+    /**
+     * Single async attempt sent to the opencat-business instance chosen by the load balancer
+     */
+    private CompletableFuture<Response> balancedPostAsync(HttpTransport transport, String path, StreamingOutput entity,
+                                                          Map<String, String> headers) {
+        final LoadBalancer.Instance instance = loadBalancer.select();
+        final long startNanos = System.nanoTime();
+        final CompletableFuture<Response> responseFuture;
+        try {
+            responseFuture = transport.postAsync(instance.getBaseUrl(), path, entity, headers, executor);
+        } catch (RuntimeException e) {
+            onAttemptCompleted(instance, startNanos, true);
+            throw e;
+        }
+        return responseFuture.whenComplete((response, failure) -> {
+            if (isExecutorRejection(failure)) {
+                loadBalancer.cancel(instance);
+            } else {
+                onAttemptCompleted(instance, startNanos, failure != null || isFailedAttempt(response));
+            }
+        });
+    }
+
+    private void onAttemptCompleted(LoadBalancer.Instance instance, long startNanos, boolean failed) {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        metrics.onInstanceResponse(instance.getBaseUrl(), Duration.ofNanos(elapsedNanos));
+        if (loadBalancer.complete(instance, elapsedNanos, failed)) {
+            LOGGER.warn("Ejected opencat-business instance {} for {} seconds",
+                    instance.getBaseUrl(), LoadBalancer.EJECTION_TIME.getSeconds());
+            metrics.onInstanceEjection(instance.getBaseUrl());
+        }
+    }
+
+    /**
+     * @return true if the response of an attempt counts as a failure for the circuit breakers, the concurrency
+     * limit and the load balancer, i.e. a server error or the 404 opencat-business answers while it is being
+     * deployed, which the default retry policy retries
+     */
+    private static boolean isFailedAttempt(Response response) {
+        return response.getStatus() >= 500 || response.getStatus() == 404;
+    }
+
+    private static boolean isExecutorRejection(Throwable failure) {
+        return failure != null && unwrap(failure) instanceof RejectedExecutionException;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+}
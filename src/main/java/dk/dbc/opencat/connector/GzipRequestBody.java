@@ -0,0 +1,94 @@
+package dk.dbc.opencat.connector;
+
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request entity gzip compressing a {@link JsonRequestBody} on its way to the HTTP output stream,
+ * to be sent with a Content-Encoding: gzip header
+ * <p>
+ * Like the wrapped body, it can be written any number of times.
+ * </p>
+ */
+class GzipRequestBody implements StreamingOutput {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final JsonRequestBody body;
+    private final LongConsumer bytesSavedListener;
+
+    /**
+     * @param body               body to compress
+     * @param bytesSavedListener receives the difference between the uncompressed and the compressed
+     *                           size every time the body has been written
+     */
+    GzipRequestBody(JsonRequestBody body, LongConsumer bytesSavedListener) {
+        this.body = body;
+        this.bytesSavedListener = bytesSavedListener;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        compress(outputStream, body);
+    }
+
+    /**
+     * @return the compressed body as bytes, compressing the bytes kept by the wrapped body
+     * @throws IOException if the body can not be written
+     * @see JsonRequestBody#toByteArray()
+     */
+    byte[] toByteArray() throws IOException {
+        final byte[] content = body.toByteArray();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(content.length / 4, 32));
+        compress(outputStream, uncompressed -> uncompressed.write(content));
+        return outputStream.toByteArray();
+    }
+
+    private void compress(OutputStream outputStream, StreamingOutput content) throws IOException {
+        final CountingOutputStream compressed = new CountingOutputStream(outputStream);
+        final CountingOutputStream uncompressed;
+        // Closing releases the native memory of the deflater, while the HTTP output stream
+        // is left open for the client to close, see CountingOutputStream.close()
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, BUFFER_SIZE)) {
+            uncompressed = new CountingOutputStream(gzip);
+            content.write(uncompressed);
+        }
+        bytesSavedListener.accept(uncompressed.count - compressed.count);
+    }
+
+    @Override
+    public String toString() {
+        return body.toString();
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        // Flushes without closing the wrapped stream
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dk.dbc.opencat.connector;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.ReaderInterceptor;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Client side reader interceptor transparently decompressing gzip encoded response entities
+ * <p>
+ * The entity is decompressed as it is read, so a compressed response is never held in memory as a whole.
+ * </p>
+ */
+@Priority(Priorities.ENTITY_CODER)
+class GzipResponseInterceptor implements ReaderInterceptor {
+    static final String GZIP = "gzip";
+
+    private final LongConsumer bytesSavedListener;
+
+    /**
+     * @param bytesSavedListener receives the difference between the decompressed and the compressed size
+     *                           of a response entity once it has been read
+     */
+    GzipResponseInterceptor(LongConsumer bytesSavedListener) {
+        this.bytesSavedListener = bytesSavedListener;
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        final String contentEncoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null && GZIP.equalsIgnoreCase(contentEncoding.trim())) {
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            context.setInputStream(new DecompressingInputStream(context.getInputStream(), bytesSavedListener));
+        }
+        return context.proceed();
+    }
+
+    static class DecompressingInputStream extends FilterInputStream {
+        private final CountingInputStream compressed;
+        private final LongConsumer bytesSavedListener;
+        private long decompressed;
+        private boolean reported;
+
+        DecompressingInputStream(InputStream inputStream, LongConsumer bytesSavedListener) {
+            this(new CountingInputStream(inputStream), bytesSavedListener);
+        }
+
+        private DecompressingInputStream(CountingInputStream compressed, LongConsumer bytesSavedListener) {
+            // The gzip stream is created on first read, as its constructor blocks reading the gzip header
+            super(null);
+            this.compressed = compressed;
+            this.bytesSavedListener = bytesSavedListener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = gzip().read();
+            if (b < 0) {
+                report();
+            } else {
+                decompressed++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = gzip().read(b, off, len);
+            if (read < 0) {
+                report();
+            } else {
+                decompressed += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = gzip().skip(n);
+            decompressed += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in == null ? 0 : in.available();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            report();
+            if (in != null) {
+                in.close();
+            } else {
+                compressed.close();
+            }
+        }
+
+        private InputStream gzip() throws IOException {
+            if (in == null) {
+                in = new GZIPInputStream(compressed);
+            }
+            return in;
+        }
+
+        private void report() {
+            if (!reported && decompressed > 0) {
+                reported = true;
+                bytesSavedListener.accept(decompressed - compressed.count);
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
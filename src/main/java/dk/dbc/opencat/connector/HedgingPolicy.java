@@ -0,0 +1,179 @@
+package dk.dbc.opencat.connector;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Hedging of requests without side effects, trading a little extra load for a shorter latency tail
+ * <p>
+ * When a request has not been answered within the given percentile of the recent latencies of its endpoint,
+ * a second identical request is sent, and whichever is answered first wins. The answer of the losing request
+ * is discarded when it arrives, as neither HTTP transport can abort a request in flight.
+ * </p>
+ * <p>
+ * Hedges are paid for from a budget, to which every request deposits maxExtraLoad, so in steady state the
+ * hedges add at most maxExtraLoad requests per request. No hedges are sent for an endpoint until
+ * {@value #MIN_SAMPLES} of its latencies have been seen. The percentile is computed over the last
+ * {@value #WINDOW_SIZE} latencies and recomputed every {@value #RECOMPUTE_INTERVAL} requests.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class HedgingPolicy {
+    static final int WINDOW_SIZE = 1000;
+    static final int MIN_SAMPLES = 50;
+    static final int RECOMPUTE_INTERVAL = 50;
+    // Hedges the budget can save up for a burst
+    private static final double MAX_BUDGET_BALANCE = 10;
+
+    private final double percentile;
+    private final RetryBudget budget;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoClock;
+    private final Map<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+
+    HedgingPolicy(double percentile, double maxExtraLoad, ScheduledExecutorService scheduler) {
+        this(percentile, maxExtraLoad, scheduler, System::nanoTime);
+    }
+
+    HedgingPolicy(double percentile, double maxExtraLoad, ScheduledExecutorService scheduler, LongSupplier nanoClock) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100 exclusive, was " + percentile);
+        }
+        if (maxExtraLoad <= 0 || maxExtraLoad > 1) {
+            throw new IllegalArgumentException("maxExtraLoad must be above 0 and at most 1, was " + maxExtraLoad);
+        }
+        this.percentile = percentile;
+        this.budget = new RetryBudget(maxExtraLoad, 0, MAX_BUDGET_BALANCE);
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Starts a request, and a hedge of it if the request is slow to answer
+     *
+     * @param path    endpoint path
+     * @param request starts the request, invoked once for the request and once for the hedge, if any
+     * @param discard receives the answer of the losing request
+     * @param onHedge invoked when a hedge is sent
+     * @param <T>     answer type
+     * @return future completed with the first answer, or failed when no answer is to be expected
+     */
+    <T> CompletableFuture<T> execute(String path, Supplier<CompletableFuture<T>> request,
+                                     Consumer<T> discard, Runnable onHedge) {
+        budget.deposit();
+        final LatencyWindow latencyWindow = latencyWindows.computeIfAbsent(path, p -> new LatencyWindow());
+        final HedgedRequest<T> hedgedRequest = new HedgedRequest<>(latencyWindow, discard);
+        hedgedRequest.start(request);
+        final long hedgeDelayNanos = latencyWindow.getThresholdNanos();
+        if (hedgeDelayNanos >= 0) {
+            final ScheduledFuture<?> timer = scheduler.schedule(() -> {
+                if (hedgedRequest.mayHedge() && budget.tryWithdraw()) {
+                    onHedge.run();
+                    hedgedRequest.start(request);
+                }
+            }, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+            hedgedRequest.result.whenComplete((value, failure) -> timer.cancel(false));
+        }
+        return hedgedRequest.result;
+    }
+
+    /**
+     * @param path endpoint path
+     * @return current hedge delay of the endpoint, or -1 if there are too few latencies to tell
+     */
+    long getHedgeDelayNanos(String path) {
+        final LatencyWindow latencyWindow = latencyWindows.get(path);
+        return latencyWindow == null ? -1 : latencyWindow.getThresholdNanos();
+    }
+
+    private class HedgedRequest<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final LatencyWindow latencyWindow;
+        private final Consumer<T> discard;
+        private int started;
+        private int failed;
+
+        private HedgedRequest(LatencyWindow latencyWindow, Consumer<T> discard) {
+            this.latencyWindow = latencyWindow;
+            this.discard = discard;
+        }
+
+        private synchronized boolean mayHedge() {
+            return started == 1 && !result.isDone();
+        }
+
+        private void start(Supplier<CompletableFuture<T>> request) {
+            synchronized (this) {
+                started++;
+            }
+            final long startNanos = nanoClock.getAsLong();
+            final CompletableFuture<T> future;
+            try {
+                future = request.get();
+            } catch (RuntimeException e) {
+                onFailure(e);
+                return;
+            }
+            future.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    onFailure(failure);
+                } else {
+                    latencyWindow.add(nanoClock.getAsLong() - startNanos);
+                    if (!result.complete(value)) {
+                        discard.accept(value);
+                    }
+                }
+            });
+        }
+
+        private void onFailure(Throwable failure) {
+            final boolean lastOutstanding;
+            synchronized (this) {
+                // A failing request does not wait for a hedge which has not been sent
+                lastOutstanding = ++failed == started;
+            }
+            if (lastOutstanding) {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private class LatencyWindow {
+        private final long[] latencies = new long[WINDOW_SIZE];
+        private int size;
+        private int next;
+        private int sinceRecompute;
+        private volatile long thresholdNanos = -1;
+
+        private long getThresholdNanos() {
+            return thresholdNanos;
+        }
+
+        private void add(long latencyNanos) {
+            final long[] sorted;
+            synchronized (this) {
+                latencies[next] = latencyNanos;
+                next = (next + 1) % WINDOW_SIZE;
+                size = Math.min(size + 1, WINDOW_SIZE);
+                if (size < MIN_SAMPLES || (++sinceRecompute < RECOMPUTE_INTERVAL && thresholdNanos >= 0)) {
+                    return;
+                }
+                sinceRecompute = 0;
+                sorted = Arrays.copyOf(latencies, size);
+            }
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            thresholdNanos = sorted[Math.max(0, index)];
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dk.dbc.opencat.connector;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.LongConsumer;
+
+/**
+ * HTTP transport of the requests of an {@link OpencatBusinessConnector}
+ * <p>
+ * A transport sends a single JSON POST request and hands back the response, leaving load balancing,
+ * retries and status checks to the connector. A failure to get a response is signalled by a
+ * {@link jakarta.ws.rs.ProcessingException}, thrown or completing the future exceptionally.
+ * </p>
+ */
+interface HttpTransport {
+    String APPLICATION_JSON = "application/json";
+
+    /**
+     * Sends a request, blocking the calling thread until the response headers are received
+     *
+     * @param baseUrl base URL of the opencat-business instance
+     * @param path    endpoint path
+     * @param entity  JSON request body
+     * @param headers additional request headers
+     * @return response
+     */
+    Response post(String baseUrl, String path, StreamingOutput entity, Map<String, String> headers);
+
+    /**
+     * Sends a request without blocking the calling thread
+     *
+     * @param baseUrl  base URL of the opencat-business instance
+     * @param path     endpoint path
+     * @param entity   JSON request body
+     * @param headers  additional request headers
+     * @param executor executor on which the returned future is completed
+     * @return future completed with the response once the response headers are received, or failed with
+     * a {@link java.util.concurrent.RejectedExecutionException} if the executor rejects the request
+     */
+    CompletableFuture<Response> postAsync(String baseUrl, String path, StreamingOutput entity,
+                                          Map<String, String> headers, Executor executor);
+
+    /**
+     * Makes gzip encoded response entities be decompressed transparently as they are read
+     *
+     * @param bytesSavedListener receives the bytes saved by compression of each response entity
+     * @return false if the transport can not decompress responses, in which case gzip encoded
+     * responses must not be asked for
+     */
+    boolean enableGzipDecompression(LongConsumer bytesSavedListener);
+
+    void close();
+}
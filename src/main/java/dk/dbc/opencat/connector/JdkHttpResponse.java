@@ -0,0 +1,229 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Link;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.NewCookie;
+import jakarta.ws.rs.core.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link Response} view of a JDK {@link HttpResponse}, so that responses from a {@link JdkHttpTransport}
+ * are handled exactly as responses from the JAX-RS client
+ * <p>
+ * Only what the connector uses is supported: the status, the header values, reading the entity and closing.
+ * Entities are read as a raw {@link InputStream}, a String, or by Jackson into any other type, and as with
+ * the JAX-RS client an entity can only be read once. All other methods throw {@link UnsupportedOperationException}.
+ * </p>
+ */
+class JdkHttpResponse extends Response {
+    private static final ObjectMapper OBJECT_MAPPER = SharedObjectMapper.INSTANCE;
+
+    private final HttpResponse<InputStream> response;
+    private final LongConsumer gzipBytesSavedListener;
+    private boolean consumed;
+    private boolean closed;
+
+    /**
+     * @param response               response with a streamed entity
+     * @param gzipBytesSavedListener if not null, gzip encoded entities are decompressed and the bytes
+     *                               saved are reported to this listener
+     */
+    JdkHttpResponse(HttpResponse<InputStream> response, LongConsumer gzipBytesSavedListener) {
+        this.response = response;
+        this.gzipBytesSavedListener = gzipBytesSavedListener;
+    }
+
+    @Override
+    public int getStatus() {
+        return response.statusCode();
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType) {
+        final InputStream entityStream = entityStream();
+        if (entityType == InputStream.class) {
+            return entityType.cast(entityStream);
+        }
+        try (entityStream) {
+            if (entityType == String.class) {
+                return entityType.cast(new String(entityStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            final JsonParser parser = OBJECT_MAPPER.createParser(entityStream);
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return OBJECT_MAPPER.readValue(parser, entityType);
+        } catch (IOException e) {
+            throw new ProcessingException("Unable to read " + entityType.getName() + " entity", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            if (!consumed) {
+                try {
+                    response.body().close();
+                } catch (IOException e) {
+                    throw new ProcessingException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        final List<String> values = response.headers().allValues(name);
+        return values.isEmpty() ? null : String.join(",", values);
+    }
+
+    private InputStream entityStream() {
+        if (closed) {
+            throw new IllegalStateException("Response has been closed");
+        }
+        if (consumed) {
+            throw new IllegalStateException("Entity input stream has already been closed");
+        }
+        consumed = true;
+        final String contentEncoding = getHeaderString(HttpHeaders.CONTENT_ENCODING);
+        if (gzipBytesSavedListener != null && contentEncoding != null
+                && GzipResponseInterceptor.GZIP.equalsIgnoreCase(contentEncoding.trim())) {
+            return new GzipResponseInterceptor.DecompressingInputStream(response.body(), gzipBytesSavedListener);
+        }
+        return response.body();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Not supported by responses from the JDK HTTP client");
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType) {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType, Annotation[] annotations) {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType, Annotation[] annotations) {
+        throw unsupported();
+    }
+
+    @Override
+    public StatusType getStatusInfo() {
+        throw unsupported();
+    }
+
+    @Override
+    public Object getEntity() {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean hasEntity() {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean bufferEntity() {
+        throw unsupported();
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        throw unsupported();
+    }
+
+    @Override
+    public Locale getLanguage() {
+        throw unsupported();
+    }
+
+    @Override
+    public int getLength() {
+        throw unsupported();
+    }
+
+    @Override
+    public Set<String> getAllowedMethods() {
+        throw unsupported();
+    }
+
+    @Override
+    public Map<String, NewCookie> getCookies() {
+        throw unsupported();
+    }
+
+    @Override
+    public EntityTag getEntityTag() {
+        throw unsupported();
+    }
+
+    @Override
+    public Date getDate() {
+        throw unsupported();
+    }
+
+    @Override
+    public Date getLastModified() {
+        throw unsupported();
+    }
+
+    @Override
+    public URI getLocation() {
+        throw unsupported();
+    }
+
+    @Override
+    public Set<Link> getLinks() {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean hasLink(String relation) {
+        throw unsupported();
+    }
+
+    @Override
+    public Link getLink(String relation) {
+        throw unsupported();
+    }
+
+    @Override
+    public Link.Builder getLinkBuilder(String relation) {
+        throw unsupported();
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getMetadata() {
+        throw unsupported();
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getStringHeaders() {
+        throw unsupported();
+    }
+}
@@ -0,0 +1,150 @@
+package dk.dbc.opencat.connector;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link HttpTransport} on the JDK {@link HttpClient}
+ * <p>
+ * With an HTTP/2 client, concurrent requests to an opencat-business instance are multiplexed on a single
+ * connection. Async requests hold no thread while waiting for the response. Response entities are streamed,
+ * while request bodies are sent from a byte array, as the JDK client pulls request bodies rather than letting
+ * them be written. The array of a {@link JsonRequestBody} is written once and reused by all attempts of the request.
+ * </p>
+ * <p>
+ * The connect timeout is set on the client, while the request timeout bounds each request until its response
+ * headers are received. Unlike a read timeout it is not reset by data arriving.
+ * </p>
+ */
+class JdkHttpTransport implements HttpTransport {
+    private final HttpClient httpClient;
+    private volatile LongConsumer gzipBytesSavedListener;
+    private final Duration requestTimeout;
+
+    JdkHttpTransport(HttpClient httpClient) {
+        this(httpClient, Duration.ZERO);
+    }
+
+    /**
+     * @param httpClient     JDK HTTP client
+     * @param requestTimeout max time from sending a request until its response headers are received,
+     *                       zero meaning no timeout
+     */
+    JdkHttpTransport(HttpClient httpClient, Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public Response post(String baseUrl, String path, StreamingOutput entity, Map<String, String> headers) {
+        try {
+            return new JdkHttpResponse(httpClient.send(request(baseUrl, path, entity, headers),
+                    HttpResponse.BodyHandlers.ofInputStream()), gzipBytesSavedListener);
+        } catch (IOException e) {
+            throw new ProcessingException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> postAsync(String baseUrl, String path, StreamingOutput entity,
+                                                 Map<String, String> headers, Executor executor) {
+        final HttpRequest request;
+        try {
+            request = request(baseUrl, path, entity, headers);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final LongConsumer listener = gzipBytesSavedListener;
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        // Completed on the given executor, as the response entity is read by whoever completes the future.
+        // The hop is made by hand, as a rejected handleAsync would leave the future incomplete forever.
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .whenComplete((response, failure) -> {
+                    try {
+                        executor.execute(() -> complete(result, response, failure, listener));
+                    } catch (RejectedExecutionException e) {
+                        if (response != null) {
+                            new JdkHttpResponse(response, null).close();
+                        }
+                        result.completeExceptionally(e);
+                    }
+                });
+        return result;
+    }
+
+    private static void complete(CompletableFuture<Response> result, HttpResponse<InputStream> response,
+                                 Throwable failure, LongConsumer listener) {
+        if (failure != null) {
+            final Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            result.completeExceptionally(new ProcessingException(cause));
+        } else {
+            result.complete(new JdkHttpResponse(response, listener));
+        }
+    }
+
+    @Override
+    public boolean enableGzipDecompression(LongConsumer bytesSavedListener) {
+        gzipBytesSavedListener = bytesSavedListener;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        // The JDK client is released by garbage collection
+    }
+
+    static URI uri(String baseUrl, String path) {
+        final String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        return URI.create(path.startsWith("/") ? base + path : base + "/" + path);
+    }
+
+    private HttpRequest request(String baseUrl, String path, StreamingOutput entity, Map<String, String> headers) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(uri(baseUrl, path))
+                .header(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(toBytes(entity)));
+        if (!requestTimeout.isZero()) {
+            builder.timeout(requestTimeout);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        return builder.build();
+    }
+
+    private static byte[] toBytes(StreamingOutput entity) {
+        try {
+            if (entity instanceof JsonRequestBody) {
+                return ((JsonRequestBody) entity).toByteArray();
+            }
+            if (entity instanceof GzipRequestBody) {
+                return ((GzipRequestBody) entity).toByteArray();
+            }
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            entity.write(outputStream);
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new ProcessingException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.httpclient.FailSafeHttpClient;
+import dk.dbc.httpclient.HttpPost;
+import dk.dbc.httpclient.PathBuilder;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link HttpTransport} on a JAX-RS web resources client
+ * <p>
+ * Requests are blocking, so async requests occupy an executor thread until the response headers are received.
+ * Requests are sent through web targets owned by the transport, one per base URL, so that providers the
+ * connector registers never reach the web resources client, which may be shared with other code.
+ * When given a {@link FailSafeHttpClient} each request is instead sent by way of that client and retried by
+ * its retry policy. Such a transport can not decompress gzip encoded responses.
+ * </p>
+ */
+class JerseyTransport implements HttpTransport {
+    private final Client client;
+    private final FailSafeHttpClient failSafeHttpClient;
+    private final Map<String, WebTarget> targets = new ConcurrentHashMap<>();
+    private volatile GzipResponseInterceptor gzipResponseInterceptor;
+
+    /**
+     * @param client web resources client sending single attempts
+     */
+    JerseyTransport(Client client) {
+        this.client = client;
+        this.failSafeHttpClient = null;
+    }
+
+    /**
+     * @param failSafeHttpClient web resources client retrying each request by its own retry policy
+     */
+    JerseyTransport(FailSafeHttpClient failSafeHttpClient) {
+        this.client = failSafeHttpClient.getClient();
+        this.failSafeHttpClient = failSafeHttpClient;
+    }
+
+    @Override
+    public Response post(String baseUrl, String path, StreamingOutput entity, Map<String, String> headers) {
+        if (failSafeHttpClient != null) {
+            final HttpPost post = new HttpPost(failSafeHttpClient)
+                    .withBaseUrl(baseUrl)
+                    .withData(entity, APPLICATION_JSON)
+                    .withPathElements(new PathBuilder(path).build());
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                post.withHeader(header.getKey(), header.getValue());
+            }
+            return post.execute();
+        }
+        final Invocation.Builder request = targets.computeIfAbsent(baseUrl, this::target).path(path).request();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            request.header(header.getKey(), header.getValue());
+        }
+        return request.post(Entity.entity(entity, APPLICATION_JSON));
+    }
+
+    @Override
+    public CompletableFuture<Response> postAsync(String baseUrl, String path, StreamingOutput entity,
+                                                 Map<String, String> headers, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(() -> post(baseUrl, path, entity, headers), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public boolean enableGzipDecompression(LongConsumer bytesSavedListener) {
+        if (failSafeHttpClient != null) {
+            return false;
+        }
+        gzipResponseInterceptor = new GzipResponseInterceptor(bytesSavedListener);
+        targets.clear();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private WebTarget target(String baseUrl) {
+        final WebTarget target = client.target(baseUrl);
+        final GzipResponseInterceptor interceptor = gzipResponseInterceptor;
+        return interceptor == null ? target : target.register(interceptor);
+    }
+}
@@ -0,0 +1,64 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dk.dbc.commons.jsonb.JSONBException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incremental decoder of JSON array responses
+ * <p>
+ * The array elements are bound one at a time directly from the response stream, so neither the
+ * response text nor an intermediate array is ever held in memory. The stream is closed when the
+ * array has been read.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @param <T> element type
+ */
+class JsonArrayReader<T> {
+    private static final ObjectMapper OBJECT_MAPPER = SharedObjectMapper.INSTANCE;
+
+    private final Class<T> type;
+    private final ObjectReader reader;
+
+    JsonArrayReader(Class<T> type) {
+        this.type = type;
+        this.reader = OBJECT_MAPPER.readerFor(type);
+    }
+
+    /**
+     * Reads a JSON array of elements from the stream
+     *
+     * @param inputStream stream positioned at the start of the array
+     * @return list of elements, empty if the array is empty or JSON null
+     * @throws JSONBException on malformed JSON or if the stream does not hold an array
+     */
+    List<T> read(InputStream inputStream) throws JSONBException {
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(inputStream)) {
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return Collections.emptyList();
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new JSONBException("Expected JSON array of " + type.getSimpleName() + " but got " + token);
+            }
+            final List<T> elements = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                elements.add(reader.readValue(parser));
+            }
+            return elements;
+        } catch (IOException e) {
+            throw new JSONBException("Unable to read JSON array of " + type.getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dk.dbc.commons.jsonb.JSONBException;
+import dk.dbc.marc.binding.MarcRecord;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JSON request entity written straight to the HTTP output stream
+ * <p>
+ * The body consists of the fields of a request DTO plus any number of MARC record fields. A record is
+ * encoded to MarcXchange and JSON escaped once, see {@link EncodedMarcRecord}, and on every write the escaped
+ * UTF-8 bytes are copied straight into the output, so the JSON document is never built as a String.
+ * The record fields of the DTO itself must be left unset.
+ * </p>
+ * <p>
+ * The body can be written any number of times, which is needed for retries. A transport needing the whole
+ * body up front gets it from {@link #toByteArray()}, which writes it once for all attempts of the request.
+ * </p>
+ */
+class JsonRequestBody implements StreamingOutput {
+    private static final ObjectMapper OBJECT_MAPPER = SharedObjectMapper.INSTANCE;
+    private static final String TRACKING_ID = "trackingId";
+
+    private final ObjectNode fields;
+    private final long marshalNanos;
+    private final Map<String, EncodedMarcRecord> records = new LinkedHashMap<>();
+    private volatile byte[] content;
+
+    private JsonRequestBody(ObjectNode fields, long marshalNanos) {
+        this.fields = fields;
+        this.marshalNanos = marshalNanos;
+    }
+
+    /**
+     * @param requestDTO request DTO holding all fields except records
+     * @return request body
+     * @throws JSONBException if the DTO can not be serialized as a JSON object
+     */
+    static JsonRequestBody of(Object requestDTO) throws JSONBException {
+        final long startNanos = System.nanoTime();
+        final JsonNode node;
+        try {
+            node = OBJECT_MAPPER.valueToTree(requestDTO);
+        } catch (IllegalArgumentException e) {
+            throw new JSONBException("Unable to marshall " + requestDTO.getClass().getName(), e);
+        }
+        if (!node.isObject()) {
+            throw new JSONBException(requestDTO.getClass().getName() + " is not marshalled as a JSON object");
+        }
+        return new JsonRequestBody((ObjectNode) node, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Adds a record field. A null record, or a record which can not be encoded, leaves the field as set in the DTO.
+     *
+     * @param name       field name
+     * @param marcRecord record
+     * @return this body
+     */
+    JsonRequestBody withRecord(String name, MarcRecord marcRecord) {
+        return withRecord(name, EncodedMarcRecord.ofNullable(marcRecord));
+    }
+
+    /**
+     * Adds a record field. A null record leaves the field as set in the DTO.
+     *
+     * @param name          field name
+     * @param encodedRecord encoded record
+     * @return this body
+     */
+    JsonRequestBody withRecord(String name, EncodedMarcRecord encodedRecord) {
+        if (encodedRecord != null) {
+            records.put(name, encodedRecord);
+            content = null;
+        }
+        return this;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        write(outputStream, null);
+    }
+
+    /**
+     * @return the body as bytes, written on the first call and reused by the later attempts of the request
+     * @throws IOException if the body can not be written
+     */
+    byte[] toByteArray() throws IOException {
+        byte[] bytes = content;
+        if (bytes == null) {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            write(outputStream);
+            bytes = outputStream.toByteArray();
+            content = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return size of the encoded records, which make up nearly all of the body when present
+     */
+    long getRecordsSize() {
+        long size = 0;
+        for (EncodedMarcRecord record : records.values()) {
+            size += record.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return nanoseconds spent marshalling the fields of the DTO. Writing the body is left out,
+     * as it is streamed to the connection while the request is sent
+     */
+    long getMarshalNanos() {
+        return marshalNanos;
+    }
+
+    /**
+     * @return nanoseconds spent encoding the records which have not been sent by an earlier request,
+     * see {@link EncodedMarcRecord#takeEncodeNanos()}
+     */
+    long takeEncodeNanos() {
+        long nanos = 0;
+        for (EncodedMarcRecord record : records.values()) {
+            nanos += record.takeEncodeNanos();
+        }
+        return nanos;
+    }
+
+    boolean hasRecords() {
+        return !records.isEmpty();
+    }
+
+    /**
+     * @return the body as JSON without the trackingId field, so that requests differing only by
+     * tracking ID have the same identity
+     */
+    String identity() {
+        return asString(TRACKING_ID);
+    }
+
+    private void write(OutputStream outputStream, String excludedField) throws IOException {
+        final JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try (generator) {
+            generator.writeStartObject();
+            final Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+            while (iterator.hasNext()) {
+                final Map.Entry<String, JsonNode> field = iterator.next();
+                if (!records.containsKey(field.getKey()) && !field.getKey().equals(excludedField)) {
+                    generator.writeFieldName(field.getKey());
+                    generator.writeTree(field.getValue());
+                }
+            }
+            for (Map.Entry<String, EncodedMarcRecord> record : records.entrySet()) {
+                final byte[] escaped = record.getValue().getJsonEscapedContent();
+                generator.writeFieldName(record.getKey());
+                generator.writeRawUTF8String(escaped, 0, escaped.length);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * @return the body as JSON, for logging and tests only
+     */
+    @Override
+    public String toString() {
+        return asString(null);
+    }
+
+    private String asString(String excludedField) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            write(outputStream, excludedField);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
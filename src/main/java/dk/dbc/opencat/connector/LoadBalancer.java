@@ -0,0 +1,224 @@
+package dk.dbc.opencat.connector;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side load balancer over the opencat-business replicas
+ * <p>
+ * Instances are selected by power-of-two-choices: two random available instances are compared and
+ * the one with the fewest outstanding requests wins, with ties going to the lowest average latency.
+ * </p>
+ * <p>
+ * An instance is ejected for a while after a number of consecutive failures (no response, a 5xx
+ * response or the 404 of an instance being deployed), or when its average latency is a multiple of that
+ * of the fastest other available instance.
+ * At most half of the instances are ejected at any time, so the connector never runs out of instances.
+ * An instance returning from ejection starts over with fresh statistics.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class LoadBalancer {
+    static final int CONSECUTIVE_FAILURES_BEFORE_EJECTION = 3;
+    static final double SLOW_FACTOR = 3.0;
+    static final int MIN_SAMPLES_FOR_SLOWNESS = 20;
+    static final Duration EJECTION_TIME = Duration.ofSeconds(30);
+    // Weight of a new latency sample in the moving average
+    private static final double EWMA_ALPHA = 0.1;
+
+    private final List<Instance> instances;
+    private final long ejectionNanos;
+    private final LongSupplier nanoClock;
+
+    LoadBalancer(List<String> baseUrls) {
+        this(baseUrls, EJECTION_TIME, System::nanoTime);
+    }
+
+    LoadBalancer(List<String> baseUrls, Duration ejectionTime, LongSupplier nanoClock) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one base URL is required");
+        }
+        final List<Instance> instances = new ArrayList<>(baseUrls.size());
+        for (String baseUrl : baseUrls) {
+            instances.add(new Instance(baseUrl, nanoClock.getAsLong()));
+        }
+        this.instances = Collections.unmodifiableList(instances);
+        this.ejectionNanos = ejectionTime.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Parses a comma separated list of base URLs
+     *
+     * @param baseUrls base URL or comma separated list of base URLs
+     * @return load balancer over the given base URLs
+     */
+    static LoadBalancer of(String baseUrls) {
+        final List<String> urls = new ArrayList<>();
+        for (String url : baseUrls.split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        return new LoadBalancer(urls);
+    }
+
+    List<Instance> getInstances() {
+        return instances;
+    }
+
+    /**
+     * Selects the instance for the next request, which must be reported back through
+     * {@link #complete(Instance, long, boolean)}
+     *
+     * @return selected instance with its outstanding request count incremented
+     */
+    Instance select() {
+        final Instance selected = instances.size() == 1 ? instances.get(0) : choose();
+        selected.outstanding.incrementAndGet();
+        return selected;
+    }
+
+    /**
+     * Reports that a request to the given instance was given up without an outcome
+     *
+     * @param instance instance returned by {@link #select()}
+     */
+    void cancel(Instance instance) {
+        instance.outstanding.decrementAndGet();
+    }
+
+    /**
+     * Reports the outcome of a request to the given instance
+     *
+     * @param instance     instance returned by {@link #select()}
+     * @param elapsedNanos round trip time
+     * @param failed       true if no response was received or the response was a server error or a 404
+     * @return true if the instance was ejected as a consequence of this outcome
+     */
+    boolean complete(Instance instance, long elapsedNanos, boolean failed) {
+        instance.outstanding.decrementAndGet();
+        if (instances.size() == 1) {
+            return false;
+        }
+        synchronized (this) {
+            final long now = nanoClock.getAsLong();
+            if (instance.isEjected(now)) {
+                return false;
+            }
+            if (failed) {
+                instance.consecutiveFailures++;
+            } else {
+                instance.consecutiveFailures = 0;
+                instance.samples++;
+                instance.ewmaLatencyNanos = instance.samples == 1 ? elapsedNanos
+                        : instance.ewmaLatencyNanos + EWMA_ALPHA * (elapsedNanos - instance.ewmaLatencyNanos);
+            }
+            if ((instance.consecutiveFailures >= CONSECUTIVE_FAILURES_BEFORE_EJECTION || isSlow(instance, now))
+                    && mayEject(now)) {
+                instance.ejectedUntilNanos = now + ejectionNanos;
+                instance.reset();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private Instance choose() {
+        final long now = nanoClock.getAsLong();
+        final List<Instance> available = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            if (!instance.isEjected(now)) {
+                available.add(instance);
+            }
+        }
+        if (available.isEmpty()) {
+            available.addAll(instances);
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        final Instance a = available.get(first);
+        final Instance b = available.get(second);
+        final int outstandingA = a.outstanding.get();
+        final int outstandingB = b.outstanding.get();
+        if (outstandingA != outstandingB) {
+            return outstandingA < outstandingB ? a : b;
+        }
+        return a.ewmaLatencyNanos <= b.ewmaLatencyNanos ? a : b;
+    }
+
+    private boolean isSlow(Instance instance, long now) {
+        if (instance.samples < MIN_SAMPLES_FOR_SLOWNESS) {
+            return false;
+        }
+        double fastest = Double.MAX_VALUE;
+        for (Instance other : instances) {
+            if (other != instance && !other.isEjected(now) && other.samples >= MIN_SAMPLES_FOR_SLOWNESS) {
+                fastest = Math.min(fastest, other.ewmaLatencyNanos);
+            }
+        }
+        return fastest != Double.MAX_VALUE && instance.ewmaLatencyNanos > SLOW_FACTOR * fastest;
+    }
+
+    private boolean mayEject(long now) {
+        int ejected = 0;
+        for (Instance instance : instances) {
+            if (instance.isEjected(now)) {
+                ejected++;
+            }
+        }
+        return ejected + 1 <= instances.size() / 2;
+    }
+
+    static class Instance {
+        private final String baseUrl;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // Guarded by the load balancer, volatile for the unsynchronized reads in choose()
+        private volatile double ewmaLatencyNanos;
+        private volatile long ejectedUntilNanos;
+        private long samples;
+        private int consecutiveFailures;
+
+        Instance(String baseUrl, long nowNanos) {
+            this.baseUrl = baseUrl;
+            this.ejectedUntilNanos = nowNanos;
+        }
+
+        String getBaseUrl() {
+            return baseUrl;
+        }
+
+        int getOutstanding() {
+            return outstanding.get();
+        }
+
+        boolean isEjected(long now) {
+            return now - ejectedUntilNanos < 0;
+        }
+
+        private void reset() {
+            samples = 0;
+            consecutiveFailures = 0;
+            ewmaLatencyNanos = 0;
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+}
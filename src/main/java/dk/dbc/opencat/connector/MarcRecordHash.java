@@ -0,0 +1,220 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.invariant.InvariantUtil;
+import dk.dbc.marc.binding.ControlField;
+import dk.dbc.marc.binding.DataField;
+import dk.dbc.marc.binding.Field;
+import dk.dbc.marc.binding.Leader;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.marc.binding.SubField;
+
+/**
+ * 128-bit hash of the content of a {@link MarcRecord}, e.g. for cache keys and deduplication
+ * <p>
+ * The hash is computed straight from the leader, the control field tags and data, and the data field tags,
+ * indicators and subfield codes and data, in field and subfield order, without encoding the record or
+ * creating intermediate strings. Records which encode to the same MarcXchange have the same hash,
+ * whereas records differing in any of the above have different hashes, barring the odd collision of
+ * a 128-bit hash.
+ * </p>
+ * <p>
+ * The hash is MurmurHash3 x64 128 of a length prefixed UTF-16 serialization of the record, and is stable
+ * across JVMs, so it may be stored. A null data or indicator hashes as absent, and a null string as empty.
+ * </p>
+ */
+public final class MarcRecordHash {
+    private static final char LEADER = 'L';
+    private static final char CONTROL_FIELD = 'C';
+    private static final char DATA_FIELD = 'D';
+    private static final char SUB_FIELD = 'S';
+    private static final char OTHER_FIELD = 'O';
+    // Not a character, so never part of an XML document
+    private static final char ABSENT = '\uffff';
+
+    private final long high;
+    private final long low;
+
+    private MarcRecordHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param marcRecord record
+     * @return hash of the record
+     */
+    public static MarcRecordHash of(MarcRecord marcRecord) {
+        InvariantUtil.checkNotNullOrThrow(marcRecord, "marcRecord");
+        final Murmur3 hasher = new Murmur3();
+        final Leader leader = marcRecord.getLeader();
+        if (leader != null && leader.getData() != null) {
+            final char[] data = leader.getData();
+            hasher.put(LEADER);
+            hasher.putInt(data.length);
+            for (char c : data) {
+                hasher.put(c);
+            }
+        }
+        if (marcRecord.getFields() != null) {
+            for (Field<?> field : marcRecord.getFields()) {
+                if (field instanceof DataField) {
+                    putDataField(hasher, (DataField) field);
+                } else if (field instanceof ControlField) {
+                    hasher.put(CONTROL_FIELD);
+                    hasher.putString(field.getTag());
+                    hasher.putString(((ControlField) field).getData());
+                } else {
+                    hasher.put(OTHER_FIELD);
+                    hasher.putString(field.getTag());
+                }
+            }
+        }
+        return hasher.finish();
+    }
+
+    private static void putDataField(Murmur3 hasher, DataField dataField) {
+        hasher.put(DATA_FIELD);
+        hasher.putString(dataField.getTag());
+        hasher.putIndicator(dataField.getInd1());
+        hasher.putIndicator(dataField.getInd2());
+        hasher.putIndicator(dataField.getInd3());
+        if (dataField.getSubFields() != null) {
+            for (SubField subField : dataField.getSubFields()) {
+                hasher.put(SUB_FIELD);
+                hasher.put(subField.getCode());
+                hasher.putString(subField.getData());
+            }
+        }
+    }
+
+    /**
+     * @return most significant 64 bits of the hash
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return least significant 64 bits of the hash
+     */
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final MarcRecordHash that = (MarcRecordHash) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    /**
+     * @return the hash as 32 hex digits
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /* Incremental MurmurHash3 x64 128 with seed 0 of the UTF-16LE bytes of the characters put */
+    private static class Murmur3 {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1;
+        private long h2;
+        private long k1;
+        private long k2;
+        private int buffered;
+        private long length;
+
+        void put(char c) {
+            if (buffered < 4) {
+                k1 |= (long) c << (16 * buffered);
+            } else {
+                k2 |= (long) c << (16 * (buffered - 4));
+            }
+            length += 2;
+            if (++buffered == 8) {
+                mixBlock();
+                k1 = 0;
+                k2 = 0;
+                buffered = 0;
+            }
+        }
+
+        void putInt(int value) {
+            put((char) value);
+            put((char) (value >>> 16));
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putInt(0);
+                return;
+            }
+            putInt(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                put(value.charAt(i));
+            }
+        }
+
+        void putIndicator(Character indicator) {
+            put(indicator == null ? ABSENT : indicator);
+        }
+
+        MarcRecordHash finish() {
+            if (buffered > 0) {
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+            return new MarcRecordHash(h1, h2);
+        }
+
+        private void mixBlock() {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long mixK1(long k) {
+            return Long.rotateLeft(k * C1, 31) * C2;
+        }
+
+        private static long mixK2(long k) {
+            return Long.rotateLeft(k * C2, 33) * C1;
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
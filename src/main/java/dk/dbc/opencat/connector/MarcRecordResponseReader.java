@@ -0,0 +1,366 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.marc.reader.MarcReaderException;
+import dk.dbc.marc.reader.MarcXchangeV1Reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decoder of record responses, i.e. JSON objects with the MarcXchange record as a string field
+ * <p>
+ * Instead of binding the response to a DTO and decoding the record from a copy of its bytes, the
+ * response stream is scanned up to the record field and the string value is then fed directly to a
+ * MarcXchange reader, unescaping it on the fly. Neither the record text nor its bytes are ever
+ * materialized as a whole. Other fields of the response are skipped.
+ * </p>
+ */
+class MarcRecordResponseReader {
+    static final String RECORD_FIELD = "record";
+
+    private MarcRecordResponseReader() {
+    }
+
+    /**
+     * Reads the record of a record response and closes the stream
+     *
+     * @param responseStream response entity stream
+     * @return record
+     * @throws OpencatBusinessConnectorException if the response is not a JSON object with a non-null record field
+     * @throws MarcReaderException               if the record could not be read
+     */
+    static MarcRecord read(InputStream responseStream) throws OpencatBusinessConnectorException, MarcReaderException {
+        return read(responseStream, null);
+    }
+
+    /**
+     * As {@link #read(InputStream)}, adding the time spent finding the record to the unmarshal phase of the
+     * given timings, and the time spent reading it to the decode phase
+     */
+    static MarcRecord read(InputStream responseStream, CallTimings timings)
+            throws OpencatBusinessConnectorException, MarcReaderException {
+        long startNanos = System.nanoTime();
+        try (JsonScanner scanner = new JsonScanner(responseStream)) {
+            seekRecord(scanner);
+            if (timings != null) {
+                timings.addSince(CallTimings.Phase.UNMARSHAL, startNanos);
+                startNanos = System.nanoTime();
+            }
+            final MarcRecord marcRecord = new MarcXchangeV1Reader(scanner.stringValue(), StandardCharsets.UTF_8).read();
+            if (timings != null) {
+                timings.addSince(CallTimings.Phase.DECODE, startNanos);
+            }
+            return marcRecord;
+        } catch (IOException e) {
+            throw new OpencatBusinessConnectorException("Unable to read record response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the record of a record response without decoding it, and closes the stream
+     *
+     * @param responseStream response entity stream
+     * @return the MarcXchange encoding of the record
+     * @throws OpencatBusinessConnectorException if the response is not a JSON object with a non-null record field
+     */
+    static EncodedMarcRecord readEncoded(InputStream responseStream) throws OpencatBusinessConnectorException {
+        try (JsonScanner scanner = new JsonScanner(responseStream)) {
+            seekRecord(scanner);
+            return EncodedMarcRecord.ofContent(scanner.stringValue().readAllBytes());
+        } catch (IOException e) {
+            throw new OpencatBusinessConnectorException("Unable to read record response: " + e.getMessage(), e);
+        }
+    }
+
+    private static void seekRecord(JsonScanner scanner) throws IOException, OpencatBusinessConnectorException {
+        if (!scanner.seekStringField(RECORD_FIELD)) {
+            throw new OpencatBusinessConnectorException(
+                    "OpencatBusiness returned with null-valued " + RECORD_FIELD);
+        }
+    }
+
+    /**
+     * Minimal forward-only JSON scanner over the fields of a top level object
+     */
+    static class JsonScanner implements AutoCloseable {
+        private final InputStream inputStream;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+
+        JsonScanner(InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        /**
+         * Positions the scanner at the start of the string value of the given top level field
+         *
+         * @param name field name
+         * @return true if the field has a string value, false if it is missing or null
+         * @throws IOException on malformed JSON or if the value is neither a string nor null
+         */
+        boolean seekStringField(String name) throws IOException {
+            expect(nextNonWhitespace(), '{');
+            int c = nextNonWhitespace();
+            while (c != '}') {
+                expect(c, '"');
+                final String fieldName = readFieldName();
+                expect(nextNonWhitespace(), ':');
+                c = nextNonWhitespace();
+                if (fieldName.equals(name)) {
+                    if (c == '"') {
+                        return true;
+                    }
+                    if (c == 'n') {
+                        return false;
+                    }
+                    throw new IOException("Expected string value of field " + name + " but got '" + (char) c + "'");
+                }
+                c = skipValue(c);
+                if (c == ',') {
+                    c = nextNonWhitespace();
+                } else if (c != '}') {
+                    throw unexpected(c);
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return stream of the UTF-8 bytes of the string value the scanner is positioned at
+         */
+        InputStream stringValue() {
+            return new StringValueInputStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+
+        private String readFieldName() throws IOException {
+            final StringBuilder fieldName = new StringBuilder();
+            int c;
+            while ((c = next()) != '"') {
+                if (c == '\\') {
+                    c = unescape();
+                }
+                fieldName.append((char) c);
+            }
+            return fieldName.toString();
+        }
+
+        /**
+         * Skips the value starting with the given byte
+         *
+         * @return first non-whitespace byte after the value
+         */
+        private int skipValue(int c) throws IOException {
+            int depth = 0;
+            do {
+                if (c == '"') {
+                    skipString();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (depth == 0) {
+                    // Number or literal, ends at the first structural byte
+                    while (c != ',' && c != '}' && !isWhitespace(c)) {
+                        c = next();
+                    }
+                    return isWhitespace(c) ? nextNonWhitespace() : c;
+                }
+                if (depth < 0) {
+                    throw unexpected(c);
+                }
+                c = nextNonWhitespace();
+            } while (depth > 0);
+            return c;
+        }
+
+        private void skipString() throws IOException {
+            int c;
+            while ((c = next()) != '"') {
+                if (c == '\\') {
+                    next();
+                }
+            }
+        }
+
+        /**
+         * @return code unit of the escape sequence following a backslash
+         */
+        private int unescape() throws IOException {
+            final int c = next();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    return c;
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    return readHexCodeUnit();
+                default:
+                    throw unexpected(c);
+            }
+        }
+
+        private int readHexCodeUnit() throws IOException {
+            int codeUnit = 0;
+            for (int i = 0; i < 4; i++) {
+                final int digit = Character.digit(next(), 16);
+                if (digit < 0) {
+                    throw new IOException("Malformed \\u escape in JSON string");
+                }
+                codeUnit = codeUnit << 4 | digit;
+            }
+            return codeUnit;
+        }
+
+        private int nextNonWhitespace() throws IOException {
+            int c;
+            do {
+                c = next();
+            } while (isWhitespace(c));
+            return c;
+        }
+
+        private int next() throws IOException {
+            if (position == limit && !fill()) {
+                throw new IOException("Unexpected end of JSON input");
+            }
+            return buffer[position++] & 0xff;
+        }
+
+        private boolean fill() throws IOException {
+            final int read = inputStream.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private static void expect(int c, char expected) throws IOException {
+            if (c != expected) {
+                throw new IOException("Expected '" + expected + "' but got '" + (char) c + "'");
+            }
+        }
+
+        private static IOException unexpected(int c) {
+            return new IOException("Unexpected '" + (char) c + "' in JSON input");
+        }
+
+        /**
+         * The string value as UTF-8 bytes. Unescaped bytes are copied in bulk from the scanner buffer,
+         * escape sequences are decoded and re-encoded as UTF-8.
+         */
+        private class StringValueInputStream extends InputStream {
+            private final byte[] single = new byte[1];
+            private final byte[] pending = new byte[4];
+            private int pendingPosition;
+            private int pendingLimit;
+            private boolean done;
+
+            @Override
+            public int read() throws IOException {
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                int count = 0;
+                while (count < length) {
+                    if (pendingPosition < pendingLimit) {
+                        bytes[offset + count++] = pending[pendingPosition++];
+                        continue;
+                    }
+                    if (done) {
+                        break;
+                    }
+                    if (position == limit && !fill()) {
+                        throw new IOException("Unexpected end of JSON string");
+                    }
+                    // Copy the run of plain bytes up to the next quote or backslash
+                    final int end = Math.min(limit, position + length - count);
+                    int i = position;
+                    while (i < end && buffer[i] != '"' && buffer[i] != '\\') {
+                        i++;
+                    }
+                    System.arraycopy(buffer, position, bytes, offset + count, i - position);
+                    count += i - position;
+                    position = i;
+                    if (i < end) {
+                        position++;
+                        if (buffer[i] == '"') {
+                            done = true;
+                        } else {
+                            decodeEscape();
+                        }
+                    }
+                }
+                return count == 0 && done ? -1 : count;
+            }
+
+            @Override
+            public int available() {
+                return (pendingLimit - pendingPosition) + (done ? 0 : limit - position);
+            }
+
+            private void decodeEscape() throws IOException {
+                int codePoint = unescape();
+                if (Character.isHighSurrogate((char) codePoint)) {
+                    if (next() != '\\' || next() != 'u') {
+                        throw new IOException("Unpaired surrogate in JSON string");
+                    }
+                    codePoint = Character.toCodePoint((char) codePoint, (char) readHexCodeUnit());
+                }
+                pendingPosition = 0;
+                pendingLimit = encodeUtf8(codePoint);
+            }
+
+            private int encodeUtf8(int codePoint) {
+                if (codePoint < 0x80) {
+                    pending[0] = (byte) codePoint;
+                    return 1;
+                }
+                if (codePoint < 0x800) {
+                    pending[0] = (byte) (0xc0 | codePoint >> 6);
+                    pending[1] = (byte) (0x80 | codePoint & 0x3f);
+                    return 2;
+                }
+                if (codePoint < 0x10000) {
+                    pending[0] = (byte) (0xe0 | codePoint >> 12);
+                    pending[1] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                    pending[2] = (byte) (0x80 | codePoint & 0x3f);
+                    return 3;
+                }
+                pending[0] = (byte) (0xf0 | codePoint >> 18);
+                pending[1] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                pending[2] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                pending[3] = (byte) (0x80 | codePoint & 0x3f);
+                return 4;
+            }
+        }
+    }
+}
@@ -1,12 +1,7 @@
 package dk.dbc.opencat.connector;
 
-import dk.dbc.common.records.RecordContentTransformer;
-import dk.dbc.dataio.commons.utils.lang.StringUtil;
 import dk.dbc.httpclient.FailSafeHttpClient;
-import dk.dbc.httpclient.HttpPost;
-import dk.dbc.httpclient.PathBuilder;
 import dk.dbc.invariant.InvariantUtil;
-import dk.dbc.commons.jsonb.JSONBContext;
 import dk.dbc.commons.jsonb.JSONBException;
 import dk.dbc.marc.binding.DataField;
 import dk.dbc.marc.binding.MarcRecord;
@@ -18,26 +13,59 @@ import dk.dbc.opencatbusiness.dto.CheckTemplateRequestDTO;
 import dk.dbc.opencatbusiness.dto.DoRecategorizationThingsRequestDTO;
 import dk.dbc.opencatbusiness.dto.GetValidateSchemasRequestDTO;
 import dk.dbc.opencatbusiness.dto.RecordRequestDTO;
-import dk.dbc.opencatbusiness.dto.RecordResponseDTO;
 import dk.dbc.opencatbusiness.dto.SortRecordRequestDTO;
 import dk.dbc.opencatbusiness.dto.ValidateRecordRequestDTO;
 import dk.dbc.updateservice.dto.DoubleRecordFrontendStatusDTO;
 import dk.dbc.updateservice.dto.MessageEntryDTO;
 import dk.dbc.updateservice.dto.SchemaDTO;
 import dk.dbc.util.Stopwatch;
+import net.jodah.failsafe.Failsafe;
+import net.jodah.failsafe.FailsafeException;
 import net.jodah.failsafe.RetryPolicy;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.Arrays;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 /**
  * OpencatBusinessConnector - opencat-business service client
@@ -46,19 +74,131 @@ import java.util.concurrent.TimeUnit;
  * a base URL for the opencat-business service endpoint you will be communicating with.
  * </p>
  * <p>
+ * Instead of a JAX-RS web resources client the connector can be given a JDK {@link java.net.http.HttpClient},
+ * e.g. one preferring HTTP/2, so that concurrent requests are multiplexed on a single connection
+ * per opencat-business instance and async requests hold no thread while waiting for the response.
+ * </p>
+ * <p>
+ * Optional features, e.g. caches, metrics and circuit breakers, are enabled by the
+ * {@link OpencatBusinessConnectorSettings} given at construction time.
+ * </p>
+ * <p>
  * This class is thread safe, as long as the given web resources client remains thread safe.
  * </p>
  * <p>
+ * Every service method has an *Async counterpart returning a {@link CompletableFuture}. The async
+ * methods run on the executor given at construction time (or a connector owned pool of at most
+ * 50 threads, queueing up to 1000 attempts beyond that), and complete exceptionally with the same exceptions as
+ * their blocking counterparts. An attempt the executor rejects, e.g. because the queue of the owned pool is full,
+ * fails the call with a {@link RejectedExecutionException} without being retried. Only a connector sending requests through the JDK HTTP client is non-blocking. With a
+ * JAX-RS web resources client every attempt of an async call occupies an executor thread until the response
+ * headers are received, so the executor bounds the number of concurrent async requests.
+ * When the connector knows its retry policy (i.e. it was not given a ready-made {@link FailSafeHttpClient})
+ * the delay between async retries is waited out on a shared scheduler instead of in a sleeping thread.
+ * The blocking methods wait out the delay in the calling thread, so while opencat-business is being redeployed
+ * a blocking call holds its thread for up to about a minute. Callers who can not spare the thread should use
+ * the *Async methods.
+ * </p>
+ * <p>
+ * preprocess, validateRecord, checkDoubleRecordFrontend and sortRecord also take an {@link EncodedMarcRecord},
+ * so that a record sent to several of them is only encoded once. Likewise the *Encoded variants of preprocess,
+ * sortRecord and buildRecord return the resulting record as an EncodedMarcRecord, which is not decoded
+ * unless its MarcRecord is asked for.
+ * </p>
+ * <p>
+ * validateRecord, sortRecord, preprocess and metacompass also come in batch versions taking many records
+ * and a max number of in-flight requests. They return a {@link BatchResult} in input order with a result
+ * or an error per record.
+ * </p>
+ * <p>
+ * getValidateSchemas results can be cached in-process,
+ * see {@link OpencatBusinessConnectorSettings#withValidateSchemasCache(Duration, int)}.
+ * </p>
+ * <p>
+ * sortRecord and preprocess results can be cached in-process by the content of the request record,
+ * see {@link OpencatBusinessConnectorSettings#withResultCache(long, Set)}.
+ * </p>
+ * <p>
+ * checkTemplate outcomes can be indexed in-process, and the index warmed in bulk, see
+ * {@link OpencatBusinessConnectorSettings#withTemplatePermissionIndex(Duration)} and
+ * {@link #warmTemplatePermissionIndex(Collection, Collection, Collection, int)}.
+ * These metadata caches can be kept in a snapshot file, so that a restarted connector serves from them
+ * right away, see {@link OpencatBusinessConnectorSettings#withCacheSnapshot(Path)}.
+ * </p>
+ * <p>
+ * Identical concurrent checkTemplate, checkTemplateBuild and getValidateSchemas requests, i.e. requests
+ * for the same endpoint with the same request body apart from the tracking ID, are collapsed into a single
+ * request whose result is shared by all callers. Every getValidateSchemas caller gets its own modifiable
+ * copy of the schemas, whether they were fetched for it, for a concurrent caller, or served from the cache.
+ * </p>
+ * <p>
+ * Request metrics can be registered in a MicroProfile {@link MetricRegistry},
+ * see {@link OpencatBusinessConnectorSettings#withMetricRegistry(MetricRegistry)}.
+ * Retries are only counted when the connector knows its retry policy.
+ * </p>
+ * <p>
+ * The base URL may be a comma separated list of base URLs of opencat-business replicas. Requests, including
+ * each retry attempt, are then load balanced across the replicas by power-of-two-choices on the number of
+ * outstanding requests, and failing or slow replicas are ejected for a while, see {@link LoadBalancer}.
+ * </p>
+ * <p>
+ * Large requests can be gzip compressed and responses requested gzip compressed,
+ * see {@link OpencatBusinessConnectorSettings#withGzipCompression(long)}.
+ * </p>
+ * <p>
+ * Requests without side effects can be hedged to cut the latency tail,
+ * see {@link OpencatBusinessConnectorSettings#withHedging(double, double)}.
+ * </p>
+ * <p>
+ * Each endpoint can be guarded by a circuit breaker failing requests fast while the endpoint is broken,
+ * see {@link OpencatBusinessConnectorSettings#withCircuitBreaker(CircuitBreakerSettings, Consumer)}.
+ * Requests rejected by an open circuit fail with a {@link CircuitBreakerOpenException} without
+ * opencat-business ever being called.
+ * </p>
+ * <p>
+ * Concurrent requests can be bounded by an adaptive limit, see
+ * {@link OpencatBusinessConnectorSettings#withAdaptiveConcurrencyLimit(int, int, int, Duration)}.
+ * Requests rejected by the limit fail with a {@link ConcurrencyLimitExceededException} without
+ * opencat-business ever being called.
+ * </p>
+ * <p>
+ * The timings log line of a call breaks its time down into encoding, marshalling, network, unmarshalling
+ * and decoding. The same breakdown is kept as metrics, and can be had per call,
+ * see {@link OpencatBusinessConnectorSettings#withCallTimings(Consumer)}.
+ * </p>
+ * <p>
  * Service home: <a href="https://github.com/DBCDK/opencat-business">https://github.com/DBCDK/opencat-business</a>
  * </p>
  */
 public class OpencatBusinessConnector {
-    JSONBContext jsonbContext = new JSONBContext();
-
     public enum TimingLogLevel {
         TRACE, DEBUG, INFO, WARN, ERROR
     }
 
+    /**
+     * HTTP transport selectable through {@link OpencatBusinessConnectorFactory}
+     */
+    public enum Transport {
+        /** JAX-RS web resources client, HTTP/1.1 */
+        JAX_RS,
+        /** JDK HTTP client preferring HTTP/2 */
+        JDK_HTTP2
+    }
+
+    /**
+     * Endpoint whose results can be cached, see {@link OpencatBusinessConnectorSettings#withResultCache(long, Set)}
+     */
+    public enum CachedEndpoint {
+        SORT_RECORD(PATH_SORT_RECORD),
+        PREPROCESS(PATH_PRE_PROCESS);
+
+        private final String path;
+
+        CachedEndpoint(String path) {
+            this.path = path;
+        }
+    }
+
     private static final Logger LOGGER = LoggerFactory.getLogger(OpencatBusinessConnector.class);
     private static final String PATH_VALIDATE_RECORD = "/api/v1/validateRecord";
     private static final String PATH_CHECK_TEMPLATE = "/api/v1/checkTemplate";
@@ -73,42 +213,195 @@ public class OpencatBusinessConnector {
     private static final String PATH_PRE_PROCESS = "/api/v1/preprocess";
     private static final String PATH_META_COMPASS = "/api/v1/metacompass";
 
+    // Endpoints without side effects
+    private static final Set<String> HEDGED_PATHS = Set.of(PATH_CHECK_TEMPLATE, PATH_CHECK_TEMPLATE_BUILD,
+            PATH_GET_VALIDATE_SCHEMAS, PATH_VALIDATE_RECORD, PATH_SORT_RECORD);
+
+    // Max threads and queued tasks of the executor a connector creates when not given one
+    private static final int OWNED_EXECUTOR_MAX_THREADS = 50;
+    private static final int OWNED_EXECUTOR_QUEUE_CAPACITY = 1000;
+
+    // Max concurrent checkTemplate requests when the template permission index revalidates a cache snapshot
+    private static final int TEMPLATE_REVALIDATION_MAX_IN_FLIGHT = 10;
+
+    private static final Map<String, String> ACCEPT_JSON = Map.of(
+            HttpHeaders.ACCEPT, HttpTransport.APPLICATION_JSON);
+    private static final Map<String, String> ACCEPT_JSON_ENCODED = Map.of(
+            HttpHeaders.ACCEPT, HttpTransport.APPLICATION_JSON,
+            HttpHeaders.CONTENT_ENCODING, GzipResponseInterceptor.GZIP);
+    private static final Map<String, String> ACCEPT_JSON_GZIP = Map.of(
+            HttpHeaders.ACCEPT, HttpTransport.APPLICATION_JSON,
+            HttpHeaders.ACCEPT_ENCODING, GzipResponseInterceptor.GZIP);
+    private static final Map<String, String> ACCEPT_JSON_GZIP_ENCODED = Map.of(
+            HttpHeaders.ACCEPT, HttpTransport.APPLICATION_JSON,
+            HttpHeaders.ACCEPT_ENCODING, GzipResponseInterceptor.GZIP,
+            HttpHeaders.CONTENT_ENCODING, GzipResponseInterceptor.GZIP);
+
+    private static final JsonArrayReader<MessageEntryDTO> MESSAGE_ENTRIES_READER = new JsonArrayReader<>(MessageEntryDTO.class);
+    private static final JsonArrayReader<SchemaDTO> SCHEMAS_READER = new JsonArrayReader<>(SchemaDTO.class);
+
+    // Retries are shared between all connectors in the JVM: at most 20% of the requests
+    // may be retried, with a floor of one retry per second to get through quiet periods
+    private static final RetryBudget RETRY_BUDGET = new RetryBudget(0.2, 1, 60);
+
+    // Exponential backoff (1, 2, 4, 8, 16, 30 seconds) with jitter, so connectors
+    // don't retry in lockstep while opencat-business is being redeployed.
+    // The retry budget is added per call, see budgeted()
     private static final RetryPolicy<Response> RETRY_POLICY = new RetryPolicy<Response>()
             .handle(ProcessingException.class)
             .handleResultIf(response -> response.getStatus() == 404)
-            .withDelay(Duration.ofSeconds(10))
+            .withBackoff(1, 30, ChronoUnit.SECONDS)
+            .withJitter(0.25)
             .withMaxRetries(6);
 
-    private final FailSafeHttpClient failSafeHttpClient;
+    private final RetryPolicy<Response> retryPolicy;
+    // Single attempt transport, and the retrying transport of a connector given a ready-made FailSafeHttpClient
+    private final HttpTransport transport;
+    private final HttpTransport failSafeTransport;
     private final String baseUrl;
     private final LogLevelMethod logger;
+    private final Executor executor;
+    private final ExecutorService ownedExecutorService;
+    private final ConnectorMetrics metrics;
+    private final GuardChain guardChain;
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final RefreshingCache<ValidateSchemasKey, List<SchemaDTO>> validateSchemasCache;
+    private final RecordResultCache resultCache;
+    private final Set<String> resultCachePaths;
+    private final TemplatePermissionIndex templatePermissionIndex;
+    private final Path cacheSnapshotFile;
+    private final Consumer<CallTimings> callTimingsListener;
+    private final long gzipRequestThreshold;
+    private final boolean gzipResponses;
+    private final AtomicBoolean started = new AtomicBoolean();
 
     /**
      * Returns new instance with default retry policy
      *
      * @param httpClient web resources client
-     * @param baseUrl    base URL for opencatbusiness service endpoint
+     * @param baseUrl    base URL for opencatbusiness service endpoint, or comma separated list of base URLs
      */
     public OpencatBusinessConnector(Client httpClient, String baseUrl) {
-        this(FailSafeHttpClient.create(httpClient, RETRY_POLICY), baseUrl, TimingLogLevel.INFO);
+        this(httpClient, baseUrl, TimingLogLevel.INFO);
     }
 
     /**
      * Returns new instance with default retry policy
      *
      * @param httpClient web resources client
-     * @param baseUrl    base URL for opencatbusiness service endpoint
+     * @param baseUrl    base URL for opencatbusiness service endpoint, or comma separated list of base URLs
      * @param level      timings log level
      */
     public OpencatBusinessConnector(Client httpClient, String baseUrl, TimingLogLevel level) {
-        this(FailSafeHttpClient.create(httpClient, RETRY_POLICY), baseUrl, level);
+        this(httpClient, baseUrl, level, null);
+    }
+
+    /**
+     * Returns new instance with default retry policy
+     *
+     * @param httpClient web resources client
+     * @param baseUrl    base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level      timings log level
+     * @param executor   executor running the *Async methods
+     */
+    public OpencatBusinessConnector(Client httpClient, String baseUrl, TimingLogLevel level, Executor executor) {
+        this(httpClient, baseUrl, level, executor, new OpencatBusinessConnectorSettings());
+    }
+
+    /**
+     * Returns new instance with custom retry policy, which is also used for scheduling async retries
+     *
+     * @param httpClient  web resources client
+     * @param retryPolicy retry policy
+     * @param baseUrl     base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level       timings log level
+     * @param executor    executor running the *Async methods
+     */
+    public OpencatBusinessConnector(Client httpClient, RetryPolicy<Response> retryPolicy, String baseUrl,
+                                    TimingLogLevel level, Executor executor) {
+        this(httpClient, baseUrl, level, executor, new OpencatBusinessConnectorSettings().withRetryPolicy(retryPolicy));
+    }
+
+    /**
+     * Returns new instance with the given settings
+     *
+     * @param httpClient web resources client
+     * @param baseUrl    base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level      timings log level
+     * @param executor   executor running the *Async methods
+     * @param settings   retry policy and optional features
+     */
+    public OpencatBusinessConnector(Client httpClient, String baseUrl, TimingLogLevel level, Executor executor,
+                                    OpencatBusinessConnectorSettings settings) {
+        this(httpClient, baseUrl, level, executor, settings, null);
+    }
+
+    /**
+     * Returns new instance with the given settings, whose web resources client keeps its connections in the
+     * given pool, making the utilization of the pool part of the connector metrics
+     *
+     * @param httpClient     web resources client
+     * @param baseUrl        base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level          timings log level
+     * @param executor       executor running the *Async methods
+     * @param settings       retry policy and optional features
+     * @param connectionPool connection pool backing the web resources client
+     */
+    OpencatBusinessConnector(Client httpClient, String baseUrl, TimingLogLevel level, Executor executor,
+                             OpencatBusinessConnectorSettings settings, ConnectionPool connectionPool) {
+        this(new JerseyTransport(InvariantUtil.checkNotNullOrThrow(httpClient, "httpClient")),
+                null, baseUrl, level, executor, settings, connectionPool);
+    }
+
+    /**
+     * Returns new instance with default retry policy, sending requests through the JDK HTTP client.
+     * A client preferring HTTP/2 multiplexes concurrent requests on a single connection per
+     * opencat-business instance, and async requests hold no thread while waiting for the response.
+     *
+     * @param httpClient JDK HTTP client
+     * @param baseUrl    base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level      timings log level
+     * @param executor   executor running the *Async methods
+     */
+    public OpencatBusinessConnector(java.net.http.HttpClient httpClient, String baseUrl, TimingLogLevel level,
+                                    Executor executor) {
+        this(httpClient, baseUrl, level, executor, new OpencatBusinessConnectorSettings());
+    }
+
+    /**
+     * Returns new instance with custom retry policy, sending requests through the JDK HTTP client
+     *
+     * @param httpClient  JDK HTTP client
+     * @param retryPolicy retry policy
+     * @param baseUrl     base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level       timings log level
+     * @param executor    executor running the *Async methods
+     */
+    public OpencatBusinessConnector(java.net.http.HttpClient httpClient, RetryPolicy<Response> retryPolicy,
+                                    String baseUrl, TimingLogLevel level, Executor executor) {
+        this(httpClient, baseUrl, level, executor, new OpencatBusinessConnectorSettings().withRetryPolicy(retryPolicy));
+    }
+
+    /**
+     * Returns new instance with the given settings, sending requests through the JDK HTTP client
+     *
+     * @param httpClient JDK HTTP client
+     * @param baseUrl    base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level      timings log level
+     * @param executor   executor running the *Async methods
+     * @param settings   retry policy and optional features
+     */
+    public OpencatBusinessConnector(java.net.http.HttpClient httpClient, String baseUrl, TimingLogLevel level,
+                                    Executor executor, OpencatBusinessConnectorSettings settings) {
+        this(new JdkHttpTransport(InvariantUtil.checkNotNullOrThrow(httpClient, "httpClient")),
+                baseUrl, level, executor, settings);
     }
 
     /**
      * Returns new instance with custom retry policy
      *
      * @param failSafeHttpClient web resources client with custom retry policy
-     * @param baseUrl            base URL for opencatbusiness service endpoint
+     * @param baseUrl            base URL for opencatbusiness service endpoint, or comma separated list of base URLs
      */
     public OpencatBusinessConnector(FailSafeHttpClient failSafeHttpClient, String baseUrl) {
         this(failSafeHttpClient, baseUrl, TimingLogLevel.INFO);
@@ -118,14 +411,128 @@ public class OpencatBusinessConnector {
      * Returns new instance with custom retry policy
      *
      * @param failSafeHttpClient web resources client with custom retry policy
-     * @param baseUrl            base URL for opencatbusiness service endpoint
+     * @param baseUrl            base URL for opencatbusiness service endpoint, or comma separated list of base URLs
      * @param level              timings log level
      */
     public OpencatBusinessConnector(FailSafeHttpClient failSafeHttpClient, String baseUrl, TimingLogLevel level) {
-        this.failSafeHttpClient = InvariantUtil.checkNotNullOrThrow(
-                failSafeHttpClient, "failSafeHttpClient");
+        this(failSafeHttpClient, baseUrl, level, null);
+    }
+
+    /**
+     * Returns new instance with custom retry policy
+     * <p>
+     * As the retry policy is hidden inside the failSafeHttpClient, async calls made through
+     * this instance retry the same way as blocking calls do, i.e. by sleeping in an executor thread.
+     * For the same reason a circuit breaker and a concurrency limit guard the whole retry cycle rather
+     * than each attempt: the circuit breaker only sees the outcome of the last attempt, and a concurrency
+     * limit permit is held while waiting to retry.
+     * </p>
+     *
+     * @param failSafeHttpClient web resources client with custom retry policy
+     * @param baseUrl            base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level              timings log level
+     * @param executor           executor running the *Async methods. If null the connector creates
+     *                           (and on close shuts down) its own bounded thread pool
+     */
+    public OpencatBusinessConnector(FailSafeHttpClient failSafeHttpClient, String baseUrl, TimingLogLevel level, Executor executor) {
+        this(failSafeHttpClient, baseUrl, level, executor, new OpencatBusinessConnectorSettings());
+    }
+
+    /**
+     * Returns new instance with custom retry policy and the given settings, see
+     * {@link #OpencatBusinessConnector(FailSafeHttpClient, String, TimingLogLevel, Executor)}
+     *
+     * @param failSafeHttpClient web resources client with custom retry policy
+     * @param baseUrl            base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level              timings log level
+     * @param executor           executor running the *Async methods
+     * @param settings           optional features
+     * @throws IllegalArgumentException if the settings have a retry policy
+     */
+    public OpencatBusinessConnector(FailSafeHttpClient failSafeHttpClient, String baseUrl, TimingLogLevel level,
+                                    Executor executor, OpencatBusinessConnectorSettings settings) {
+        this(new JerseyTransport(InvariantUtil.checkNotNullOrThrow(failSafeHttpClient, "failSafeHttpClient").getClient()),
+                new JerseyTransport(failSafeHttpClient), baseUrl, level, executor, settings, null);
+    }
+
+    /**
+     * Returns new instance with the given settings, sending requests through the given transport
+     *
+     * @param transport HTTP transport
+     * @param baseUrl   base URL for opencatbusiness service endpoint, or comma separated list of base URLs
+     * @param level     timings log level
+     * @param executor  executor running the *Async methods
+     * @param settings  retry policy and optional features
+     */
+    OpencatBusinessConnector(HttpTransport transport, String baseUrl, TimingLogLevel level, Executor executor,
+                             OpencatBusinessConnectorSettings settings) {
+        this(transport, null, baseUrl, level, executor, settings, null);
+    }
+
+    private OpencatBusinessConnector(HttpTransport transport, HttpTransport failSafeTransport, String baseUrl,
+                                     TimingLogLevel level, Executor executor,
+                                     OpencatBusinessConnectorSettings settings, ConnectionPool connectionPool) {
+        this.transport = transport;
+        this.failSafeTransport = failSafeTransport;
         this.baseUrl = InvariantUtil.checkNotNullNotEmptyOrThrow(
                 baseUrl, "baseUrl");
+        InvariantUtil.checkNotNullOrThrow(settings, "settings");
+        if (failSafeTransport == null) {
+            this.retryPolicy = settings.getRetryPolicy() == null ? RETRY_POLICY : settings.getRetryPolicy();
+        } else if (settings.getRetryPolicy() == null) {
+            this.retryPolicy = null;
+        } else {
+            throw new IllegalArgumentException("A connector given a FailSafeHttpClient retries by the retry policy of that client");
+        }
+        this.metrics = new ConnectorMetrics(settings.getMetricRegistry(),
+                settings.getMetricsName() == null ? baseUrl : settings.getMetricsName());
+        this.callTimingsListener = settings.getCallTimingsListener();
+        if (settings.getValidateSchemasCacheTtl() == null) {
+            this.validateSchemasCache = null;
+        } else {
+            this.validateSchemasCache = new RefreshingCache<>("getValidateSchemas",
+                    settings.getValidateSchemasCacheTtl(), settings.getValidateSchemasCacheMaxEntries(),
+                    key -> fetchValidateSchemasAsync(key.getTemplateGroup(), key.getAllowedLibraryRules(), null));
+        }
+        if (settings.isResultCacheEnabled()) {
+            final Set<String> paths = new HashSet<>();
+            for (CachedEndpoint endpoint : settings.getResultCacheEndpoints()) {
+                paths.add(endpoint.path);
+            }
+            this.resultCache = new RecordResultCache(settings.getResultCacheMaxBytes());
+            this.resultCachePaths = paths;
+        } else {
+            this.resultCache = null;
+            this.resultCachePaths = Collections.emptySet();
+        }
+        this.templatePermissionIndex = settings.getTemplatePermissionIndexTtl() == null
+                ? null
+                : new TemplatePermissionIndex(settings.getTemplatePermissionIndexTtl());
+        this.cacheSnapshotFile = settings.getCacheSnapshotFile();
+        this.gzipRequestThreshold = settings.getGzipRequestThreshold();
+        if (gzipRequestThreshold < 0) {
+            this.gzipResponses = false;
+        } else {
+            final LongConsumer bytesSavedListener = bytesSaved -> metrics.onCompression("response", bytesSaved);
+            this.gzipResponses = transport.enableGzipDecompression(bytesSavedListener)
+                    && (failSafeTransport == null || failSafeTransport.enableGzipDecompression(bytesSavedListener));
+        }
+        if (executor == null) {
+            final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(OWNED_EXECUTOR_MAX_THREADS,
+                    OWNED_EXECUTOR_MAX_THREADS, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(OWNED_EXECUTOR_QUEUE_CAPACITY), new AsyncThreadFactory(),
+                    new QueueFullPolicy());
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            this.ownedExecutorService = threadPoolExecutor;
+            this.executor = ownedExecutorService;
+        } else {
+            this.ownedExecutorService = null;
+            this.executor = executor;
+        }
+        this.guardChain = new GuardChain(LoadBalancer.of(baseUrl), this.executor, metrics, settings, HEDGED_PATHS);
+        metrics.registerConnectionPool(connectionPool);
+        metrics.registerResultCache(resultCache);
+        metrics.registerTemplatePermissionIndex(templatePermissionIndex);
         switch (level) {
             case TRACE:
                 logger = LOGGER::trace;
@@ -148,8 +555,110 @@ public class OpencatBusinessConnector {
         }
     }
 
+    /**
+     * Starts the connector by loading the cache snapshot given by
+     * {@link OpencatBusinessConnectorSettings#withCacheSnapshot(Path)}, and starting its background work, which is
+     * checking the loaded checkTemplate outcomes again. The checked outcomes are merged into the template
+     * permission index, so outcomes learned in the meantime are kept, and the loaded outcomes are then dropped.
+     * Does nothing if there is no cache snapshot.
+     *
+     * @return this connector
+     * @throws IllegalStateException if the connector has already been started
+     */
+    public OpencatBusinessConnector start() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("The connector has already been started");
+        }
+        final List<String[]> combinations = loadCacheSnapshot();
+        if (!combinations.isEmpty()) {
+            executor.execute(() -> {
+                try {
+                    final TemplatePermissionIndex.Builder builder = new TemplatePermissionIndex.Builder();
+                    fetchTemplatePermissions("revalidateTemplatePermissionIndex", combinations,
+                            TEMPLATE_REVALIDATION_MAX_IN_FLIGHT, builder);
+                    templatePermissionIndex.merge(builder);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    templatePermissionIndex.dropExpired();
+                }
+            });
+        }
+        return this;
+    }
+
+    /**
+     * Loads the cache snapshot file, if any, into the enabled caches
+     *
+     * @return the loaded checkTemplate combinations to check again
+     */
+    private List<String[]> loadCacheSnapshot() {
+        if (cacheSnapshotFile == null) {
+            return Collections.emptyList();
+        }
+        if (!Files.exists(cacheSnapshotFile)) {
+            LOGGER.info("No cache snapshot in {}", cacheSnapshotFile);
+            return Collections.emptyList();
+        }
+        final CacheSnapshot snapshot;
+        try {
+            snapshot = CacheSnapshot.read(cacheSnapshotFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to load cache snapshot from {}", cacheSnapshotFile, e);
+            return Collections.emptyList();
+        }
+        if (validateSchemasCache != null) {
+            snapshot.getValidateSchemas().forEach(validateSchemasCache::putStale);
+        }
+        final List<String[]> combinations = new ArrayList<>();
+        if (templatePermissionIndex != null && !snapshot.getTemplatePermissions().isEmpty()) {
+            final TemplatePermissionIndex.Builder builder = new TemplatePermissionIndex.Builder();
+            for (CacheSnapshot.TemplatePermission templatePermission : snapshot.getTemplatePermissions()) {
+                builder.put(templatePermission.getTemplateName(), templatePermission.getGroupId(),
+                        templatePermission.getLibraryType(), templatePermission.isAllowed());
+                combinations.add(new String[]{templatePermission.getTemplateName(), templatePermission.getGroupId(),
+                        templatePermission.getLibraryType()});
+            }
+            templatePermissionIndex.loadExpired(builder);
+        }
+        LOGGER.info("Loaded cache snapshot from {} with {} getValidateSchemas results and {} checkTemplate outcomes",
+                cacheSnapshotFile, snapshot.getValidateSchemas().size(), snapshot.getTemplatePermissions().size());
+        return combinations;
+    }
+
+    /**
+     * Writes the contents of the getValidateSchemas cache and the template permission index to the snapshot
+     * file given by {@link OpencatBusinessConnectorSettings#withCacheSnapshot(Path)}, replacing the file atomically
+     *
+     * @throws IOException           if the file can not be written
+     * @throws IllegalStateException if the connector has no snapshot file, or has not been started, in which
+     *                               case the snapshot has not been loaded and would be lost
+     */
+    public void writeCacheSnapshot() throws IOException {
+        if (cacheSnapshotFile == null) {
+            throw new IllegalStateException("The connector has no cache snapshot file");
+        }
+        if (!started.get()) {
+            throw new IllegalStateException("The connector has not been started");
+        }
+        new CacheSnapshot(
+                validateSchemasCache == null ? Collections.emptyMap() : validateSchemasCache.asMap(),
+                templatePermissionIndex == null ? Collections.emptyList() : templatePermissionIndex.getPermissions())
+                .write(cacheSnapshotFile);
+    }
+
     public void close() {
-        failSafeHttpClient.getClient().close();
+        if (cacheSnapshotFile != null && started.get()) {
+            try {
+                writeCacheSnapshot();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write cache snapshot to {}", cacheSnapshotFile, e);
+            }
+        }
+        if (ownedExecutorService != null) {
+            ownedExecutorService.shutdown();
+        }
+        transport.close();
     }
 
     public List<MessageEntryDTO> validateRecord(String schemaName, MarcRecord marcRecord) throws OpencatBusinessConnectorException, JSONBException {
@@ -157,24 +666,44 @@ public class OpencatBusinessConnector {
     }
 
     public List<MessageEntryDTO> validateRecord(String schemaName, MarcRecord marcRecord, String trackingId) throws OpencatBusinessConnectorException, JSONBException {
-        final Stopwatch stopwatch = new Stopwatch();
+        return validateRecord(schemaName, EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public List<MessageEntryDTO> validateRecord(String schemaName, EncodedMarcRecord encodedRecord) throws OpencatBusinessConnectorException, JSONBException {
+        return validateRecord(schemaName, encodedRecord, null);
+    }
+
+    public List<MessageEntryDTO> validateRecord(String schemaName, EncodedMarcRecord encodedRecord, String trackingId) throws OpencatBusinessConnectorException, JSONBException {
+        final CallTimings timings = new CallTimings("validateRecord", PATH_VALIDATE_RECORD);
         try {
-            final ValidateRecordRequestDTO requestDTO = new ValidateRecordRequestDTO();
-            requestDTO.setTemplateName(schemaName);
-            requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = validateRecordRequest(schemaName, encodedRecord, trackingId);
 
-            final InputStream responseStream = sendPostRequestWithReturn(PATH_VALIDATE_RECORD, requestDTO, InputStream.class);
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_VALIDATE_RECORD, requestBody, InputStream.class, timings);
 
-            return Arrays.asList(jsonbContext.unmarshall(StringUtil.asString(responseStream), MessageEntryDTO[].class));
+            return toMessageEntries(responseStream, timings);
         } finally {
-            logger.log("validateRecord took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
+    public CompletableFuture<List<MessageEntryDTO>> validateRecordAsync(String schemaName, MarcRecord marcRecord) {
+        return validateRecordAsync(schemaName, marcRecord, null);
+    }
+
+    public CompletableFuture<List<MessageEntryDTO>> validateRecordAsync(String schemaName, MarcRecord marcRecord, String trackingId) {
+        return validateRecordAsync(schemaName, EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public CompletableFuture<List<MessageEntryDTO>> validateRecordAsync(String schemaName, EncodedMarcRecord encodedRecord) {
+        return validateRecordAsync(schemaName, encodedRecord, null);
+    }
+
+    public CompletableFuture<List<MessageEntryDTO>> validateRecordAsync(String schemaName, EncodedMarcRecord encodedRecord, String trackingId) {
+        return sendPostRequestAsync("validateRecord", PATH_VALIDATE_RECORD,
+                () -> validateRecordRequest(schemaName, encodedRecord, trackingId),
+                (response, timings) -> toMessageEntries(readResponseEntity(response, InputStream.class, timings), timings));
+    }
+
     public boolean checkTemplate(String name,
                                  String groupId,
                                  String libraryType) throws OpencatBusinessConnectorException, JSONBException {
@@ -185,21 +714,102 @@ public class OpencatBusinessConnector {
                                  String groupId,
                                  String libraryType,
                                  String trackingId) throws OpencatBusinessConnectorException, JSONBException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final Boolean indexed = getIndexedTemplatePermission(name, groupId, libraryType);
+        if (indexed != null) {
+            return indexed;
+        }
+        final CallTimings timings = new CallTimings("checkTemplate", PATH_CHECK_TEMPLATE);
         try {
-            final CheckTemplateRequestDTO requestDTO = new CheckTemplateRequestDTO();
-            requestDTO.setName(name);
-            requestDTO.setGroupId(groupId);
-            requestDTO.setLibraryType(libraryType);
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = checkTemplateRequest(name, groupId, libraryType, trackingId);
 
-            return sendPostRequestWithReturn(PATH_CHECK_TEMPLATE, requestDTO, Boolean.class);
+            final Boolean allowed = await(sendCoalescedPostRequest(PATH_CHECK_TEMPLATE, requestBody,
+                    () -> sendPostRequestWithReturn(PATH_CHECK_TEMPLATE, requestBody, Boolean.class, timings)));
+            return indexTemplatePermission(name, groupId, libraryType, allowed);
         } finally {
-            logger.log("checkTemplate took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
+        }
+    }
+
+    public CompletableFuture<Boolean> checkTemplateAsync(String name,
+                                                         String groupId,
+                                                         String libraryType) {
+        return checkTemplateAsync(name, groupId, libraryType, null);
+    }
+
+    public CompletableFuture<Boolean> checkTemplateAsync(String name,
+                                                         String groupId,
+                                                         String libraryType,
+                                                         String trackingId) {
+        final Boolean indexed = getIndexedTemplatePermission(name, groupId, libraryType);
+        if (indexed != null) {
+            return CompletableFuture.completedFuture(indexed);
+        }
+        return fetchCheckTemplateAsync(name, groupId, libraryType, trackingId)
+                .thenApply(allowed -> indexTemplatePermission(name, groupId, libraryType, allowed));
+    }
+
+    private CompletableFuture<Boolean> fetchCheckTemplateAsync(String name,
+                                                               String groupId,
+                                                               String libraryType,
+                                                               String trackingId) {
+        return sendCoalescedPostRequestAsync("checkTemplate", PATH_CHECK_TEMPLATE,
+                () -> checkTemplateRequest(name, groupId, libraryType, trackingId),
+                (response, timings) -> readResponseEntity(response, Boolean.class, timings));
+    }
+
+    /**
+     * Loads the template permission index with the checkTemplate outcomes of all combinations of the given
+     * template names, agencies and library types, replacing its contents and restarting its ttl. Combinations
+     * whose checkTemplate call fails are left out, so they are fetched when asked for.
+     *
+     * @param templateNames template names
+     * @param groupIds      agency IDs
+     * @param libraryTypes  library types
+     * @param maxInFlight   max number of concurrent requests
+     * @return checkTemplate outcome per combination, in the order of the library types within the agencies
+     * within the template names
+     * @throws InterruptedException  if interrupted while waiting for a request slot
+     * @throws IllegalStateException if the connector has no template permission index
+     */
+    public BatchResult<Boolean> warmTemplatePermissionIndex(Collection<String> templateNames,
+                                                            Collection<String> groupIds,
+                                                            Collection<String> libraryTypes,
+                                                            int maxInFlight) throws InterruptedException {
+        if (templatePermissionIndex == null) {
+            throw new IllegalStateException("The connector has no template permission index");
+        }
+        final List<String[]> combinations = new ArrayList<>();
+        for (String name : templateNames) {
+            for (String groupId : groupIds) {
+                for (String libraryType : libraryTypes) {
+                    combinations.add(new String[]{name, groupId, libraryType});
+                }
+            }
+        }
+        final TemplatePermissionIndex.Builder builder = new TemplatePermissionIndex.Builder();
+        final BatchResult<Boolean> batchResult = fetchTemplatePermissions("warmTemplatePermissionIndex",
+                combinations, maxInFlight, builder);
+        templatePermissionIndex.replace(builder);
+        return batchResult;
+    }
+
+    /**
+     * Adds the checkTemplate outcomes of the given combinations to the given builder, leaving out failing calls
+     */
+    private BatchResult<Boolean> fetchTemplatePermissions(String method, List<String[]> combinations,
+                                                          int maxInFlight, TemplatePermissionIndex.Builder builder)
+            throws InterruptedException {
+        final BatchResult<Boolean> batchResult = runBatch(method, combinations.iterator(), maxInFlight,
+                combination -> fetchCheckTemplateAsync(combination[0], combination[1], combination[2], null));
+
+        for (int i = 0; i < combinations.size(); i++) {
+            final BatchResult.Item<Boolean> item = batchResult.getItems().get(i);
+            if (item.isSuccess() && item.getValue() != null) {
+                final String[] combination = combinations.get(i);
+                builder.put(combination[0], combination[1], combination[2], item.getValue());
+            }
         }
+        return batchResult;
     }
 
     public boolean checkTemplateBuild(String name) throws OpencatBusinessConnectorException, JSONBException {
@@ -207,23 +817,28 @@ public class OpencatBusinessConnector {
     }
 
     public boolean checkTemplateBuild(String name, String trackingId) throws OpencatBusinessConnectorException, JSONBException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final CallTimings timings = new CallTimings("checkTemplateBuild", PATH_CHECK_TEMPLATE_BUILD);
         try {
-            final CheckTemplateBuildRequestDTO requestDTO = new CheckTemplateBuildRequestDTO();
-            requestDTO.setName(name);
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
-
-            final CheckTemplateBuildResponseDTO responseDTO = sendPostRequestWithReturn(PATH_CHECK_TEMPLATE_BUILD, requestDTO, CheckTemplateBuildResponseDTO.class);
+            final JsonRequestBody requestBody = checkTemplateBuildRequest(name, trackingId);
 
-            return responseDTO.isResult();
+            return await(sendCoalescedPostRequest(PATH_CHECK_TEMPLATE_BUILD, requestBody,
+                    () -> sendPostRequestWithReturn(PATH_CHECK_TEMPLATE_BUILD, requestBody, CheckTemplateBuildResponseDTO.class, timings)
+                            .isResult()));
         } finally {
-            logger.log("checkTemplateBuild took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
+    public CompletableFuture<Boolean> checkTemplateBuildAsync(String name) {
+        return checkTemplateBuildAsync(name, null);
+    }
+
+    public CompletableFuture<Boolean> checkTemplateBuildAsync(String name, String trackingId) {
+        return sendCoalescedPostRequestAsync("checkTemplateBuild", PATH_CHECK_TEMPLATE_BUILD,
+                () -> checkTemplateBuildRequest(name, trackingId),
+                (response, timings) -> readResponseEntity(response, CheckTemplateBuildResponseDTO.class, timings).isResult());
+    }
+
     public DoubleRecordFrontendStatusDTO checkDoubleRecordFrontend(MarcRecord marcRecord)
             throws OpencatBusinessConnectorException, JSONBException {
         return checkDoubleRecordFrontend(marcRecord, null);
@@ -231,21 +846,44 @@ public class OpencatBusinessConnector {
 
     public DoubleRecordFrontendStatusDTO checkDoubleRecordFrontend(MarcRecord marcRecord, String trackingId)
             throws OpencatBusinessConnectorException, JSONBException {
-        final Stopwatch stopwatch = new Stopwatch();
+        return checkDoubleRecordFrontend(EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public DoubleRecordFrontendStatusDTO checkDoubleRecordFrontend(EncodedMarcRecord encodedRecord)
+            throws OpencatBusinessConnectorException, JSONBException {
+        return checkDoubleRecordFrontend(encodedRecord, null);
+    }
+
+    public DoubleRecordFrontendStatusDTO checkDoubleRecordFrontend(EncodedMarcRecord encodedRecord, String trackingId)
+            throws OpencatBusinessConnectorException, JSONBException {
+        final CallTimings timings = new CallTimings("checkDoubleRecordFrontend", PATH_CHECK_DOUBLE_RECORD_FRONTEND);
         try {
-            final RecordRequestDTO requestDTO = new RecordRequestDTO();
-            requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = recordRequest(encodedRecord, trackingId);
 
-            return sendPostRequestWithReturn(PATH_CHECK_DOUBLE_RECORD_FRONTEND, requestDTO, DoubleRecordFrontendStatusDTO.class);
+            return sendPostRequestWithReturn(PATH_CHECK_DOUBLE_RECORD_FRONTEND, requestBody, DoubleRecordFrontendStatusDTO.class, timings);
         } finally {
-            logger.log("checkDoubleRecordFrontend took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
+    public CompletableFuture<DoubleRecordFrontendStatusDTO> checkDoubleRecordFrontendAsync(MarcRecord marcRecord) {
+        return checkDoubleRecordFrontendAsync(marcRecord, null);
+    }
+
+    public CompletableFuture<DoubleRecordFrontendStatusDTO> checkDoubleRecordFrontendAsync(MarcRecord marcRecord, String trackingId) {
+        return checkDoubleRecordFrontendAsync(EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public CompletableFuture<DoubleRecordFrontendStatusDTO> checkDoubleRecordFrontendAsync(EncodedMarcRecord encodedRecord) {
+        return checkDoubleRecordFrontendAsync(encodedRecord, null);
+    }
+
+    public CompletableFuture<DoubleRecordFrontendStatusDTO> checkDoubleRecordFrontendAsync(EncodedMarcRecord encodedRecord, String trackingId) {
+        return sendPostRequestAsync("checkDoubleRecordFrontend", PATH_CHECK_DOUBLE_RECORD_FRONTEND,
+                () -> recordRequest(encodedRecord, trackingId),
+                (response, timings) -> readResponseEntity(response, DoubleRecordFrontendStatusDTO.class, timings));
+    }
+
     public void checkDoubleRecord(MarcRecord marcRecord)
             throws OpencatBusinessConnectorException, JSONBException {
         checkDoubleRecord(marcRecord, null);
@@ -253,21 +891,29 @@ public class OpencatBusinessConnector {
 
     public void checkDoubleRecord(MarcRecord marcRecord, String trackingId)
             throws OpencatBusinessConnectorException, JSONBException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final CallTimings timings = new CallTimings("checkDoubleRecord", PATH_CHECK_DOUBLE_RECORD);
         try {
-            final RecordRequestDTO requestDTO = new RecordRequestDTO();
-            requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = recordRequest(marcRecord, trackingId);
 
-            sendPostRequestWithoutReturn(PATH_CHECK_DOUBLE_RECORD, requestDTO);
+            sendPostRequestWithoutReturn(PATH_CHECK_DOUBLE_RECORD, requestBody, timings);
         } finally {
-            logger.log("checkDoubleRecordFrontend took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
+    public CompletableFuture<Void> checkDoubleRecordAsync(MarcRecord marcRecord) {
+        return checkDoubleRecordAsync(marcRecord, null);
+    }
+
+    public CompletableFuture<Void> checkDoubleRecordAsync(MarcRecord marcRecord, String trackingId) {
+        return sendPostRequestAsync("checkDoubleRecord", PATH_CHECK_DOUBLE_RECORD,
+                () -> recordRequest(marcRecord, trackingId),
+                (response, timings) -> {
+                    response.close();
+                    return null;
+                });
+    }
+
     public MarcRecord doRecategorizationThings(MarcRecord currentRecord,
                                                MarcRecord updateRecord,
                                                MarcRecord newRecord)
@@ -280,25 +926,33 @@ public class OpencatBusinessConnector {
                                                MarcRecord newRecord,
                                                String trackingId)
             throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final CallTimings timings = new CallTimings("doRecategorizationThings", PATH_DO_RECATEGORIZATION_THINGS);
         try {
-            final DoRecategorizationThingsRequestDTO requestDTO = new DoRecategorizationThingsRequestDTO();
-            requestDTO.setCurrentRecord(marcRecordToDTOString(currentRecord));
-            requestDTO.setUpdateRecord(marcRecordToDTOString(updateRecord));
-            requestDTO.setNewRecord(marcRecordToDTOString(newRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = doRecategorizationThingsRequest(currentRecord, updateRecord, newRecord, trackingId);
 
-            final RecordResponseDTO recordResponseDTO = sendPostRequestWithReturn(PATH_DO_RECATEGORIZATION_THINGS, requestDTO, RecordResponseDTO.class);
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_DO_RECATEGORIZATION_THINGS, requestBody, InputStream.class, timings);
 
-            return RecordContentTransformer.decodeRecord(recordResponseDTO.getRecord().getBytes());
+            return toMarcRecord(responseStream, timings);
         } finally {
-            logger.log("doRecategorizationThings took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
+    public CompletableFuture<MarcRecord> doRecategorizationThingsAsync(MarcRecord currentRecord,
+                                                                       MarcRecord updateRecord,
+                                                                       MarcRecord newRecord) {
+        return doRecategorizationThingsAsync(currentRecord, updateRecord, newRecord, null);
+    }
+
+    public CompletableFuture<MarcRecord> doRecategorizationThingsAsync(MarcRecord currentRecord,
+                                                                       MarcRecord updateRecord,
+                                                                       MarcRecord newRecord,
+                                                                       String trackingId) {
+        return sendPostRequestAsync("doRecategorizationThings", PATH_DO_RECATEGORIZATION_THINGS,
+                () -> doRecategorizationThingsRequest(currentRecord, updateRecord, newRecord, trackingId),
+                (response, timings) -> toMarcRecord(readResponseEntity(response, InputStream.class, timings), timings));
+    }
+
     public DataField recategorizationNoteFieldFactory(MarcRecord marcRecord)
             throws OpencatBusinessConnectorException, JSONBException {
         return recategorizationNoteFieldFactory(marcRecord, null);
@@ -306,92 +960,205 @@ public class OpencatBusinessConnector {
 
     public DataField recategorizationNoteFieldFactory(MarcRecord marcRecord, String trackingId)
             throws OpencatBusinessConnectorException, JSONBException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final CallTimings timings = new CallTimings("recategorizationNoteFieldFactory", PATH_RECATEGORIZATION_NOTE_FIELD_FACTORY);
         try {
-            final RecordRequestDTO requestDTO = new RecordRequestDTO();
-            requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = recordRequest(marcRecord, trackingId);
 
-            return sendPostRequestWithReturn(PATH_RECATEGORIZATION_NOTE_FIELD_FACTORY, requestDTO, WrapperDataField.class).toDataField();
+            return sendPostRequestWithReturn(PATH_RECATEGORIZATION_NOTE_FIELD_FACTORY, requestBody, WrapperDataField.class, timings).toDataField();
         } finally {
-            logger.log("recategorizationNoteFieldFactory took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
-    public MarcRecord buildRecord(String templateName, MarcRecord marcRecord, String trackingId)
-            throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
-        final Stopwatch stopwatch = new Stopwatch();
-        try {
-            final BuildRecordRequestDTO requestDTO = new BuildRecordRequestDTO();
-            requestDTO.setTemplateName(templateName);
-            if (marcRecord != null) {
-                requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            }
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
-
-            final RecordResponseDTO recordResponseDTO = sendPostRequestWithReturn(PATH_BUILD_RECORD, requestDTO, RecordResponseDTO.class);
-
-            return RecordContentTransformer.decodeRecord(recordResponseDTO.getRecord().getBytes());
-        } finally {
-            logger.log("buildRecord took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
-        }
+    public CompletableFuture<DataField> recategorizationNoteFieldFactoryAsync(MarcRecord marcRecord) {
+        return recategorizationNoteFieldFactoryAsync(marcRecord, null);
     }
 
-    public MarcRecord sortRecord(String templateProvider, MarcRecord marcRecord)
-            throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
-        return sortRecord(templateProvider, marcRecord, null);
+    public CompletableFuture<DataField> recategorizationNoteFieldFactoryAsync(MarcRecord marcRecord, String trackingId) {
+        return sendPostRequestAsync("recategorizationNoteFieldFactory", PATH_RECATEGORIZATION_NOTE_FIELD_FACTORY,
+                () -> recordRequest(marcRecord, trackingId),
+                (response, timings) -> readResponseEntity(response, WrapperDataField.class, timings).toDataField());
     }
 
-    public MarcRecord sortRecord(String templateProvider, MarcRecord marcRecord, String trackingId)
+    public MarcRecord buildRecord(String templateName, MarcRecord marcRecord, String trackingId)
             throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final CallTimings timings = new CallTimings("buildRecord", PATH_BUILD_RECORD);
         try {
-            final SortRecordRequestDTO requestDTO = new SortRecordRequestDTO();
-            requestDTO.setTemplateProvider(templateProvider);
-            requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = buildRecordRequest(templateName, marcRecord, trackingId);
 
-            final RecordResponseDTO recordResponseDTO = sendPostRequestWithReturn(PATH_SORT_RECORD, requestDTO, RecordResponseDTO.class);
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_BUILD_RECORD, requestBody, InputStream.class, timings);
 
-            return RecordContentTransformer.decodeRecord(recordResponseDTO.getRecord().getBytes());
+            return toMarcRecord(responseStream, timings);
         } finally {
-            logger.log("sortRecord took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
-    public List<SchemaDTO> getValidateSchemas(String templateGroup, Set<String> allowedLibraryRules)
-            throws OpencatBusinessConnectorException, JSONBException {
-        return getValidateSchemas(templateGroup, allowedLibraryRules, null);
+    public CompletableFuture<MarcRecord> buildRecordAsync(String templateName, MarcRecord marcRecord, String trackingId) {
+        return sendPostRequestAsync("buildRecord", PATH_BUILD_RECORD,
+                () -> buildRecordRequest(templateName, marcRecord, trackingId),
+                (response, timings) -> toMarcRecord(readResponseEntity(response, InputStream.class, timings), timings));
     }
 
-    public List<SchemaDTO> getValidateSchemas(String templateGroup, Set<String> allowedLibraryRules, String trackingId)
+    /**
+     * As {@link #buildRecord(String, MarcRecord, String)}, but the resulting record is not decoded
+     */
+    public EncodedMarcRecord buildRecordEncoded(String templateName, MarcRecord marcRecord, String trackingId)
             throws OpencatBusinessConnectorException, JSONBException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final CallTimings timings = new CallTimings("buildRecord", PATH_BUILD_RECORD);
         try {
-            final GetValidateSchemasRequestDTO requestDTO = new GetValidateSchemasRequestDTO();
-            requestDTO.setTemplateGroup(templateGroup);
-            requestDTO.setAllowedLibraryRules(allowedLibraryRules);
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
-            final InputStream responseStream = sendPostRequestWithReturn(PATH_GET_VALIDATE_SCHEMAS, requestDTO, InputStream.class);
+            final JsonRequestBody requestBody = buildRecordRequest(templateName, marcRecord, trackingId);
+
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_BUILD_RECORD, requestBody, InputStream.class, timings);
 
-            return Arrays.asList(jsonbContext.unmarshall(StringUtil.asString(responseStream), SchemaDTO[].class));
+            return readEncoded(responseStream, timings);
         } finally {
-            logger.log("getValidateSchemas took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
         }
     }
 
+    public CompletableFuture<EncodedMarcRecord> buildRecordEncodedAsync(String templateName, MarcRecord marcRecord, String trackingId) {
+        return sendPostRequestAsync("buildRecord", PATH_BUILD_RECORD,
+                () -> buildRecordRequest(templateName, marcRecord, trackingId),
+                (response, timings) -> readEncoded(readResponseEntity(response, InputStream.class, timings), timings));
+    }
+
+    public MarcRecord sortRecord(String templateProvider, MarcRecord marcRecord)
+            throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
+        return sortRecord(templateProvider, marcRecord, null);
+    }
+
+    public MarcRecord sortRecord(String templateProvider, MarcRecord marcRecord, String trackingId)
+            throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
+        return sortRecord(templateProvider, EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public MarcRecord sortRecord(String templateProvider, EncodedMarcRecord encodedRecord)
+            throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
+        return sortRecord(templateProvider, encodedRecord, null);
+    }
+
+    public MarcRecord sortRecord(String templateProvider, EncodedMarcRecord encodedRecord, String trackingId)
+            throws OpencatBusinessConnectorException, JSONBException, MarcReaderException {
+        if (isResultCached(PATH_SORT_RECORD, encodedRecord)) {
+            return decode(sortRecordEncoded(templateProvider, encodedRecord, trackingId));
+        }
+        final CallTimings timings = new CallTimings("sortRecord", PATH_SORT_RECORD);
+        try {
+            final JsonRequestBody requestBody = sortRecordRequest(templateProvider, encodedRecord, trackingId);
+
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_SORT_RECORD, requestBody, InputStream.class, timings);
+
+            return toMarcRecord(responseStream, timings);
+        } finally {
+            onCallCompleted(timings);
+        }
+    }
+
+    public CompletableFuture<MarcRecord> sortRecordAsync(String templateProvider, MarcRecord marcRecord) {
+        return sortRecordAsync(templateProvider, marcRecord, null);
+    }
+
+    public CompletableFuture<MarcRecord> sortRecordAsync(String templateProvider, MarcRecord marcRecord, String trackingId) {
+        return sortRecordAsync(templateProvider, EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public CompletableFuture<MarcRecord> sortRecordAsync(String templateProvider, EncodedMarcRecord encodedRecord) {
+        return sortRecordAsync(templateProvider, encodedRecord, null);
+    }
+
+    public CompletableFuture<MarcRecord> sortRecordAsync(String templateProvider, EncodedMarcRecord encodedRecord, String trackingId) {
+        if (isResultCached(PATH_SORT_RECORD, encodedRecord)) {
+            return decodeAsync(sortRecordEncodedAsync(templateProvider, encodedRecord, trackingId));
+        }
+        return sendPostRequestAsync("sortRecord", PATH_SORT_RECORD,
+                () -> sortRecordRequest(templateProvider, encodedRecord, trackingId),
+                (response, timings) -> toMarcRecord(readResponseEntity(response, InputStream.class, timings), timings));
+    }
+
+    /**
+     * As {@link #sortRecord(String, EncodedMarcRecord)}, but the sorted record is not decoded
+     */
+    public EncodedMarcRecord sortRecordEncoded(String templateProvider, EncodedMarcRecord encodedRecord)
+            throws OpencatBusinessConnectorException, JSONBException {
+        return sortRecordEncoded(templateProvider, encodedRecord, null);
+    }
+
+    public EncodedMarcRecord sortRecordEncoded(String templateProvider, EncodedMarcRecord encodedRecord, String trackingId)
+            throws OpencatBusinessConnectorException, JSONBException {
+        final CallTimings timings = new CallTimings("sortRecord", PATH_SORT_RECORD);
+        try {
+            final EncodedMarcRecord cachedResult = getCachedResult(PATH_SORT_RECORD, templateProvider, encodedRecord);
+            if (cachedResult != null) {
+                return cachedResult;
+            }
+            final JsonRequestBody requestBody = sortRecordRequest(templateProvider, encodedRecord, trackingId);
+
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_SORT_RECORD, requestBody, InputStream.class, timings);
+
+            return cacheResult(PATH_SORT_RECORD, templateProvider, encodedRecord,
+                    readEncoded(responseStream, timings));
+        } finally {
+            onCallCompleted(timings);
+        }
+    }
+
+    public CompletableFuture<EncodedMarcRecord> sortRecordEncodedAsync(String templateProvider, EncodedMarcRecord encodedRecord) {
+        return sortRecordEncodedAsync(templateProvider, encodedRecord, null);
+    }
+
+    public CompletableFuture<EncodedMarcRecord> sortRecordEncodedAsync(String templateProvider, EncodedMarcRecord encodedRecord, String trackingId) {
+        final EncodedMarcRecord cachedResult = getCachedResult(PATH_SORT_RECORD, templateProvider, encodedRecord);
+        if (cachedResult != null) {
+            return CompletableFuture.completedFuture(cachedResult);
+        }
+        return sendPostRequestAsync("sortRecord", PATH_SORT_RECORD,
+                () -> sortRecordRequest(templateProvider, encodedRecord, trackingId),
+                (response, timings) -> cacheResult(PATH_SORT_RECORD, templateProvider, encodedRecord,
+                        readEncoded(readResponseEntity(response, InputStream.class, timings), timings)));
+    }
+
+    public List<SchemaDTO> getValidateSchemas(String templateGroup, Set<String> allowedLibraryRules)
+            throws OpencatBusinessConnectorException, JSONBException {
+        return getValidateSchemas(templateGroup, allowedLibraryRules, null);
+    }
+
+    public List<SchemaDTO> getValidateSchemas(String templateGroup, Set<String> allowedLibraryRules, String trackingId)
+            throws OpencatBusinessConnectorException, JSONBException {
+        final CallTimings timings = new CallTimings("getValidateSchemas", PATH_GET_VALIDATE_SCHEMAS);
+        try {
+            if (validateSchemasCache != null) {
+                return copySchemas(await(validateSchemasCache.get(new ValidateSchemasKey(templateGroup, allowedLibraryRules))));
+            }
+            final JsonRequestBody requestBody = getValidateSchemasRequest(templateGroup, allowedLibraryRules, trackingId);
+
+            return copySchemas(await(sendCoalescedPostRequest(PATH_GET_VALIDATE_SCHEMAS, requestBody,
+                    () -> Collections.unmodifiableList(toSchemas(
+                            sendPostRequestWithReturn(PATH_GET_VALIDATE_SCHEMAS, requestBody, InputStream.class, timings), timings)))));
+        } finally {
+            onCallCompleted(timings);
+        }
+    }
+
+    public CompletableFuture<List<SchemaDTO>> getValidateSchemasAsync(String templateGroup, Set<String> allowedLibraryRules) {
+        return getValidateSchemasAsync(templateGroup, allowedLibraryRules, null);
+    }
+
+    public CompletableFuture<List<SchemaDTO>> getValidateSchemasAsync(String templateGroup, Set<String> allowedLibraryRules, String trackingId) {
+        if (validateSchemasCache != null) {
+            return validateSchemasCache.get(new ValidateSchemasKey(templateGroup, allowedLibraryRules))
+                    .thenApply(OpencatBusinessConnector::copySchemas);
+        }
+        return fetchValidateSchemasAsync(templateGroup, allowedLibraryRules, trackingId)
+                .thenApply(OpencatBusinessConnector::copySchemas);
+    }
+
+    private CompletableFuture<List<SchemaDTO>> fetchValidateSchemasAsync(String templateGroup, Set<String> allowedLibraryRules, String trackingId) {
+        return sendCoalescedPostRequestAsync("getValidateSchemas", PATH_GET_VALIDATE_SCHEMAS,
+                () -> getValidateSchemasRequest(templateGroup, allowedLibraryRules, trackingId),
+                (response, timings) -> Collections.unmodifiableList(toSchemas(readResponseEntity(response, InputStream.class, timings), timings)));
+    }
+
     public MarcRecord preprocess(MarcRecord marcRecord)
             throws JSONBException, OpencatBusinessConnectorException, MarcReaderException {
         return preprocess(marcRecord, null);
@@ -399,21 +1166,92 @@ public class OpencatBusinessConnector {
 
     public MarcRecord preprocess(MarcRecord marcRecord, String trackingId)
             throws JSONBException, OpencatBusinessConnectorException, MarcReaderException {
-        final Stopwatch stopwatch = new Stopwatch();
+        return preprocess(EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public MarcRecord preprocess(EncodedMarcRecord encodedRecord)
+            throws JSONBException, OpencatBusinessConnectorException, MarcReaderException {
+        return preprocess(encodedRecord, null);
+    }
+
+    public MarcRecord preprocess(EncodedMarcRecord encodedRecord, String trackingId)
+            throws JSONBException, OpencatBusinessConnectorException, MarcReaderException {
+        if (isResultCached(PATH_PRE_PROCESS, encodedRecord)) {
+            return decode(preprocessEncoded(encodedRecord, trackingId));
+        }
+        final CallTimings timings = new CallTimings("preprocess", PATH_PRE_PROCESS);
         try {
-            final RecordRequestDTO requestDTO = new RecordRequestDTO();
-            requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
+            final JsonRequestBody requestBody = recordRequest(encodedRecord, trackingId);
+
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_PRE_PROCESS, requestBody, InputStream.class, timings);
+
+            return toMarcRecord(responseStream, timings);
+        } finally {
+            onCallCompleted(timings);
+        }
+    }
+
+    public CompletableFuture<MarcRecord> preprocessAsync(MarcRecord marcRecord) {
+        return preprocessAsync(marcRecord, null);
+    }
+
+    public CompletableFuture<MarcRecord> preprocessAsync(MarcRecord marcRecord, String trackingId) {
+        return preprocessAsync(EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    public CompletableFuture<MarcRecord> preprocessAsync(EncodedMarcRecord encodedRecord) {
+        return preprocessAsync(encodedRecord, null);
+    }
+
+    public CompletableFuture<MarcRecord> preprocessAsync(EncodedMarcRecord encodedRecord, String trackingId) {
+        if (isResultCached(PATH_PRE_PROCESS, encodedRecord)) {
+            return decodeAsync(preprocessEncodedAsync(encodedRecord, trackingId));
+        }
+        return sendPostRequestAsync("preprocess", PATH_PRE_PROCESS,
+                () -> recordRequest(encodedRecord, trackingId),
+                (response, timings) -> toMarcRecord(readResponseEntity(response, InputStream.class, timings), timings));
+    }
+
+    /**
+     * As {@link #preprocess(EncodedMarcRecord)}, but the preprocessed record is not decoded
+     */
+    public EncodedMarcRecord preprocessEncoded(EncodedMarcRecord encodedRecord)
+            throws JSONBException, OpencatBusinessConnectorException {
+        return preprocessEncoded(encodedRecord, null);
+    }
+
+    public EncodedMarcRecord preprocessEncoded(EncodedMarcRecord encodedRecord, String trackingId)
+            throws JSONBException, OpencatBusinessConnectorException {
+        final CallTimings timings = new CallTimings("preprocess", PATH_PRE_PROCESS);
+        try {
+            final EncodedMarcRecord cachedResult = getCachedResult(PATH_PRE_PROCESS, null, encodedRecord);
+            if (cachedResult != null) {
+                return cachedResult;
             }
+            final JsonRequestBody requestBody = recordRequest(encodedRecord, trackingId);
 
-            final RecordResponseDTO recordResponseDTO = sendPostRequestWithReturn(PATH_PRE_PROCESS, requestDTO, RecordResponseDTO.class);
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_PRE_PROCESS, requestBody, InputStream.class, timings);
 
-            return RecordContentTransformer.decodeRecord(recordResponseDTO.getRecord().getBytes());
+            return cacheResult(PATH_PRE_PROCESS, null, encodedRecord,
+                    readEncoded(responseStream, timings));
         } finally {
-            logger.log("preprocess took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            onCallCompleted(timings);
+        }
+    }
+
+    public CompletableFuture<EncodedMarcRecord> preprocessEncodedAsync(EncodedMarcRecord encodedRecord) {
+        return preprocessEncodedAsync(encodedRecord, null);
+    }
+
+    public CompletableFuture<EncodedMarcRecord> preprocessEncodedAsync(EncodedMarcRecord encodedRecord, String trackingId) {
+        final EncodedMarcRecord cachedResult = getCachedResult(PATH_PRE_PROCESS, null, encodedRecord);
+        if (cachedResult != null) {
+            return CompletableFuture.completedFuture(cachedResult);
         }
+        return sendPostRequestAsync("preprocess", PATH_PRE_PROCESS,
+                () -> recordRequest(encodedRecord, trackingId),
+                (response, timings) -> cacheResult(PATH_PRE_PROCESS, null, encodedRecord,
+                        readEncoded(readResponseEntity(response, InputStream.class, timings), timings)));
     }
 
     public MarcRecord metacompass(MarcRecord marcRecord)
@@ -423,51 +1261,560 @@ public class OpencatBusinessConnector {
 
     public MarcRecord metacompass(MarcRecord marcRecord, String trackingId)
             throws JSONBException, OpencatBusinessConnectorException, MarcReaderException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final CallTimings timings = new CallTimings("metacompass", PATH_META_COMPASS);
         try {
-            final RecordRequestDTO requestDTO = new RecordRequestDTO();
-            requestDTO.setRecord(marcRecordToDTOString(marcRecord));
-            if (trackingId != null) {
-                requestDTO.setTrackingId(trackingId);
-            }
+            final JsonRequestBody requestBody = recordRequest(marcRecord, trackingId);
+
+            final InputStream responseStream = sendPostRequestWithReturn(PATH_META_COMPASS, requestBody, InputStream.class, timings);
+
+            return toMarcRecord(responseStream, timings);
+        } finally {
+            onCallCompleted(timings);
+        }
+    }
+
+    public CompletableFuture<MarcRecord> metacompassAsync(MarcRecord marcRecord) {
+        return metacompassAsync(marcRecord, null);
+    }
+
+    public CompletableFuture<MarcRecord> metacompassAsync(MarcRecord marcRecord, String trackingId) {
+        return sendPostRequestAsync("metacompass", PATH_META_COMPASS,
+                () -> recordRequest(marcRecord, trackingId),
+                (response, timings) -> toMarcRecord(readResponseEntity(response, InputStream.class, timings), timings));
+    }
+
+    /**
+     * Validates records with at most maxInFlight requests outstanding at any time
+     *
+     * @param schemaName  validation schema
+     * @param marcRecords records to validate
+     * @param maxInFlight max number of concurrent requests
+     * @return validation result per record in input order
+     * @throws InterruptedException if interrupted while waiting for a request slot
+     */
+    public BatchResult<List<MessageEntryDTO>> validateRecords(String schemaName, Iterator<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return runBatch("validateRecords", marcRecords, maxInFlight,
+                marcRecord -> validateRecordAsync(schemaName, marcRecord));
+    }
+
+    public BatchResult<List<MessageEntryDTO>> validateRecords(String schemaName, Iterable<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return validateRecords(schemaName, marcRecords.iterator(), maxInFlight);
+    }
+
+    /**
+     * Sorts records with at most maxInFlight requests outstanding at any time
+     *
+     * @param templateProvider template provider
+     * @param marcRecords      records to sort
+     * @param maxInFlight      max number of concurrent requests
+     * @return sorted record per record in input order
+     * @throws InterruptedException if interrupted while waiting for a request slot
+     */
+    public BatchResult<MarcRecord> sortRecords(String templateProvider, Iterator<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return runBatch("sortRecords", marcRecords, maxInFlight,
+                marcRecord -> sortRecordAsync(templateProvider, marcRecord));
+    }
+
+    public BatchResult<MarcRecord> sortRecords(String templateProvider, Iterable<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return sortRecords(templateProvider, marcRecords.iterator(), maxInFlight);
+    }
+
+    /**
+     * Preprocesses records with at most maxInFlight requests outstanding at any time
+     *
+     * @param marcRecords records to preprocess
+     * @param maxInFlight max number of concurrent requests
+     * @return preprocessed record per record in input order
+     * @throws InterruptedException if interrupted while waiting for a request slot
+     */
+    public BatchResult<MarcRecord> preprocessRecords(Iterator<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return runBatch("preprocessRecords", marcRecords, maxInFlight, this::preprocessAsync);
+    }
+
+    public BatchResult<MarcRecord> preprocessRecords(Iterable<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return preprocessRecords(marcRecords.iterator(), maxInFlight);
+    }
+
+    /**
+     * Runs metacompass on records with at most maxInFlight requests outstanding at any time
+     *
+     * @param marcRecords records to process
+     * @param maxInFlight max number of concurrent requests
+     * @return resulting record per record in input order
+     * @throws InterruptedException if interrupted while waiting for a request slot
+     */
+    public BatchResult<MarcRecord> metacompassRecords(Iterator<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return runBatch("metacompassRecords", marcRecords, maxInFlight, this::metacompassAsync);
+    }
+
+    public BatchResult<MarcRecord> metacompassRecords(Iterable<MarcRecord> marcRecords, int maxInFlight)
+            throws InterruptedException {
+        return metacompassRecords(marcRecords.iterator(), maxInFlight);
+    }
+
+    /**
+     * Single checkTemplateBuild attempt without any retries, for probing the service
+     *
+     * @param name template name
+     * @return future completed with the checkTemplateBuild result
+     */
+    CompletableFuture<Boolean> probeCheckTemplateBuild(String name) {
+        return sendPostRequestAsync("probeCheckTemplateBuild", PATH_CHECK_TEMPLATE_BUILD,
+                () -> checkTemplateBuildRequest(name, null),
+                (response, timings) -> readResponseEntity(response, CheckTemplateBuildResponseDTO.class, timings).isResult(),
+                false);
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    private JsonRequestBody validateRecordRequest(String schemaName, EncodedMarcRecord encodedRecord, String trackingId)
+            throws JSONBException {
+        final ValidateRecordRequestDTO requestDTO = new ValidateRecordRequestDTO();
+        requestDTO.setTemplateName(schemaName);
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO).withRecord("record", encodedRecord);
+    }
+
+    private JsonRequestBody checkTemplateRequest(String name, String groupId, String libraryType, String trackingId)
+            throws JSONBException {
+        final CheckTemplateRequestDTO requestDTO = new CheckTemplateRequestDTO();
+        requestDTO.setName(name);
+        requestDTO.setGroupId(groupId);
+        requestDTO.setLibraryType(libraryType);
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO);
+    }
+
+    private JsonRequestBody checkTemplateBuildRequest(String name, String trackingId) throws JSONBException {
+        final CheckTemplateBuildRequestDTO requestDTO = new CheckTemplateBuildRequestDTO();
+        requestDTO.setName(name);
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO);
+    }
+
+    private JsonRequestBody recordRequest(MarcRecord marcRecord, String trackingId) throws JSONBException {
+        return recordRequest(EncodedMarcRecord.ofNullable(marcRecord), trackingId);
+    }
+
+    private JsonRequestBody recordRequest(EncodedMarcRecord encodedRecord, String trackingId) throws JSONBException {
+        final RecordRequestDTO requestDTO = new RecordRequestDTO();
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO).withRecord("record", encodedRecord);
+    }
+
+    private JsonRequestBody doRecategorizationThingsRequest(MarcRecord currentRecord,
+                                                            MarcRecord updateRecord,
+                                                            MarcRecord newRecord,
+                                                            String trackingId) throws JSONBException {
+        final DoRecategorizationThingsRequestDTO requestDTO = new DoRecategorizationThingsRequestDTO();
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO)
+                .withRecord("currentRecord", currentRecord)
+                .withRecord("updateRecord", updateRecord)
+                .withRecord("newRecord", newRecord);
+    }
+
+    private JsonRequestBody buildRecordRequest(String templateName, MarcRecord marcRecord, String trackingId)
+            throws JSONBException {
+        final BuildRecordRequestDTO requestDTO = new BuildRecordRequestDTO();
+        requestDTO.setTemplateName(templateName);
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO).withRecord("record", marcRecord);
+    }
+
+    private JsonRequestBody sortRecordRequest(String templateProvider, EncodedMarcRecord encodedRecord, String trackingId)
+            throws JSONBException {
+        final SortRecordRequestDTO requestDTO = new SortRecordRequestDTO();
+        requestDTO.setTemplateProvider(templateProvider);
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO).withRecord("record", encodedRecord);
+    }
+
+    private JsonRequestBody getValidateSchemasRequest(String templateGroup, Set<String> allowedLibraryRules, String trackingId)
+            throws JSONBException {
+        final GetValidateSchemasRequestDTO requestDTO = new GetValidateSchemasRequestDTO();
+        requestDTO.setTemplateGroup(templateGroup);
+        requestDTO.setAllowedLibraryRules(allowedLibraryRules);
+        if (trackingId != null) {
+            requestDTO.setTrackingId(trackingId);
+        }
+        return JsonRequestBody.of(requestDTO);
+    }
+
+    private List<MessageEntryDTO> toMessageEntries(InputStream responseStream, CallTimings timings)
+            throws JSONBException {
+        final long startNanos = System.nanoTime();
+        try {
+            return MESSAGE_ENTRIES_READER.read(responseStream);
+        } finally {
+            timings.addSince(CallTimings.Phase.UNMARSHAL, startNanos);
+        }
+    }
+
+    private List<SchemaDTO> toSchemas(InputStream responseStream, CallTimings timings) throws JSONBException {
+        final long startNanos = System.nanoTime();
+        try {
+            return SCHEMAS_READER.read(responseStream);
+        } finally {
+            timings.addSince(CallTimings.Phase.UNMARSHAL, startNanos);
+        }
+    }
+
+    // Cached and coalesced results are shared, so callers are handed copies they are free to modify
+    private static List<SchemaDTO> copySchemas(List<SchemaDTO> schemas) {
+        final List<SchemaDTO> copies = new ArrayList<>(schemas.size());
+        for (SchemaDTO schema : schemas) {
+            final SchemaDTO copy = new SchemaDTO();
+            copy.setSchemaName(schema.getSchemaName());
+            copy.setSchemaInfo(schema.getSchemaInfo());
+            copies.add(copy);
+        }
+        return copies;
+    }
 
-            final RecordResponseDTO recordResponseDTO = sendPostRequestWithReturn(PATH_META_COMPASS, requestDTO, RecordResponseDTO.class);
+    private MarcRecord toMarcRecord(InputStream responseStream, CallTimings timings)
+            throws OpencatBusinessConnectorException, MarcReaderException {
+        return MarcRecordResponseReader.read(responseStream, timings);
+    }
 
-            return RecordContentTransformer.decodeRecord(recordResponseDTO.getRecord().getBytes());
+    private static EncodedMarcRecord readEncoded(InputStream responseStream, CallTimings timings)
+            throws OpencatBusinessConnectorException {
+        final long startNanos = System.nanoTime();
+        try {
+            return MarcRecordResponseReader.readEncoded(responseStream);
         } finally {
-            logger.log("metacompass took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            timings.addSince(CallTimings.Phase.UNMARSHAL, startNanos);
+        }
+    }
+
+    private static MarcRecord decode(EncodedMarcRecord encodedRecord) throws MarcReaderException {
+        return encodedRecord == null ? null : encodedRecord.getMarcRecord();
+    }
+
+    private static CompletableFuture<MarcRecord> decodeAsync(CompletableFuture<EncodedMarcRecord> future) {
+        return future.thenCompose(encodedRecord -> {
+            try {
+                return CompletableFuture.completedFuture(decode(encodedRecord));
+            } catch (MarcReaderException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    private Boolean getIndexedTemplatePermission(String name, String groupId, String libraryType) {
+        if (templatePermissionIndex == null) {
+            return null;
+        }
+        final Boolean allowed = templatePermissionIndex.get(name, groupId, libraryType);
+        metrics.onTemplatePermissionIndexLookup(allowed != null);
+        return allowed;
+    }
+
+    private Boolean indexTemplatePermission(String name, String groupId, String libraryType, Boolean allowed) {
+        if (templatePermissionIndex != null && allowed != null) {
+            templatePermissionIndex.put(name, groupId, libraryType, allowed);
+        }
+        return allowed;
+    }
+
+    private boolean isResultCached(String path, EncodedMarcRecord encodedRecord) {
+        return encodedRecord != null && resultCachePaths.contains(path);
+    }
+
+    private EncodedMarcRecord getCachedResult(String path, String parameter, EncodedMarcRecord encodedRecord) {
+        if (!isResultCached(path, encodedRecord)) {
+            return null;
+        }
+        final EncodedMarcRecord result = resultCache.get(path, parameter, encodedRecord);
+        if (result == null) {
+            metrics.onResultCacheMiss(path);
+        } else {
+            metrics.onResultCacheHit(path);
         }
+        return result;
     }
 
-    private <T> T sendPostRequestWithReturn(String basePath, Object request, Class<T> type)
+    private EncodedMarcRecord cacheResult(String path, String parameter, EncodedMarcRecord encodedRecord,
+                                          EncodedMarcRecord result) {
+        if (result != null && isResultCached(path, encodedRecord)) {
+            resultCache.put(path, parameter, encodedRecord, result);
+        }
+        return result;
+    }
+
+    private <T> T sendPostRequestWithReturn(String basePath, JsonRequestBody request, Class<T> type,
+                                            CallTimings timings)
             throws OpencatBusinessConnectorException, JSONBException {
-        final Response response = sendPostRequest(basePath, request);
+        final Response response = sendPostRequest(basePath, request, timings);
         assertResponseStatus(response, Response.Status.OK);
-        return readResponseEntity(response, type);
+        return readResponseEntity(response, type, timings);
     }
 
-    private void sendPostRequestWithoutReturn(String basePath, Object request)
+    private void sendPostRequestWithoutReturn(String basePath, JsonRequestBody request, CallTimings timings)
             throws OpencatBusinessConnectorException, JSONBException {
-        final Response response = sendPostRequest(basePath, request);
-        assertResponseStatus(response, Response.Status.OK);
+        final Response response = sendPostRequest(basePath, request, timings);
+        try {
+            assertResponseStatus(response, Response.Status.OK);
+        } finally {
+            response.close();
+        }
+    }
+
+    private Response sendPostRequest(String basePath, JsonRequestBody data, CallTimings timings)
+            throws OpencatBusinessConnectorException {
+        InvariantUtil.checkNotNullOrThrow(data, "request");
+        timings.onRequestBody(data);
+        RETRY_BUDGET.deposit();
+        final StreamingOutput entity = entity(data);
+        final Map<String, String> headers = headers(data);
+        final Stopwatch stopwatch = new Stopwatch();
+        final long startNanos = System.nanoTime();
+        try {
+            final Response response;
+            if (retryPolicy != null) {
+                final AtomicInteger attempts = new AtomicInteger();
+                final AtomicReference<Response> failedAttempt = new AtomicReference<>();
+                response = Failsafe.with(budgeted(retryPolicy, attempts)).get(() -> {
+                    if (attempts.getAndIncrement() > 0) {
+                        metrics.onRetry(basePath);
+                        closeFailedAttempt(failedAttempt);
+                    }
+                    final Response attemptResponse = guardChain.post(transport, basePath, entity, headers);
+                    failedAttempt.set(attemptResponse);
+                    return attemptResponse;
+                });
+            } else {
+                response = guardChain.post(failSafeTransport, basePath, entity, headers);
+            }
+            metrics.onResponse(basePath, response.getStatus(), elapsed(stopwatch));
+            return response;
+        } catch (FailsafeException e) {
+            if (isRejection(e.getCause())) {
+                throw (OpencatBusinessConnectorException) e.getCause();
+            }
+            metrics.onFailure(basePath, elapsed(stopwatch));
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.onFailure(basePath, elapsed(stopwatch));
+            throw e;
+        } finally {
+            timings.addSince(CallTimings.Phase.NETWORK, startNanos);
+        }
     }
 
-    private Response sendPostRequest(String basePath, Object request) throws JSONBException {
-        InvariantUtil.checkNotNullOrThrow(request, "request");
-        final PathBuilder path = new PathBuilder(basePath);
-        final HttpPost post = new HttpPost(failSafeHttpClient)
-                .withBaseUrl(baseUrl)
-                .withData(jsonbContext.marshall(request), "application/json")
-                .withHeader("Accept", "application/json")
-                .withPathElements(path.build());
+    /**
+     * Sends the request built by the given supplier without blocking the calling thread.
+     * Each attempt is executed on the async executor, while the delays between retries are
+     * waited out on the retry scheduler so no thread is held while waiting.
+     * The response is status checked exactly as for the blocking methods and then handed to the
+     * given reader, also on the async executor. The timings of the call are logged and published
+     * when the returned future completes.
+     *
+     * @param method         method name used for timings log
+     * @param basePath       endpoint path
+     * @param requestBuilder request body supplier, invoked on the calling thread
+     * @param reader         response reader
+     * @param <T>            result type
+     * @return future completed with the result of the reader
+     */
+    private <T> CompletableFuture<T> sendPostRequestAsync(String method, String basePath,
+                                                          RequestBuilder requestBuilder,
+                                                          ResponseReader<T> reader) {
+        return sendPostRequestAsync(method, basePath, requestBuilder, reader, true);
+    }
+
+    private <T> CompletableFuture<T> sendPostRequestAsync(String method, String basePath,
+                                                          RequestBuilder requestBuilder,
+                                                          ResponseReader<T> reader,
+                                                          boolean retry) {
+        final CallTimings timings = new CallTimings(method, basePath);
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            final JsonRequestBody data = InvariantUtil.checkNotNullOrThrow(requestBuilder.build(), "request");
+            timings.onRequestBody(data);
+            RETRY_BUDGET.deposit();
 
-        return post.execute();
+            final StreamingOutput entity = entity(data);
+            final Map<String, String> headers = headers(data);
+            final Stopwatch requestStopwatch = new Stopwatch();
+            final CompletableFuture<Response> responseFuture;
+            if (!retry) {
+                responseFuture = guardChain.probeAsync(transport, basePath, entity, headers);
+            } else if (retryPolicy != null) {
+                final AtomicInteger attempts = new AtomicInteger();
+                final AtomicReference<Response> failedAttempt = new AtomicReference<>();
+                responseFuture = Failsafe.with(budgeted(retryPolicy, attempts))
+                        .with(RetryScheduler.INSTANCE)
+                        .getStageAsync(() -> {
+                            if (attempts.getAndIncrement() > 0) {
+                                metrics.onRetry(basePath);
+                                closeFailedAttempt(failedAttempt);
+                            }
+                            return guardChain.postAsync(transport, basePath, entity, headers)
+                                    .thenApply(attemptResponse -> {
+                                        failedAttempt.set(attemptResponse);
+                                        return attemptResponse;
+                                    });
+                        });
+            } else {
+                responseFuture = guardChain.postAsync(failSafeTransport, basePath, entity, headers);
+            }
+            responseFuture.whenComplete((response, failure) -> {
+                timings.add(CallTimings.Phase.NETWORK, requestStopwatch.getElapsedTime(TimeUnit.NANOSECONDS));
+                if (failure != null) {
+                    final Throwable cause = unwrap(failure);
+                    if (!isRejection(cause)) {
+                        metrics.onFailure(basePath, elapsed(requestStopwatch));
+                    }
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                metrics.onResponse(basePath, response.getStatus(), elapsed(requestStopwatch));
+                try {
+                    assertResponseStatus(response, Response.Status.OK);
+                    result.complete(reader.read(response, timings));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (JSONBException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result.whenComplete((value, failure) -> onCallCompleted(timings));
     }
 
-    private <T> T readResponseEntity(Response response, Class<T> type)
+    /**
+     * Logs the timings of a call, and if it sent a request, updates the phase metrics and passes them on to
+     * the call timings listener
+     */
+    private void onCallCompleted(CallTimings timings) {
+        timings.complete();
+        logger.log("{} took {} milliseconds: {}", timings.getMethod(), timings.getTotal().toMillis(), timings);
+        if (!timings.isRecorded(CallTimings.Phase.NETWORK)) {
+            return;
+        }
+        metrics.onCallTimings(timings);
+        if (callTimingsListener != null) {
+            try {
+                callTimingsListener.accept(timings);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Call timings listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Executes the given blocking request on the calling thread, unless an identical request is in flight,
+     * in which case the outcome of that request is awaited instead
+     */
+    private <T> CompletableFuture<T> sendCoalescedPostRequest(String basePath, JsonRequestBody requestBody,
+                                                              SyncRequest<T> request) {
+        return singleFlight.execute(basePath + requestBody.identity(), request::send,
+                () -> metrics.onCoalesced(basePath));
+    }
+
+    /**
+     * As {@link #sendPostRequestAsync(String, String, RequestBuilder, ResponseReader)}, unless an identical
+     * request is in flight, in which case the outcome of that request is shared instead
+     */
+    private <T> CompletableFuture<T> sendCoalescedPostRequestAsync(String method, String basePath,
+                                                                   RequestBuilder requestBuilder,
+                                                                   ResponseReader<T> reader) {
+        final JsonRequestBody requestBody;
+        try {
+            requestBody = InvariantUtil.checkNotNullOrThrow(requestBuilder.build(), "request");
+        } catch (JSONBException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return singleFlight.executeAsync(basePath + requestBody.identity(),
+                () -> sendPostRequestAsync(method, basePath, () -> requestBody, reader),
+                () -> metrics.onCoalesced(basePath));
+    }
+
+    private <I, T> BatchResult<T> runBatch(String method, Iterator<I> inputs, int maxInFlight,
+                                           Function<I, CompletableFuture<T>> call) throws InterruptedException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, was " + maxInFlight);
+        }
+        final Stopwatch stopwatch = new Stopwatch();
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final List<BatchResult.Item<T>> items = new ArrayList<>();
+        while (inputs.hasNext()) {
+            final I input = inputs.next();
+            final BatchResult.Item<T> item = new BatchResult.Item<>();
+            items.add(item);
+            inFlight.acquire();
+            final CompletableFuture<T> future;
+            try {
+                future = call.apply(input);
+            } catch (RuntimeException e) {
+                // The call failed before it could hand back a future, so its permit is released right away
+                item.complete(null, e);
+                inFlight.release();
+                continue;
+            }
+            future.whenComplete((value, failure) -> {
+                item.complete(value, unwrap(failure));
+                inFlight.release();
+            });
+        }
+        // Wait for the outstanding requests
+        inFlight.acquire(maxInFlight);
+
+        final BatchResult<T> batchResult = new BatchResult<>(items, stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+        logger.log("{} took {} milliseconds: {}", method, batchResult.getElapsedMillis(), batchResult);
+        return batchResult;
+    }
+
+    private StreamingOutput entity(JsonRequestBody data) {
+        if (isGzipCompressed(data)) {
+            return new GzipRequestBody(data, bytesSaved -> metrics.onCompression("request", bytesSaved));
+        }
+        return data;
+    }
+
+    private Map<String, String> headers(JsonRequestBody data) {
+        if (gzipRequestThreshold < 0) {
+            return ACCEPT_JSON;
+        }
+        if (isGzipCompressed(data)) {
+            return gzipResponses ? ACCEPT_JSON_GZIP_ENCODED : ACCEPT_JSON_ENCODED;
+        }
+        return gzipResponses ? ACCEPT_JSON_GZIP : ACCEPT_JSON;
+    }
+
+    private boolean isGzipCompressed(JsonRequestBody data) {
+        return gzipRequestThreshold >= 0 && data.getRecordsSize() > 0 && data.getRecordsSize() >= gzipRequestThreshold;
+    }
+
+    private <T> T readResponseEntity(Response response, Class<T> type, CallTimings timings)
             throws OpencatBusinessConnectorException {
+        final long startNanos = System.nanoTime();
         final T entity = response.readEntity(type);
+        timings.addSince(CallTimings.Phase.UNMARSHAL, startNanos);
         if (entity == null) {
             throw new OpencatBusinessConnectorException(
                     String.format("OpencatBusiness returned with null-valued %s entity",
@@ -481,30 +1828,185 @@ public class OpencatBusinessConnector {
         final Response.Status actualStatus =
                 Response.Status.fromStatusCode(response.getStatus());
         if (actualStatus != expectedStatus) {
-            if (actualStatus == Response.Status.INTERNAL_SERVER_ERROR) {
-                // Error message in Danish as this will properly be shown to a user
-                throw new OpencatBusinessConnectorException("Det skete en uventet fejl i opencat-business");
-            } else {
-                // In case the error is not internal server error the exception will probably contain a validation
-                // message which should be shown to the user
-                throw new OpencatBusinessConnectorException(response.readEntity(String.class));
+            try {
+                if (actualStatus == Response.Status.INTERNAL_SERVER_ERROR) {
+                    // Error message in Danish as this will properly be shown to a user
+                    throw new OpencatBusinessConnectorException("Det skete en uventet fejl i opencat-business");
+                } else {
+                    // In case the error is not internal server error the exception will probably contain a validation
+                    // message which should be shown to the user
+                    throw new OpencatBusinessConnectorException(response.readEntity(String.class));
+                }
+            } finally {
+                response.close();
             }
         }
     }
 
-    private String marcRecordToDTOString(MarcRecord marcRecord) {
-        if (marcRecord == null) {
-            return null;
-        } else {
-            byte[] recordBytes = RecordContentTransformer.encodeRecord(marcRecord);
-            if (recordBytes == null) {
-                return null;
-            } else {
-                return new String(recordBytes);
+    /**
+     * Subjects the retries of a call to the retry budget shared by all connectors, if the call uses the
+     * default retry policy. A retry is withdrawn from the budget only when the policy would otherwise retry,
+     * i.e. not for the failure of the last attempt allowed, and the call is aborted if the budget is spent.
+     *
+     * @param retryPolicy retry policy of the connector
+     * @param attempts    number of attempts made by the call
+     * @return retry policy of the call
+     */
+    private static RetryPolicy<Response> budgeted(RetryPolicy<Response> retryPolicy, AtomicInteger attempts) {
+        if (retryPolicy != RETRY_POLICY) {
+            return retryPolicy;
+        }
+        return RETRY_POLICY.copy()
+                .abortIf((response, failure) -> attempts.get() <= RETRY_POLICY.getMaxRetries()
+                        && !RETRY_BUDGET.tryWithdraw());
+    }
+
+    /**
+     * Closes the response of the previous attempt before it is retried, releasing its connection.
+     * The response of the last attempt is left open, as it is handed to the caller
+     */
+    private static void closeFailedAttempt(AtomicReference<Response> failedAttempt) {
+        final Response response = failedAttempt.getAndSet(null);
+        if (response != null) {
+            response.close();
+        }
+    }
+
+    /**
+     * Waits for the given future, rethrowing the exception it failed with
+     */
+    private static <T> T await(CompletableFuture<T> future) throws OpencatBusinessConnectorException, JSONBException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpencatBusinessConnectorException("Interrupted while waiting for opencat-business", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof OpencatBusinessConnectorException) {
+                throw (OpencatBusinessConnectorException) cause;
+            } else if (cause instanceof JSONBException) {
+                throw (JSONBException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            throw new OpencatBusinessConnectorException(String.valueOf(cause.getMessage()), cause);
         }
     }
 
+    private static Duration elapsed(Stopwatch stopwatch) {
+        return Duration.ofNanos(stopwatch.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * @return true if the given failure means that opencat-business was never called
+     */
+    private static boolean isRejection(Throwable failure) {
+        return failure instanceof ConcurrencyLimitExceededException || failure instanceof CircuitBreakerOpenException;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+
+    static final class ValidateSchemasKey {
+        private final String templateGroup;
+        private final Set<String> allowedLibraryRules;
+
+        ValidateSchemasKey(String templateGroup, Set<String> allowedLibraryRules) {
+            this.templateGroup = templateGroup;
+            this.allowedLibraryRules = allowedLibraryRules == null ? null : Collections.unmodifiableSet(new HashSet<>(allowedLibraryRules));
+        }
+
+        String getTemplateGroup() {
+            return templateGroup;
+        }
+
+        Set<String> getAllowedLibraryRules() {
+            return allowedLibraryRules;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final ValidateSchemasKey that = (ValidateSchemasKey) o;
+            return Objects.equals(templateGroup, that.templateGroup)
+                    && Objects.equals(allowedLibraryRules, that.allowedLibraryRules);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(templateGroup, allowedLibraryRules);
+        }
+
+        @Override
+        public String toString() {
+            return "ValidateSchemasKey{" +
+                    "templateGroup='" + templateGroup + '\'' +
+                    ", allowedLibraryRules=" + allowedLibraryRules +
+                    '}';
+        }
+    }
+
+    @FunctionalInterface
+    interface RequestBuilder {
+        JsonRequestBody build() throws JSONBException;
+    }
+
+    @FunctionalInterface
+    interface SyncRequest<T> {
+        T send() throws OpencatBusinessConnectorException, JSONBException;
+    }
+
+    @FunctionalInterface
+    interface ResponseReader<T> {
+        T read(Response response, CallTimings timings)
+                throws OpencatBusinessConnectorException, JSONBException, MarcReaderException;
+    }
+
+    private static class AsyncThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "opencat-business-connector-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /* Fails the task instead of queueing it without bound. The transports turn the exception into a failed
+       future, so the call is failed rather than left waiting */
+    private static class QueueFullPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("opencat-business connector has been closed");
+            }
+            throw new RejectedExecutionException(String.format(
+                    "opencat-business connector executor is busy: %d running, %d queued",
+                    executor.getActiveCount(), executor.getQueue().size()));
+        }
+    }
+
+    /* Lazily created single daemon thread shared by all connectors. It only ever
+       waits out retry delays and hands the next attempt over to the async executor */
+    static class RetryScheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "opencat-business-connector-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @FunctionalInterface
     interface LogLevelMethod {
         void log(String format, Object... objs);
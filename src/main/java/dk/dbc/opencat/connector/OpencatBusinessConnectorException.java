@@ -4,4 +4,8 @@ public class OpencatBusinessConnectorException extends Exception {
     public OpencatBusinessConnectorException(String msg) {
         super(msg);
     }
+
+    public OpencatBusinessConnectorException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
 }
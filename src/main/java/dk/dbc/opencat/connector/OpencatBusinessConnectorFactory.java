@@ -2,6 +2,7 @@ package dk.dbc.opencat.connector;
 
 import dk.dbc.httpclient.HttpClient;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.slf4j.Logger;
@@ -10,9 +11,23 @@ import org.slf4j.LoggerFactory;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.inject.Instance;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.client.Client;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * OpencatBusinessConnector factory
@@ -36,9 +51,80 @@ import jakarta.ws.rs.client.Client;
  * <p>
  * CDI case depends on the opencat-business baseurl being defined as
  * the value of either a system property or environment variable
- * named OPENCAT_BUSINESS_URL. OPENCAT_BUSINESS_TIMING_LOG_LEVEL
+ * named OPENCAT_BUSINESS_URL, which may be a comma separated list of base URLs
+ * of opencat-business replicas to load balance across. OPENCAT_BUSINESS_TIMING_LOG_LEVEL
  * should be one of TRACE, DEBUG, INFO(default), WARN or ERROR, for setting
- * log level
+ * log level. OPENCAT_BUSINESS_TRANSPORT selects the HTTP transport, either JAX_RS (default) or JDK_HTTP2
+ * for the JDK HTTP client preferring HTTP/2
+ * </p>
+ * <p>
+ * With the JAX_RS transport, setting OPENCAT_BUSINESS_POOL_ENABLED to true keeps connections in a pool of at
+ * most OPENCAT_BUSINESS_POOL_MAX_CONNECTIONS (default 50) connections, of which at most
+ * OPENCAT_BUSINESS_POOL_MAX_CONNECTIONS_PER_ROUTE (default 20) to each opencat-business instance. Idle connections
+ * are closed after OPENCAT_BUSINESS_POOL_IDLE_TIMEOUT_SECONDS (default 60). OPENCAT_BUSINESS_CONNECT_TIMEOUT_MS
+ * (default 5000) and OPENCAT_BUSINESS_READ_TIMEOUT_MS (default 120000) bound connecting and waiting for data, and
+ * OPENCAT_BUSINESS_POOL_CONNECTION_REQUEST_TIMEOUT_MS (default 5000) bounds waiting for a connection when all
+ * connections are in use, 0 meaning no timeout. The pool is backed by jersey-apache-connector, which like
+ * jersey-client must be provided at runtime when the pool is enabled
+ * </p>
+ * <p>
+ * With the JDK_HTTP2 transport, OPENCAT_BUSINESS_CONNECT_TIMEOUT_MS bounds connecting and
+ * OPENCAT_BUSINESS_READ_TIMEOUT_MS bounds each request until its response headers are received.
+ * The pool settings OPENCAT_BUSINESS_POOL_MAX_CONNECTIONS, OPENCAT_BUSINESS_POOL_MAX_CONNECTIONS_PER_ROUTE and
+ * OPENCAT_BUSINESS_POOL_IDLE_TIMEOUT_SECONDS do not apply, as the JDK client multiplexes requests on a single
+ * connection per opencat-business instance
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_VALIDATE_SCHEMAS_CACHE_TTL_SECONDS to a positive number enables
+ * caching of getValidateSchemas results, holding at most OPENCAT_BUSINESS_VALIDATE_SCHEMAS_CACHE_MAX_ENTRIES
+ * (default 100) results
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_RESULT_CACHE_MAX_BYTES to a positive number enables caching of sortRecord and
+ * preprocess results by request record, holding at most that many bytes of records. Either endpoint can be left
+ * out by setting OPENCAT_BUSINESS_RESULT_CACHE_SORT_RECORD_ENABLED or OPENCAT_BUSINESS_RESULT_CACHE_PREPROCESS_ENABLED
+ * (both default true) to false
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_TEMPLATE_INDEX_TTL_SECONDS to a positive number enables an index of checkTemplate
+ * outcomes, invalidated after that many seconds. When OPENCAT_BUSINESS_TEMPLATE_INDEX_TEMPLATES,
+ * OPENCAT_BUSINESS_TEMPLATE_INDEX_AGENCIES and OPENCAT_BUSINESS_TEMPLATE_INDEX_LIBRARY_TYPES are all set to
+ * comma separated lists, the index is warmed with all their combinations in the background at startup and
+ * again every half ttl, with at most OPENCAT_BUSINESS_TEMPLATE_INDEX_MAX_IN_FLIGHT (default 10) concurrent requests
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_CACHE_SNAPSHOT_FILE to a file path keeps the getValidateSchemas cache and the template
+ * permission index in that file between restarts. It is loaded at startup and written when the connector is
+ * closed. When a snapshot is loaded, the first warming of the template permission index waits half a ttl
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_HEDGING_PERCENTILE to a latency percentile, e.g. 95, enables hedging of requests
+ * without side effects, adding at most OPENCAT_BUSINESS_HEDGING_MAX_EXTRA_LOAD_PERCENT (default 5) percent requests
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_CIRCUIT_BREAKER_ENABLED to true enables a circuit breaker per endpoint, opening when
+ * OPENCAT_BUSINESS_CIRCUIT_BREAKER_FAILURE_RATE_PERCENT (default 50) percent of the recent attempts failed, or
+ * OPENCAT_BUSINESS_CIRCUIT_BREAKER_SLOW_CALL_RATE_PERCENT (default 80) percent took at least
+ * OPENCAT_BUSINESS_CIRCUIT_BREAKER_SLOW_CALL_MS (default 10000) milliseconds, and staying open for
+ * OPENCAT_BUSINESS_CIRCUIT_BREAKER_OPEN_MS (default 30000) milliseconds. State changes are fired as
+ * {@link CircuitBreakerEvent} CDI events
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_CALL_TIMINGS_EVENTS_ENABLED to true fires the phase timings of every call which
+ * sent a request as {@link CallTimings} CDI events
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_CONCURRENCY_LIMIT_MAX to a positive number enables an adaptive limit on
+ * concurrent requests, starting at OPENCAT_BUSINESS_CONCURRENCY_LIMIT_INITIAL (default 20, capped by the max).
+ * At most OPENCAT_BUSINESS_CONCURRENCY_QUEUE_SIZE (default 100) requests wait for the limit, for at most
+ * OPENCAT_BUSINESS_CONCURRENCY_QUEUE_TIMEOUT_MS (default 1000) milliseconds
+ * </p>
+ * <p>
+ * Setting OPENCAT_BUSINESS_GZIP_ENABLED to true makes the connector ask for gzip compressed responses and
+ * gzip compress requests carrying at least OPENCAT_BUSINESS_GZIP_THRESHOLD_BYTES (default 4096) bytes of records
+ * </p>
+ * <p>
+ * When a MicroProfile MetricRegistry is available the connector registers its request metrics in it
  * </p>
  */
 @ApplicationScoped
@@ -59,6 +145,114 @@ public class OpencatBusinessConnectorFactory {
         return new OpencatBusinessConnector(client, opencatBusinessBaseUrl, level);
     }
 
+    public static OpencatBusinessConnector create(String opencatBusinessBaseUrl, OpencatBusinessConnector.TimingLogLevel level, Executor executor) {
+        final Client client = HttpClient.newClient(new ClientConfig()
+                .register(new JacksonFeature()));
+        LOGGER.info("Creating OpencatBusinessConnector for: {}", opencatBusinessBaseUrl);
+        return new OpencatBusinessConnector(client, opencatBusinessBaseUrl, level, executor);
+    }
+
+    /**
+     * Creates a connector whose web resources client keeps its connections in a pool
+     *
+     * @param opencatBusinessBaseUrl base URL, or comma separated list of base URLs
+     * @param level                  timings log level
+     * @param settings               connection pool settings
+     * @return connector
+     */
+    public static OpencatBusinessConnector create(String opencatBusinessBaseUrl, OpencatBusinessConnector.TimingLogLevel level,
+                                                  ConnectionPoolSettings settings) {
+        return create(opencatBusinessBaseUrl, level, OpencatBusinessConnector.Transport.JAX_RS, settings,
+                new OpencatBusinessConnectorSettings());
+    }
+
+    /**
+     * Creates a connector with the given settings
+     *
+     * @param opencatBusinessBaseUrl base URL, or comma separated list of base URLs
+     * @param level                  timings log level
+     * @param connectorSettings      retry policy and optional features
+     * @return connector
+     */
+    public static OpencatBusinessConnector create(String opencatBusinessBaseUrl, OpencatBusinessConnector.TimingLogLevel level,
+                                                  OpencatBusinessConnectorSettings connectorSettings) {
+        final Client client = HttpClient.newClient(new ClientConfig()
+                .register(new JacksonFeature()));
+        LOGGER.info("Creating OpencatBusinessConnector for: {}", opencatBusinessBaseUrl);
+        return new OpencatBusinessConnector(client, opencatBusinessBaseUrl, level, null, connectorSettings);
+    }
+
+    /**
+     * Creates a connector sending its requests through the given transport, with the default settings of the
+     * underlying client, i.e. without a connection pool and without timeouts
+     *
+     * @param opencatBusinessBaseUrl base URL, or comma separated list of base URLs
+     * @param level                  timings log level
+     * @param transport              HTTP transport
+     * @return connector
+     */
+    public static OpencatBusinessConnector create(String opencatBusinessBaseUrl, OpencatBusinessConnector.TimingLogLevel level,
+                                                  OpencatBusinessConnector.Transport transport) {
+        if (transport == OpencatBusinessConnector.Transport.JDK_HTTP2) {
+            LOGGER.info("Creating OpencatBusinessConnector with HTTP/2 transport for: {}", opencatBusinessBaseUrl);
+            return new OpencatBusinessConnector(java.net.http.HttpClient.newBuilder()
+                    .version(java.net.http.HttpClient.Version.HTTP_2)
+                    .build(), opencatBusinessBaseUrl, level, null);
+        }
+        return create(opencatBusinessBaseUrl, level);
+    }
+
+    /**
+     * Creates a connector sending its requests through the given transport. With the JDK_HTTP2 transport
+     * only the connect and read timeouts of the settings apply, see {@link ConnectionPoolSettings}
+     *
+     * @param opencatBusinessBaseUrl base URL, or comma separated list of base URLs
+     * @param level                  timings log level
+     * @param transport              HTTP transport
+     * @param settings               connection pool settings
+     * @return connector
+     */
+    public static OpencatBusinessConnector create(String opencatBusinessBaseUrl, OpencatBusinessConnector.TimingLogLevel level,
+                                                  OpencatBusinessConnector.Transport transport,
+                                                  ConnectionPoolSettings settings) {
+        return create(opencatBusinessBaseUrl, level, transport, settings, new OpencatBusinessConnectorSettings());
+    }
+
+    /**
+     * Creates a connector with the given settings, sending its requests through the given transport.
+     * With the JDK_HTTP2 transport only the connect and read timeouts of the connection pool settings apply,
+     * see {@link ConnectionPoolSettings}
+     *
+     * @param opencatBusinessBaseUrl base URL, or comma separated list of base URLs
+     * @param level                  timings log level
+     * @param transport              HTTP transport
+     * @param settings               connection pool settings
+     * @param connectorSettings      retry policy and optional features
+     * @return connector
+     */
+    public static OpencatBusinessConnector create(String opencatBusinessBaseUrl, OpencatBusinessConnector.TimingLogLevel level,
+                                                  OpencatBusinessConnector.Transport transport,
+                                                  ConnectionPoolSettings settings,
+                                                  OpencatBusinessConnectorSettings connectorSettings) {
+        if (transport == OpencatBusinessConnector.Transport.JDK_HTTP2) {
+            final java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder()
+                    .version(java.net.http.HttpClient.Version.HTTP_2);
+            if (!settings.getConnectTimeout().isZero()) {
+                builder.connectTimeout(settings.getConnectTimeout());
+            }
+            LOGGER.info("Creating OpencatBusinessConnector with HTTP/2 transport and connect timeout {} and read timeout {} for: {}",
+                    settings.getConnectTimeout(), settings.getReadTimeout(), opencatBusinessBaseUrl);
+            return new OpencatBusinessConnector(new JdkHttpTransport(builder.build(), settings.getReadTimeout()),
+                    opencatBusinessBaseUrl, level, null, connectorSettings);
+        }
+        final ConnectionPool connectionPool = new ConnectionPool(settings);
+        final Client client = HttpClient.newClient(connectionPool.configure(new ClientConfig()
+                .register(new JacksonFeature())));
+        LOGGER.info("Creating OpencatBusinessConnector with {} for: {}", settings, opencatBusinessBaseUrl);
+        return new OpencatBusinessConnector(client, opencatBusinessBaseUrl, level, null, connectorSettings,
+                connectionPool);
+    }
+
     @Inject
     @ConfigProperty(name = "OPENCAT_BUSINESS_URL")
     private String opencatBusinessUrl;
@@ -67,11 +261,222 @@ public class OpencatBusinessConnectorFactory {
     @ConfigProperty(name = "OPENCAT_BUSINESS_TIMING_LOG_LEVEL", defaultValue = "INFO")
     private OpencatBusinessConnector.TimingLogLevel level;
 
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_TRANSPORT", defaultValue = "JAX_RS")
+    private OpencatBusinessConnector.Transport transport;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_POOL_ENABLED", defaultValue = "false")
+    private boolean poolEnabled;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_POOL_MAX_CONNECTIONS", defaultValue = "50")
+    private int poolMaxConnections;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_POOL_MAX_CONNECTIONS_PER_ROUTE", defaultValue = "20")
+    private int poolMaxConnectionsPerRoute;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_POOL_IDLE_TIMEOUT_SECONDS", defaultValue = "60")
+    private long poolIdleTimeoutSeconds;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_POOL_CONNECTION_REQUEST_TIMEOUT_MS", defaultValue = "5000")
+    private long poolConnectionRequestTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CONNECT_TIMEOUT_MS", defaultValue = "5000")
+    private long connectTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_READ_TIMEOUT_MS", defaultValue = "120000")
+    private long readTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_VALIDATE_SCHEMAS_CACHE_TTL_SECONDS", defaultValue = "0")
+    private long validateSchemasCacheTtlSeconds;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_VALIDATE_SCHEMAS_CACHE_MAX_ENTRIES", defaultValue = "100")
+    private int validateSchemasCacheMaxEntries;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_RESULT_CACHE_MAX_BYTES", defaultValue = "0")
+    private long resultCacheMaxBytes;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_RESULT_CACHE_SORT_RECORD_ENABLED", defaultValue = "true")
+    private boolean resultCacheSortRecordEnabled;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_RESULT_CACHE_PREPROCESS_ENABLED", defaultValue = "true")
+    private boolean resultCachePreprocessEnabled;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_TEMPLATE_INDEX_TTL_SECONDS", defaultValue = "0")
+    private long templateIndexTtlSeconds;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_TEMPLATE_INDEX_TEMPLATES")
+    private Optional<String> templateIndexTemplates;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_TEMPLATE_INDEX_AGENCIES")
+    private Optional<String> templateIndexAgencies;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_TEMPLATE_INDEX_LIBRARY_TYPES")
+    private Optional<String> templateIndexLibraryTypes;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_TEMPLATE_INDEX_MAX_IN_FLIGHT", defaultValue = "10")
+    private int templateIndexMaxInFlight;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CACHE_SNAPSHOT_FILE")
+    private Optional<String> cacheSnapshotFile;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_HEDGING_PERCENTILE", defaultValue = "0")
+    private double hedgingPercentile;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_HEDGING_MAX_EXTRA_LOAD_PERCENT", defaultValue = "5")
+    private double hedgingMaxExtraLoadPercent;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CIRCUIT_BREAKER_ENABLED", defaultValue = "false")
+    private boolean circuitBreakerEnabled;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CIRCUIT_BREAKER_FAILURE_RATE_PERCENT", defaultValue = "50")
+    private double circuitBreakerFailureRatePercent;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CIRCUIT_BREAKER_SLOW_CALL_RATE_PERCENT", defaultValue = "80")
+    private double circuitBreakerSlowCallRatePercent;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CIRCUIT_BREAKER_SLOW_CALL_MS", defaultValue = "10000")
+    private long circuitBreakerSlowCallMs;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CIRCUIT_BREAKER_OPEN_MS", defaultValue = "30000")
+    private long circuitBreakerOpenMs;
+
+    @Inject
+    Event<CircuitBreakerEvent> circuitBreakerEvents;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CALL_TIMINGS_EVENTS_ENABLED", defaultValue = "false")
+    private boolean callTimingsEventsEnabled;
+
+    @Inject
+    Event<CallTimings> callTimingsEvents;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CONCURRENCY_LIMIT_MAX", defaultValue = "0")
+    private int concurrencyLimitMax;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CONCURRENCY_LIMIT_INITIAL", defaultValue = "20")
+    private int concurrencyLimitInitial;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CONCURRENCY_QUEUE_SIZE", defaultValue = "100")
+    private int concurrencyQueueSize;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_CONCURRENCY_QUEUE_TIMEOUT_MS", defaultValue = "1000")
+    private long concurrencyQueueTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_GZIP_ENABLED", defaultValue = "false")
+    private boolean gzipEnabled;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_GZIP_THRESHOLD_BYTES", defaultValue = "4096")
+    private long gzipThresholdBytes;
+
+    @Inject
+    Instance<MetricRegistry> metricRegistry;
+
     OpencatBusinessConnector opencatBusinessConnector;
 
+    private ScheduledExecutorService templateIndexWarmer;
+
     @PostConstruct
     public void initializeConnector() {
-        opencatBusinessConnector = OpencatBusinessConnectorFactory.create(opencatBusinessUrl, level);
+        final OpencatBusinessConnectorSettings connectorSettings = new OpencatBusinessConnectorSettings();
+        if (metricRegistry != null && metricRegistry.isResolvable()) {
+            connectorSettings.withMetricRegistry(metricRegistry.get());
+        }
+        if (validateSchemasCacheTtlSeconds > 0) {
+            connectorSettings.withValidateSchemasCache(
+                    Duration.ofSeconds(validateSchemasCacheTtlSeconds), validateSchemasCacheMaxEntries);
+        }
+        if (resultCacheMaxBytes > 0) {
+            final Set<OpencatBusinessConnector.CachedEndpoint> endpoints =
+                    EnumSet.noneOf(OpencatBusinessConnector.CachedEndpoint.class);
+            if (resultCacheSortRecordEnabled) {
+                endpoints.add(OpencatBusinessConnector.CachedEndpoint.SORT_RECORD);
+            }
+            if (resultCachePreprocessEnabled) {
+                endpoints.add(OpencatBusinessConnector.CachedEndpoint.PREPROCESS);
+            }
+            connectorSettings.withResultCache(resultCacheMaxBytes, endpoints);
+        }
+        if (templateIndexTtlSeconds > 0) {
+            connectorSettings.withTemplatePermissionIndex(Duration.ofSeconds(templateIndexTtlSeconds));
+        }
+        final boolean snapshotExists = cacheSnapshotFile.isPresent() && Files.exists(Path.of(cacheSnapshotFile.get()));
+        if (cacheSnapshotFile.isPresent()) {
+            connectorSettings.withCacheSnapshot(Path.of(cacheSnapshotFile.get()));
+        }
+        if (gzipEnabled) {
+            connectorSettings.withGzipCompression(gzipThresholdBytes);
+        }
+        if (hedgingPercentile > 0) {
+            connectorSettings.withHedging(hedgingPercentile, hedgingMaxExtraLoadPercent / 100);
+        }
+        if (circuitBreakerEnabled) {
+            connectorSettings.withCircuitBreaker(new CircuitBreakerSettings()
+                            .withFailureRateThreshold(circuitBreakerFailureRatePercent / 100)
+                            .withSlowCallRateThreshold(circuitBreakerSlowCallRatePercent / 100)
+                            .withSlowCallDuration(Duration.ofMillis(circuitBreakerSlowCallMs))
+                            .withOpenDuration(Duration.ofMillis(circuitBreakerOpenMs)),
+                    circuitBreakerEvents::fire);
+        }
+        if (callTimingsEventsEnabled) {
+            connectorSettings.withCallTimings(callTimingsEvents::fire);
+        }
+        if (concurrencyLimitMax > 0) {
+            connectorSettings.withAdaptiveConcurrencyLimit(
+                    Math.min(concurrencyLimitInitial, concurrencyLimitMax), concurrencyLimitMax,
+                    concurrencyQueueSize, Duration.ofMillis(concurrencyQueueTimeoutMs));
+        }
+        // The pool needs jersey-apache-connector on the classpath, so the JAX_RS transport only uses it on request
+        if (transport == OpencatBusinessConnector.Transport.JAX_RS && !poolEnabled) {
+            opencatBusinessConnector = OpencatBusinessConnectorFactory.create(opencatBusinessUrl, level,
+                    connectorSettings);
+        } else {
+            opencatBusinessConnector = OpencatBusinessConnectorFactory.create(opencatBusinessUrl, level, transport,
+                    new ConnectionPoolSettings()
+                            .withMaxConnections(poolMaxConnections)
+                            .withMaxConnectionsPerRoute(poolMaxConnectionsPerRoute)
+                            .withIdleTimeout(Duration.ofSeconds(poolIdleTimeoutSeconds))
+                            .withConnectTimeout(Duration.ofMillis(connectTimeoutMs))
+                            .withConnectionRequestTimeout(Duration.ofMillis(poolConnectionRequestTimeoutMs))
+                            .withReadTimeout(Duration.ofMillis(readTimeoutMs)),
+                    connectorSettings);
+        }
+        opencatBusinessConnector.start();
+        if (templateIndexTtlSeconds > 0 && templateIndexTemplates.isPresent() && templateIndexAgencies.isPresent()
+                && templateIndexLibraryTypes.isPresent()) {
+            scheduleTemplateIndexWarming(split(templateIndexTemplates.get()), split(templateIndexAgencies.get()),
+                    split(templateIndexLibraryTypes.get()), snapshotExists);
+        }
     }
 
     @Produces
@@ -81,6 +486,44 @@ public class OpencatBusinessConnectorFactory {
 
     @PreDestroy
     public void tearDownConnector() {
+        if (templateIndexWarmer != null) {
+            templateIndexWarmer.shutdownNow();
+        }
         opencatBusinessConnector.close();
     }
+
+    private void scheduleTemplateIndexWarming(List<String> templateNames, List<String> groupIds,
+                                              List<String> libraryTypes, boolean delayed) {
+        templateIndexWarmer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "opencat-business-connector-template-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Warming again before the index expires keeps checkTemplate from falling back to opencat-business
+        final long periodMillis = Math.max(TimeUnit.SECONDS.toMillis(templateIndexTtlSeconds) / 2, 1);
+        templateIndexWarmer.scheduleWithFixedDelay(() -> {
+            try {
+                final BatchResult<Boolean> batchResult = opencatBusinessConnector.warmTemplatePermissionIndex(
+                        templateNames, groupIds, libraryTypes, templateIndexMaxInFlight);
+                if (batchResult.getFailureCount() > 0) {
+                    LOGGER.warn("Template permission index warmed with {} of {} checkTemplate calls failing",
+                            batchResult.getFailureCount(), batchResult.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.error("Warming of template permission index failed", e);
+            }
+        }, delayed ? periodMillis : 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static List<String> split(String commaSeparated) {
+        final List<String> values = new ArrayList<>();
+        for (String value : commaSeparated.split(",")) {
+            if (!value.isBlank()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
 }
@@ -0,0 +1,375 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.httpclient.FailSafeHttpClient;
+import dk.dbc.invariant.InvariantUtil;
+import jakarta.ws.rs.core.Response;
+import net.jodah.failsafe.RetryPolicy;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Optional features of an {@link OpencatBusinessConnector}, given when the connector is constructed,
+ * e.g. by {@link OpencatBusinessConnector#OpencatBusinessConnector(java.net.http.HttpClient, String,
+ * OpencatBusinessConnector.TimingLogLevel, Executor, OpencatBusinessConnectorSettings)}
+ * <p>
+ * Defaults: the default retry policy, and none of the features, i.e. no metrics, caches, hedging, circuit
+ * breakers, concurrency limit or compression.
+ * </p>
+ * <p>
+ * The connector reads the settings when it is constructed, and keeps its configuration in final fields, so it
+ * can be shared between threads right away. Changing the settings afterwards does not affect the connector,
+ * and the same settings may be used for several connectors, each of which gets its own caches, circuit
+ * breakers and concurrency limit. The arguments of the features are checked when a connector is constructed.
+ * </p>
+ */
+public class OpencatBusinessConnectorSettings {
+    private RetryPolicy<Response> retryPolicy;
+    private MetricRegistry metricRegistry;
+    private String metricsName;
+    private Consumer<CallTimings> callTimingsListener;
+    private boolean hedging;
+    private double hedgingPercentile;
+    private double hedgingMaxExtraLoad;
+    private CircuitBreakerSettings circuitBreakerSettings;
+    private Consumer<CircuitBreakerEvent> circuitBreakerListener;
+    private int concurrencyInitialLimit;
+    private int concurrencyMaxLimit;
+    private int concurrencyMaxQueued;
+    private Duration concurrencyMaxQueueWait;
+    private Duration validateSchemasCacheTtl;
+    private int validateSchemasCacheMaxEntries;
+    private long resultCacheMaxBytes;
+    private Set<OpencatBusinessConnector.CachedEndpoint> resultCacheEndpoints;
+    private Duration templatePermissionIndexTtl;
+    private Path cacheSnapshotFile;
+    private long gzipRequestThreshold = -1;
+
+    /**
+     * Replaces the default retry policy, which is also used for scheduling async retries.
+     * A connector given a ready-made {@link FailSafeHttpClient} retries by the policy of that client, so
+     * constructing one with these settings fails.
+     *
+     * @param retryPolicy retry policy
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withRetryPolicy(RetryPolicy<Response> retryPolicy) {
+        this.retryPolicy = InvariantUtil.checkNotNullOrThrow(retryPolicy, "retryPolicy");
+        return this;
+    }
+
+    /**
+     * Registers request timers and success, failure and retry counters per endpoint in the given registry,
+     * with the gauges tagged with the base URL as connector name, see {@link #withMetricRegistry(MetricRegistry, String)}.
+     * This is done automatically for connectors produced by {@link OpencatBusinessConnectorFactory}
+     * in a CDI environment with MicroProfile Metrics. See {@link ConnectorMetrics} for the metrics.
+     * Constructing a connector fails with an {@link IllegalStateException} if another connector with the same
+     * base URL registered gauges in the registry.
+     *
+     * @param metricRegistry registry in which to register the connector metrics
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withMetricRegistry(MetricRegistry metricRegistry) {
+        this.metricRegistry = InvariantUtil.checkNotNullOrThrow(metricRegistry, "metricRegistry");
+        this.metricsName = null;
+        return this;
+    }
+
+    /**
+     * Registers request timers and success, failure and retry counters per endpoint in the given registry.
+     * The gauges, e.g. of caches and the concurrency limit, read the state of a single connector, so they are
+     * tagged with the given connector name, which must be unique among the connectors sharing the registry.
+     * Constructing a connector fails with an {@link IllegalStateException} if another connector with the same
+     * name registered gauges in the registry.
+     *
+     * @param metricRegistry registry in which to register the connector metrics
+     * @param name           connector name
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withMetricRegistry(MetricRegistry metricRegistry, String name) {
+        this.metricRegistry = InvariantUtil.checkNotNullOrThrow(metricRegistry, "metricRegistry");
+        this.metricsName = InvariantUtil.checkNotNullNotEmptyOrThrow(name, "name");
+        return this;
+    }
+
+    /**
+     * Passes the {@link CallTimings} of every call which sent a request to the given listener, telling how
+     * much of the call went to encoding records, marshalling the request, the network, unmarshalling the
+     * response and decoding records. The listener is called on the thread completing the call, before the
+     * call returns or its future completes, so it should be quick. Calls answered from a cache have no timings.
+     *
+     * @param listener receives the timings of every call
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withCallTimings(Consumer<CallTimings> listener) {
+        this.callTimingsListener = InvariantUtil.checkNotNullOrThrow(listener, "listener");
+        return this;
+    }
+
+    /**
+     * Enables hedging of checkTemplate, checkTemplateBuild, getValidateSchemas, validateRecord and sortRecord
+     * requests: when a request has not been answered within the given percentile of the recent latencies of
+     * its endpoint, an identical request is sent, and the first answer wins. See {@link HedgingPolicy}.
+     *
+     * @param percentile   latency percentile after which a request is hedged, e.g. 95
+     * @param maxExtraLoad max number of hedges per request, e.g. 0.05 for at most 5% extra requests
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withHedging(double percentile, double maxExtraLoad) {
+        this.hedging = true;
+        this.hedgingPercentile = percentile;
+        this.hedgingMaxExtraLoad = maxExtraLoad;
+        return this;
+    }
+
+    /**
+     * Enables a circuit breaker per endpoint, see {@link CircuitBreaker}. While the circuit of an endpoint is
+     * open, requests to it, including retries, fail fast with a {@link CircuitBreakerOpenException} instead
+     * of going through the full retry cycle, so a broken endpoint does not tie up the threads and connections
+     * needed by the other endpoints. The readiness probe is not subject to the circuit breakers.
+     * Attempts failing with a server error, or with the 404 answered while opencat-business is being
+     * deployed, count as failures.
+     * With a ready-made {@link FailSafeHttpClient} the circuit breaker guards the whole retry cycle,
+     * see {@link OpencatBusinessConnector#OpencatBusinessConnector(FailSafeHttpClient, String,
+     * OpencatBusinessConnector.TimingLogLevel, Executor)}.
+     *
+     * @param settings circuit breaker settings
+     * @param listener receives every state change of a circuit, may be null
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withCircuitBreaker(CircuitBreakerSettings settings,
+                                                               Consumer<CircuitBreakerEvent> listener) {
+        this.circuitBreakerSettings = InvariantUtil.checkNotNullOrThrow(settings, "settings");
+        this.circuitBreakerListener = listener;
+        return this;
+    }
+
+    /**
+     * As {@link #withCircuitBreaker(CircuitBreakerSettings, Consumer)} without a listener
+     *
+     * @param settings circuit breaker settings
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withCircuitBreaker(CircuitBreakerSettings settings) {
+        return withCircuitBreaker(settings, null);
+    }
+
+    /**
+     * Bounds the number of concurrent requests to opencat-business by a limit adapting to the latency
+     * and failures of the service, see {@link ConcurrencyLimiter}. The limit applies to each attempt,
+     * so no permit is held while waiting to retry, except with a ready-made {@link FailSafeHttpClient} which
+     * retries within a single attempt.
+     * Requests exceeding the limit wait in a bounded queue, and fail with a
+     * {@link ConcurrencyLimitExceededException} if the queue is full or the wait exceeds maxQueueWait.
+     *
+     * @param initialLimit initial number of concurrent requests
+     * @param maxLimit     max number of concurrent requests
+     * @param maxQueued    max number of requests waiting for the limit
+     * @param maxQueueWait max time a request waits for the limit
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withAdaptiveConcurrencyLimit(int initialLimit, int maxLimit, int maxQueued,
+                                                                         Duration maxQueueWait) {
+        this.concurrencyInitialLimit = initialLimit;
+        this.concurrencyMaxLimit = maxLimit;
+        this.concurrencyMaxQueued = maxQueued;
+        this.concurrencyMaxQueueWait = InvariantUtil.checkNotNullOrThrow(maxQueueWait, "maxQueueWait");
+        return this;
+    }
+
+    /**
+     * Enables caching of getValidateSchemas results, keyed on template group and allowed library rules.
+     * Once cached, a result is always served from the cache. Results older than ttl are
+     * refreshed in the background while the stale result is still being served, also
+     * if the refresh fails.
+     *
+     * @param ttl        time before a cached result is refreshed
+     * @param maxEntries max number of cached results, least recently used results are evicted first
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withValidateSchemasCache(Duration ttl, int maxEntries) {
+        this.validateSchemasCacheTtl = InvariantUtil.checkNotNullOrThrow(ttl, "ttl");
+        this.validateSchemasCacheMaxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * Enables caching of the results of the given endpoints, which are pure functions of their request.
+     * Results are keyed on the endpoint, the template provider of sortRecord and the MarcXchange encoding of
+     * the request record, so resending an identical record, e.g. on a retry from an upstream queue, is answered
+     * without calling opencat-business. See {@link RecordResultCache}.
+     *
+     * @param maxBytes  max size of the cached request and result records, least recently used results
+     *                  are evicted first
+     * @param endpoints endpoints whose results are cached
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withResultCache(long maxBytes,
+                                                            Set<OpencatBusinessConnector.CachedEndpoint> endpoints) {
+        this.resultCacheMaxBytes = maxBytes;
+        this.resultCacheEndpoints = copyOf(InvariantUtil.checkNotNullOrThrow(endpoints, "endpoints"));
+        return this;
+    }
+
+    /**
+     * Enables an index of checkTemplate outcomes, see {@link TemplatePermissionIndex}. checkTemplate answers
+     * indexed combinations of template, agency and library type without calling opencat-business, and
+     * adds the outcome of every other combination to the index. The index is invalidated ttl after it was
+     * loaded, so outcomes are fetched again at least that often. It can be loaded in bulk, at startup or on a
+     * schedule, by {@link OpencatBusinessConnector#warmTemplatePermissionIndex(Collection, Collection, Collection, int)}.
+     *
+     * @param ttl time after which the index is invalidated
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withTemplatePermissionIndex(Duration ttl) {
+        this.templatePermissionIndexTtl = InvariantUtil.checkNotNullOrThrow(ttl, "ttl");
+        return this;
+    }
+
+    /**
+     * Keeps the getValidateSchemas cache and the template permission index in the given snapshot file, so that
+     * the first requests after a restart are served locally instead of all going to opencat-business at once.
+     * If the file exists, {@link OpencatBusinessConnector#start()} loads its contents into those of the caches
+     * which are enabled. Loaded getValidateSchemas results are stale: they are served, and refreshed in the
+     * background on their first lookup. Loaded checkTemplate outcomes are expired as their age is unknown: they
+     * are served until they have all been checked again in the background, after which only the outcomes
+     * confirmed by opencat-business are kept. A missing or unreadable file is logged and otherwise ignored.
+     * The file is written by {@link OpencatBusinessConnector#writeCacheSnapshot()}, and when a started
+     * connector is closed.
+     *
+     * @param file snapshot file
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withCacheSnapshot(Path file) {
+        this.cacheSnapshotFile = InvariantUtil.checkNotNullOrThrow(file, "file");
+        return this;
+    }
+
+    /**
+     * Enables gzip compression. Request bodies carrying at least thresholdBytes bytes of MARC records are
+     * sent gzip compressed, and all requests ask for gzip compressed responses, which are decompressed
+     * transparently as they are read. Request bodies without records are small and never compressed.
+     * With a JAX-RS transport this registers a reader interceptor with web targets owned by the connector, leaving
+     * the web resources client untouched. A connector given a ready-made {@link FailSafeHttpClient} can not
+     * decompress responses, so it only compresses requests.
+     *
+     * @param thresholdBytes min size of the records of a request body for the body to be compressed
+     * @return these settings
+     */
+    public OpencatBusinessConnectorSettings withGzipCompression(long thresholdBytes) {
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException("thresholdBytes must not be negative, was " + thresholdBytes);
+        }
+        this.gzipRequestThreshold = thresholdBytes;
+        return this;
+    }
+
+    RetryPolicy<Response> getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    /**
+     * @return connector name of the metrics, or null for the base URL of the connector
+     */
+    String getMetricsName() {
+        return metricsName;
+    }
+
+    Consumer<CallTimings> getCallTimingsListener() {
+        return callTimingsListener;
+    }
+
+    boolean isHedgingEnabled() {
+        return hedging;
+    }
+
+    double getHedgingPercentile() {
+        return hedgingPercentile;
+    }
+
+    double getHedgingMaxExtraLoad() {
+        return hedgingMaxExtraLoad;
+    }
+
+    CircuitBreakerSettings getCircuitBreakerSettings() {
+        return circuitBreakerSettings;
+    }
+
+    Consumer<CircuitBreakerEvent> getCircuitBreakerListener() {
+        return circuitBreakerListener;
+    }
+
+    boolean isConcurrencyLimitEnabled() {
+        return concurrencyMaxQueueWait != null;
+    }
+
+    int getConcurrencyInitialLimit() {
+        return concurrencyInitialLimit;
+    }
+
+    int getConcurrencyMaxLimit() {
+        return concurrencyMaxLimit;
+    }
+
+    int getConcurrencyMaxQueued() {
+        return concurrencyMaxQueued;
+    }
+
+    Duration getConcurrencyMaxQueueWait() {
+        return concurrencyMaxQueueWait;
+    }
+
+    Duration getValidateSchemasCacheTtl() {
+        return validateSchemasCacheTtl;
+    }
+
+    int getValidateSchemasCacheMaxEntries() {
+        return validateSchemasCacheMaxEntries;
+    }
+
+    boolean isResultCacheEnabled() {
+        return resultCacheEndpoints != null;
+    }
+
+    long getResultCacheMaxBytes() {
+        return resultCacheMaxBytes;
+    }
+
+    Set<OpencatBusinessConnector.CachedEndpoint> getResultCacheEndpoints() {
+        return resultCacheEndpoints;
+    }
+
+    Duration getTemplatePermissionIndexTtl() {
+        return templatePermissionIndexTtl;
+    }
+
+    Path getCacheSnapshotFile() {
+        return cacheSnapshotFile;
+    }
+
+    /**
+     * @return min size of the records of a request body for the body to be compressed, or -1 without compression
+     */
+    long getGzipRequestThreshold() {
+        return gzipRequestThreshold;
+    }
+
+    private static Set<OpencatBusinessConnector.CachedEndpoint> copyOf(
+            Set<OpencatBusinessConnector.CachedEndpoint> endpoints) {
+        if (endpoints.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(EnumSet.copyOf(endpoints));
+    }
+}
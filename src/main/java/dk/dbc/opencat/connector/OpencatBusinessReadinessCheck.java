@@ -0,0 +1,151 @@
+package dk.dbc.opencat.connector;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MicroProfile readiness check of the opencat-business service
+ * <p>
+ * The service is probed with a single checkTemplateBuild attempt (no retries) for the template
+ * named by OPENCAT_BUSINESS_HEALTH_TEMPLATE (default allowall). The service is considered ready
+ * whenever it answers with 200 OK, regardless of the result.
+ * </p>
+ * <p>
+ * The outcome of a probe is reused for OPENCAT_BUSINESS_HEALTH_PROBE_INTERVAL_MS (default 5000)
+ * milliseconds, and concurrent health requests share a single probe, so frequent polling of the
+ * readiness endpoint does not add load on opencat-business. A probe not answered within
+ * OPENCAT_BUSINESS_HEALTH_PROBE_TIMEOUT_MS (default 2000) milliseconds reports the service as not ready.
+ * </p>
+ */
+@Readiness
+@ApplicationScoped
+public class OpencatBusinessReadinessCheck implements HealthCheck {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpencatBusinessReadinessCheck.class);
+    private static final String NAME = "opencat-business";
+
+    @Inject
+    OpencatBusinessConnector connector;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_HEALTH_TEMPLATE", defaultValue = "allowall")
+    String probeTemplate;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_HEALTH_PROBE_INTERVAL_MS", defaultValue = "5000")
+    long probeIntervalMillis;
+
+    @Inject
+    @ConfigProperty(name = "OPENCAT_BUSINESS_HEALTH_PROBE_TIMEOUT_MS", defaultValue = "2000")
+    long probeTimeoutMillis;
+
+    private final AtomicReference<ProbeResult> lastResult = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<ProbeResult>> ongoingProbe = new AtomicReference<>();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    public OpencatBusinessReadinessCheck() {
+    }
+
+    public OpencatBusinessReadinessCheck(OpencatBusinessConnector connector, String probeTemplate,
+                                         long probeIntervalMillis, long probeTimeoutMillis) {
+        this.connector = connector;
+        this.probeTemplate = probeTemplate;
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.probeTimeoutMillis = probeTimeoutMillis;
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        final ProbeResult result = lastResult.get();
+        if (result != null && System.currentTimeMillis() - result.probedAt < probeIntervalMillis) {
+            return result.toResponse();
+        }
+        return probe().toResponse();
+    }
+
+    private ProbeResult probe() {
+        final CompletableFuture<ProbeResult> newProbe = new CompletableFuture<>();
+        final CompletableFuture<ProbeResult> probe;
+        if (ongoingProbe.compareAndSet(null, newProbe)) {
+            probe = newProbe;
+            final long startNanos = System.nanoTime();
+            connector.probeCheckTemplateBuild(probeTemplate).whenComplete((ignored, failure) -> {
+                final long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                final ProbeResult result;
+                if (failure == null) {
+                    consecutiveFailures.set(0);
+                    result = new ProbeResult(true, latencyMillis, null, 0);
+                } else {
+                    result = new ProbeResult(false, latencyMillis, String.valueOf(failure.getMessage()),
+                            consecutiveFailures.incrementAndGet());
+                    LOGGER.info("opencat-business at {} is not ready: {}", connector.getBaseUrl(), result.error);
+                }
+                lastResult.set(result);
+                ongoingProbe.set(null);
+                probe.complete(result);
+            });
+        } else {
+            probe = ongoingProbe.get();
+            if (probe == null) {
+                // The probe completed in between
+                return lastResult.get();
+            }
+        }
+        try {
+            return probe.get(probeTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return new ProbeResult(false, probeTimeoutMillis,
+                    "no answer within " + probeTimeoutMillis + " milliseconds", consecutiveFailures.get() + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ProbeResult(false, 0, "interrupted", consecutiveFailures.get());
+        } catch (ExecutionException e) {
+            // Never happens as the probe future is always completed normally
+            return new ProbeResult(false, 0, String.valueOf(e.getCause()), consecutiveFailures.get());
+        }
+    }
+
+    private class ProbeResult {
+        private final boolean up;
+        private final long latencyMillis;
+        private final String error;
+        private final int consecutiveFailures;
+        private final long probedAt = System.currentTimeMillis();
+
+        ProbeResult(boolean up, long latencyMillis, String error, int consecutiveFailures) {
+            this.up = up;
+            this.latencyMillis = latencyMillis;
+            this.error = error;
+            this.consecutiveFailures = consecutiveFailures;
+        }
+
+        HealthCheckResponse toResponse() {
+            final Map<String, Object> data = new LinkedHashMap<>();
+            data.put("url", connector.getBaseUrl());
+            data.put("latencyMillis", latencyMillis);
+            data.put("probedAt", Instant.ofEpochMilli(probedAt).toString());
+            if (error != null) {
+                data.put("error", error);
+                data.put("consecutiveFailures", (long) consecutiveFailures);
+            }
+            return new HealthCheckResponse(NAME,
+                    up ? HealthCheckResponse.Status.UP : HealthCheckResponse.Status.DOWN, Optional.of(data));
+        }
+    }
+}
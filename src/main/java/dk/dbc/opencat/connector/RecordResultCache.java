@@ -0,0 +1,131 @@
+package dk.dbc.opencat.connector;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Size bounded cache of the resulting records of endpoints which are pure functions of their request,
+ * i.e. sortRecord and preprocess
+ * <p>
+ * Entries are keyed on the endpoint path, an endpoint parameter such as the template provider and the encoded
+ * request record. Lookups hash the record, whose hash is memoized by {@link EncodedMarcRecord}, and compare
+ * the encodings byte by byte on hash collisions, so a hit never returns the result of another record.
+ * </p>
+ * <p>
+ * The cache holds at most maxBytes bytes, counting both the request and the result encodings of each entry
+ * plus a fixed overhead per entry. Least recently used entries are evicted first, and results too large to
+ * ever fit are not cached.
+ * </p>
+ * <p>
+ * This class is thread safe. Hits are returned as new {@link EncodedMarcRecord} instances, so a record
+ * decoded by one caller is never shared with another.
+ * </p>
+ */
+class RecordResultCache {
+    // Rough size of the map entry, the key and the two EncodedMarcRecord instances
+    static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, EncodedMarcRecord> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    RecordResultCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1, was " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param path      endpoint path
+     * @param parameter endpoint parameter, may be null
+     * @param record    request record
+     * @return cached result, or null on a miss
+     */
+    EncodedMarcRecord get(String path, String parameter, EncodedMarcRecord record) {
+        final EncodedMarcRecord result;
+        synchronized (this) {
+            result = entries.get(new Key(path, parameter, record));
+        }
+        return result == null ? null : result.copy();
+    }
+
+    /**
+     * @param path      endpoint path
+     * @param parameter endpoint parameter, may be null
+     * @param record    request record
+     * @param result    result of the request
+     */
+    void put(String path, String parameter, EncodedMarcRecord record, EncodedMarcRecord result) {
+        final Key key = new Key(path, parameter, record.copy());
+        final EncodedMarcRecord value = result.copy();
+        final long entryBytes = sizeOf(key, value);
+        if (entryBytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            final EncodedMarcRecord previous = entries.put(key, value);
+            if (previous != null) {
+                bytes -= sizeOf(key, previous);
+            }
+            bytes += entryBytes;
+            final Iterator<Map.Entry<Key, EncodedMarcRecord>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes) {
+                final Map.Entry<Key, EncodedMarcRecord> entry = eldest.next();
+                bytes -= sizeOf(entry.getKey(), entry.getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized int getSize() {
+        return entries.size();
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static long sizeOf(Key key, EncodedMarcRecord result) {
+        return ENTRY_OVERHEAD_BYTES + key.record.size() + result.size()
+                + (key.parameter == null ? 0 : 2L * key.parameter.length());
+    }
+
+    private static final class Key {
+        private final String path;
+        private final String parameter;
+        private final EncodedMarcRecord record;
+        private final int hash;
+
+        private Key(String path, String parameter, EncodedMarcRecord record) {
+            this.path = path;
+            this.parameter = parameter;
+            this.record = record;
+            this.hash = 31 * Objects.hash(path, parameter) + record.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return hash == key.hash && path.equals(key.path) && Objects.equals(parameter, key.parameter)
+                    && record.equals(key.record);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package dk.dbc.opencat.connector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Size bounded in-process cache with stale-while-revalidate semantics
+ * <p>
+ * The first lookup of a key loads the value, and concurrent lookups of the same key share that load.
+ * Once a value has been loaded it is always served directly from the cache: when it is older than the
+ * TTL a reload is started in the background, and the stale value is returned until the reload succeeds.
+ * A failing reload keeps the stale value, so an outage of the backing service never reaches callers
+ * holding a cached value. When the cache holds more than maxEntries the least recently used entry is evicted.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+class RefreshingCache<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshingCache.class);
+
+    private final String name;
+    private final long ttlNanos;
+    private final Function<K, CompletableFuture<V>> loader;
+    private final LongSupplier nanoClock;
+    private final Map<K, Entry<V>> entries;
+
+    RefreshingCache(String name, Duration ttl, int maxEntries, Function<K, CompletableFuture<V>> loader) {
+        this(name, ttl, maxEntries, loader, System::nanoTime);
+    }
+
+    RefreshingCache(String name, Duration ttl, int maxEntries, Function<K, CompletableFuture<V>> loader,
+                    LongSupplier nanoClock) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive, was " + ttl);
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, was " + maxEntries);
+        }
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        this.loader = loader;
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for the given key, loading it if the key is unknown
+     *
+     * @param key cache key
+     * @return future completed with the value, which is already completed unless this is the first load of the key
+     */
+    CompletableFuture<V> get(K key) {
+        final Entry<V> entry;
+        final V cached;
+        final CompletableFuture<V> loading;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(key, k -> new Entry<>());
+            if (entry.loading == null
+                    && (entry.value == null || nanoClock.getAsLong() - entry.refreshAtNanos >= 0)) {
+                entry.loading = new CompletableFuture<>();
+                load = true;
+            }
+            cached = entry.value;
+            loading = entry.loading;
+        }
+        if (load) {
+            if (cached != null) {
+                LOGGER.debug("{} cache refreshing stale entry for {}", name, key);
+            }
+            reload(key, entry, loading);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loading;
+    }
+
+    /**
+     * Adds a value which is considered stale, meaning it is served but revalidated on first lookup
+     *
+     * @param key   cache key
+     * @param value cached value
+     */
+    synchronized void putStale(K key, V value) {
+        final Entry<V> entry = entries.computeIfAbsent(key, k -> new Entry<>());
+        if (entry.value == null && entry.loading == null) {
+            entry.value = value;
+            entry.refreshAtNanos = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * @return snapshot of all loaded values
+     */
+    synchronized Map<K, V> asMap() {
+        final Map<K, V> map = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> {
+            if (entry.value != null) {
+                map.put(key, entry.value);
+            }
+        });
+        return map;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    private void reload(K key, Entry<V> entry, CompletableFuture<V> loading) {
+        CompletableFuture<V> loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        }
+        loaded.whenComplete((value, failure) -> {
+            synchronized (this) {
+                entry.loading = null;
+                if (failure == null && value != null) {
+                    entry.value = value;
+                    entry.refreshAtNanos = nanoClock.getAsLong() + ttlNanos;
+                } else if (entry.value == null) {
+                    // Never cache a failing first load
+                    entries.remove(key, entry);
+                } else {
+                    LOGGER.warn("{} cache failed to refresh entry for {}, keeps serving stale value", name, key, failure);
+                    entry.refreshAtNanos = nanoClock.getAsLong() + ttlNanos;
+                }
+            }
+            if (failure == null) {
+                loading.complete(value);
+            } else {
+                loading.completeExceptionally(failure);
+            }
+        });
+    }
+
+    private static class Entry<V> {
+        private V value;
+        private long refreshAtNanos;
+        private CompletableFuture<V> loading;
+    }
+}
@@ -0,0 +1,95 @@
+package dk.dbc.opencat.connector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry budget shared by the callers of a service
+ * <p>
+ * Every request deposits retryRatio into the budget, and every retry withdraws one,
+ * so in steady state at most retryRatio retries are made per request. On top of that
+ * minRetriesPerSecond is deposited as time goes by, allowing a few retries even when
+ * traffic is low. The balance never exceeds maxBalance, which limits how large a burst
+ * of retries can be when the service finally starts failing.
+ * </p>
+ * <p>
+ * This class is thread safe. As every request deposits, the balance is kept in millionths of a retry
+ * in an atomic long rather than behind a lock.
+ * </p>
+ */
+class RetryBudget {
+    private static final long UNITS_PER_RETRY = 1_000_000;
+    private static final double NANOS_PER_UNIT_PER_RETRY_PER_SECOND = 1e9 / UNITS_PER_RETRY;
+
+    private final long retryRatioUnits;
+    private final double minRetriesPerSecond;
+    private final long maxBalanceUnits;
+
+    private final AtomicLong balanceUnits;
+    private final AtomicLong lastRefillNanos;
+
+    /**
+     * @param retryRatio          number of retries allowed per request made
+     * @param minRetriesPerSecond number of retries allowed per second regardless of the number of requests made
+     * @param maxBalance          upper bound for the number of retries the budget can save up
+     */
+    RetryBudget(double retryRatio, double minRetriesPerSecond, double maxBalance) {
+        if (retryRatio < 0 || minRetriesPerSecond < 0 || maxBalance < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid retry budget: retryRatio=%s, minRetriesPerSecond=%s, maxBalance=%s",
+                    retryRatio, minRetriesPerSecond, maxBalance));
+        }
+        this.retryRatioUnits = Math.round(retryRatio * UNITS_PER_RETRY);
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.maxBalanceUnits = Math.round(maxBalance * UNITS_PER_RETRY);
+        this.balanceUnits = new AtomicLong(maxBalanceUnits);
+        this.lastRefillNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Registers that a request is made
+     */
+    void deposit() {
+        refill();
+        add(retryRatioUnits);
+    }
+
+    /**
+     * Withdraws a retry from the budget
+     *
+     * @return true if the retry may be made, otherwise false
+     */
+    boolean tryWithdraw() {
+        refill();
+        long balance = balanceUnits.get();
+        while (balance >= UNITS_PER_RETRY) {
+            if (balanceUnits.compareAndSet(balance, balance - UNITS_PER_RETRY)) {
+                return true;
+            }
+            balance = balanceUnits.get();
+        }
+        return false;
+    }
+
+    double getBalance() {
+        refill();
+        return (double) balanceUnits.get() / UNITS_PER_RETRY;
+    }
+
+    private void refill() {
+        if (minRetriesPerSecond == 0) {
+            return;
+        }
+        final long last = lastRefillNanos.get();
+        final long now = System.nanoTime();
+        final long units = (long) ((now - last) * minRetriesPerSecond / NANOS_PER_UNIT_PER_RETRY_PER_SECOND);
+        // Time is only claimed once it adds up to a unit, so frequent calls don't lose the fractions,
+        // and only by the caller winning the race, so the same time is never deposited twice
+        if (units > 0 && lastRefillNanos.compareAndSet(last, now)) {
+            add(units);
+        }
+    }
+
+    private void add(long units) {
+        balanceUnits.accumulateAndGet(units, (balance, delta) -> Math.min(maxBalanceUnits, balance + delta));
+    }
+}
@@ -0,0 +1,20 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The Jackson {@link ObjectMapper} shared by the connector classes writing request bodies and reading responses
+ * <p>
+ * An ObjectMapper is thread safe once configured, and caches the serializers and deserializers of the DTO types,
+ * so a single instance is shared instead of each class building its own. Unknown properties in responses are
+ * ignored, as the opencat-business DTOs may grow ahead of the connector.
+ * </p>
+ */
+final class SharedObjectMapper {
+    static final ObjectMapper INSTANCE = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private SharedObjectMapper() {
+    }
+}
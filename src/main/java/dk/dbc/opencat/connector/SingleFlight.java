@@ -0,0 +1,76 @@
+package dk.dbc.opencat.connector;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical concurrent calls into one
+ * <p>
+ * The first call of a key is executed, and calls of the same key arriving while it is in flight share its
+ * outcome instead of being executed themselves. Nothing is remembered once the call completes, so this is
+ * not a cache. Since all callers of a key get the same result object, results must not be modified.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class SingleFlight {
+    private final ConcurrentMap<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Executes the given call on the calling thread, unless an identical call is in flight
+     *
+     * @param key    identity of the call, all calls of a key must have the same result type
+     * @param call   call to execute
+     * @param onJoin invoked when an identical call is in flight
+     * @param <V>    result type
+     * @return future completed with the outcome of the call, which is already completed unless
+     * an identical call was in flight
+     */
+    <V> CompletableFuture<V> execute(String key, Callable<V> call, Runnable onJoin) {
+        return executeAsync(key, () -> {
+            try {
+                return CompletableFuture.completedFuture(call.call());
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }, onJoin);
+    }
+
+    /**
+     * Starts the given call, unless an identical call is in flight
+     *
+     * @param key    identity of the call, all calls of a key must have the same result type
+     * @param call   call to start
+     * @param onJoin invoked when an identical call is in flight
+     * @param <V>    result type
+     * @return future completed with the outcome of the call
+     */
+    @SuppressWarnings("unchecked")
+    <V> CompletableFuture<V> executeAsync(String key, Supplier<CompletableFuture<V>> call, Runnable onJoin) {
+        final CompletableFuture<V> shared = new CompletableFuture<>();
+        final CompletableFuture<V> existing = (CompletableFuture<V>) inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            onJoin.run();
+            return existing.copy();
+        }
+        try {
+            call.get().whenComplete((value, failure) -> {
+                inFlight.remove(key, shared);
+                if (failure != null) {
+                    shared.completeExceptionally(failure);
+                } else {
+                    shared.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+        }
+        // A copy, so that callers can not complete the future shared with other callers
+        return shared.copy();
+    }
+}
@@ -0,0 +1,399 @@
+package dk.dbc.opencat.connector;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process index of checkTemplate outcomes, i.e. whether an agency of a library type may use a template
+ * <p>
+ * Agencies are 6-digit numbers, so they are kept as primitive int keys of an open addressing map giving each
+ * agency an ordinal. Per library type and template the index holds a bitset with two bits per agency ordinal,
+ * telling whether the outcome is known and whether the template is allowed. A lookup is thus two map lookups
+ * on the given strings, a probe of the agency map and a bit test, without allocation.
+ * </p>
+ * <p>
+ * The index is loaded in bulk by {@link #replace(Builder)} or {@link #merge(Builder)}, and learns single
+ * outcomes by {@link #put(String, String, String, boolean)}. It is invalidated ttl after it was loaded, or after its first
+ * outcome was learned if it was empty. Group IDs which are not 6-digit numbers are never indexed, so that
+ * e.g. "10100" and "010100", which are different agencies to opencat-business, never share an outcome.
+ * </p>
+ * <p>
+ * Outcomes of unknown age, i.e. read from a cache snapshot, are loaded by {@link #loadExpired(Builder)}. They are
+ * kept apart as expired outcomes, which answer lookups the current outcomes can not answer until they are
+ * dropped by {@link #dropExpired()}, and which never restart the ttl.
+ * </p>
+ * <p>
+ * This class is thread safe. Lookups read an immutable snapshot, which is replaced on every change.
+ * Changes are meant to be rare compared to lookups, as each one copies the bitset and maps it affects.
+ * </p>
+ */
+class TemplatePermissionIndex {
+    static final int AGENCY_DIGITS = 6;
+    private static final Snapshot EMPTY = new Snapshot(0, new AgencyOrdinals(16), new HashMap<>());
+
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private volatile Snapshot snapshot = EMPTY;
+    private volatile Snapshot expired = EMPTY;
+
+    TemplatePermissionIndex(Duration ttl) {
+        this(ttl, System::nanoTime);
+    }
+
+    TemplatePermissionIndex(Duration ttl, LongSupplier nanoClock) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive, was " + ttl);
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @param templateName template name
+     * @param groupId      agency ID
+     * @param libraryType  library type
+     * @return the indexed outcome, else the expired outcome loaded by {@link #loadExpired(Builder)},
+     * or null if neither is known
+     */
+    Boolean get(String templateName, String groupId, String libraryType) {
+        final int agency = parseAgency(groupId);
+        if (agency < 0) {
+            return null;
+        }
+        final Snapshot current = snapshot;
+        if (current != EMPTY && nanoClock.getAsLong() - current.loadedAtNanos < ttlNanos) {
+            final Boolean allowed = current.get(agency, libraryType, templateName);
+            if (allowed != null) {
+                return allowed;
+            }
+        }
+        return expired.get(agency, libraryType, templateName);
+    }
+
+    /**
+     * Learns a single outcome. An expired index is emptied first.
+     */
+    synchronized void put(String templateName, String groupId, String libraryType, boolean allowed) {
+        final int agency = parseAgency(groupId);
+        if (agency < 0 || templateName == null || libraryType == null) {
+            return;
+        }
+        final Snapshot current = snapshot;
+        final long now = nanoClock.getAsLong();
+        final Snapshot next;
+        if (current == EMPTY || now - current.loadedAtNanos >= ttlNanos) {
+            next = new Snapshot(now, new AgencyOrdinals(16), new HashMap<>());
+        } else {
+            next = current.copyFor(agency, libraryType, templateName);
+        }
+        next.set(agency, libraryType, templateName, allowed);
+        snapshot = next;
+    }
+
+    /**
+     * Replaces the contents of the index, including its expired outcomes, by the outcomes of the given builder,
+     * restarting the ttl
+     */
+    synchronized void replace(Builder builder) {
+        snapshot = new Snapshot(nanoClock.getAsLong(), builder.agencies.copy(), copyPermissions(builder.permissions));
+        expired = EMPTY;
+    }
+
+    /**
+     * Replaces the expired outcomes of the index by the outcomes of the given builder
+     */
+    synchronized void loadExpired(Builder builder) {
+        expired = new Snapshot(nanoClock.getAsLong(), builder.agencies.copy(), copyPermissions(builder.permissions));
+    }
+
+    /**
+     * Drops the expired outcomes, so that only outcomes learned within the ttl are served
+     */
+    synchronized void dropExpired() {
+        expired = EMPTY;
+    }
+
+    /**
+     * Adds the outcomes of the given builder to the contents of the index, restarting the ttl.
+     * An expired index is emptied first.
+     */
+    synchronized void merge(Builder builder) {
+        final Snapshot current = snapshot;
+        final long now = nanoClock.getAsLong();
+        final Snapshot next;
+        if (current == EMPTY || now - current.loadedAtNanos >= ttlNanos) {
+            next = new Snapshot(now, new AgencyOrdinals(16), new HashMap<>());
+        } else {
+            next = new Snapshot(now, current.agencies.copy(), copyPermissions(current.permissions));
+        }
+        forEachOutcome(builder.agencies, builder.permissions, next::set);
+        snapshot = next;
+    }
+
+    /**
+     * @return number of known outcomes, also when expired
+     */
+    int getSize() {
+        final Snapshot current = snapshot;
+        final int[] size = new int[1];
+        for (Map<String, long[]> templates : current.permissions.values()) {
+            for (long[] bits : templates.values()) {
+                for (long word : bits) {
+                    size[0] += Long.bitCount(word & 0x5555555555555555L);
+                }
+            }
+        }
+        final Snapshot loaded = expired;
+        forEachOutcome(loaded.agencies, loaded.permissions, (agency, libraryType, templateName, allowed) -> {
+            if (current.get(agency, libraryType, templateName) == null) {
+                size[0]++;
+            }
+        });
+        return size[0];
+    }
+
+    /**
+     * @return all known outcomes, also when expired. An outcome both learned and loaded expired is
+     * returned as learned.
+     */
+    List<CacheSnapshot.TemplatePermission> getPermissions() {
+        final Snapshot current = snapshot;
+        final Snapshot loaded = expired;
+        final List<CacheSnapshot.TemplatePermission> permissions = new ArrayList<>();
+        forEachOutcome(current.agencies, current.permissions, (agency, libraryType, templateName, allowed) ->
+                permissions.add(new CacheSnapshot.TemplatePermission(templateName, agency, libraryType, allowed)));
+        forEachOutcome(loaded.agencies, loaded.permissions, (agency, libraryType, templateName, allowed) -> {
+            if (current.get(agency, libraryType, templateName) == null) {
+                permissions.add(new CacheSnapshot.TemplatePermission(templateName, agency, libraryType, allowed));
+            }
+        });
+        return permissions;
+    }
+
+    private static void forEachOutcome(AgencyOrdinals agencies, Map<String, Map<String, long[]>> permissions,
+                                       OutcomeConsumer consumer) {
+        final int[] agencyByOrdinal = agencies.agencyByOrdinal();
+        permissions.forEach((libraryType, templates) -> templates.forEach((templateName, bits) -> {
+            for (int ordinal = 0; ordinal < agencyByOrdinal.length && 2 * ordinal >>> 6 < bits.length; ordinal++) {
+                final int bit = 2 * ordinal;
+                if ((bits[bit >>> 6] & 1L << bit) != 0) {
+                    consumer.accept(agencyByOrdinal[ordinal], libraryType, templateName,
+                            (bits[bit >>> 6] & 1L << bit + 1) != 0);
+                }
+            }
+        }));
+    }
+
+    private static Map<String, Map<String, long[]>> copyPermissions(Map<String, Map<String, long[]>> permissions) {
+        final Map<String, Map<String, long[]>> copy = new HashMap<>();
+        permissions.forEach((libraryType, templates) -> {
+            final Map<String, long[]> templatesCopy = new HashMap<>();
+            templates.forEach((templateName, bits) -> templatesCopy.put(templateName, bits.clone()));
+            copy.put(libraryType, templatesCopy);
+        });
+        return copy;
+    }
+
+    @FunctionalInterface
+    private interface OutcomeConsumer {
+        void accept(int agency, String libraryType, String templateName, boolean allowed);
+    }
+
+    /**
+     * @return the agency ID as a number, or -1 if it is not a 6-digit number
+     */
+    static int parseAgency(String groupId) {
+        if (groupId == null || groupId.length() != AGENCY_DIGITS) {
+            return -1;
+        }
+        int agency = 0;
+        for (int i = 0; i < groupId.length(); i++) {
+            final char c = groupId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            agency = agency * 10 + (c - '0');
+        }
+        return agency;
+    }
+
+    /**
+     * Collects outcomes for {@link #replace(Builder)}, {@link #merge(Builder)} and {@link #loadExpired(Builder)}.
+     * Not thread safe.
+     */
+    static class Builder {
+        private final AgencyOrdinals agencies = new AgencyOrdinals(1024);
+        private final Map<String, Map<String, long[]>> permissions = new HashMap<>();
+
+        Builder put(String templateName, String groupId, String libraryType, boolean allowed) {
+            final int agency = parseAgency(groupId);
+            if (agency >= 0 && templateName != null && libraryType != null) {
+                Snapshot.set(agencies, permissions, agency, libraryType, templateName, allowed);
+            }
+            return this;
+        }
+    }
+
+    private static class Snapshot {
+        private final long loadedAtNanos;
+        private final AgencyOrdinals agencies;
+        private final Map<String, Map<String, long[]>> permissions;
+
+        private Snapshot(long loadedAtNanos, AgencyOrdinals agencies, Map<String, Map<String, long[]>> permissions) {
+            this.loadedAtNanos = loadedAtNanos;
+            this.agencies = agencies;
+            this.permissions = permissions;
+        }
+
+        private Boolean get(int agency, String libraryType, String templateName) {
+            final Map<String, long[]> templates = permissions.get(libraryType);
+            if (templates == null) {
+                return null;
+            }
+            final long[] bits = templates.get(templateName);
+            final int ordinal = agencies.get(agency);
+            if (bits == null || ordinal < 0) {
+                return null;
+            }
+            final int bit = 2 * ordinal;
+            if (bit >>> 6 >= bits.length || (bits[bit >>> 6] & 1L << bit) == 0) {
+                return null;
+            }
+            return (bits[bit >>> 6] & 1L << bit + 1) != 0;
+        }
+
+        /* Copies the parts of this snapshot which setting the given outcome modifies, sharing the rest */
+        private Snapshot copyFor(int agency, String libraryType, String templateName) {
+            final AgencyOrdinals agenciesCopy = agencies.get(agency) < 0 ? agencies.copy() : agencies;
+            final Map<String, Map<String, long[]>> permissionsCopy = new HashMap<>(permissions);
+            final Map<String, long[]> templates = permissions.get(libraryType);
+            if (templates != null) {
+                final Map<String, long[]> templatesCopy = new HashMap<>(templates);
+                final long[] bits = templates.get(templateName);
+                if (bits != null) {
+                    templatesCopy.put(templateName, bits.clone());
+                }
+                permissionsCopy.put(libraryType, templatesCopy);
+            }
+            return new Snapshot(loadedAtNanos, agenciesCopy, permissionsCopy);
+        }
+
+        private void set(int agency, String libraryType, String templateName, boolean allowed) {
+            set(agencies, permissions, agency, libraryType, templateName, allowed);
+        }
+
+        private static void set(AgencyOrdinals agencies, Map<String, Map<String, long[]>> permissions,
+                                int agency, String libraryType, String templateName, boolean allowed) {
+            final int bit = 2 * agencies.getOrAdd(agency);
+            final Map<String, long[]> templates = permissions.computeIfAbsent(libraryType, key -> new HashMap<>());
+            long[] bits = templates.get(templateName);
+            if (bits == null || bit >>> 6 >= bits.length) {
+                final long[] grown = new long[Math.max((bit >>> 6) + 1, 2 * agencies.size() / 64 + 1)];
+                if (bits != null) {
+                    System.arraycopy(bits, 0, grown, 0, bits.length);
+                }
+                bits = grown;
+                templates.put(templateName, bits);
+            }
+            bits[bit >>> 6] |= 1L << bit;
+            if (allowed) {
+                bits[bit >>> 6] |= 1L << bit + 1;
+            } else {
+                bits[bit >>> 6] &= ~(1L << bit + 1);
+            }
+        }
+    }
+
+    /* Open addressing map from agency to ordinal with linear probing. Keys are stored plus one, so 0 is free. */
+    private static class AgencyOrdinals {
+        private int[] keys;
+        private int[] ordinals;
+        private int size;
+
+        private AgencyOrdinals(int capacity) {
+            keys = new int[Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1];
+            ordinals = new int[keys.length];
+        }
+
+        private AgencyOrdinals(AgencyOrdinals other) {
+            keys = other.keys.clone();
+            ordinals = other.ordinals.clone();
+            size = other.size;
+        }
+
+        AgencyOrdinals copy() {
+            return new AgencyOrdinals(this);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] agencyByOrdinal() {
+            final int[] agencies = new int[size];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    agencies[ordinals[i]] = keys[i] - 1;
+                }
+            }
+            return agencies;
+        }
+
+        int get(int agency) {
+            final int mask = keys.length - 1;
+            for (int slot = slot(agency, mask); ; slot = slot + 1 & mask) {
+                if (keys[slot] == 0) {
+                    return -1;
+                }
+                if (keys[slot] == agency + 1) {
+                    return ordinals[slot];
+                }
+            }
+        }
+
+        int getOrAdd(int agency) {
+            final int ordinal = get(agency);
+            if (ordinal >= 0) {
+                return ordinal;
+            }
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            final int mask = keys.length - 1;
+            int slot = slot(agency, mask);
+            while (keys[slot] != 0) {
+                slot = slot + 1 & mask;
+            }
+            keys[slot] = agency + 1;
+            ordinals[slot] = size;
+            return size++;
+        }
+
+        private void grow() {
+            final int[] oldKeys = keys;
+            final int[] oldOrdinals = ordinals;
+            keys = new int[oldKeys.length * 2];
+            ordinals = new int[keys.length];
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(oldKeys[i] - 1, mask);
+                    while (keys[slot] != 0) {
+                        slot = slot + 1 & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    ordinals[slot] = oldOrdinals[i];
+                }
+            }
+        }
+
+        private static int slot(int agency, int mask) {
+            final int h = agency * 0x9e3779b9;
+            return (h ^ h >>> 16) & mask;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.updateservice.dto.SchemaDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CacheSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundtrip() throws IOException {
+        final Map<OpencatBusinessConnector.ValidateSchemasKey, List<SchemaDTO>> validateSchemas = new LinkedHashMap<>();
+        validateSchemas.put(new OpencatBusinessConnector.ValidateSchemasKey("dbc",
+                        new HashSet<>(Arrays.asList("auth_root", "auth_common_subjects"))),
+                Arrays.asList(schema("bog", "Bøger"), schema("musik", null)));
+        validateSchemas.put(new OpencatBusinessConnector.ValidateSchemasKey(null, null), Collections.emptyList());
+        final List<CacheSnapshot.TemplatePermission> templatePermissions = Arrays.asList(
+                new CacheSnapshot.TemplatePermission("bog", 870970, "dbc", true),
+                new CacheSnapshot.TemplatePermission("bog", 710100, "fbs", false),
+                new CacheSnapshot.TemplatePermission("bog", 10100, "fbs", true));
+        final Path file = directory.resolve("snapshot");
+
+        new CacheSnapshot(validateSchemas, templatePermissions).write(file);
+        final CacheSnapshot snapshot = CacheSnapshot.read(file);
+
+        assertThat("validateSchemas keys", snapshot.getValidateSchemas().keySet(), is(validateSchemas.keySet()));
+        final List<SchemaDTO> schemas = snapshot.getValidateSchemas().get(
+                new OpencatBusinessConnector.ValidateSchemasKey("dbc",
+                        new HashSet<>(Arrays.asList("auth_root", "auth_common_subjects"))));
+        assertThat("schemas", schemas.size(), is(2));
+        assertThat("schema name", schemas.get(0).getSchemaName(), is("bog"));
+        assertThat("schema info", schemas.get(0).getSchemaInfo(), is("Bøger"));
+        assertThat("null schema info", schemas.get(1).getSchemaInfo(), is(nullValue()));
+
+        assertThat("template permissions", snapshot.getTemplatePermissions().size(), is(3));
+        final CacheSnapshot.TemplatePermission denied = snapshot.getTemplatePermissions().get(1);
+        assertThat("template name", denied.getTemplateName(), is("bog"));
+        assertThat("group id", denied.getGroupId(), is("710100"));
+        assertThat("library type", denied.getLibraryType(), is("fbs"));
+        assertThat("allowed", denied.isAllowed(), is(false));
+        assertThat("leading zero", snapshot.getTemplatePermissions().get(2).getGroupId(), is("010100"));
+    }
+
+    @Test
+    void replacesExistingFile() throws IOException {
+        final Path file = directory.resolve("snapshot");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        new CacheSnapshot(Collections.emptyMap(), Collections.singletonList(
+                new CacheSnapshot.TemplatePermission("bog", 870970, "dbc", true))).write(file);
+
+        assertThat(CacheSnapshot.read(file).getTemplatePermissions().size(), is(1));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat("no temporary files left", files.count(), is(1L));
+        }
+    }
+
+    @Test
+    void notASnapshot() throws IOException {
+        final Path file = directory.resolve("snapshot");
+        Files.write(file, "not a snapshot".getBytes());
+
+        assertThrows(IOException.class, () -> CacheSnapshot.read(file));
+    }
+
+    @Test
+    void truncatedSnapshot() throws IOException {
+        final Path file = directory.resolve("snapshot");
+        new CacheSnapshot(Collections.emptyMap(), Collections.singletonList(
+                new CacheSnapshot.TemplatePermission("bog", 870970, "dbc", true))).write(file);
+        final byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThrows(IOException.class, () -> CacheSnapshot.read(file));
+    }
+
+    private static SchemaDTO schema(String name, String info) {
+        final SchemaDTO schema = new SchemaDTO();
+        schema.setSchemaName(name);
+        schema.setSchemaInfo(info);
+        return schema;
+    }
+}
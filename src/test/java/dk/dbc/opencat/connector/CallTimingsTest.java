@@ -0,0 +1,84 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.opencatbusiness.dto.BuildRecordRequestDTO;
+import dk.dbc.opencatbusiness.dto.CheckTemplateRequestDTO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class CallTimingsTest {
+    private static final String MARC_STRING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<record xmlns=\"info:lc/xmlns/marcxchange-v1\">\n" +
+            "    <leader>00000n    2200000   4500</leader>\n" +
+            "    <datafield tag=\"245\" ind1=\"0\" ind2=\"0\">\n" +
+            "        <subfield code=\"a\">Æbler og pærer</subfield>\n" +
+            "    </datafield>\n" +
+            "</record>\n";
+
+    @Test
+    void phasesAddUp() {
+        final CallTimings timings = new CallTimings("sortRecord", "/api/v1/sortRecord");
+        timings.add(CallTimings.Phase.NETWORK, 3_000_000);
+        timings.add(CallTimings.Phase.NETWORK, 2_000_000);
+        timings.add(CallTimings.Phase.UNMARSHAL, 0);
+
+        assertThat("network", timings.get(CallTimings.Phase.NETWORK), is(Duration.ofMillis(5)));
+        assertThat("unmarshal recorded", timings.isRecorded(CallTimings.Phase.UNMARSHAL), is(true));
+        assertThat("decode not recorded", timings.isRecorded(CallTimings.Phase.DECODE), is(false));
+        assertThat("decode", timings.get(CallTimings.Phase.DECODE), is(Duration.ZERO));
+    }
+
+    @Test
+    void totalIsFixedOnCompletion() throws InterruptedException {
+        final CallTimings timings = new CallTimings("sortRecord", "/api/v1/sortRecord");
+        timings.complete();
+        final Duration total = timings.getTotal();
+        Thread.sleep(2);
+
+        assertThat(timings.getTotal(), is(total));
+    }
+
+    @Test
+    void encodingIsCountedByTheFirstRequestOnly() throws Exception {
+        final JsonRequestBody requestBody = JsonRequestBody.of(new BuildRecordRequestDTO())
+                .withRecord("record", RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8)));
+
+        final CallTimings first = new CallTimings("buildRecord", "/api/v1/buildRecord");
+        first.onRequestBody(requestBody);
+        final CallTimings second = new CallTimings("buildRecord", "/api/v1/buildRecord");
+        second.onRequestBody(requestBody);
+
+        assertThat("first encode", first.isRecorded(CallTimings.Phase.ENCODE), is(true));
+        assertThat("first marshal", first.get(CallTimings.Phase.MARSHAL),
+                is(Duration.ofNanos(requestBody.getMarshalNanos())));
+        assertThat("second encode", second.get(CallTimings.Phase.ENCODE), is(Duration.ZERO));
+        assertThat("second marshal", second.get(CallTimings.Phase.MARSHAL),
+                is(Duration.ofNanos(requestBody.getMarshalNanos())));
+    }
+
+    @Test
+    void noEncodingWithoutRecords() throws Exception {
+        final CallTimings timings = new CallTimings("checkTemplate", "/api/v1/checkTemplate");
+        timings.onRequestBody(JsonRequestBody.of(new CheckTemplateRequestDTO()));
+
+        assertThat("encode", timings.isRecorded(CallTimings.Phase.ENCODE), is(false));
+        assertThat("marshal", timings.isRecorded(CallTimings.Phase.MARSHAL), is(true));
+    }
+
+    @Test
+    void toStringListsRecordedPhases() {
+        final CallTimings timings = new CallTimings("checkTemplate", "/api/v1/checkTemplate");
+        timings.add(CallTimings.Phase.NETWORK, 1_200_000);
+        timings.complete();
+
+        final String string = timings.toString();
+        assertThat(string, string.startsWith("CallTimings{method='checkTemplate', path='/api/v1/checkTemplate', total="),
+                is(true));
+        assertThat(string, string.endsWith(", network=1.2ms}"), is(true));
+    }
+}
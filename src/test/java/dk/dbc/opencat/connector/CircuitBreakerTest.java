@@ -0,0 +1,160 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.opencat.connector.CircuitBreakerEvent.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+    private static final String PATH = "/api/v1/metacompass";
+    private static final long SLOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final List<CircuitBreakerEvent> events = new ArrayList<>();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(PATH, new CircuitBreakerSettings()
+            .withWindowSize(10)
+            .withMinCalls(5)
+            .withHalfOpenProbes(2), events::add, nanoClock::get);
+
+    @Test
+    void staysClosedBelowMinCalls() throws CircuitBreakerOpenException {
+        for (int i = 0; i < 4; i++) {
+            attempt(true, 0);
+        }
+
+        assertThat(circuitBreaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    void opensOnFailureRate() throws CircuitBreakerOpenException {
+        for (int i = 0; i < 5; i++) {
+            attempt(i % 2 == 0, 0);
+        }
+
+        assertThat("state", circuitBreaker.getState(), is(State.OPEN));
+        assertThat("events", events.size(), is(1));
+        assertThat("from", events.get(0).getFrom(), is(State.CLOSED));
+        assertThat("to", events.get(0).getTo(), is(State.OPEN));
+        assertThat("path", events.get(0).getPath(), is(PATH));
+    }
+
+    @Test
+    void opensOnSlowCallRate() throws CircuitBreakerOpenException {
+        attempt(false, 0);
+        for (int i = 0; i < 4; i++) {
+            attempt(false, SLOW_NANOS);
+        }
+
+        assertThat(circuitBreaker.getState(), is(State.OPEN));
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() throws CircuitBreakerOpenException {
+        for (int i = 0; i < 20; i++) {
+            attempt(false, 0);
+        }
+        for (int i = 0; i < 4; i++) {
+            attempt(true, 0);
+        }
+        assertThat("closed", circuitBreaker.getState(), is(State.CLOSED));
+
+        // Five failures of the last ten attempts, although only five of 25 in total
+        attempt(true, 0);
+        assertThat("open", circuitBreaker.getState(), is(State.OPEN));
+    }
+
+    @Test
+    void failsFastWhileOpen() throws CircuitBreakerOpenException {
+        open();
+        nanoClock.addAndGet(OPEN_NANOS - 1);
+
+        assertThrows(CircuitBreakerOpenException.class, circuitBreaker::acquire);
+    }
+
+    @Test
+    void closesWhenProbesSucceed() throws CircuitBreakerOpenException {
+        open();
+        nanoClock.addAndGet(OPEN_NANOS);
+
+        final CircuitBreaker.Permit first = circuitBreaker.acquire();
+        final CircuitBreaker.Permit second = circuitBreaker.acquire();
+        assertThat("half-open", circuitBreaker.getState(), is(State.HALF_OPEN));
+        assertThrows(CircuitBreakerOpenException.class, circuitBreaker::acquire);
+
+        first.complete(false);
+        second.complete(false);
+        assertThat("closed", circuitBreaker.getState(), is(State.CLOSED));
+        assertThat("events", events.size(), is(3));
+
+        // The window was emptied
+        for (int i = 0; i < 4; i++) {
+            attempt(true, 0);
+        }
+        assertThat("still closed", circuitBreaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    void reopensWhenProbeFails() throws CircuitBreakerOpenException {
+        open();
+        nanoClock.addAndGet(OPEN_NANOS);
+
+        attempt(true, 0);
+
+        assertThat(circuitBreaker.getState(), is(State.OPEN));
+        assertThrows(CircuitBreakerOpenException.class, circuitBreaker::acquire);
+    }
+
+    @Test
+    void cancelledProbeFreesItsSlot() throws CircuitBreakerOpenException {
+        open();
+        nanoClock.addAndGet(OPEN_NANOS);
+        circuitBreaker.acquire();
+        circuitBreaker.acquire().cancel();
+
+        circuitBreaker.acquire();
+        assertThat(circuitBreaker.getState(), is(State.HALF_OPEN));
+    }
+
+    @Test
+    void ignoresAttemptsStartedBeforeStateChange() throws CircuitBreakerOpenException {
+        final CircuitBreaker.Permit stale = circuitBreaker.acquire();
+        open();
+        nanoClock.addAndGet(OPEN_NANOS);
+        circuitBreaker.acquire();
+
+        stale.complete(true);
+        assertThat(circuitBreaker.getState(), is(State.HALF_OPEN));
+    }
+
+    @Test
+    void invalidSettings() {
+        final CircuitBreakerSettings settings = new CircuitBreakerSettings();
+        assertThrows(IllegalArgumentException.class, () -> settings.withFailureRateThreshold(0));
+        assertThrows(IllegalArgumentException.class, () -> settings.withSlowCallRateThreshold(1.5));
+        assertThrows(IllegalArgumentException.class, () -> settings.withOpenDuration(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> settings.withWindowSize(0));
+        assertThrows(IllegalArgumentException.class, () -> settings.withHalfOpenProbes(0));
+    }
+
+    private void open() throws CircuitBreakerOpenException {
+        for (int i = 0; i < 5; i++) {
+            attempt(true, 0);
+        }
+        assertThat("opened", circuitBreaker.getState(), is(State.OPEN));
+    }
+
+    private void attempt(boolean failed, long latencyNanos) throws CircuitBreakerOpenException {
+        final CircuitBreaker.Permit permit = circuitBreaker.acquire();
+        nanoClock.addAndGet(latencyNanos);
+        permit.complete(failed);
+    }
+}
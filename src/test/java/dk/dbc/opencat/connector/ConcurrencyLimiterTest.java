@@ -0,0 +1,155 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrencyLimiterTest {
+    private static final String PATH = "/api/v1/sortRecord";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    @AfterEach
+    void shutdownScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void permitsWithinLimit() {
+        final ConcurrencyLimiter limiter = limiter(2, 10, 0);
+
+        assertThat("first", limiter.acquire(PATH).isDone(), is(true));
+        assertThat("second", limiter.acquire(PATH).isDone(), is(true));
+        assertThat("in flight", limiter.getInFlight(), is(2));
+    }
+
+    @Test
+    void queuesInArrivalOrder() throws Exception {
+        final ConcurrencyLimiter limiter = limiter(1, 1, 10);
+        final ConcurrencyLimiter.Permit permit = limiter.acquire(PATH).get();
+        final CompletableFuture<ConcurrencyLimiter.Permit> first = limiter.acquire(PATH);
+        final CompletableFuture<ConcurrencyLimiter.Permit> second = limiter.acquire(PATH);
+
+        assertThat("queued", limiter.getQueued(), is(2));
+        assertThat("first waiting", first.isDone(), is(false));
+
+        permit.release(false);
+        assertThat("first granted", first.isDone(), is(true));
+        assertThat("second waiting", second.isDone(), is(false));
+
+        first.get().release(false);
+        assertThat("second granted", second.isDone(), is(true));
+        assertThat("queue empty", limiter.getQueued(), is(0));
+        assertThat("in flight", limiter.getInFlight(), is(1));
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        final ConcurrencyLimiter limiter = limiter(1, 1, 1);
+        limiter.acquire(PATH);
+        limiter.acquire(PATH);
+
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> limiter.acquire(PATH).get());
+        assertThat(e.getCause(), is(instanceOf(ConcurrencyLimitExceededException.class)));
+    }
+
+    @Test
+    void rejectsAfterMaxQueueWait() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, Duration.ofMillis(10), scheduler);
+        limiter.acquire(PATH);
+
+        final ExecutionException e = assertThrows(ExecutionException.class,
+                () -> limiter.acquire(PATH).get(5, TimeUnit.SECONDS));
+        assertThat("cause", e.getCause(), is(instanceOf(ConcurrencyLimitExceededException.class)));
+        assertThat("queue empty", limiter.getQueued(), is(0));
+    }
+
+    @Test
+    void increasesLimitWhenBusy() throws Exception {
+        final ConcurrencyLimiter limiter = limiter(2, 3, 0);
+        final ConcurrencyLimiter.Permit first = limiter.acquire(PATH).get();
+        final ConcurrencyLimiter.Permit second = limiter.acquire(PATH).get();
+
+        first.release(false);
+        assertThat("increased", limiter.getLimit(), is(3));
+
+        second.release(false);
+        limiter.acquire(PATH).get().release(false);
+        limiter.acquire(PATH).get().release(false);
+        assertThat("capped by max limit", limiter.getLimit(), is(3));
+    }
+
+    @Test
+    void keepsLimitWhenIdle() throws Exception {
+        final ConcurrencyLimiter limiter = limiter(10, 20, 0);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(PATH).get().release(false);
+        }
+
+        assertThat(limiter.getLimit(), is(10));
+    }
+
+    @Test
+    void decreasesLimitOnDrop() throws Exception {
+        final ConcurrencyLimiter limiter = limiter(10, 20, 0);
+        limiter.acquire(PATH).get().release(true);
+
+        assertThat(limiter.getLimit(), is(9));
+    }
+
+    @Test
+    void decreasesLimitOnSlowResponse() throws Exception {
+        final ConcurrencyLimiter limiter = limiter(10, 20, 0);
+        respond(limiter, PATH, Duration.ofMillis(40));
+        respond(limiter, "/api/v1/validateRecord", Duration.ofMillis(200));
+
+        assertThat("other endpoint has its own baseline", limiter.getLimit(), is(10));
+
+        respond(limiter, PATH, Duration.ofMillis(60));
+        assertThat("within tolerance", limiter.getLimit(), is(10));
+
+        respond(limiter, PATH, Duration.ofMillis(100));
+        assertThat("slow", limiter.getLimit(), is(9));
+    }
+
+    @Test
+    void cancelDoesNotAdjustLimit() throws Exception {
+        final ConcurrencyLimiter limiter = limiter(1, 10, 0);
+        final ConcurrencyLimiter.Permit permit = limiter.acquire(PATH).get();
+        permit.cancel();
+        permit.release(true);
+
+        assertThat("limit", limiter.getLimit(), is(1));
+        assertThat("in flight", limiter.getInFlight(), is(0));
+    }
+
+    @Test
+    void invalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> limiter(0, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> limiter(11, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> limiter(1, 10, -1));
+    }
+
+    private void respond(ConcurrencyLimiter limiter, String path, Duration rtt) throws Exception {
+        final ConcurrencyLimiter.Permit permit = limiter.acquire(path).get();
+        nanoClock.addAndGet(rtt.toNanos());
+        permit.release(false);
+    }
+
+    private ConcurrencyLimiter limiter(int initialLimit, int maxLimit, int maxQueued) {
+        return new ConcurrencyLimiter(initialLimit, maxLimit, maxQueued, Duration.ofMinutes(1), scheduler, nanoClock::get);
+    }
+}
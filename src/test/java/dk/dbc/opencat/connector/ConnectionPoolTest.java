@@ -0,0 +1,108 @@
+package dk.dbc.opencat.connector;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.core.Response;
+import org.glassfish.jersey.client.ClientConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConnectionPoolTest {
+    private HttpServer server;
+    private String baseUrl;
+    private Client client;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fast", exchange -> {
+            final byte[] body = "true".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/stuck", exchange -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (client != null) {
+            client.close();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void connectionsAreReused() {
+        final ConnectionPool connectionPool = new ConnectionPool(new ConnectionPoolSettings().withMaxConnections(7));
+        client = ClientBuilder.newClient(connectionPool.configure(new ClientConfig()));
+
+        for (int i = 0; i < 3; i++) {
+            final Response response = client.target(baseUrl).path("fast").request().get();
+            assertThat("entity", response.readEntity(String.class), is("true"));
+        }
+
+        assertThat("leased", connectionPool.getLeased(), is(0));
+        assertThat("available", connectionPool.getAvailable(), is(1));
+        assertThat("pending", connectionPool.getPending(), is(0));
+        assertThat("max", connectionPool.getMax(), is(7));
+    }
+
+    @Test
+    void readTimeout() {
+        final ConnectionPool connectionPool = new ConnectionPool(new ConnectionPoolSettings()
+                .withReadTimeout(Duration.ofMillis(100)));
+        client = ClientBuilder.newClient(connectionPool.configure(new ClientConfig()));
+
+        assertThrows(ProcessingException.class, () -> client.target(baseUrl).path("stuck").request().get());
+    }
+
+    @Test
+    void connectionRequestTimeout() {
+        final ConnectionPool connectionPool = new ConnectionPool(new ConnectionPoolSettings()
+                .withMaxConnections(1)
+                .withMaxConnectionsPerRoute(1)
+                .withConnectionRequestTimeout(Duration.ofMillis(100)));
+        client = ClientBuilder.newClient(connectionPool.configure(new ClientConfig()));
+
+        final Response leased = client.target(baseUrl).path("fast").request().get();
+        try {
+            assertThat("leased", connectionPool.getLeased(), is(1));
+            assertThrows(ProcessingException.class, () -> client.target(baseUrl).path("fast").request().get());
+        } finally {
+            leased.close();
+        }
+        assertThat("leased after close", connectionPool.getLeased(), is(0));
+    }
+
+    @Test
+    void invalidSettings() {
+        final ConnectionPoolSettings settings = new ConnectionPoolSettings();
+        assertThrows(IllegalArgumentException.class, () -> settings.withMaxConnections(0));
+        assertThrows(IllegalArgumentException.class, () -> settings.withMaxConnectionsPerRoute(0));
+        assertThrows(IllegalArgumentException.class, () -> settings.withReadTimeout(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> settings.withConnectionRequestTimeout(Duration.ofSeconds(-1)));
+    }
+}
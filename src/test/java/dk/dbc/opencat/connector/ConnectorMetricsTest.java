@@ -0,0 +1,220 @@
+package dk.dbc.opencat.connector;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConnectorMetricsTest {
+    private static final String PATH = "/api/v1/sortRecord";
+    private static final Tag PATH_TAG = new Tag("path", PATH);
+    private static final Tag CONNECTOR_TAG = new Tag("connector", "http://opencat-business:8080");
+
+    private final MetricRegistry registry = mock(MetricRegistry.class);
+    private final Timer timer = mock(Timer.class);
+    private final Counter counter = mock(Counter.class);
+    private final ConnectorMetrics metrics = new ConnectorMetrics(registry, "http://opencat-business:8080");
+
+    @BeforeEach
+    void setupMocks() {
+        when(registry.timer(any(String.class), any(Tag[].class))).thenReturn(timer);
+        when(registry.counter(any(String.class), any(Tag[].class))).thenReturn(counter);
+    }
+
+    @Test
+    void success() {
+        metrics.onResponse(PATH, 200, Duration.ofMillis(42));
+
+        verify(timer).update(Duration.ofMillis(42));
+        verify(registry).counter(ConnectorMetrics.SUCCESS_COUNTER, PATH_TAG);
+        verify(counter).inc();
+    }
+
+    @Test
+    void failureByStatus() {
+        metrics.onResponse(PATH, 404, Duration.ofMillis(42));
+
+        verify(registry).counter(ConnectorMetrics.FAILURE_COUNTER, PATH_TAG, new Tag("status", "404"));
+        verify(registry, never()).counter(ConnectorMetrics.SUCCESS_COUNTER, PATH_TAG);
+    }
+
+    @Test
+    void failureWithoutResponse() {
+        metrics.onFailure(PATH, Duration.ofMillis(42));
+
+        verify(timer).update(Duration.ofMillis(42));
+        verify(registry).counter(ConnectorMetrics.FAILURE_COUNTER, PATH_TAG, new Tag("status", "none"));
+    }
+
+    @Test
+    void retry() {
+        metrics.onRetry(PATH);
+
+        verify(registry).counter(ConnectorMetrics.RETRY_COUNTER, PATH_TAG);
+        verify(counter).inc();
+    }
+
+    @Test
+    void rejection() {
+        metrics.onRejection(PATH);
+
+        verify(registry).counter(ConnectorMetrics.REJECTION_COUNTER, PATH_TAG);
+        verify(counter).inc();
+    }
+
+    @Test
+    void coalesced() {
+        metrics.onCoalesced(PATH);
+
+        verify(registry).counter(ConnectorMetrics.COALESCED_COUNTER, PATH_TAG);
+        verify(counter).inc();
+    }
+
+    @Test
+    void hedge() {
+        metrics.onHedge(PATH);
+
+        verify(registry).counter(ConnectorMetrics.HEDGE_COUNTER, PATH_TAG);
+        verify(counter).inc();
+    }
+
+    @Test
+    void callTimings() {
+        final CallTimings timings = new CallTimings("sortRecord", PATH);
+        timings.add(CallTimings.Phase.NETWORK, 42_000_000);
+        timings.add(CallTimings.Phase.DECODE, 7_000_000);
+        metrics.onCallTimings(timings);
+
+        verify(registry).timer(ConnectorMetrics.PHASE_TIMER, PATH_TAG, new Tag("phase", "network"));
+        verify(registry).timer(ConnectorMetrics.PHASE_TIMER, PATH_TAG, new Tag("phase", "decode"));
+        verify(registry, never()).timer(ConnectorMetrics.PHASE_TIMER, PATH_TAG, new Tag("phase", "encode"));
+        verify(timer).update(Duration.ofMillis(42));
+        verify(timer).update(Duration.ofMillis(7));
+    }
+
+    @Test
+    void circuitBreaker() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(PATH, new CircuitBreakerSettings(), event -> {});
+        metrics.registerCircuitBreaker(circuitBreaker);
+        metrics.onCircuitBreakerStateChange(PATH, CircuitBreakerEvent.State.OPEN);
+        metrics.onCircuitBreakerRejection(PATH);
+
+        verify(registry).gauge(eq(ConnectorMetrics.CIRCUIT_BREAKER_STATE_GAUGE), eq(circuitBreaker), any(), eq(PATH_TAG), eq(CONNECTOR_TAG));
+        verify(registry).counter(ConnectorMetrics.CIRCUIT_BREAKER_TRANSITION_COUNTER, PATH_TAG, new Tag("state", "OPEN"));
+        verify(registry).counter(ConnectorMetrics.CIRCUIT_BREAKER_REJECTION_COUNTER, PATH_TAG);
+    }
+
+    @Test
+    void compression() {
+        metrics.onCompression("request", 1234);
+        metrics.onCompression("response", -10);
+
+        verify(registry).counter(ConnectorMetrics.COMPRESSION_SAVED_BYTES_COUNTER, new Tag("direction", "request"));
+        verify(counter).inc(1234);
+        verify(registry, never()).counter(ConnectorMetrics.COMPRESSION_SAVED_BYTES_COUNTER, new Tag("direction", "response"));
+    }
+
+    @Test
+    void concurrencyLimiterGauges() {
+        final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(10, 100, 10, Duration.ofSeconds(1), null);
+        metrics.registerConcurrencyLimiter(concurrencyLimiter);
+
+        verify(registry).gauge(eq(ConnectorMetrics.CONCURRENCY_LIMIT_GAUGE), eq(concurrencyLimiter), any(), eq(CONNECTOR_TAG));
+        verify(registry).gauge(eq(ConnectorMetrics.CONCURRENCY_IN_FLIGHT_GAUGE), eq(concurrencyLimiter), any(), eq(CONNECTOR_TAG));
+        verify(registry).gauge(eq(ConnectorMetrics.CONCURRENCY_QUEUED_GAUGE), eq(concurrencyLimiter), any(), eq(CONNECTOR_TAG));
+    }
+
+    @Test
+    void resultCache() {
+        final RecordResultCache resultCache = new RecordResultCache(1024);
+        metrics.registerResultCache(resultCache);
+        metrics.onResultCacheHit(PATH);
+        metrics.onResultCacheMiss(PATH);
+
+        verify(registry).gauge(eq(ConnectorMetrics.RESULT_CACHE_BYTES_GAUGE), eq(resultCache), any(), eq(CONNECTOR_TAG));
+        verify(registry).gauge(eq(ConnectorMetrics.RESULT_CACHE_ENTRIES_GAUGE), eq(resultCache), any(), eq(CONNECTOR_TAG));
+        verify(registry).counter(ConnectorMetrics.RESULT_CACHE_HIT_COUNTER, PATH_TAG);
+        verify(registry).counter(ConnectorMetrics.RESULT_CACHE_MISS_COUNTER, PATH_TAG);
+    }
+
+    @Test
+    void templatePermissionIndex() {
+        when(registry.counter(any(String.class))).thenReturn(counter);
+        final TemplatePermissionIndex templatePermissionIndex = new TemplatePermissionIndex(Duration.ofMinutes(1));
+        metrics.registerTemplatePermissionIndex(templatePermissionIndex);
+        metrics.onTemplatePermissionIndexLookup(true);
+        metrics.onTemplatePermissionIndexLookup(false);
+
+        verify(registry).gauge(eq(ConnectorMetrics.TEMPLATE_INDEX_ENTRIES_GAUGE), eq(templatePermissionIndex), any(), eq(CONNECTOR_TAG));
+        verify(registry).counter(ConnectorMetrics.TEMPLATE_INDEX_HIT_COUNTER);
+        verify(registry).counter(ConnectorMetrics.TEMPLATE_INDEX_MISS_COUNTER);
+    }
+
+    @Test
+    void connectionPoolGauges() {
+        final ConnectionPool connectionPool = new ConnectionPool(new ConnectionPoolSettings());
+        metrics.registerConnectionPool(connectionPool);
+
+        verify(registry).gauge(eq(ConnectorMetrics.POOL_LEASED_GAUGE), eq(connectionPool), any(), eq(CONNECTOR_TAG));
+        verify(registry).gauge(eq(ConnectorMetrics.POOL_AVAILABLE_GAUGE), eq(connectionPool), any(), eq(CONNECTOR_TAG));
+        verify(registry).gauge(eq(ConnectorMetrics.POOL_PENDING_GAUGE), eq(connectionPool), any(), eq(CONNECTOR_TAG));
+        verify(registry).gauge(eq(ConnectorMetrics.POOL_MAX_GAUGE), eq(connectionPool), any(), eq(CONNECTOR_TAG));
+    }
+
+    @Test
+    void gaugeOfOtherConnectorIsNotReplaced() {
+        when(registry.getGauge(new MetricID(ConnectorMetrics.RESULT_CACHE_BYTES_GAUGE, CONNECTOR_TAG)))
+                .thenReturn(mock(Gauge.class));
+
+        assertThrows(IllegalStateException.class, () -> metrics.registerResultCache(new RecordResultCache(1024)));
+        verify(registry, never()).remove(any(MetricID.class));
+    }
+
+    @Test
+    void gaugeOfSameConnectorIsReplaced() {
+        final RecordResultCache resultCache = new RecordResultCache(1024);
+        metrics.registerResultCache(new RecordResultCache(1024));
+        when(registry.getGauge(any(MetricID.class))).thenReturn(mock(Gauge.class));
+
+        metrics.registerResultCache(resultCache);
+
+        verify(registry).remove(new MetricID(ConnectorMetrics.RESULT_CACHE_BYTES_GAUGE, CONNECTOR_TAG));
+        verify(registry).gauge(eq(ConnectorMetrics.RESULT_CACHE_BYTES_GAUGE), eq(resultCache), any(), eq(CONNECTOR_TAG));
+    }
+
+    @Test
+    void circuitBreakerGaugeOfOtherConnectorIsSkipped() {
+        when(registry.getGauge(any(MetricID.class))).thenReturn(mock(Gauge.class));
+
+        metrics.registerCircuitBreaker(new CircuitBreaker(PATH, new CircuitBreakerSettings(), event -> {}));
+
+        verify(registry, never()).gauge(eq(ConnectorMetrics.CIRCUIT_BREAKER_STATE_GAUGE), any(CircuitBreaker.class), any(),
+                eq(PATH_TAG), eq(CONNECTOR_TAG));
+    }
+
+    @Test
+    void instance() {
+        final Tag instanceTag = new Tag("instance", "http://opencat-business-1:8080");
+        metrics.onInstanceResponse("http://opencat-business-1:8080", Duration.ofMillis(42));
+        metrics.onInstanceEjection("http://opencat-business-1:8080");
+
+        verify(registry).timer(ConnectorMetrics.INSTANCE_TIMER, instanceTag);
+        verify(timer).update(Duration.ofMillis(42));
+        verify(registry).counter(ConnectorMetrics.INSTANCE_EJECTION_COUNTER, instanceTag);
+        verify(counter).inc();
+    }
+}
@@ -0,0 +1,96 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.marc.binding.MarcRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EncodedMarcRecordTest {
+    private static final String MARC_STRING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<record xmlns=\"info:lc/xmlns/marcxchange-v1\">\n" +
+            "    <leader>00000n    2200000   4500</leader>\n" +
+            "    <datafield tag=\"245\" ind1=\"0\" ind2=\"0\">\n" +
+            "        <subfield code=\"a\">Æbler, \"pærer\" &amp; blåbær\\tbag\u0001</subfield>\n" +
+            "    </datafield>\n" +
+            "</record>\n";
+
+    @Test
+    void encodesRecord() throws Exception {
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8));
+
+        final EncodedMarcRecord encodedRecord = EncodedMarcRecord.of(marcRecord);
+
+        assertThat("content", encodedRecord.getContent(), is(RecordContentTransformer.encodeRecord(marcRecord)));
+        assertThat("size", encodedRecord.size(), is(encodedRecord.getContent().length));
+    }
+
+    @Test
+    void jsonEscapedContentIsMemoized() throws Exception {
+        final EncodedMarcRecord encodedRecord = EncodedMarcRecord.of(
+                RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(encodedRecord.getJsonEscapedContent(), is(sameInstance(encodedRecord.getJsonEscapedContent())));
+    }
+
+    @Test
+    void jsonEscapedContentIsEscapedAsByJackson() throws Exception {
+        final EncodedMarcRecord encodedRecord = EncodedMarcRecord.of(
+                RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8)));
+        final byte[] content = encodedRecord.getContent();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(expected)) {
+            generator.writeUTF8String(content, 0, content.length);
+        }
+
+        final String quoted = expected.toString(StandardCharsets.UTF_8);
+
+        assertThat(new String(encodedRecord.getJsonEscapedContent(), StandardCharsets.UTF_8),
+                is(quoted.substring(1, quoted.length() - 1)));
+    }
+
+    @Test
+    void contentIsCopied() throws Exception {
+        final EncodedMarcRecord encodedRecord = EncodedMarcRecord.of(
+                RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8)));
+
+        encodedRecord.getContent()[0] = 'X';
+        assertThat(encodedRecord.getContent()[0], is(not((byte) 'X')));
+    }
+
+    @Test
+    void decodesOnFirstAccess() throws Exception {
+        final byte[] content = MARC_STRING.getBytes(StandardCharsets.UTF_8);
+        final EncodedMarcRecord encodedRecord = EncodedMarcRecord.of(content);
+        content[0] = 'X';
+
+        final MarcRecord marcRecord = encodedRecord.getMarcRecord();
+        assertThat("record", marcRecord, is(RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8))));
+        assertThat("memoized", encodedRecord.getMarcRecord(), is(sameInstance(marcRecord)));
+    }
+
+    @Test
+    void unencodableRecord() {
+        assertThrows(IllegalArgumentException.class, () -> EncodedMarcRecord.of(new MarcRecord()));
+        assertThat("ofNullable", EncodedMarcRecord.ofNullable(new MarcRecord()), is(nullValue()));
+        assertThat("null", EncodedMarcRecord.ofNullable(null), is(nullValue()));
+    }
+
+    @Test
+    void equality() throws Exception {
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8));
+
+        assertThat("equals", EncodedMarcRecord.of(marcRecord), is(EncodedMarcRecord.of(marcRecord)));
+        assertThat("hashCode", EncodedMarcRecord.of(marcRecord).hashCode(), is(EncodedMarcRecord.of(marcRecord).hashCode()));
+    }
+}
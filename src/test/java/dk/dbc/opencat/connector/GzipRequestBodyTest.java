@@ -0,0 +1,64 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.opencatbusiness.dto.RecordRequestDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class GzipRequestBodyTest {
+    @Test
+    void writesGzipCompressedBody() throws Exception {
+        final StringBuilder marc = new StringBuilder("<record xmlns=\"info:lc/xmlns/marcxchange-v1\">");
+        for (int i = 0; i < 100; i++) {
+            marc.append("<datafield tag=\"245\" ind1=\"0\" ind2=\"0\"><subfield code=\"a\">Titel ")
+                    .append(i).append("</subfield></datafield>");
+        }
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(
+                marc.append("</record>").toString().getBytes(StandardCharsets.UTF_8));
+        final JsonRequestBody body = JsonRequestBody.of(new RecordRequestDTO()).withRecord("record", marcRecord);
+        final AtomicLong bytesSaved = new AtomicLong();
+        final GzipRequestBody gzipRequestBody = new GzipRequestBody(body, bytesSaved::addAndGet);
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        gzipRequestBody.write(outputStream);
+        final byte[] compressed = outputStream.toByteArray();
+        final byte[] uncompressed = new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes();
+
+        assertThat("decompressed", new String(uncompressed, StandardCharsets.UTF_8), is(body.toString()));
+        assertThat("bytes saved", bytesSaved.get(), is((long) uncompressed.length - compressed.length));
+        assertThat("compressed", bytesSaved.get() > 0, is(true));
+
+        outputStream.reset();
+        gzipRequestBody.write(outputStream);
+        assertThat("can be written repeatedly", outputStream.toByteArray(), is(compressed));
+        assertThat("as byte array", gzipRequestBody.toByteArray(), is(compressed));
+    }
+
+    @Test
+    void leavesOutputStreamOpen() throws Exception {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        final JsonRequestBody body = JsonRequestBody.of(new RecordRequestDTO());
+
+        new GzipRequestBody(body, bytesSaved -> {}).write(outputStream);
+
+        assertThat("closed", closed.get(), is(false));
+        final byte[] uncompressed = new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray())).readAllBytes();
+        assertThat("complete", new String(uncompressed, StandardCharsets.UTF_8), is(body.toString()));
+    }
+}
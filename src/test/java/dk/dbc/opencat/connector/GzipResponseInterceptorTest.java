@@ -0,0 +1,84 @@
+package dk.dbc.opencat.connector;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GzipResponseInterceptorTest {
+    private static final String JSON = "[{\"name\":\"allowall\",\"description\":\"Alle felter er tilladt\"}]";
+
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final GzipResponseInterceptor interceptor = new GzipResponseInterceptor(bytesSaved::addAndGet);
+    private final ReaderInterceptorContext context = mock(ReaderInterceptorContext.class);
+    private final MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+
+    @Test
+    void decompressesGzipEncodedEntity() throws Exception {
+        final byte[] compressed = gzip(JSON.repeat(100));
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, "gzip");
+        when(context.getHeaders()).thenReturn(headers);
+        when(context.getInputStream()).thenReturn(new ByteArrayInputStream(compressed));
+
+        interceptor.aroundReadFrom(context);
+
+        final InputStream inputStream = captureInputStream();
+        assertThat("decompressed", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8), is(JSON.repeat(100)));
+        inputStream.close();
+        assertThat("bytes saved", bytesSaved.get(), is((long) JSON.length() * 100 - compressed.length));
+        assertThat("content encoding removed", headers.containsKey(HttpHeaders.CONTENT_ENCODING), is(false));
+        verify(context).proceed();
+    }
+
+    @Test
+    void leavesUnencodedEntityAsIs() throws Exception {
+        when(context.getHeaders()).thenReturn(headers);
+
+        interceptor.aroundReadFrom(context);
+
+        verify(context, never()).setInputStream(any());
+        verify(context).proceed();
+    }
+
+    @Test
+    void emptyEntityIsNotRead() throws Exception {
+        final InputStream inputStream = new GzipResponseInterceptor.DecompressingInputStream(
+                new ByteArrayInputStream(new byte[0]), bytesSaved::addAndGet);
+        inputStream.close();
+
+        assertThat("bytes saved", bytesSaved.get(), is(0L));
+    }
+
+    private InputStream captureInputStream() {
+        final ArgumentCaptor<InputStream> captor = ArgumentCaptor.forClass(InputStream.class);
+        verify(context).setInputStream(captor.capture());
+        assertThat(captor.getValue(), is(instanceOf(GzipResponseInterceptor.DecompressingInputStream.class)));
+        return captor.getValue();
+    }
+
+    private static byte[] gzip(String s) throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(outputStream)) {
+            gzip.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,175 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HedgingPolicyTest {
+    private static final String PATH = "/api/v1/checkTemplate";
+    private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+    private final ScheduledFuture<?> timer = mock(ScheduledFuture.class);
+    private final List<Runnable> timers = new ArrayList<>();
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final AtomicInteger hedges = new AtomicInteger();
+    private final List<String> discarded = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void captureTimers() {
+        when(scheduler.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.NANOSECONDS))).then(invocation -> {
+            timers.add(invocation.getArgument(0));
+            return (ScheduledFuture) timer;
+        });
+    }
+
+    @Test
+    void noHedgeBeforeMinSamples() {
+        final HedgingPolicy policy = policy(95, 0.05);
+        for (int i = 1; i < HedgingPolicy.MIN_SAMPLES; i++) {
+            answerAfter(policy, LATENCY_NANOS);
+        }
+
+        assertThat("hedge delay", policy.getHedgeDelayNanos(PATH), is(-1L));
+        policy.execute(PATH, CompletableFuture<String>::new, discarded::add, hedges::incrementAndGet);
+        assertThat("timers", timers.size(), is(0));
+    }
+
+    @Test
+    void hedgeDelayIsPercentileOfRecentLatencies() {
+        final HedgingPolicy policy = policy(90, 0.05);
+        for (int i = 1; i <= HedgingPolicy.MIN_SAMPLES; i++) {
+            answerAfter(policy, i * LATENCY_NANOS);
+        }
+
+        assertThat(policy.getHedgeDelayNanos(PATH), is(45 * LATENCY_NANOS));
+    }
+
+    @Test
+    void firstAnswerWins() throws Exception {
+        final HedgingPolicy policy = warmedUpPolicy(0.05);
+        final List<CompletableFuture<String>> requests = new ArrayList<>();
+        final CompletableFuture<String> result = policy.execute(PATH, () -> {
+            final CompletableFuture<String> request = new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        }, discarded::add, hedges::incrementAndGet);
+
+        verify(scheduler).schedule(any(Runnable.class), eq(LATENCY_NANOS), eq(TimeUnit.NANOSECONDS));
+        timers.get(0).run();
+        assertThat("hedges", hedges.get(), is(1));
+        assertThat("requests", requests.size(), is(2));
+
+        requests.get(1).complete("hedge");
+        requests.get(0).complete("primary");
+        assertThat("result", result.get(), is("hedge"));
+        assertThat("discarded", discarded, is(List.of("primary")));
+        verify(timer).cancel(false);
+    }
+
+    @Test
+    void noHedgeWhenAnsweredInTime() throws Exception {
+        final HedgingPolicy policy = warmedUpPolicy(0.05);
+        final CompletableFuture<String> request = new CompletableFuture<>();
+        final CompletableFuture<String> result = policy.execute(PATH, () -> request,
+                discarded::add, hedges::incrementAndGet);
+
+        request.complete("primary");
+        timers.get(0).run();
+        assertThat("result", result.get(), is("primary"));
+        assertThat("hedges", hedges.get(), is(0));
+    }
+
+    @Test
+    void budgetCapsHedges() {
+        final HedgingPolicy policy = warmedUpPolicy(0.01);
+        for (int i = 0; i < 20; i++) {
+            policy.execute(PATH, CompletableFuture<String>::new, discarded::add, hedges::incrementAndGet);
+        }
+        timers.forEach(Runnable::run);
+
+        // The budget starts out full, allowing a burst
+        assertThat(hedges.get(), is(10));
+    }
+
+    @Test
+    void failureWithoutHedgeFailsAtOnce() {
+        final HedgingPolicy policy = warmedUpPolicy(0.05);
+        final CompletableFuture<String> result = policy.execute(PATH,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("down")),
+                discarded::add, hedges::incrementAndGet);
+
+        final ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertThat("cause", e.getCause().getMessage(), is("down"));
+        verify(timer).cancel(false);
+    }
+
+    @Test
+    void failureWaitsForHedge() throws Exception {
+        final HedgingPolicy policy = warmedUpPolicy(0.05);
+        final List<CompletableFuture<String>> requests = new ArrayList<>();
+        final CompletableFuture<String> result = policy.execute(PATH, () -> {
+            final CompletableFuture<String> request = new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        }, discarded::add, hedges::incrementAndGet);
+        timers.get(0).run();
+
+        requests.get(0).completeExceptionally(new IllegalStateException("down"));
+        assertThat("pending", result.isDone(), is(false));
+        requests.get(1).complete("hedge");
+        assertThat("result", result.get(), is("hedge"));
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> policy(0, 0.05));
+        assertThrows(IllegalArgumentException.class, () -> policy(100, 0.05));
+        assertThrows(IllegalArgumentException.class, () -> policy(95, 0));
+        assertThrows(IllegalArgumentException.class, () -> policy(95, 1.5));
+        verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    private HedgingPolicy policy(double percentile, double maxExtraLoad) {
+        return new HedgingPolicy(percentile, maxExtraLoad, scheduler, nanoClock::get);
+    }
+
+    private HedgingPolicy warmedUpPolicy(double maxExtraLoad) {
+        final HedgingPolicy policy = policy(95, maxExtraLoad);
+        for (int i = 0; i < HedgingPolicy.MIN_SAMPLES; i++) {
+            answerAfter(policy, LATENCY_NANOS);
+        }
+        timers.clear();
+        clearInvocations(scheduler, timer);
+        return policy;
+    }
+
+    private void answerAfter(HedgingPolicy policy, long latencyNanos) {
+        policy.execute(PATH, () -> {
+            nanoClock.addAndGet(latencyNanos);
+            return CompletableFuture.completedFuture("answer");
+        }, discarded::add, hedges::incrementAndGet);
+    }
+}
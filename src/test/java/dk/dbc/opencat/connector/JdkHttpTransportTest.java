@@ -0,0 +1,183 @@
+package dk.dbc.opencat.connector;
+
+import com.sun.net.httpserver.HttpServer;
+import dk.dbc.opencatbusiness.dto.CheckTemplateBuildRequestDTO;
+import dk.dbc.opencatbusiness.dto.CheckTemplateBuildResponseDTO;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JdkHttpTransportTest {
+    private final JdkHttpTransport transport = new JdkHttpTransport(HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .build());
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+    private final AtomicReference<String> requestContentType = new AtomicReference<>();
+    private final CountDownLatch slowResponse = new CountDownLatch(1);
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/checkTemplateBuild", exchange -> {
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                requestBody.set(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            requestContentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+            final byte[] body = "{\"result\":true,\"unknownField\":42}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/api/v1/getValidateSchemas", exchange -> {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("[{\"name\":\"allowall\"}]".repeat(50).getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                compressed.writeTo(outputStream);
+            }
+        });
+        server.createContext("/api/v1/sortRecord", exchange -> {
+            final byte[] body = "Det skete en fejl".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(500, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/api/v1/validateRecord", exchange -> {
+            try {
+                slowResponse.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    void stopServer() {
+        slowResponse.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void post() throws Exception {
+        final CheckTemplateBuildRequestDTO requestDTO = new CheckTemplateBuildRequestDTO();
+        requestDTO.setName("allowall");
+
+        final Response response = transport.post(baseUrl, "/api/v1/checkTemplateBuild",
+                JsonRequestBody.of(requestDTO), Map.of("Accept", "application/json"));
+
+        assertThat("status", response.getStatus(), is(200));
+        assertThat("content type", response.getHeaderString("content-type"), is("application/json"));
+        assertThat("entity", response.readEntity(CheckTemplateBuildResponseDTO.class).isResult(), is(true));
+        assertThat("request body", requestBody.get(), is(JsonRequestBody.of(requestDTO).toString()));
+        assertThat("request content type", requestContentType.get(), is("application/json"));
+        assertThrows(IllegalStateException.class, () -> response.readEntity(String.class));
+    }
+
+    @Test
+    void postAsync() throws Exception {
+        final Response response = transport.postAsync(baseUrl, "/api/v1/sortRecord",
+                JsonRequestBody.of(new CheckTemplateBuildRequestDTO()), Map.of(), executor).get();
+
+        assertThat("status", response.getStatus(), is(500));
+        assertThat("entity", response.readEntity(String.class), is("Det skete en fejl"));
+        assertThrows(IllegalStateException.class, () -> response.readEntity(String.class));
+    }
+
+    @Test
+    void decompressesGzipResponse() throws Exception {
+        final AtomicLong bytesSaved = new AtomicLong();
+        transport.enableGzipDecompression(bytesSaved::addAndGet);
+
+        final Response response = transport.post(baseUrl, "/api/v1/getValidateSchemas",
+                JsonRequestBody.of(new CheckTemplateBuildRequestDTO()), Map.of("Accept-Encoding", "gzip"));
+
+        assertThat("entity", response.readEntity(String.class), is("[{\"name\":\"allowall\"}]".repeat(50)));
+        assertThat("bytes saved", bytesSaved.get() > 0, is(true));
+    }
+
+    @Test
+    void connectionFailure() throws Exception {
+        server.stop(0);
+
+        assertThrows(ProcessingException.class, () -> transport.post(baseUrl, "/api/v1/checkTemplateBuild",
+                JsonRequestBody.of(new CheckTemplateBuildRequestDTO()), Map.of()));
+        final CompletionException e = assertThrows(CompletionException.class, () -> transport.postAsync(
+                baseUrl, "/api/v1/checkTemplateBuild", JsonRequestBody.of(new CheckTemplateBuildRequestDTO()),
+                Map.of(), executor).join());
+        assertThat(e.getCause(), is(instanceOf(ProcessingException.class)));
+    }
+
+    @Test
+    void rejectedExecution() {
+        final CompletionException e = assertThrows(CompletionException.class, () -> transport.postAsync(
+                baseUrl, "/api/v1/checkTemplateBuild", JsonRequestBody.of(new CheckTemplateBuildRequestDTO()),
+                Map.of(), runnable -> {
+                    throw new RejectedExecutionException("busy");
+                }).orTimeout(5, TimeUnit.SECONDS).join());
+        assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+    }
+
+    @Test
+    void requestTimeout() {
+        final JdkHttpTransport transport = new JdkHttpTransport(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .build(), Duration.ofMillis(100));
+
+        final ProcessingException e = assertThrows(ProcessingException.class, () -> transport.post(baseUrl,
+                "/api/v1/validateRecord", JsonRequestBody.of(new CheckTemplateBuildRequestDTO()), Map.of()));
+        assertThat("sync", e.getCause(), is(instanceOf(HttpTimeoutException.class)));
+        final CompletionException async = assertThrows(CompletionException.class, () -> transport.postAsync(
+                baseUrl, "/api/v1/validateRecord", JsonRequestBody.of(new CheckTemplateBuildRequestDTO()),
+                Map.of(), executor).join());
+        assertThat("async", async.getCause().getCause(), is(instanceOf(HttpTimeoutException.class)));
+    }
+
+    @Test
+    void uri() {
+        assertThat("trailing slash", JdkHttpTransport.uri("http://host:8080/", "/api/v1/sortRecord").toString(),
+                is("http://host:8080/api/v1/sortRecord"));
+        assertThat("no slashes", JdkHttpTransport.uri("http://host:8080", "api/v1/sortRecord").toString(),
+                is("http://host:8080/api/v1/sortRecord"));
+    }
+}
@@ -0,0 +1,121 @@
+package dk.dbc.opencat.connector;
+
+import com.sun.net.httpserver.HttpServer;
+import dk.dbc.opencatbusiness.dto.CheckTemplateBuildRequestDTO;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JerseyTransportTest {
+    private static final String SCHEMAS = "[{\"name\":\"allowall\"}]".repeat(50);
+
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+    private final AtomicReference<String> requestAccept = new AtomicReference<>();
+    private HttpServer server;
+    private String baseUrl;
+    private Client client;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/checkTemplateBuild", exchange -> {
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                requestBody.set(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            requestAccept.set(exchange.getRequestHeaders().getFirst("Accept"));
+            final byte[] body = "{\"result\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/api/v1/getValidateSchemas", exchange -> {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(SCHEMAS.getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                compressed.writeTo(outputStream);
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        client = ClientBuilder.newClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void post() throws Exception {
+        final CheckTemplateBuildRequestDTO requestDTO = new CheckTemplateBuildRequestDTO();
+        requestDTO.setName("allowall");
+        final JerseyTransport transport = new JerseyTransport(client);
+
+        final Response response = transport.post(baseUrl, "/api/v1/checkTemplateBuild",
+                JsonRequestBody.of(requestDTO), Map.of("Accept", "application/json"));
+
+        assertThat("status", response.getStatus(), is(200));
+        assertThat("entity", response.readEntity(String.class), is("{\"result\":true}"));
+        assertThat("request body", requestBody.get(), is(JsonRequestBody.of(requestDTO).toString()));
+        assertThat("request accept", requestAccept.get(), is("application/json"));
+    }
+
+    @Test
+    void rejectedExecution() {
+        final JerseyTransport transport = new JerseyTransport(client);
+
+        final CompletionException e = assertThrows(CompletionException.class, () -> transport.postAsync(
+                baseUrl, "/api/v1/checkTemplateBuild", JsonRequestBody.of(new CheckTemplateBuildRequestDTO()),
+                Map.of(), runnable -> {
+                    throw new RejectedExecutionException("busy");
+                }).join());
+        assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+        assertThat("request sent", requestBody.get(), is(nullValue()));
+    }
+
+    @Test
+    void gzipDecompressionLeavesClientUntouched() throws Exception {
+        final AtomicLong bytesSaved = new AtomicLong();
+        final JerseyTransport transport = new JerseyTransport(client);
+
+        assertThat("enabled", transport.enableGzipDecompression(bytesSaved::addAndGet), is(true));
+        final Response response = transport.post(baseUrl, "/api/v1/getValidateSchemas",
+                JsonRequestBody.of(new CheckTemplateBuildRequestDTO()), Map.of("Accept-Encoding", "gzip"));
+
+        assertThat("decompressed", response.readEntity(String.class), is(SCHEMAS));
+        assertThat("bytes saved", bytesSaved.get() > 0, is(true));
+        assertThat("client", client.getConfiguration().isRegistered(GzipResponseInterceptor.class), is(false));
+        final Response untouched = client.target(baseUrl).path("/api/v1/getValidateSchemas").request()
+                .post(Entity.json("{}"));
+        assertThat("client response still encoded", untouched.getHeaderString("Content-Encoding"), is("gzip"));
+        untouched.close();
+    }
+}
@@ -0,0 +1,76 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.commons.jsonb.JSONBException;
+import dk.dbc.updateservice.dto.MessageEntryDTO;
+import dk.dbc.updateservice.dto.SchemaDTO;
+import dk.dbc.updateservice.dto.TypeEnumDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonArrayReaderTest {
+    private final JsonArrayReader<MessageEntryDTO> messageEntriesReader = new JsonArrayReader<>(MessageEntryDTO.class);
+    private final JsonArrayReader<SchemaDTO> schemasReader = new JsonArrayReader<>(SchemaDTO.class);
+
+    @Test
+    void readsRecordedGetValidateSchemasResponse() throws Exception {
+        try (InputStream inputStream = getClass().getResourceAsStream("/__files/body-api-v1-getValidateSchemas-o9dlQ.json")) {
+            final List<SchemaDTO> schemas = schemasReader.read(inputStream);
+
+            assertThat("size", schemas.size(), is(12));
+            assertThat("first", schemas.get(0), is(new SchemaDTO("allowall", "")));
+        }
+    }
+
+    @Test
+    void readsMessageEntries() throws Exception {
+        final List<MessageEntryDTO> messageEntries = messageEntriesReader.read(asStream("[" +
+                "{\"type\":\"ERROR\",\"message\":\"Delfelt a mangler\",\"ordinalPositionOfField\":3,\"unknown\":{\"a\":[1,2]}}," +
+                "{\"type\":\"WARNING\",\"message\":\"Æøå\"}]"));
+
+        assertThat("size", messageEntries.size(), is(2));
+        assertThat("first type", messageEntries.get(0).getType(), is(TypeEnumDTO.ERROR));
+        assertThat("first message", messageEntries.get(0).getMessage(), is("Delfelt a mangler"));
+        assertThat("first field position", messageEntries.get(0).getOrdinalPositionOfField(), is(3));
+        assertThat("second type", messageEntries.get(1).getType(), is(TypeEnumDTO.WARNING));
+        assertThat("second message", messageEntries.get(1).getMessage(), is("Æøå"));
+        assertThat("second field position", messageEntries.get(1).getOrdinalPositionOfField(), is(nullValue()));
+    }
+
+    @Test
+    void emptyArray() throws JSONBException {
+        assertThat(messageEntriesReader.read(asStream("[]")).isEmpty(), is(true));
+    }
+
+    @Test
+    void jsonNull() throws JSONBException {
+        assertThat(messageEntriesReader.read(asStream("null")).isEmpty(), is(true));
+    }
+
+    @Test
+    void notAnArray() {
+        assertThrows(JSONBException.class, () -> messageEntriesReader.read(asStream("{\"type\":\"ERROR\"}")));
+    }
+
+    @Test
+    void truncatedArray() {
+        assertThrows(JSONBException.class, () -> messageEntriesReader.read(asStream("[{\"type\":\"ERROR\"},")));
+    }
+
+    @Test
+    void emptyResponse() {
+        assertThrows(JSONBException.class, () -> messageEntriesReader.read(asStream("")));
+    }
+
+    private static InputStream asStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
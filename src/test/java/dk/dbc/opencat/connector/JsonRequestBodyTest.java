@@ -0,0 +1,123 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.opencatbusiness.dto.BuildRecordRequestDTO;
+import dk.dbc.opencatbusiness.dto.CheckTemplateRequestDTO;
+import dk.dbc.opencatbusiness.dto.DoRecategorizationThingsRequestDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class JsonRequestBodyTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String MARC_STRING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<record xmlns=\"info:lc/xmlns/marcxchange-v1\">\n" +
+            "    <leader>00000n    2200000   4500</leader>\n" +
+            "    <datafield tag=\"245\" ind1=\"0\" ind2=\"0\">\n" +
+            "        <subfield code=\"a\">Æbler, \"pærer\" &amp; blåbær\\tbag\u0001</subfield>\n" +
+            "    </datafield>\n" +
+            "</record>\n";
+
+    @Test
+    void recordIsWrittenAsUtf8JsonString() throws Exception {
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8));
+        final BuildRecordRequestDTO requestDTO = new BuildRecordRequestDTO();
+        requestDTO.setTemplateName("allowall");
+        requestDTO.setTrackingId("tracking-id");
+
+        final JsonRequestBody requestBody = JsonRequestBody.of(requestDTO).withRecord("record", marcRecord);
+        final JsonNode json = OBJECT_MAPPER.readTree(toBytes(requestBody));
+
+        assertThat("templateName", json.get("templateName").asText(), is("allowall"));
+        assertThat("trackingId", json.get("trackingId").asText(), is("tracking-id"));
+        assertThat("record", json.get("record").asText(),
+                is(new String(RecordContentTransformer.encodeRecord(marcRecord), StandardCharsets.UTF_8)));
+        assertThat("fields", json.size(), is(3));
+    }
+
+    @Test
+    void nullRecordKeepsDtoField() throws Exception {
+        final BuildRecordRequestDTO requestDTO = new BuildRecordRequestDTO();
+        requestDTO.setTemplateName("allowall");
+
+        final JsonNode json = OBJECT_MAPPER.readTree(toBytes(JsonRequestBody.of(requestDTO).withRecord("record", (MarcRecord) null)));
+
+        assertThat("record", json.get("record").isNull(), is(true));
+        assertThat("fields", json.size(), is(3));
+    }
+
+    @Test
+    void multipleRecords() throws Exception {
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8));
+
+        final JsonNode json = OBJECT_MAPPER.readTree(toBytes(JsonRequestBody.of(new DoRecategorizationThingsRequestDTO())
+                .withRecord("currentRecord", marcRecord)
+                .withRecord("updateRecord", marcRecord)
+                .withRecord("newRecord", (MarcRecord) null)));
+
+        assertThat("currentRecord", json.get("currentRecord").asText(), is(json.get("updateRecord").asText()));
+        assertThat("newRecord", json.get("newRecord").isNull(), is(true));
+    }
+
+    @Test
+    void encodedRecordIsWrittenAsRecord() throws Exception {
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(JsonRequestBody.of(new BuildRecordRequestDTO()).withRecord("record", EncodedMarcRecord.of(marcRecord)).toString(),
+                is(JsonRequestBody.of(new BuildRecordRequestDTO()).withRecord("record", marcRecord).toString()));
+    }
+
+    @Test
+    void canBeWrittenRepeatedly() throws Exception {
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8));
+        final JsonRequestBody requestBody = JsonRequestBody.of(new BuildRecordRequestDTO()).withRecord("record", marcRecord);
+
+        assertThat(new String(toBytes(requestBody), StandardCharsets.UTF_8), is(requestBody.toString()));
+    }
+
+    @Test
+    void toByteArrayIsWrittenOnce() throws Exception {
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8));
+        final JsonRequestBody requestBody = JsonRequestBody.of(new BuildRecordRequestDTO()).withRecord("record", marcRecord);
+
+        final byte[] bytes = requestBody.toByteArray();
+
+        assertThat("content", bytes, is(toBytes(requestBody)));
+        assertThat("reused", requestBody.toByteArray() == bytes, is(true));
+    }
+
+    @Test
+    void identityExcludesTrackingId() throws Exception {
+        final CheckTemplateRequestDTO first = checkTemplateRequestDTO("allowall", "first");
+        final CheckTemplateRequestDTO second = checkTemplateRequestDTO("allowall", "second");
+        final CheckTemplateRequestDTO other = checkTemplateRequestDTO("bog", "first");
+
+        assertThat("same identity", JsonRequestBody.of(first).identity(), is(JsonRequestBody.of(second).identity()));
+        assertThat("other identity", JsonRequestBody.of(first).identity(), is(not(JsonRequestBody.of(other).identity())));
+        assertThat("no trackingId", OBJECT_MAPPER.readTree(JsonRequestBody.of(first).identity()).has("trackingId"), is(false));
+    }
+
+    private static CheckTemplateRequestDTO checkTemplateRequestDTO(String name, String trackingId) {
+        final CheckTemplateRequestDTO requestDTO = new CheckTemplateRequestDTO();
+        requestDTO.setName(name);
+        requestDTO.setGroupId("010100");
+        requestDTO.setLibraryType("fbs");
+        requestDTO.setTrackingId(trackingId);
+        return requestDTO;
+    }
+
+    private static byte[] toBytes(JsonRequestBody requestBody) throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        requestBody.write(outputStream);
+        return outputStream.toByteArray();
+    }
+}
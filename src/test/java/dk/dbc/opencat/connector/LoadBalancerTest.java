@@ -0,0 +1,124 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadBalancerTest {
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    @Test
+    void parsesCommaSeparatedBaseUrls() {
+        final LoadBalancer loadBalancer = LoadBalancer.of(" http://a:8080 ,http://b:8080,, ");
+
+        assertThat(loadBalancer.getInstances().toString(), is("[http://a:8080, http://b:8080]"));
+    }
+
+    @Test
+    void requiresBaseUrl() {
+        assertThrows(IllegalArgumentException.class, () -> LoadBalancer.of(" , "));
+    }
+
+    @Test
+    void singleInstance() {
+        final LoadBalancer loadBalancer = loadBalancer("http://a");
+        final LoadBalancer.Instance instance = loadBalancer.select();
+
+        assertThat("selected", loadBalancer.select(), is(instance));
+        assertThat("outstanding", instance.getOutstanding(), is(2));
+        for (int i = 0; i < 10; i++) {
+            assertThat("never ejected", loadBalancer.complete(instance, 1, true), is(false));
+        }
+    }
+
+    @Test
+    void leastOutstandingWins() {
+        final LoadBalancer loadBalancer = loadBalancer("http://a", "http://b");
+        final LoadBalancer.Instance first = loadBalancer.select();
+        final LoadBalancer.Instance second = loadBalancer.select();
+
+        assertThat("other instance selected", second, is(not(first)));
+
+        final LoadBalancer.Instance third = loadBalancer.select();
+        assertThat("instance with fewest outstanding", loadBalancer.select(), is(not(third)));
+    }
+
+    @Test
+    void cancelReleasesInstanceWithoutOutcome() {
+        final LoadBalancer loadBalancer = loadBalancer("http://a", "http://b");
+        final LoadBalancer.Instance a = loadBalancer.getInstances().get(0);
+        loadBalancer.complete(a, 1, true);
+        loadBalancer.complete(a, 1, true);
+        final int outstanding = a.getOutstanding();
+
+        loadBalancer.cancel(a);
+
+        assertThat("outstanding", a.getOutstanding(), is(outstanding - 1));
+        assertThat("failures kept", loadBalancer.complete(a, 1, true), is(true));
+    }
+
+    @Test
+    void ejectsAfterConsecutiveFailures() {
+        final LoadBalancer loadBalancer = loadBalancer("http://a", "http://b");
+        final LoadBalancer.Instance a = loadBalancer.getInstances().get(0);
+        final LoadBalancer.Instance b = loadBalancer.getInstances().get(1);
+
+        assertThat("first failure", loadBalancer.complete(a, 1, true), is(false));
+        assertThat("success resets", loadBalancer.complete(a, 1, false), is(false));
+        assertThat("second failure", loadBalancer.complete(a, 1, true), is(false));
+        assertThat("third failure", loadBalancer.complete(a, 1, true), is(false));
+        assertThat("fourth failure", loadBalancer.complete(a, 1, true), is(true));
+
+        // b is selected regardless of its outstanding requests
+        for (int i = 0; i < 5; i++) {
+            assertThat("a ejected", loadBalancer.select(), is(b));
+        }
+
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat("a is back", loadBalancer.select(), is(a));
+    }
+
+    @Test
+    void atMostHalfOfTheInstancesAreEjected() {
+        final LoadBalancer loadBalancer = loadBalancer("http://a", "http://b");
+        final LoadBalancer.Instance a = loadBalancer.getInstances().get(0);
+        final LoadBalancer.Instance b = loadBalancer.getInstances().get(1);
+        for (int i = 0; i < 3; i++) {
+            loadBalancer.complete(a, 1, true);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertThat("b not ejected", loadBalancer.complete(b, 1, true), is(false));
+        }
+    }
+
+    @Test
+    void ejectsSlowInstance() {
+        final LoadBalancer loadBalancer = loadBalancer("http://a", "http://b", "http://c");
+        final LoadBalancer.Instance a = loadBalancer.getInstances().get(0);
+        final LoadBalancer.Instance b = loadBalancer.getInstances().get(1);
+        final LoadBalancer.Instance c = loadBalancer.getInstances().get(2);
+        for (int i = 0; i < LoadBalancer.MIN_SAMPLES_FOR_SLOWNESS; i++) {
+            loadBalancer.complete(b, TimeUnit.MILLISECONDS.toNanos(10), false);
+            loadBalancer.complete(c, TimeUnit.MILLISECONDS.toNanos(25), false);
+        }
+        for (int i = 1; i < LoadBalancer.MIN_SAMPLES_FOR_SLOWNESS; i++) {
+            assertThat("too few samples", loadBalancer.complete(a, TimeUnit.MILLISECONDS.toNanos(100), false), is(false));
+        }
+
+        assertThat("a is slow", loadBalancer.complete(a, TimeUnit.MILLISECONDS.toNanos(100), false), is(true));
+        assertThat("c is within bounds", loadBalancer.complete(c, TimeUnit.MILLISECONDS.toNanos(25), false), is(false));
+    }
+
+    private LoadBalancer loadBalancer(String... baseUrls) {
+        return new LoadBalancer(List.of(baseUrls), Duration.ofSeconds(30), nanoClock::get);
+    }
+}
@@ -0,0 +1,76 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.marc.reader.MarcReaderException;
+import dk.dbc.opencatbusiness.dto.RecordResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares hashing the structure of the recorded buildRecord, sortRecord, preprocess, metacompass and
+ * doRecategorizationThings result records by {@link MarcRecordHash} with encoding the records and hashing
+ * the encoded bytes, by a 128-bit digest and by {@link Arrays#hashCode(byte[])} as {@link EncodedMarcRecord} does
+ * <p>
+ * Run with the GC profiler to compare allocation per operation:
+ * </p>
+ * <pre>
+ *     mvn -P benchmark verify -DskipTests -Djmh.include=MarcRecordHashBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarcRecordHashBenchmark {
+    @Param({"buildRecord-QF8oq", "sortRecord-JHH83", "preprocess-nREdr", "metacompass-14gsW",
+            "doRecategorizationThings-rneiv"})
+    public String response;
+
+    private MarcRecord marcRecord;
+
+    @Setup
+    public void setup() throws IOException, MarcReaderException {
+        try (InputStream inputStream = MarcRecordHashBenchmark.class.getResourceAsStream(
+                "/__files/body-api-v1-" + response + ".json")) {
+            final RecordResponseDTO recordResponseDTO = new ObjectMapper().readValue(inputStream, RecordResponseDTO.class);
+            marcRecord = RecordContentTransformer.decodeRecord(
+                    recordResponseDTO.getRecord().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public MarcRecordHash structuralHash() {
+        return MarcRecordHash.of(marcRecord);
+    }
+
+    @Benchmark
+    public byte[] encodedDigest() throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("MD5").digest(RecordContentTransformer.encodeRecord(marcRecord));
+    }
+
+    @Benchmark
+    public int encodedHashCode() {
+        return Arrays.hashCode(RecordContentTransformer.encodeRecord(marcRecord));
+    }
+}
@@ -0,0 +1,96 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.marc.reader.MarcReaderException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class MarcRecordHashTest {
+    private static final String MARC_STRING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<record xmlns=\"info:lc/xmlns/marcxchange-v1\">\n" +
+            "    <leader>00000n    2200000   4500</leader>\n" +
+            "    <controlfield tag=\"001\">12345678</controlfield>\n" +
+            "    <datafield tag=\"001\" ind1=\"0\" ind2=\"0\">\n" +
+            "        <subfield code=\"a\">12345678</subfield>\n" +
+            "        <subfield code=\"b\">870970</subfield>\n" +
+            "    </datafield>\n" +
+            "    <datafield tag=\"245\" ind1=\"0\" ind2=\"0\">\n" +
+            "        <subfield code=\"a\">Æbler og pærer</subfield>\n" +
+            "    </datafield>\n" +
+            "</record>\n";
+
+    @Test
+    void sameContentSameHash() throws MarcReaderException {
+        final MarcRecordHash hash = MarcRecordHash.of(record(MARC_STRING));
+
+        assertThat("equals", MarcRecordHash.of(record(MARC_STRING)), is(hash));
+        assertThat("hashCode", MarcRecordHash.of(record(MARC_STRING)).hashCode(), is(hash.hashCode()));
+    }
+
+    @Test
+    void formattingOfTheDocumentDoesNotMatter() throws MarcReaderException {
+        final String reformatted = MARC_STRING
+                .replace("\n    ", "")
+                .replace("\n        ", "")
+                .replace("tag=\"245\" ind1=\"0\" ind2=\"0\"", "ind2=\"0\" ind1=\"0\" tag=\"245\"");
+
+        assertThat(MarcRecordHash.of(record(reformatted)), is(MarcRecordHash.of(record(MARC_STRING))));
+    }
+
+    @Test
+    void differentContentDifferentHash() throws MarcReaderException {
+        final MarcRecordHash hash = MarcRecordHash.of(record(MARC_STRING));
+        final String[][] changes = {
+                {"00000n    2200000", "00000c    2200000"},
+                {"<controlfield tag=\"001\">12345678", "<controlfield tag=\"001\">12345679"},
+                {"<controlfield tag=\"001\">", "<controlfield tag=\"002\">"},
+                {"<datafield tag=\"001\"", "<datafield tag=\"002\""},
+                {"tag=\"001\" ind1=\"0\"", "tag=\"001\" ind1=\"1\""},
+                {"tag=\"001\" ind1=\"0\" ind2=\"0\"", "tag=\"001\" ind1=\"0\" ind2=\"1\""},
+                {"<subfield code=\"a\">12345678", "<subfield code=\"c\">12345678"},
+                {"<subfield code=\"a\">12345678", "<subfield code=\"a\">12345679"},
+                {"12345678</subfield>\n        <subfield code=\"b\">870970",
+                        "12345678870970</subfield>\n        <subfield code=\"b\">"}};
+
+        for (String[] change : changes) {
+            final String changed = MARC_STRING.replace(change[0], change[1]);
+            assertThat("changed " + change[1], changed, is(not(MARC_STRING)));
+            assertThat(change[1], MarcRecordHash.of(record(changed)), is(not(hash)));
+        }
+    }
+
+    @Test
+    void fieldOrderMatters() throws MarcReaderException {
+        final String reordered = MARC_STRING.replace(
+                "    <datafield tag=\"245\" ind1=\"0\" ind2=\"0\">\n" +
+                "        <subfield code=\"a\">Æbler og pærer</subfield>\n" +
+                "    </datafield>\n", "").replace(
+                "    <datafield tag=\"001\"",
+                "    <datafield tag=\"245\" ind1=\"0\" ind2=\"0\">\n" +
+                "        <subfield code=\"a\">Æbler og pærer</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield tag=\"001\"");
+
+        assertThat(MarcRecordHash.of(record(reordered)), is(not(MarcRecordHash.of(record(MARC_STRING)))));
+    }
+
+    @Test
+    void emptyRecord() {
+        assertThat(MarcRecordHash.of(new MarcRecord()), is(MarcRecordHash.of(new MarcRecord())));
+    }
+
+    @Test
+    void toStringIsHex() throws MarcReaderException {
+        assertThat(MarcRecordHash.of(record(MARC_STRING)).toString().matches("[0-9a-f]{32}"), is(true));
+    }
+
+    private static MarcRecord record(String marcString) throws MarcReaderException {
+        return RecordContentTransformer.decodeRecord(marcString.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,144 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.opencatbusiness.dto.RecordResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MarcRecordResponseReaderTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String MARC_STRING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<record xmlns=\"info:lc/xmlns/marcxchange-v1\">\n" +
+            "    <leader>00000n    2200000   4500</leader>\n" +
+            "    <datafield tag=\"245\" ind1=\"0\" ind2=\"0\">\n" +
+            "        <subfield code=\"a\">Æbler, \"pærer\" &amp; blåbær\\tbag 😀 / ½</subfield>\n" +
+            "    </datafield>\n" +
+            "</record>\n";
+
+    @Test
+    void recordedResponses() throws Exception {
+        for (String file : List.of("body-api-v1-buildRecord-QF8oq.json", "body-api-v1-sortRecord-JHH83.json",
+                "body-api-v1-preprocess-nREdr.json", "body-api-v1-metacompass-14gsW.json",
+                "body-api-v1-doRecategorizationThings-rneiv.json")) {
+            final RecordResponseDTO recordResponseDTO;
+            try (InputStream inputStream = resource(file)) {
+                recordResponseDTO = OBJECT_MAPPER.readValue(inputStream, RecordResponseDTO.class);
+            }
+            final MarcRecord expected = RecordContentTransformer.decodeRecord(
+                    recordResponseDTO.getRecord().getBytes(StandardCharsets.UTF_8));
+
+            try (InputStream inputStream = resource(file)) {
+                assertThat(file, MarcRecordResponseReader.read(inputStream), is(expected));
+            }
+        }
+    }
+
+    @Test
+    void escapedRecordAndOtherFields() throws Exception {
+        final Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", Map.of("ok", true, "messages", List.of("a \"quoted\" } ]", 42, -1.5e3)));
+        response.put("count", 7);
+        response.put("flag", false);
+        response.put("nothing", null);
+        response.put("record", MARC_STRING);
+        response.put("trailing", "ignored");
+        final ObjectMapper escapingMapper = JsonMapper.builder()
+                .enable(JsonWriteFeature.ESCAPE_NON_ASCII)
+                .build();
+        final byte[] json = escapingMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(response);
+
+        // One byte per read exercises every buffer boundary
+        final MarcRecord marcRecord = MarcRecordResponseReader.read(new OneByteInputStream(new ByteArrayInputStream(json)));
+
+        assertThat(marcRecord, is(RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void recordWithTimings() throws Exception {
+        final byte[] json = OBJECT_MAPPER.writeValueAsBytes(Map.of("record", MARC_STRING));
+        final CallTimings timings = new CallTimings("sortRecord", "/api/v1/sortRecord");
+
+        final MarcRecord marcRecord = MarcRecordResponseReader.read(new ByteArrayInputStream(json), timings);
+
+        assertThat("record", marcRecord, is(RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8))));
+        assertThat("unmarshal", timings.isRecorded(CallTimings.Phase.UNMARSHAL), is(true));
+        assertThat("decode", timings.isRecorded(CallTimings.Phase.DECODE), is(true));
+    }
+
+    @Test
+    void encodedRecord() throws Exception {
+        final byte[] json = OBJECT_MAPPER.writeValueAsBytes(Map.of("record", MARC_STRING));
+
+        final EncodedMarcRecord encodedRecord = MarcRecordResponseReader.readEncoded(new OneByteInputStream(new ByteArrayInputStream(json)));
+
+        assertThat("content", encodedRecord.getContent(), is(MARC_STRING.getBytes(StandardCharsets.UTF_8)));
+        assertThat("record", encodedRecord.getMarcRecord(),
+                is(RecordContentTransformer.decodeRecord(MARC_STRING.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void nullEncodedRecord() {
+        assertThrows(OpencatBusinessConnectorException.class,
+                () -> MarcRecordResponseReader.readEncoded(asStream("{\"record\":null}")));
+    }
+
+    @Test
+    void nullRecord() {
+        assertThrows(OpencatBusinessConnectorException.class,
+                () -> MarcRecordResponseReader.read(asStream("{\"record\":null}")));
+    }
+
+    @Test
+    void missingRecord() {
+        assertThrows(OpencatBusinessConnectorException.class,
+                () -> MarcRecordResponseReader.read(asStream("{\"other\":\"value\"}")));
+    }
+
+    @Test
+    void notAnObject() {
+        assertThrows(OpencatBusinessConnectorException.class,
+                () -> MarcRecordResponseReader.read(asStream("[\"record\"]")));
+    }
+
+    @Test
+    void truncatedResponse() {
+        assertThrows(OpencatBusinessConnectorException.class,
+                () -> MarcRecordResponseReader.read(asStream("{\"other\":{\"record\":")));
+    }
+
+    private InputStream resource(String file) {
+        return getClass().getResourceAsStream("/__files/" + file);
+    }
+
+    private static InputStream asStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class OneByteInputStream extends FilterInputStream {
+        OneByteInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return super.read(bytes, offset, Math.min(length, 1));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package dk.dbc.opencat.connector;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OpencatBusinessConnectorSettingsTest {
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/checkTemplateBuild", exchange -> {
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                inputStream.readAllBytes();
+            }
+            final byte[] body = "{\"result\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void settingsAreReadOnConstruction() throws Exception {
+        final List<CallTimings> first = new CopyOnWriteArrayList<>();
+        final List<CallTimings> second = new CopyOnWriteArrayList<>();
+        final OpencatBusinessConnectorSettings settings = new OpencatBusinessConnectorSettings()
+                .withCallTimings(first::add);
+        final OpencatBusinessConnector connector = connector(settings);
+        settings.withCallTimings(second::add);
+
+        assertThat("checkTemplateBuild", connector.checkTemplateBuild("allowall"), is(true));
+        assertThat("listener at construction", first.size(), is(1));
+        assertThat("listener set afterwards", second.size(), is(0));
+        connector.close();
+    }
+
+    @Test
+    void invalidSettings() {
+        final OpencatBusinessConnectorSettings settings = new OpencatBusinessConnectorSettings();
+        assertThrows(IllegalArgumentException.class, () -> settings.withGzipCompression(-1));
+
+        assertThrows(IllegalArgumentException.class, () -> connector(new OpencatBusinessConnectorSettings()
+                .withHedging(100, 0.05)));
+        assertThrows(IllegalArgumentException.class, () -> connector(new OpencatBusinessConnectorSettings()
+                .withAdaptiveConcurrencyLimit(1, 0, 10, Duration.ofSeconds(1))));
+        assertThrows(IllegalArgumentException.class, () -> connector(new OpencatBusinessConnectorSettings()
+                .withValidateSchemasCache(Duration.ZERO, 10)));
+        assertThrows(IllegalArgumentException.class, () -> connector(new OpencatBusinessConnectorSettings()
+                .withResultCache(0, Set.of(OpencatBusinessConnector.CachedEndpoint.SORT_RECORD))));
+        assertThrows(IllegalArgumentException.class, () -> connector(new OpencatBusinessConnectorSettings()
+                .withTemplatePermissionIndex(Duration.ZERO)));
+    }
+
+    private OpencatBusinessConnector connector(OpencatBusinessConnectorSettings settings) {
+        return new OpencatBusinessConnector(HttpClient.newHttpClient(), baseUrl,
+                OpencatBusinessConnector.TimingLogLevel.INFO, Runnable::run, settings);
+    }
+}
@@ -1,5 +1,7 @@
 package dk.dbc.opencat.connector;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import dk.dbc.common.records.RecordContentTransformer;
 import dk.dbc.httpclient.HttpClient;
@@ -11,19 +13,36 @@ import dk.dbc.updateservice.dto.DoubleRecordFrontendStatusDTO;
 import dk.dbc.updateservice.dto.MessageEntryDTO;
 import dk.dbc.updateservice.dto.SchemaDTO;
 import dk.dbc.updateservice.dto.TypeEnumDTO;
+import net.jodah.failsafe.RetryPolicy;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.configureFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -190,6 +209,110 @@ class OpencatBusinessConnectorTest {
         assertThat("checkTemplate returns false", actual, is(false));
     }
 
+    @Test
+    void checkTemplateAsync() throws Exception {
+        final CompletableFuture<Boolean> actualTrue = connector.checkTemplateAsync("netlydbog", "710100", "fbs");
+        final CompletableFuture<Boolean> actualFalse = connector.checkTemplateAsync("dbc", "710100", "fbs");
+
+        assertThat("checkTemplateAsync returns true", actualTrue.get(), is(true));
+        assertThat("checkTemplateAsync returns false", actualFalse.get(), is(false));
+    }
+
+    @Test
+    void checkTemplateWithPermissionIndex() throws Exception {
+        final OpencatBusinessConnector indexingConnector = new OpencatBusinessConnector(CLIENT, wireMockHost,
+                OpencatBusinessConnector.TimingLogLevel.INFO, null, new OpencatBusinessConnectorSettings()
+                .withTemplatePermissionIndex(Duration.ofMinutes(1)));
+        final BatchResult<Boolean> warmed = indexingConnector.warmTemplatePermissionIndex(
+                List.of("netlydbog", "dbc"), List.of("710100"), List.of("fbs"), 2);
+        assertThat("warmed", warmed.getSuccessCount(), is(2L));
+
+        final int requests = countCheckTemplateRequests();
+        assertThat("checkTemplate", indexingConnector.checkTemplate("netlydbog", "710100", "fbs"), is(true));
+        assertThat("checkTemplateAsync", indexingConnector.checkTemplateAsync("dbc", "710100", "fbs").get(), is(false));
+        assertThat("answered by the index", countCheckTemplateRequests(), is(requests));
+    }
+
+    @Test
+    void checkTemplateWithCallTimings() throws Exception {
+        final List<CallTimings> calls = new CopyOnWriteArrayList<>();
+        final OpencatBusinessConnector timingConnector = new OpencatBusinessConnector(CLIENT, wireMockHost,
+                OpencatBusinessConnector.TimingLogLevel.INFO, null, new OpencatBusinessConnectorSettings()
+                .withCallTimings(calls::add));
+
+        timingConnector.checkTemplate("netlydbog", "710100", "fbs");
+        timingConnector.checkTemplateAsync("dbc", "710100", "fbs").get();
+
+        assertThat("calls", calls.size(), is(2));
+        for (CallTimings timings : calls) {
+            assertThat("method", timings.getMethod(), is("checkTemplate"));
+            assertThat("path", timings.getPath(), is("/api/v1/checkTemplate"));
+            assertThat("no records", timings.get(CallTimings.Phase.ENCODE), is(Duration.ZERO));
+            assertThat("network within total",
+                    timings.get(CallTimings.Phase.NETWORK).compareTo(timings.getTotal()) <= 0, is(true));
+        }
+    }
+
+    @Test
+    void checkTemplateRevalidatedFromCacheSnapshot(@TempDir Path directory) throws Exception {
+        final Path file = directory.resolve("snapshot");
+        new CacheSnapshot(Collections.emptyMap(), List.of(
+                new CacheSnapshot.TemplatePermission("netlydbog", 710100, "fbs", false))).write(file);
+        final CountDownLatch revalidation = new CountDownLatch(1);
+        final ExecutorService executorService = Executors.newCachedThreadPool();
+        final Executor gatedExecutor = runnable -> executorService.execute(() -> {
+            try {
+                revalidation.await();
+                runnable.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final OpencatBusinessConnector snapshotConnector = new OpencatBusinessConnector(CLIENT, wireMockHost,
+                OpencatBusinessConnector.TimingLogLevel.INFO, gatedExecutor, new OpencatBusinessConnectorSettings()
+                .withCacheSnapshot(file)
+                .withTemplatePermissionIndex(Duration.ofMinutes(1)));
+        assertThrows(IllegalStateException.class, snapshotConnector::writeCacheSnapshot);
+
+        snapshotConnector.start();
+        assertThrows(IllegalStateException.class, snapshotConnector::start);
+        final int requests = countCheckTemplateRequests();
+        assertThat("loaded", snapshotConnector.checkTemplate("netlydbog", "710100", "fbs"), is(false));
+        assertThat("nothing sent before revalidation", countCheckTemplateRequests(), is(requests));
+
+        revalidation.countDown();
+        final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!snapshotConnector.checkTemplate("netlydbog", "710100", "fbs") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat("revalidated", snapshotConnector.checkTemplate("netlydbog", "710100", "fbs"), is(true));
+        executorService.shutdown();
+    }
+
+    @Test
+    void checkTemplate_notFoundOpensCircuit() {
+        // Unmatched requests get a 404 from WireMock, as from an opencat-business being deployed
+        final OpencatBusinessConnector breakerConnector = new OpencatBusinessConnector(CLIENT, wireMockHost,
+                OpencatBusinessConnector.TimingLogLevel.INFO, null, new OpencatBusinessConnectorSettings()
+                .withRetryPolicy(new RetryPolicy<Response>().withMaxRetries(0))
+                .withCircuitBreaker(new CircuitBreakerSettings()
+                        .withWindowSize(3)
+                        .withMinCalls(3)));
+
+        for (int i = 0; i < 3; i++) {
+            final OpencatBusinessConnectorException e = assertThrows(OpencatBusinessConnectorException.class,
+                    () -> breakerConnector.checkTemplate("undeployed", "710100", "fbs"));
+            assertThat("not found " + i, e instanceof CircuitBreakerOpenException, is(false));
+        }
+        assertThrows(CircuitBreakerOpenException.class,
+                () -> breakerConnector.checkTemplate("undeployed", "710100", "fbs"));
+    }
+
+    private static int countCheckTemplateRequests() {
+        return wireMockServer.countRequestsMatching(postRequestedFor(urlEqualTo("/api/v1/checkTemplate")).build())
+                .getCount();
+    }
+
     @Test
     void checkTemplateBuild_true() throws Exception {
         final boolean actual = connector.checkTemplateBuild("allowall");
@@ -1089,6 +1212,27 @@ class OpencatBusinessConnectorTest {
         assertThat("List of schemas", actual, is(expected));
     }
 
+    @Test
+    void getValidateSchemas_concurrentCallsCoalesced() throws Exception {
+        // The stubbed response is delayed, so that all calls are in flight at the same time
+        final List<CompletableFuture<List<SchemaDTO>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(connector.getValidateSchemasAsync("coalesced", new HashSet<>(), "tracking-" + i));
+        }
+        final List<SchemaDTO> first = futures.get(0).get();
+        for (CompletableFuture<List<SchemaDTO>> future : futures) {
+            final List<SchemaDTO> schemas = future.get();
+            assertThat("same schemas", schemas, is(first));
+            assertThat("own copy", schemas == first, is(future == futures.get(0)));
+        }
+        assertThat("single request", wireMockServer.countRequestsMatching(
+                postRequestedFor(urlEqualTo("/api/v1/getValidateSchemas"))
+                        .withRequestBody(containing("\"coalesced\"")).build()).getCount(), is(1));
+
+        first.remove(0);
+        assertThat("copies are modifiable", futures.get(1).get().size(), is(first.size() + 1));
+    }
+
     @Test
     void sortRecord() throws Exception {
         final String marcString = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><record xmlns=\"info:lc/xmlns/marcxchange-v1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"info:lc/xmlns/marcxchange-v1 http://www.loc.gov/standards/iso25577/marcxchange-1-1.xsd\">\n" +
@@ -1247,6 +1391,16 @@ class OpencatBusinessConnectorTest {
         assertThat(actual, is(expected));
     }
 
+    @Test
+    void sortRecordEncoded() throws Exception {
+        final MarcRecord marcRecord = recordedRecord("mapping-api-v1-sortRecord-Uo7M3.json");
+        final MarcRecord expected = connector.sortRecord("bogbind", marcRecord);
+
+        final EncodedMarcRecord actual = connector.sortRecordEncoded("bogbind", EncodedMarcRecord.of(marcRecord));
+
+        assertThat(actual.getMarcRecord(), is(expected));
+    }
+
     @Test
     void preprocess() throws Exception {
         final String marcString = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><record xmlns=\"info:lc/xmlns/marcxchange-v1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"info:lc/xmlns/marcxchange-v1 http://www.loc.gov/standards/iso25577/marcxchange-1-1.xsd\">\n" +
@@ -1418,6 +1572,16 @@ class OpencatBusinessConnectorTest {
         assertThat(actual, is(expected));
     }
 
+    @Test
+    void preprocessEncoded() throws Exception {
+        final MarcRecord marcRecord = recordedRecord("mapping-api-v1-preprocess-nREdr.json");
+        final MarcRecord expected = connector.preprocess(marcRecord);
+
+        final EncodedMarcRecord actual = connector.preprocessEncoded(EncodedMarcRecord.of(marcRecord));
+
+        assertThat(actual.getMarcRecord(), is(expected));
+    }
+
     @Test
     void metacompass() throws Exception {
         final String marcString = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><record xmlns=\"info:lc/xmlns/marcxchange-v1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"info:lc/xmlns/marcxchange-v1 http://www.loc.gov/standards/iso25577/marcxchange-1-1.xsd\">\n" +
@@ -1722,5 +1886,344 @@ class OpencatBusinessConnectorTest {
         assertThat(thrown.getMessage(), is("Posten 90004158:870970 findes ikke eller er slettet"));
     }
 
+    @Test
+    void metacompassAsync_ErrorCheck() throws Exception {
+        final String marcString = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><record xmlns=\"info:lc/xmlns/marcxchange-v1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"info:lc/xmlns/marcxchange-v1 http://www.loc.gov/standards/iso25577/marcxchange-1-1.xsd\">\n" +
+                "  <leader>00000n    2200000   4500</leader>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"001\">\n" +
+                "    <subfield code=\"a\">90004158</subfield>\n" +
+                "    <subfield code=\"b\">870970</subfield>\n" +
+                "    <subfield code=\"c\">20150304180759</subfield>\n" +
+                "    <subfield code=\"d\">20141209</subfield>\n" +
+                "    <subfield code=\"f\">a</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"004\">\n" +
+                "    <subfield code=\"r\">n</subfield>\n" +
+                "    <subfield code=\"a\">e</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"q\">København</subfield>\n" +
+                "    <subfield code=\"i\">istiden</subfield>\n" +
+                "  </datafield>\n" +
+                "</record>\n";
+
+        final MarcRecord marcRecord = RecordContentTransformer.decodeRecord(marcString.getBytes());
+
+        final ExecutionException thrown = assertThrows(
+                ExecutionException.class,
+                () -> connector.metacompassAsync(marcRecord).get()
+        );
+
+        assertThat(thrown.getCause() instanceof OpencatBusinessConnectorException, is(true));
+        assertThat(thrown.getCause().getMessage(), is("Posten 90004158:870970 findes ikke eller er slettet"));
+    }
+
+    @Test
+    void metacompassRecords() throws Exception {
+        final String okMarcString = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><record xmlns=\"info:lc/xmlns/marcxchange-v1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"info:lc/xmlns/marcxchange-v1 http://www.loc.gov/standards/iso25577/marcxchange-1-1.xsd\">\n" +
+                "  <leader>00000n    2200000   4500</leader>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"001\">\n" +
+                "    <subfield code=\"a\">51580761</subfield>\n" +
+                "    <subfield code=\"b\">870970</subfield>\n" +
+                "    <subfield code=\"c\">20150304180759</subfield>\n" +
+                "    <subfield code=\"d\">20150209</subfield>\n" +
+                "    <subfield code=\"f\">a</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"004\">\n" +
+                "    <subfield code=\"r\">n</subfield>\n" +
+                "    <subfield code=\"a\">e</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"e\">kvinder</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"e\">parforhold</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"e\">politiske forhold</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"i\">middelalderen</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"q\">Danmark</subfield>\n" +
+                "    <subfield code=\"g\">slægtsromaner</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"q\">Europa</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"r\">jeg-fortæller</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">OVRIG</subfield>\n" +
+                "    <subfield code=\"r\">skiftende synsvinkler</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"e\">døden</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"666\">\n" +
+                "    <subfield code=\"s\">kvinder</subfield>\n" +
+                "  </datafield>\n" +
+                "</record>\n";
+
+        final String okMarcStringExpected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><record xmlns=\"info:lc/xmlns/marcxchange-v1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"info:lc/xmlns/marcxchange-v1 http://www.loc.gov/standards/iso25577/marcxchange-1-1.xsd\">\n" +
+                "    <leader>00000n    2200000   4500</leader>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"001\">\n" +
+                "        <subfield code=\"a\">51580761</subfield>\n" +
+                "        <subfield code=\"b\">870970</subfield>\n" +
+                "        <subfield code=\"c\">20150304180759</subfield>\n" +
+                "        <subfield code=\"d\">20150209</subfield>\n" +
+                "        <subfield code=\"f\">a</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"004\">\n" +
+                "        <subfield code=\"r\">n</subfield>\n" +
+                "        <subfield code=\"a\">e</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"008\">\n" +
+                "        <subfield code=\"t\">m</subfield>\n" +
+                "        <subfield code=\"u\">f</subfield>\n" +
+                "        <subfield code=\"a\">2015</subfield>\n" +
+                "        <subfield code=\"b\">dk</subfield>\n" +
+                "        <subfield code=\"d\">å</subfield>\n" +
+                "        <subfield code=\"d\">x</subfield>\n" +
+                "        <subfield code=\"j\">f</subfield>\n" +
+                "        <subfield code=\"l\">ger</subfield>\n" +
+                "        <subfield code=\"o\">s</subfield>\n" +
+                "        <subfield code=\"v\">0</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"009\">\n" +
+                "        <subfield code=\"a\">a</subfield>\n" +
+                "        <subfield code=\"g\">xx</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"021\">\n" +
+                "        <subfield code=\"e\">9788771691078</subfield>\n" +
+                "        <subfield code=\"c\">hf.</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"021\">\n" +
+                "        <subfield code=\"e\">9788771690651</subfield>\n" +
+                "        <subfield code=\"b\">bogpakken DigiLesen nybegyndertysk</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"032\">\n" +
+                "        <subfield code=\"x\">ACC201507</subfield>\n" +
+                "        <subfield code=\"a\">DBF201511</subfield>\n" +
+                "        <subfield code=\"x\">BKM201511</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"100\">\n" +
+                "        <subfield code=\"0\"/>\n" +
+                "        <subfield code=\"a\">Møller</subfield>\n" +
+                "        <subfield code=\"h\">Karl Henrik</subfield>\n" +
+                "        <subfield code=\"4\">aut</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"245\">\n" +
+                "        <subfield code=\"a\">Lilly macht einen Ausflug</subfield>\n" +
+                "        <subfield code=\"c\">QR bog</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"250\">\n" +
+                "        <subfield code=\"a\">1. udgave</subfield>\n" +
+                "        <subfield code=\"b\">÷</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"260\">\n" +
+                "        <subfield code=\"&amp;\">1</subfield>\n" +
+                "        <subfield code=\"a\">[Værløse]</subfield>\n" +
+                "        <subfield code=\"b\">DigTea</subfield>\n" +
+                "        <subfield code=\"c\">2015</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"300\">\n" +
+                "        <subfield code=\"a\">23 sider</subfield>\n" +
+                "        <subfield code=\"b\">alle ill. i farver</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"440\">\n" +
+                "        <subfield code=\"0\"/>\n" +
+                "        <subfield code=\"a\">Digilesen</subfield>\n" +
+                "        <subfield code=\"o\">Lillys Leben - Niveau B</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"504\">\n" +
+                "        <subfield code=\"&amp;\">1</subfield>\n" +
+                "        <subfield code=\"a\">Lilly og hendes far tager på udflugt, og hendes far bestemmer at de skal ud i naturen, men Lilly ville hellere have været på shoppetur i byen. Desværre forløber turen ikke helt som planlagt</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"512\">\n" +
+                "        <subfield code=\"a\">På titelsiden: Hören und lesen</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"520\">\n" +
+                "        <subfield code=\"&amp;\">1</subfield>\n" +
+                "        <subfield code=\"a\">Originaludgave: 2015</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"521\">\n" +
+                "        <subfield code=\"b\">1. oplag</subfield>\n" +
+                "        <subfield code=\"c\">2015</subfield>\n" +
+                "        <subfield code=\"k\">Lasertryk</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"526\">\n" +
+                "        <subfield code=\"a\">Heri QR-koder til bogens tekst indlæst</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"652\">\n" +
+                "        <subfield code=\"n\">86.4</subfield>\n" +
+                "        <subfield code=\"z\">096</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"652\">\n" +
+                "        <subfield code=\"o\">84</subfield>\n" +
+                "    </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"e\">kvinder</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"e\">parforhold</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"e\">politiske forhold</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"i\">middelalderen</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"q\">Danmark</subfield>\n" +
+                "    <subfield code=\"g\">slægtsromaner</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"q\">Europa</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"r\">jeg-fortæller</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">OVRIG</subfield>\n" +
+                "    <subfield code=\"r\">skiftende synsvinkler</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"&amp;\">LEKTOR</subfield>\n" +
+                "    <subfield code=\"e\">døden</subfield>\n" +
+                "  </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"666\">\n" +
+                "        <subfield code=\"0\"/>\n" +
+                "        <subfield code=\"s\">udflugter</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"666\">\n" +
+                "        <subfield code=\"0\"/>\n" +
+                "        <subfield code=\"u\">for 11 år</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"666\">\n" +
+                "        <subfield code=\"0\"/>\n" +
+                "        <subfield code=\"u\">for 12 år</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"666\">\n" +
+                "        <subfield code=\"0\"/>\n" +
+                "        <subfield code=\"u\">let at læse</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"720\">\n" +
+                "        <subfield code=\"o\">Mette Bødker</subfield>\n" +
+                "        <subfield code=\"4\">ill</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"945\">\n" +
+                "        <subfield code=\"a\">Digi lesen</subfield>\n" +
+                "        <subfield code=\"z\">440(a)</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"945\">\n" +
+                "        <subfield code=\"a\">Lillys Leben - Niveau B</subfield>\n" +
+                "        <subfield code=\"z\">440(a,o)</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"990\">\n" +
+                "        <subfield code=\"o\">201511</subfield>\n" +
+                "        <subfield code=\"b\">b</subfield>\n" +
+                "        <subfield code=\"b\">s</subfield>\n" +
+                "        <subfield code=\"u\">nt</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"996\">\n" +
+                "        <subfield code=\"a\">DBC</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"d08\">\n" +
+                "        <subfield code=\"o\">cko</subfield>\n" +
+                "        <subfield code=\"o\">ehw</subfield>\n" +
+                "        <subfield code=\"a\">På titelsiden: Indtalt af Maria Strebel, 504: 5 146 435 4</subfield>\n" +
+                "        <subfield code=\"k\">stj</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"d31\">\n" +
+                "        <subfield code=\"b\">148</subfield>\n" +
+                "        <subfield code=\"h\">208</subfield>\n" +
+                "        <subfield code=\"t\">3</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"d32\">\n" +
+                "        <subfield code=\"b\">148</subfield>\n" +
+                "        <subfield code=\"h\">210</subfield>\n" +
+                "        <subfield code=\"t\">7</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"d35\">\n" +
+                "        <subfield code=\"a\">P</subfield>\n" +
+                "        <subfield code=\"i\">04</subfield>\n" +
+                "        <subfield code=\"n\">05</subfield>\n" +
+                "        <subfield code=\"p\">04</subfield>\n" +
+                "        <subfield code=\"q\">05</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"f06\">\n" +
+                "        <subfield code=\"b\">b</subfield>\n" +
+                "        <subfield code=\"b\">s</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"n51\">\n" +
+                "        <subfield code=\"a\">20150304</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"s10\">\n" +
+                "        <subfield code=\"a\">DBC</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"s12\">\n" +
+                "        <subfield code=\"t\">TeamBMV201509</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"z98\">\n" +
+                "        <subfield code=\"a\">Minus korrekturprint</subfield>\n" +
+                "    </datafield>\n" +
+                "    <datafield ind1=\"0\" ind2=\"0\" tag=\"z99\">\n" +
+                "        <subfield code=\"a\">stj</subfield>\n" +
+                "    </datafield>\n" +
+                "</record>\n";
+
+        final String failingMarcString = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><record xmlns=\"info:lc/xmlns/marcxchange-v1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"info:lc/xmlns/marcxchange-v1 http://www.loc.gov/standards/iso25577/marcxchange-1-1.xsd\">\n" +
+                "  <leader>00000n    2200000   4500</leader>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"001\">\n" +
+                "    <subfield code=\"a\">90004158</subfield>\n" +
+                "    <subfield code=\"b\">870970</subfield>\n" +
+                "    <subfield code=\"c\">20150304180759</subfield>\n" +
+                "    <subfield code=\"d\">20141209</subfield>\n" +
+                "    <subfield code=\"f\">a</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"004\">\n" +
+                "    <subfield code=\"r\">n</subfield>\n" +
+                "    <subfield code=\"a\">e</subfield>\n" +
+                "  </datafield>\n" +
+                "  <datafield ind1=\"0\" ind2=\"0\" tag=\"665\">\n" +
+                "    <subfield code=\"q\">København</subfield>\n" +
+                "    <subfield code=\"i\">istiden</subfield>\n" +
+                "  </datafield>\n" +
+                "</record>\n";
+
+        final MarcRecord okMarcRecord = RecordContentTransformer.decodeRecord(okMarcString.getBytes());
+        final MarcRecord failingMarcRecord = RecordContentTransformer.decodeRecord(failingMarcString.getBytes());
+        final MarcRecord expected = connector.metacompass(okMarcRecord);
+
+        final BatchResult<MarcRecord> actual = connector.metacompassRecords(
+                Arrays.asList(failingMarcRecord, okMarcRecord, failingMarcRecord), 2);
 
+        assertThat("batch size", actual.size(), is(3));
+        assertThat("failure count", actual.getFailureCount(), is(2L));
+        assertThat("first record fails", actual.getItems().get(0).getFailure().getMessage(),
+                is("Posten 90004158:870970 findes ikke eller er slettet"));
+        assertThat("second record succeeds", actual.getItems().get(1).getValue(), is(expected));
+        assertThat("third record fails", actual.getItems().get(2).isSuccess(), is(false));
+    }
+
+    /**
+     * Returns the record of the request recorded in the given WireMock mapping
+     */
+    private static MarcRecord recordedRecord(String mapping) throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final JsonNode stub = objectMapper.readTree(
+                OpencatBusinessConnectorTest.class.getResource("/mappings/" + mapping));
+        final JsonNode request = objectMapper.readTree(stub.at("/request/bodyPatterns/0/equalToJson").asText());
+        return RecordContentTransformer.decodeRecord(request.get("record").asText().getBytes(StandardCharsets.UTF_8));
+    }
 }
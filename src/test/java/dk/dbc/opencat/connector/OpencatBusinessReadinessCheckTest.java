@@ -0,0 +1,55 @@
+package dk.dbc.opencat.connector;
+
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpencatBusinessReadinessCheckTest {
+    private final OpencatBusinessConnector connector = mock(OpencatBusinessConnector.class);
+
+    @Test
+    void upAndReusedWithinInterval() {
+        when(connector.probeCheckTemplateBuild("allowall")).thenReturn(CompletableFuture.completedFuture(true));
+        final OpencatBusinessReadinessCheck readinessCheck =
+                new OpencatBusinessReadinessCheck(connector, "allowall", 60000, 1000);
+
+        assertThat(readinessCheck.call().getStatus(), is(HealthCheckResponse.Status.UP));
+        assertThat(readinessCheck.call().getStatus(), is(HealthCheckResponse.Status.UP));
+        verify(connector, times(1)).probeCheckTemplateBuild("allowall");
+    }
+
+    @Test
+    void downOnFailure() {
+        when(connector.probeCheckTemplateBuild("allowall")).thenReturn(CompletableFuture.failedFuture(
+                new OpencatBusinessConnectorException("Det skete en uventet fejl i opencat-business")));
+        final OpencatBusinessReadinessCheck readinessCheck =
+                new OpencatBusinessReadinessCheck(connector, "allowall", 0, 1000);
+
+        readinessCheck.call();
+        final HealthCheckResponse response = readinessCheck.call();
+
+        assertThat(response.getStatus(), is(HealthCheckResponse.Status.DOWN));
+        assertThat(response.getData().get().get("consecutiveFailures"), is(2L));
+        verify(connector, times(2)).probeCheckTemplateBuild("allowall");
+    }
+
+    @Test
+    void downOnTimeout() {
+        when(connector.probeCheckTemplateBuild("allowall")).thenReturn(new CompletableFuture<>());
+        final OpencatBusinessReadinessCheck readinessCheck =
+                new OpencatBusinessReadinessCheck(connector, "allowall", 0, 10);
+
+        assertThat(readinessCheck.call().getStatus(), is(HealthCheckResponse.Status.DOWN));
+        assertThat("probe is shared while unanswered",
+                readinessCheck.call().getStatus(), is(HealthCheckResponse.Status.DOWN));
+        verify(connector, times(1)).probeCheckTemplateBuild("allowall");
+    }
+}
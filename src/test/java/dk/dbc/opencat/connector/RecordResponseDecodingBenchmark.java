@@ -0,0 +1,69 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.marc.reader.MarcReaderException;
+import dk.dbc.opencatbusiness.dto.RecordResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding of the recorded buildRecord, sortRecord, preprocess, metacompass and
+ * doRecategorizationThings responses by way of a {@link RecordResponseDTO} (the former implementation)
+ * with direct decoding by {@link MarcRecordResponseReader}
+ * <p>
+ * Run with the GC profiler to compare allocation per operation:
+ * </p>
+ * <pre>
+ *     mvn -P benchmark verify -DskipTests -Djmh.include=RecordResponseDecodingBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordResponseDecodingBenchmark {
+    @Param({"buildRecord-QF8oq", "sortRecord-JHH83", "preprocess-nREdr", "metacompass-14gsW",
+            "doRecategorizationThings-rneiv"})
+    public String response;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] responseBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream inputStream = RecordResponseDecodingBenchmark.class.getResourceAsStream(
+                "/__files/body-api-v1-" + response + ".json")) {
+            responseBytes = inputStream.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public MarcRecord viaRecordResponseDTO() throws IOException, MarcReaderException {
+        final RecordResponseDTO recordResponseDTO = objectMapper.readValue(
+                new ByteArrayInputStream(responseBytes), RecordResponseDTO.class);
+        return RecordContentTransformer.decodeRecord(recordResponseDTO.getRecord().getBytes());
+    }
+
+    @Benchmark
+    public MarcRecord direct() throws OpencatBusinessConnectorException, MarcReaderException {
+        return MarcRecordResponseReader.read(new ByteArrayInputStream(responseBytes));
+    }
+}
@@ -0,0 +1,96 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordResultCacheTest {
+    private static final String SORT_RECORD = "/api/v1/sortRecord";
+    private static final String PRE_PROCESS = "/api/v1/preprocess";
+    private static final int ENTRY_BYTES = RecordResultCache.ENTRY_OVERHEAD_BYTES + 2 * 10;
+
+    @Test
+    void hit() {
+        final RecordResultCache cache = new RecordResultCache(1024);
+        cache.put(SORT_RECORD, "dbc", record("request-01"), record("result-001"));
+
+        final EncodedMarcRecord result = cache.get(SORT_RECORD, "dbc", record("request-01"));
+        assertThat("result", result, is(record("result-001")));
+        assertThat("fresh instance", result, is(not(sameInstance(cache.get(SORT_RECORD, "dbc", record("request-01"))))));
+    }
+
+    @Test
+    void keyedOnPathParameterAndRecord() {
+        final RecordResultCache cache = new RecordResultCache(4096);
+        cache.put(SORT_RECORD, "dbc", record("request-01"), record("result-001"));
+
+        assertThat("path", cache.get(PRE_PROCESS, "dbc", record("request-01")), is(nullValue()));
+        assertThat("parameter", cache.get(SORT_RECORD, "ffu", record("request-01")), is(nullValue()));
+        assertThat("no parameter", cache.get(SORT_RECORD, null, record("request-01")), is(nullValue()));
+        assertThat("record", cache.get(SORT_RECORD, "dbc", record("request-02")), is(nullValue()));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondMaxBytes() {
+        final RecordResultCache cache = new RecordResultCache(2 * ENTRY_BYTES);
+        cache.put(PRE_PROCESS, null, record("request-01"), record("result-001"));
+        cache.put(PRE_PROCESS, null, record("request-02"), record("result-002"));
+        cache.get(PRE_PROCESS, null, record("request-01"));
+
+        cache.put(PRE_PROCESS, null, record("request-03"), record("result-003"));
+
+        assertThat("recently used", cache.get(PRE_PROCESS, null, record("request-01")), is(record("result-001")));
+        assertThat("evicted", cache.get(PRE_PROCESS, null, record("request-02")), is(nullValue()));
+        assertThat("new", cache.get(PRE_PROCESS, null, record("request-03")), is(record("result-003")));
+        assertThat("bytes", cache.getBytes(), is(2L * ENTRY_BYTES));
+        assertThat("size", cache.getSize(), is(2));
+    }
+
+    @Test
+    void replacedResultIsAccountedOnce() {
+        final RecordResultCache cache = new RecordResultCache(1024);
+        cache.put(PRE_PROCESS, null, record("request-01"), record("result-001"));
+        cache.put(PRE_PROCESS, null, record("request-01"), record("result-002"));
+
+        assertThat("result", cache.get(PRE_PROCESS, null, record("request-01")), is(record("result-002")));
+        assertThat("bytes", cache.getBytes(), is((long) ENTRY_BYTES));
+    }
+
+    @Test
+    void tooLargeResultIsNotCached() {
+        final RecordResultCache cache = new RecordResultCache(ENTRY_BYTES - 1);
+        cache.put(PRE_PROCESS, null, record("request-01"), record("result-001"));
+
+        assertThat("result", cache.get(PRE_PROCESS, null, record("request-01")), is(nullValue()));
+        assertThat("bytes", cache.getBytes(), is(0L));
+    }
+
+    @Test
+    void cachedResultIsNotDecodedRecordOfCaller() throws Exception {
+        final RecordResultCache cache = new RecordResultCache(1024);
+        final EncodedMarcRecord result = record("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<record xmlns=\"info:lc/xmlns/marcxchange-v1\">\n" +
+                "    <leader>00000n    2200000   4500</leader>\n" +
+                "</record>\n");
+        cache.put(PRE_PROCESS, null, record("request-01"), result);
+
+        assertThat(cache.get(PRE_PROCESS, null, record("request-01")).getMarcRecord(),
+                is(not(sameInstance(result.getMarcRecord()))));
+    }
+
+    @Test
+    void invalidMaxBytes() {
+        assertThrows(IllegalArgumentException.class, () -> new RecordResultCache(0));
+    }
+
+    private static EncodedMarcRecord record(String content) {
+        return EncodedMarcRecord.of(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,103 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RefreshingCacheTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final List<CompletableFuture<String>> loads = new ArrayList<>();
+    private final RefreshingCache<String, String> cache = new RefreshingCache<>("test", Duration.ofNanos(100), 2,
+            key -> {
+                final CompletableFuture<String> load = new CompletableFuture<>();
+                loads.add(load);
+                return load;
+            }, clock::get);
+
+    @Test
+    void concurrentFirstLookupsShareLoad() throws Exception {
+        final CompletableFuture<String> first = cache.get("key");
+        final CompletableFuture<String> second = cache.get("key");
+        assertThat("one load", loads.size(), is(1));
+
+        loads.get(0).complete("value");
+        assertThat(first.get(), is("value"));
+        assertThat(second.get(), is("value"));
+    }
+
+    @Test
+    void freshValueIsServedFromCache() throws Exception {
+        cache.get("key");
+        loads.get(0).complete("value");
+        clock.set(99);
+
+        assertThat(cache.get("key").get(), is("value"));
+        assertThat("no reload", loads.size(), is(1));
+    }
+
+    @Test
+    void staleValueIsServedWhileRefreshing() throws Exception {
+        cache.get("key");
+        loads.get(0).complete("value");
+        clock.set(100);
+
+        assertThat("stale value", cache.get("key").get(), is("value"));
+        assertThat("stale value during refresh", cache.get("key").get(), is("value"));
+        assertThat("single refresh", loads.size(), is(2));
+
+        loads.get(1).complete("new value");
+        assertThat("refreshed value", cache.get("key").get(), is("new value"));
+    }
+
+    @Test
+    void failingRefreshKeepsStaleValue() throws Exception {
+        cache.get("key");
+        loads.get(0).complete("value");
+        clock.set(100);
+        cache.get("key");
+        loads.get(1).completeExceptionally(new IllegalStateException("outage"));
+
+        assertThat(cache.get("key").get(), is("value"));
+        assertThat("refresh is postponed", loads.size(), is(2));
+    }
+
+    @Test
+    void failingFirstLoadIsNotCached() {
+        final CompletableFuture<String> first = cache.get("key");
+        loads.get(0).completeExceptionally(new IllegalStateException("outage"));
+        assertThrows(ExecutionException.class, first::get);
+
+        cache.get("key");
+        assertThat("new load", loads.size(), is(2));
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() throws Exception {
+        cache.get("a");
+        cache.get("b");
+        loads.forEach(load -> load.complete("value"));
+        cache.get("a");
+        cache.get("c");
+
+        assertThat(cache.size(), is(2));
+        assertThat("a is kept", cache.asMap().containsKey("a"), is(true));
+        assertThat("b is evicted", cache.asMap().containsKey("b"), is(false));
+    }
+
+    @Test
+    void staleEntriesAreRevalidated() throws Exception {
+        cache.putStale("key", "snapshot value");
+
+        assertThat(cache.get("key").get(), is("snapshot value"));
+        assertThat("revalidating", loads.size(), is(1));
+    }
+}
@@ -0,0 +1,74 @@
+package dk.dbc.opencat.connector;
+
+import dk.dbc.commons.jsonb.JSONBContext;
+import dk.dbc.commons.jsonb.JSONBException;
+import dk.dbc.dataio.commons.utils.lang.StringUtil;
+import dk.dbc.updateservice.dto.MessageEntryDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding of validateRecord responses by way of an intermediate String and array
+ * (the former implementation) with incremental decoding by {@link JsonArrayReader}
+ * <p>
+ * Run with the GC profiler to compare allocation per operation:
+ * </p>
+ * <pre>
+ *     mvn -P benchmark verify -DskipTests -Djmh.include=ResponseDecodingBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+    @Param({"10", "1000", "20000"})
+    public int messageEntries;
+
+    private final JSONBContext jsonbContext = new JSONBContext();
+    private final JsonArrayReader<MessageEntryDTO> jsonArrayReader = new JsonArrayReader<>(MessageEntryDTO.class);
+    private byte[] response;
+
+    @Setup
+    public void setup() {
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < messageEntries; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":\"ERROR\",\"urlForDocumentation\":\"http://www.kat-format.dk/danMARC2/Danmarc2.7.htm\",")
+                    .append("\"ordinalPositionOfField\":").append(i)
+                    .append(",\"ordinalPositionOfSubfield\":1,")
+                    .append("\"message\":\"Delfelt 'a' er obligatorisk i felt '245', men mangler i posten\"}");
+        }
+        response = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<MessageEntryDTO> viaString() throws JSONBException {
+        return Arrays.asList(jsonbContext.unmarshall(
+                StringUtil.asString(new ByteArrayInputStream(response)), MessageEntryDTO[].class));
+    }
+
+    @Benchmark
+    public List<MessageEntryDTO> streaming() throws JSONBException {
+        return jsonArrayReader.read(new ByteArrayInputStream(response));
+    }
+}
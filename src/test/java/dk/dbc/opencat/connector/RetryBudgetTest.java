@@ -0,0 +1,91 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetryBudgetTest {
+    @Test
+    void budgetStartsFull() {
+        final RetryBudget retryBudget = new RetryBudget(0.2, 0, 3);
+
+        assertThat("first retry", retryBudget.tryWithdraw(), is(true));
+        assertThat("second retry", retryBudget.tryWithdraw(), is(true));
+        assertThat("third retry", retryBudget.tryWithdraw(), is(true));
+        assertThat("budget exhausted", retryBudget.tryWithdraw(), is(false));
+    }
+
+    @Test
+    void requestsEarnRetries() {
+        final RetryBudget retryBudget = new RetryBudget(0.5, 0, 1);
+        retryBudget.tryWithdraw();
+
+        retryBudget.deposit();
+        assertThat("half a retry is not enough", retryBudget.tryWithdraw(), is(false));
+
+        retryBudget.deposit();
+        assertThat("two requests earn a retry", retryBudget.tryWithdraw(), is(true));
+    }
+
+    @Test
+    void balanceIsCapped() {
+        final RetryBudget retryBudget = new RetryBudget(1, 0, 2);
+        for (int i = 0; i < 10; i++) {
+            retryBudget.deposit();
+        }
+
+        assertThat(retryBudget.getBalance(), is(2.0));
+    }
+
+    @Test
+    void timeEarnsRetries() throws Exception {
+        final RetryBudget retryBudget = new RetryBudget(0, 100, 1);
+        retryBudget.tryWithdraw();
+
+        Thread.sleep(50);
+
+        assertThat(retryBudget.tryWithdraw(), is(true));
+    }
+
+    @Test
+    void concurrentWithdrawals() throws Exception {
+        final RetryBudget retryBudget = new RetryBudget(0, 0, 1000);
+        final AtomicInteger withdrawn = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        if (retryBudget.tryWithdraw()) {
+                            withdrawn.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat("withdrawn", withdrawn.get(), is(1000));
+        assertThat("balance", retryBudget.getBalance(), is(0.0));
+    }
+
+    @Test
+    void invalidBudget() {
+        assertThrows(IllegalArgumentException.class, () -> new RetryBudget(-1, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RetryBudget(0.2, 0, 0));
+    }
+}
@@ -0,0 +1,124 @@
+package dk.dbc.opencat.connector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.dbc.common.records.RecordContentTransformer;
+import dk.dbc.commons.jsonb.JSONBContext;
+import dk.dbc.commons.jsonb.JSONBException;
+import dk.dbc.marc.binding.DataField;
+import dk.dbc.marc.binding.MarcRecord;
+import dk.dbc.marc.reader.MarcReaderException;
+import dk.dbc.opencatbusiness.dto.RecordRequestDTO;
+import dk.dbc.opencatbusiness.dto.RecordResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and allocation of the serialization and deserialization steps of the connector,
+ * using the recorded opencat-business responses under src/test/resources/__files as input
+ * <p>
+ * Run all benchmarks with the GC profiler by activating the benchmark profile:
+ * </p>
+ * <pre>
+ *     mvn -P benchmark verify -DskipTests
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @State(Scope.Benchmark)
+    public static class RecordState {
+        @Param({"buildRecord-QF8oq", "sortRecord-JHH83", "preprocess-nREdr", "metacompass-14gsW",
+                "doRecategorizationThings-rneiv"})
+        public String response;
+
+        final JSONBContext jsonbContext = new JSONBContext();
+        MarcRecord marcRecord;
+        byte[] recordBytes;
+        String recordString;
+
+        @Setup
+        public void setup() throws IOException, MarcReaderException {
+            final RecordResponseDTO recordResponseDTO = OBJECT_MAPPER.readValue(
+                    resource("body-api-v1-" + response + ".json"), RecordResponseDTO.class);
+            recordString = recordResponseDTO.getRecord();
+            recordBytes = recordString.getBytes(StandardCharsets.UTF_8);
+            marcRecord = RecordContentTransformer.decodeRecord(recordBytes);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DataFieldState {
+        WrapperDataField wrapperDataField;
+
+        @Setup
+        public void setup() throws IOException {
+            wrapperDataField = OBJECT_MAPPER.readValue(
+                    resource("body-api-v1-recategorizationNoteFieldFactory-yv064.json"), WrapperDataField.class);
+        }
+    }
+
+    /**
+     * The former marcRecordToDTOString conversion
+     */
+    @Benchmark
+    public String marcRecordToDTOString(RecordState state) {
+        return new String(RecordContentTransformer.encodeRecord(state.marcRecord));
+    }
+
+    /**
+     * The former request marshalling through JSONBContext of a DTO holding the record as a String
+     */
+    @Benchmark
+    public String marshallRequestWithJSONBContext(RecordState state) throws JSONBException {
+        final RecordRequestDTO requestDTO = new RecordRequestDTO();
+        requestDTO.setRecord(state.recordString);
+        requestDTO.setTrackingId("benchmark");
+        return state.jsonbContext.marshall(requestDTO);
+    }
+
+    /**
+     * The current request path: encoding the record and writing the request body
+     */
+    @Benchmark
+    public JsonRequestBody writeJsonRequestBody(RecordState state) throws JSONBException, IOException {
+        final RecordRequestDTO requestDTO = new RecordRequestDTO();
+        requestDTO.setTrackingId("benchmark");
+        final JsonRequestBody requestBody = JsonRequestBody.of(requestDTO).withRecord("record", state.marcRecord);
+        requestBody.write(OutputStream.nullOutputStream());
+        return requestBody;
+    }
+
+    @Benchmark
+    public MarcRecord decodeRecord(RecordState state) throws MarcReaderException {
+        return RecordContentTransformer.decodeRecord(state.recordBytes);
+    }
+
+    @Benchmark
+    public DataField toDataField(DataFieldState state) {
+        return state.wrapperDataField.toDataField();
+    }
+
+    private static InputStream resource(String file) {
+        return SerializationBenchmark.class.getResourceAsStream("/__files/" + file);
+    }
+}
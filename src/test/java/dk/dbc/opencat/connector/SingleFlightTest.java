@@ -0,0 +1,91 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger joins = new AtomicInteger();
+
+    @Test
+    void identicalCallsInFlightShareOneCall() throws Exception {
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        final CompletableFuture<String> first = singleFlight.executeAsync("key", () -> call(response), joins::incrementAndGet);
+        final CompletableFuture<String> second = singleFlight.executeAsync("key", () -> call(response), joins::incrementAndGet);
+
+        assertThat("not done", first.isDone(), is(false));
+        response.complete("value");
+
+        assertThat("first", first.get(), is("value"));
+        assertThat("second", second.get(), is("value"));
+        assertThat("calls", calls.get(), is(1));
+        assertThat("joins", joins.get(), is(1));
+    }
+
+    @Test
+    void differentKeysAreCalledSeparately() {
+        singleFlight.executeAsync("a", () -> call(new CompletableFuture<>()), joins::incrementAndGet);
+        singleFlight.executeAsync("b", () -> call(new CompletableFuture<>()), joins::incrementAndGet);
+
+        assertThat("calls", calls.get(), is(2));
+        assertThat("joins", joins.get(), is(0));
+    }
+
+    @Test
+    void completedCallsAreForgotten() throws Exception {
+        assertThat("first", singleFlight.execute("key", () -> "first-" + calls.incrementAndGet(), joins::incrementAndGet).get(),
+                is("first-1"));
+        assertThat("second", singleFlight.execute("key", () -> "second-" + calls.incrementAndGet(), joins::incrementAndGet).get(),
+                is("second-2"));
+    }
+
+    @Test
+    void failureIsShared() {
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        final CompletableFuture<String> first = singleFlight.executeAsync("key", () -> call(response), joins::incrementAndGet);
+        final CompletableFuture<String> second = singleFlight.executeAsync("key", () -> call(response), joins::incrementAndGet);
+        response.completeExceptionally(new OpencatBusinessConnectorException("failed"));
+
+        assertThat("first", assertThrows(ExecutionException.class, first::get).getCause(),
+                is(instanceOf(OpencatBusinessConnectorException.class)));
+        assertThat("second", assertThrows(ExecutionException.class, second::get).getCause(),
+                is(instanceOf(OpencatBusinessConnectorException.class)));
+    }
+
+    @Test
+    void synchronousFailure() throws Exception {
+        final CompletableFuture<String> result = singleFlight.execute("key", () -> {
+            throw new OpencatBusinessConnectorException("failed");
+        }, joins::incrementAndGet);
+
+        assertThat("failed", assertThrows(ExecutionException.class, result::get).getCause(),
+                is(instanceOf(OpencatBusinessConnectorException.class)));
+        assertThat("forgotten", singleFlight.execute("key", () -> "value", joins::incrementAndGet).get(), is("value"));
+    }
+
+    @Test
+    void cancellingOneCallerDoesNotAffectOthers() throws Exception {
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        final CompletableFuture<String> first = singleFlight.executeAsync("key", () -> call(response), joins::incrementAndGet);
+        final CompletableFuture<String> second = singleFlight.executeAsync("key", () -> call(response), joins::incrementAndGet);
+
+        first.cancel(true);
+        response.complete("value");
+
+        assertThat(second.get(), is("value"));
+    }
+
+    private CompletableFuture<String> call(CompletableFuture<String> response) {
+        calls.incrementAndGet();
+        return response;
+    }
+}
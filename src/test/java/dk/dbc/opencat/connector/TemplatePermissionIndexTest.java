@@ -0,0 +1,186 @@
+package dk.dbc.opencat.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TemplatePermissionIndexTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final TemplatePermissionIndex index = new TemplatePermissionIndex(Duration.ofNanos(100), clock::get);
+
+    @Test
+    void unknownCombination() {
+        index.put("bog", "870970", "dbc", true);
+
+        assertThat("template", index.get("musik", "870970", "dbc"), is(nullValue()));
+        assertThat("agency", index.get("bog", "710100", "dbc"), is(nullValue()));
+        assertThat("library type", index.get("bog", "870970", "fbs"), is(nullValue()));
+    }
+
+    @Test
+    void learnsOutcomes() {
+        index.put("bog", "870970", "dbc", true);
+        index.put("bog", "710100", "fbs", false);
+
+        assertThat("allowed", index.get("bog", "870970", "dbc"), is(true));
+        assertThat("denied", index.get("bog", "710100", "fbs"), is(false));
+        assertThat("size", index.getSize(), is(2));
+    }
+
+    @Test
+    void changedOutcome() {
+        index.put("bog", "870970", "dbc", true);
+        index.put("bog", "870970", "dbc", false);
+
+        assertThat("outcome", index.get("bog", "870970", "dbc"), is(false));
+        assertThat("size", index.getSize(), is(1));
+    }
+
+    @Test
+    void replacesContentsInBulk() {
+        index.put("bog", "870970", "dbc", true);
+
+        final TemplatePermissionIndex.Builder builder = new TemplatePermissionIndex.Builder();
+        for (int agency = 700000; agency < 702000; agency++) {
+            builder.put("bog", Integer.toString(agency), "fbs", agency % 3 == 0);
+        }
+        index.replace(builder);
+
+        assertThat("replaced", index.get("bog", "870970", "dbc"), is(nullValue()));
+        for (int agency = 700000; agency < 702000; agency++) {
+            assertThat(Integer.toString(agency), index.get("bog", Integer.toString(agency), "fbs"), is(agency % 3 == 0));
+        }
+        assertThat("size", index.getSize(), is(2000));
+    }
+
+    @Test
+    void builderIsNotSharedWithIndex() {
+        final TemplatePermissionIndex.Builder builder = new TemplatePermissionIndex.Builder()
+                .put("bog", "870970", "dbc", true);
+        index.replace(builder);
+
+        builder.put("bog", "870970", "dbc", false);
+        assertThat(index.get("bog", "870970", "dbc"), is(true));
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        index.replace(new TemplatePermissionIndex.Builder().put("bog", "870970", "dbc", true));
+        clock.set(99);
+        assertThat("fresh", index.get("bog", "870970", "dbc"), is(true));
+
+        clock.set(100);
+        assertThat("expired", index.get("bog", "870970", "dbc"), is(nullValue()));
+
+        index.put("musik", "870970", "dbc", true);
+        assertThat("emptied", index.get("bog", "870970", "dbc"), is(nullValue()));
+        assertThat("learned", index.get("musik", "870970", "dbc"), is(true));
+        assertThat("size", index.getSize(), is(1));
+    }
+
+    @Test
+    void groupIdsWhichAreNotNumbersAreNotIndexed() {
+        index.put("bog", "DBC", "dbc", true);
+
+        assertThat("not indexed", index.get("bog", "DBC", "dbc"), is(nullValue()));
+        assertThat("size", index.getSize(), is(0));
+        assertThat("parse", TemplatePermissionIndex.parseAgency("010100"), is(10100));
+        assertThat("too short", TemplatePermissionIndex.parseAgency("10100"), is(-1));
+        assertThat("too long", TemplatePermissionIndex.parseAgency("1234567890"), is(-1));
+        assertThat("null", TemplatePermissionIndex.parseAgency(null), is(-1));
+    }
+
+    @Test
+    void mergeKeepsOtherOutcomes() {
+        index.replace(new TemplatePermissionIndex.Builder()
+                .put("bog", "870970", "dbc", true)
+                .put("bog", "710100", "fbs", true));
+        index.put("musik", "870970", "dbc", true);
+        clock.set(50);
+
+        index.merge(new TemplatePermissionIndex.Builder()
+                .put("bog", "710100", "fbs", false)
+                .put("film", "710100", "fbs", true));
+        clock.set(120);
+
+        assertThat("loaded", index.get("bog", "870970", "dbc"), is(true));
+        assertThat("learned", index.get("musik", "870970", "dbc"), is(true));
+        assertThat("changed", index.get("bog", "710100", "fbs"), is(false));
+        assertThat("added", index.get("film", "710100", "fbs"), is(true));
+        assertThat("size", index.getSize(), is(4));
+    }
+
+    @Test
+    void expiredOutcomesAnswerUntilDropped() {
+        index.loadExpired(new TemplatePermissionIndex.Builder()
+                .put("bog", "870970", "dbc", true)
+                .put("bog", "710100", "fbs", true));
+        index.put("bog", "710100", "fbs", false);
+
+        assertThat("expired outcome", index.get("bog", "870970", "dbc"), is(true));
+        assertThat("learned outcome wins", index.get("bog", "710100", "fbs"), is(false));
+        assertThat("size", index.getSize(), is(2));
+        assertThat("exported", index.getPermissions().size(), is(2));
+
+        index.dropExpired();
+        assertThat("dropped", index.get("bog", "870970", "dbc"), is(nullValue()));
+        assertThat("learned outcome kept", index.get("bog", "710100", "fbs"), is(false));
+        assertThat("size after drop", index.getSize(), is(1));
+    }
+
+    @Test
+    void expiredOutcomesDoNotRestartTtl() {
+        index.put("bog", "870970", "dbc", true);
+        clock.set(50);
+        index.loadExpired(new TemplatePermissionIndex.Builder().put("musik", "870970", "dbc", true));
+
+        clock.set(100);
+        assertThat("learned outcome expired", index.get("bog", "870970", "dbc"), is(nullValue()));
+
+        index.replace(new TemplatePermissionIndex.Builder().put("film", "870970", "dbc", true));
+        assertThat("replace drops expired outcomes", index.get("musik", "870970", "dbc"), is(nullValue()));
+    }
+
+    @Test
+    void leadingZerosAreSignificant() {
+        index.put("bog", "010100", "fbs", true);
+        index.put("bog", "10100", "fbs", false);
+
+        assertThat("6-digit form", index.get("bog", "010100", "fbs"), is(true));
+        assertThat("other agency", index.get("bog", "10100", "fbs"), is(nullValue()));
+        assertThat("exported", index.getPermissions().get(0).getGroupId(), is("010100"));
+    }
+
+    @Test
+    void exportsKnownOutcomes() {
+        for (int agency = 700000; agency < 700100; agency++) {
+            index.put("bog", Integer.toString(agency), "fbs", agency % 2 == 0);
+        }
+        index.put("musik", "870970", "dbc", true);
+
+        final TemplatePermissionIndex copy = new TemplatePermissionIndex(Duration.ofNanos(100), clock::get);
+        final TemplatePermissionIndex.Builder builder = new TemplatePermissionIndex.Builder();
+        for (CacheSnapshot.TemplatePermission permission : index.getPermissions()) {
+            builder.put(permission.getTemplateName(), permission.getGroupId(), permission.getLibraryType(),
+                    permission.isAllowed());
+        }
+        copy.replace(builder);
+
+        assertThat("size", copy.getSize(), is(101));
+        assertThat("allowed", copy.get("bog", "700042", "fbs"), is(true));
+        assertThat("denied", copy.get("bog", "700043", "fbs"), is(false));
+        assertThat("other template", copy.get("musik", "870970", "dbc"), is(true));
+        assertThat("unknown", copy.get("musik", "700042", "fbs"), is(nullValue()));
+    }
+
+    @Test
+    void invalidTtl() {
+        assertThrows(IllegalArgumentException.class, () -> new TemplatePermissionIndex(Duration.ZERO));
+    }
+}